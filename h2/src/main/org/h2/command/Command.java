@@ -90,6 +90,13 @@ public abstract class Command implements CommandInterface {
      */
     public abstract boolean isReadOnly();
 
+    /**
+     * Check if this command can be executed within a read-only transaction.
+     *
+     * @return true if it can
+     */
+    public abstract boolean isReadOnlyTransactionAllowed();
+
     /**
      * Get an empty result set containing the meta data.
      *
@@ -192,7 +199,7 @@ public ResultInterface executeQuery(int maxrows, boolean scrollable) {
         }
         //noinspection SynchronizationOnLocalVariableOrMethodParameter
         synchronized (sync) {
-            session.startStatementWithinTransaction();
+            session.startStatementWithinTransaction(this);
             session.setCurrentCommand(this, false);
             try {
                 while (true) {
@@ -253,7 +260,7 @@ public ResultWithGeneratedKeys executeUpdate(Object generatedKeysRequest) {
         //noinspection SynchronizationOnLocalVariableOrMethodParameter
         synchronized (sync) {
             Session.Savepoint rollback = session.setSavepoint();
-            session.startStatementWithinTransaction();
+            session.startStatementWithinTransaction(this);
             session.setCurrentCommand(this, generatedKeysRequest);
             DbException ex = null;
             try {
@@ -148,6 +148,11 @@ public boolean isReadOnly() {
         return readOnly;
     }
 
+    @Override
+    public boolean isReadOnlyTransactionAllowed() {
+        return prepared.isReadOnlyTransactionAllowed();
+    }
+
     @Override
     public ResultInterface queryMeta() {
         return prepared.queryMeta();
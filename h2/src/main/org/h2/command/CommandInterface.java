@@ -483,6 +483,16 @@ public interface CommandInterface {
      */
     int ALTER_TABLE_ALTER_COLUMN_ON_UPDATE = 90;
 
+    /**
+     * The type of a ALTER TABLE SET RESULT_CACHE statement.
+     */
+    int ALTER_TABLE_SET_RESULT_CACHE = 91;
+
+    /**
+     * The type of a REFRESH MATERIALIZED VIEW statement.
+     */
+    int REFRESH_MATERIALIZED_VIEW = 92;
+
     /**
      * Get command type.
      *
@@ -73,6 +73,11 @@ public boolean isReadOnly() {
         return false;
     }
 
+    @Override
+    public boolean isReadOnlyTransactionAllowed() {
+        return false;
+    }
+
     @Override
     public ResultInterface queryMeta() {
         return command.queryMeta();
@@ -121,6 +121,7 @@
 import org.h2.command.ddl.DropView;
 import org.h2.command.ddl.GrantRevoke;
 import org.h2.command.ddl.PrepareProcedure;
+import org.h2.command.ddl.RefreshMaterializedView;
 import org.h2.command.ddl.SchemaCommand;
 import org.h2.command.ddl.SequenceOptions;
 import org.h2.command.ddl.SetComment;
@@ -205,6 +206,7 @@
 import org.h2.schema.Schema;
 import org.h2.schema.Sequence;
 import org.h2.table.Column;
+import org.h2.table.ColumnStatistics;
 import org.h2.table.FunctionTable;
 import org.h2.table.IndexColumn;
 import org.h2.table.IndexHints;
@@ -853,6 +855,8 @@ private Prepared parsePrepared() {
                     c = parseReleaseSavepoint();
                 } else if (readIf("REPLACE")) {
                     c = parseReplace();
+                } else if (readIf("REFRESH")) {
+                    c = parseRefreshMaterializedView();
                 }
                 break;
             case 's':
@@ -1245,10 +1249,26 @@ private Delete parseDelete() {
     }
 
     private IndexColumn[] parseIndexColumnList() {
+        return parseIndexColumnList(false);
+    }
+
+    private IndexColumn[] parseIndexColumnList(boolean allowExpressions) {
         ArrayList<IndexColumn> columns = Utils.newSmallArrayList();
         do {
             IndexColumn column = new IndexColumn();
-            column.columnName = readColumnIdentifier();
+            if (allowExpressions && currentTokenType != IDENTIFIER) {
+                column.expression = readExpression();
+            } else {
+                int start = lastParseIndex;
+                column.columnName = readColumnIdentifier();
+                if (allowExpressions && currentTokenType == OPEN_PAREN) {
+                    // a function call, other expressions need parentheses
+                    parseIndex = start;
+                    read();
+                    column.columnName = null;
+                    column.expression = readExpression();
+                }
+            }
             column.sortType = parseSortType();
             columns.add(column);
         } while (readIfMore(true));
@@ -2015,8 +2035,31 @@ private Prepared parseComment() {
         return command;
     }
 
+    private RefreshMaterializedView parseRefreshMaterializedView() {
+        read("MATERIALIZED");
+        read("VIEW");
+        String viewName = readIdentifierWithSchema();
+        RefreshMaterializedView command = new RefreshMaterializedView(session, getSchema());
+        command.setViewName(viewName);
+        return command;
+    }
+
     private Prepared parseDrop() {
-        if (readIf("TABLE")) {
+        if (readIf("MATERIALIZED")) {
+            read("VIEW");
+            boolean ifExists = readIfExists(false);
+            String viewName = readIdentifierWithSchema();
+            DropTable command = new DropTable(session, getSchema());
+            command.setTableName(viewName);
+            command.setMaterialized(true);
+            ifExists = readIfExists(ifExists);
+            command.setIfExists(ifExists);
+            ConstraintActionType dropAction = parseCascadeOrRestrict();
+            if (dropAction != null) {
+                command.setDropAction(dropAction);
+            }
+            return command;
+        } else if (readIf("TABLE")) {
             boolean ifExists = readIfExists(false);
             String tableName = readIdentifierWithSchema();
             DropTable command = new DropTable(session, getSchema());
@@ -2480,8 +2523,12 @@ private void parseEndOfQuery(Query command) {
                     do {
                         readIdentifierWithSchema();
                     } while (readIf(COMMA));
-                } else if (readIf("NOWAIT")) {
-                    // TODO parser: select for update nowait: should not wait
+                }
+                if (readIf("NOWAIT")) {
+                    command.setForUpdateWait(Query.FOR_UPDATE_NOWAIT);
+                } else if (readIf("SKIP")) {
+                    read("LOCKED");
+                    command.setForUpdateWait(Query.FOR_UPDATE_SKIP_LOCKED);
                 }
                 command.setForUpdate(true);
             } else if (readIf("READ") || readIf(FETCH)) {
@@ -3062,6 +3109,13 @@ private Expression readAggregate(AggregateType aggregateType, String aggregateNa
             }
             break;
         }
+        case APPROX_PERCENTILE:
+            r = new Aggregate(aggregateType, readExpression(), currentSelect, false);
+            if (equalsToken("APPROX_PERCENTILE", aggregateName)) {
+                read(COMMA);
+                r.setFraction(readExpression());
+            }
+            break;
         default:
             boolean distinct = readDistinctAgg();
             r = new Aggregate(aggregateType, readExpression(), currentSelect, distinct);
@@ -5111,6 +5165,10 @@ private Column parseColumnForTable(String columnName,
             int value = readNonNegativeInt();
             column.setSelectivity(value);
         }
+        if (readIf("STATISTICS")) {
+            Value value = readExpression().optimize(session).getValue(session);
+            column.setStatistics(ColumnStatistics.get(column, value));
+        }
         String comment = readCommentIf();
         if (comment != null) {
             column.setComment(comment);
@@ -5559,6 +5617,9 @@ private Prepared parseCreate() {
         boolean force = readIf("FORCE");
         if (readIf("VIEW")) {
             return parseCreateView(force, orReplace);
+        } else if (!orReplace && !force && readIf("MATERIALIZED")) {
+            read("VIEW");
+            return parseCreateMaterializedView();
         } else if (readIf("ALIAS")) {
             return parseCreateFunctionAlias(force);
         } else if (readIf("SEQUENCE")) {
@@ -5616,7 +5677,7 @@ private Prepared parseCreate() {
             return parseCreateSynonym(orReplace);
         } else {
             boolean hash = false, primaryKey = false;
-            boolean unique = false, spatial = false;
+            boolean unique = false, spatial = false, bitmap = false;
             String indexName = null;
             Schema oldSchema = null;
             boolean ifNotExists = false;
@@ -5641,6 +5702,9 @@ private Prepared parseCreate() {
                 if (readIf("SPATIAL")) {
                     spatial = true;
                 }
+                if (readIf("BITMAP")) {
+                    bitmap = true;
+                }
                 if (readIf("INDEX")) {
                     if (!isToken(ON)) {
                         ifNotExists = readIfNotExists();
@@ -5662,7 +5726,11 @@ private Prepared parseCreate() {
             command.setIndexName(indexName);
             command.setComment(readCommentIf());
             read(OPEN_PAREN);
-            command.setIndexColumns(parseIndexColumnList());
+            command.setIndexColumns(parseIndexColumnList(true));
+            if (readIf("INCLUDE")) {
+                read(OPEN_PAREN);
+                command.setIncludedColumnNames(parseColumnList());
+            }
 
             if (readIf("USING")) {
                 if (hash) {
@@ -5671,19 +5739,28 @@ private Prepared parseCreate() {
                 if (spatial) {
                     throw getSyntaxError();
                 }
+                if (bitmap) {
+                    throw getSyntaxError();
+                }
                 if (readIf("BTREE")) {
                     // default
                 } else if (readIf("RTREE")) {
                     spatial = true;
                 } else if (readIf("HASH")) {
                     hash = true;
+                } else if (readIf("BITMAP")) {
+                    bitmap = true;
                 } else {
                     throw getSyntaxError();
                 }
 
             }
+            if (readIf(WHERE)) {
+                command.setCondition(readExpression());
+            }
             command.setHash(hash);
             command.setSpatial(spatial);
+            command.setBitmap(bitmap);
             return command;
         }
     }
@@ -6315,6 +6392,41 @@ private CreateView parseCreateView(boolean force, boolean orReplace) {
         return command;
     }
 
+    private CreateTable parseCreateMaterializedView() {
+        boolean ifNotExists = readIfNotExists();
+        String viewName = readIdentifierWithSchema();
+        CreateTable command = new CreateTable(session, getSchema());
+        command.setMaterialized(true);
+        command.setIfNotExists(ifNotExists);
+        command.setTableName(viewName);
+        command.setComment(readCommentIf());
+        if (readIf(OPEN_PAREN)) {
+            do {
+                String columnName = readColumnIdentifier();
+                Column column;
+                if (currentTokenType == COMMA || currentTokenType == CLOSE_PAREN) {
+                    // the data type is taken from the query
+                    column = new Column(columnName, Value.UNKNOWN);
+                } else {
+                    column = parseColumnForTable(columnName, true, true);
+                }
+                command.addColumn(column);
+            } while (readIfMore(false));
+        }
+        String select = StringUtils.cache(sqlCommand.substring(parseIndex));
+        read("AS");
+        if (database.isStarting()) {
+            // the tables are only available once the database is opened
+            command.setQuerySQL(select);
+            while (currentTokenType != END) {
+                read();
+            }
+        } else {
+            command.setQuery(parseSelect());
+        }
+        return command;
+    }
+
     private TransactionCommand parseCheckpoint() {
         TransactionCommand command;
         if (readIf("SYNC")) {
@@ -6975,6 +7087,14 @@ private Prepared parseAlterTable() {
             }
             return parseAlterTableAddColumn(tableName, schema, ifTableExists);
         } else if (readIf("SET")) {
+            if (readIf("RESULT_CACHE")) {
+                boolean value = readBooleanSetting();
+                AlterTableSet command = new AlterTableSet(session,
+                        schema, CommandInterface.ALTER_TABLE_SET_RESULT_CACHE, value);
+                command.setTableName(tableName);
+                command.setIfTableExists(ifTableExists);
+                return command;
+            }
             read("REFERENTIAL_INTEGRITY");
             int type = CommandInterface.ALTER_TABLE_SET_REFERENTIAL_INTEGRITY;
             boolean value = readBooleanSetting();
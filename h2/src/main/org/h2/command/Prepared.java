@@ -111,6 +111,16 @@ public boolean isReadOnly() {
         return false;
     }
 
+    /**
+     * Check if this command can be executed within a read-only transaction.
+     * Such commands may not modify or lock any rows.
+     *
+     * @return true if it can
+     */
+    public boolean isReadOnlyTransactionAllowed() {
+        return false;
+    }
+
     /**
      * Check if the statement needs to be re-compiled.
      *
@@ -192,6 +202,16 @@ public void setCommand(Command command) {
         this.command = command;
     }
 
+    /**
+     * Check if this is the statement of a command, and not for example a
+     * subquery or the query of a view.
+     *
+     * @return true if it is
+     */
+    public boolean isTopLevel() {
+        return command != null;
+    }
+
     /**
      * Check if this object is a query.
      *
@@ -339,7 +339,7 @@ private static Index getIndex(Table t, IndexColumn[] cols, boolean moreColumnOk)
     // all cols must be in the index key, the order doesn't matter and there
     // must be no other fields in the index key
     private static boolean canUseUniqueIndex(Index idx, Table table, IndexColumn[] cols) {
-        if (idx.getTable() != table || !idx.getIndexType().isUnique()) {
+        if (idx.getTable() != table || !idx.getIndexType().isUnique() || idx.getCondition() != null) {
             return false;
         }
         Column[] indexCols = idx.getColumns();
@@ -354,8 +354,10 @@ private static boolean canUseUniqueIndex(Index idx, Table table, IndexColumn[] c
 
     private static boolean canUseIndex(Index existingIndex, Table table,
             IndexColumn[] cols, boolean moreColumnsOk) {
-        if (existingIndex.getTable() != table || existingIndex.getCreateSQL() == null) {
-            // can't use the scan index or index of another table
+        if (existingIndex.getTable() != table || existingIndex.getCreateSQL() == null
+                || existingIndex.getCondition() != null) {
+            // can't use the scan index, a partial index, or index of another
+            // table
             return false;
         }
         Column[] indexCols = existingIndex.getColumns();
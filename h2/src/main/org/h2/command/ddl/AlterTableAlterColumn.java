@@ -12,6 +12,7 @@
 import org.h2.command.CommandInterface;
 import org.h2.command.Parser;
 import org.h2.command.Prepared;
+import org.h2.command.dml.MaterializedView;
 import org.h2.constraint.Constraint;
 import org.h2.constraint.ConstraintReferential;
 import org.h2.constraint.ConstraintUnique;
@@ -115,6 +116,9 @@ public int update() {
         }
         session.getUser().checkRight(table, Right.ALL);
         table.checkSupportAlter();
+        if (table.getMaterializedView() != null) {
+            throw DbException.getUnsupportedException("MATERIALIZED VIEW");
+        }
         table.lock(session, true, true);
         if (newColumn != null) {
             checkDefaultReferencesTable(table, newColumn.getDefaultExpression());
@@ -291,12 +295,20 @@ private void copyData(Table table, ArrayList<Sequence> sequences, boolean create
                 table.addSequence(sequence);
             }
         }
+        // the materialized views are bound to the new table afterwards
+        ArrayList<MaterializedView> materializedViews = new ArrayList<>(table.getMaterializedViews());
+        for (MaterializedView view : materializedViews) {
+            view.close();
+        }
         try {
             // check if a view would become invalid
             // (because the column to drop is referenced or so)
-            checkViews(table, newTable);
+            checkViews(table, newTable, materializedViews);
         } catch (DbException e) {
             execute("DROP TABLE " + newTable.getName(), true);
+            for (MaterializedView view : materializedViews) {
+                view.init(session);
+            }
             throw e;
         }
         String tableName = table.getName();
@@ -336,6 +348,12 @@ private void copyData(Table table, ArrayList<Sequence> sequences, boolean create
             String sql = view.getCreateSQL(true, true);
             execute(sql, true);
         }
+        for (MaterializedView view : materializedViews) {
+            view.init(session);
+            view.refresh(session);
+            db.updateMeta(session, view.getTable());
+            session.commit(true);
+        }
     }
 
     private Table cloneTableStructure(Table table, Column[] columns, Database db,
@@ -514,7 +532,8 @@ private Table cloneTableStructure(Table table, Column[] columns, Database db,
     /**
      * Check that all views and other dependent objects.
      */
-    private void checkViews(SchemaObject sourceTable, SchemaObject newTable) {
+    private void checkViews(SchemaObject sourceTable, SchemaObject newTable,
+            ArrayList<MaterializedView> materializedViews) {
         String sourceTableName = sourceTable.getName();
         String newTableName = newTable.getName();
         Database db = sourceTable.getDatabase();
@@ -525,6 +544,13 @@ private void checkViews(SchemaObject sourceTable, SchemaObject newTable) {
             // have our new table impersonate the target table
             db.renameSchemaObject(session, newTable, sourceTableName);
             checkViewsAreValid(sourceTable);
+            for (MaterializedView view : materializedViews) {
+                try {
+                    session.prepare(view.getQuerySQL());
+                } catch (DbException e) {
+                    throw DbException.get(ErrorCode.COLUMN_IS_REFERENCED_1, e, view.getTable().getSQL());
+                }
+            }
         } finally {
             // always put the source tables back with their proper names
             try {
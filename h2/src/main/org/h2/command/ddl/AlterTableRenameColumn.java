@@ -7,6 +7,7 @@
 
 import org.h2.api.ErrorCode;
 import org.h2.command.CommandInterface;
+import org.h2.command.dml.MaterializedView;
 import org.h2.constraint.ConstraintReferential;
 import org.h2.engine.Database;
 import org.h2.engine.DbObject;
@@ -86,6 +87,9 @@ public int update() {
                 db.updateMeta(session, child);
             }
         }
+        for (MaterializedView view : table.getMaterializedViews()) {
+            db.updateMeta(session, view.getTable());
+        }
         return 0;
     }
 
@@ -6,6 +6,9 @@
 package org.h2.command.ddl;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
 import org.h2.command.CommandInterface;
 import org.h2.command.Prepared;
 import org.h2.engine.Database;
@@ -13,7 +16,9 @@
 import org.h2.engine.Session;
 import org.h2.expression.Parameter;
 import org.h2.result.ResultInterface;
+import org.h2.result.Row;
 import org.h2.table.Column;
+import org.h2.table.ColumnStatistics;
 import org.h2.table.Table;
 import org.h2.table.TableType;
 import org.h2.util.StatementBuilder;
@@ -102,6 +107,17 @@ public static void analyzeTable(Session session, Table table, int sample,
             return;
         }
         Database db = session.getDatabase();
+        if (manual) {
+            db.cancelAnalyzeInBackground(table);
+        } else if (sample > 0) {
+            // read rows from the whole table instead of the first rows
+            ArrayList<Row> rows = table.getSample(session, sample, new Random());
+            if (rows != null) {
+                analyzeSample(table, columns, rows);
+                db.updateMeta(session, table);
+                return;
+            }
+        }
         StatementBuilder buff = new StatementBuilder("SELECT ");
         for (Column col : columns) {
             buff.appendExceptFirst(", ");
@@ -132,9 +148,129 @@ public static void analyzeTable(Session session, Table table, int sample,
                 columns[j].setSelectivity(selectivity);
             }
         }
+        calculateStatistics(session, table, sample);
         db.updateMeta(session, table);
     }
 
+    /**
+     * Calculate the selectivity and the statistics of the columns from a
+     * random sample of the rows. The columns are only changed after
+     * everything is calculated, so that queries see either the old or the new
+     * statistics of a column, and no partially calculated values.
+     *
+     * @param table the table
+     * @param columns the columns of the table
+     * @param rows the sampled rows
+     */
+    private static void analyzeSample(Table table, Column[] columns, ArrayList<Row> rows) {
+        int columnCount = columns.length, count = rows.size();
+        int[] selectivity = new int[columnCount];
+        ColumnStatistics[] statistics = new ColumnStatistics[columnCount];
+        Value[] values = new Value[count];
+        HashSet<Value> distinct = new HashSet<>();
+        for (int j = 0; j < columnCount; j++) {
+            int type = columns[j].getType();
+            if (DataType.isLargeObject(type)) {
+                // can not index LOB columns
+                selectivity[j] = -1;
+                continue;
+            }
+            int nonNullCount = 0;
+            distinct.clear();
+            for (int i = 0; i < count; i++) {
+                Value v = rows.get(i).getValue(j);
+                values[i] = v;
+                if (v != ValueNull.INSTANCE) {
+                    nonNullCount++;
+                    distinct.add(v);
+                }
+            }
+            selectivity[j] = nonNullCount == 0 ? 0 : (int) Math.max(1, 100L * distinct.size() / nonNullCount);
+            if (ColumnStatistics.isSupportedType(type)) {
+                statistics[j] = ColumnStatistics.calculate(table, values, count);
+            }
+        }
+        for (int j = 0; j < columnCount; j++) {
+            if (selectivity[j] >= 0) {
+                columns[j].setSelectivity(selectivity[j]);
+            }
+            if (statistics[j] != null) {
+                columns[j].setStatistics(statistics[j]);
+            }
+        }
+    }
+
+    /**
+     * Calculate the most common values and the histograms of the columns of
+     * the table. If all rows are analyzed, a random sample of the rows is
+     * used.
+     *
+     * @param session the session
+     * @param table the table
+     * @param sample the number of sample rows, or 0 for all rows
+     */
+    private static void calculateStatistics(Session session, Table table, int sample) {
+        ArrayList<Column> columns = new ArrayList<>();
+        StatementBuilder buff = new StatementBuilder("SELECT ");
+        for (Column col : table.getColumns()) {
+            if (ColumnStatistics.isSupportedType(col.getType())) {
+                columns.add(col);
+                buff.appendExceptFirst(", ");
+                buff.append(col.getSQL());
+            }
+        }
+        int columnCount = columns.size();
+        if (columnCount == 0) {
+            return;
+        }
+        buff.append(" FROM ").append(table.getSQL());
+        if (sample > 0) {
+            buff.append(" FETCH FIRST ? ROWS ONLY");
+        }
+        Prepared command = session.prepare(buff.toString());
+        if (sample > 0) {
+            command.getParameters().get(0).setValue(ValueInt.get(sample));
+        }
+        int size = sample > 0 ? sample : session.getDatabase().getSettings().analyzeSample;
+        // the arrays grow as rows are read, so that a large sample size
+        // doesn't allocate memory for rows that don't exist
+        int capacity = (int) Math.min(size, Math.max(16, table.getRowCountApproximation()));
+        Value[][] values = new Value[columnCount][capacity];
+        int count = 0;
+        long rowNumber = 0;
+        Random random = new Random();
+        ResultInterface result = command.query(0);
+        while (result.next()) {
+            Value[] row = result.currentRow();
+            long index = rowNumber++;
+            if (index >= size) {
+                // reservoir sampling
+                index = (long) (random.nextDouble() * rowNumber);
+                if (index >= size) {
+                    continue;
+                }
+            } else {
+                if (count == capacity) {
+                    capacity = (int) Math.min(size, 2L * capacity);
+                    for (int j = 0; j < columnCount; j++) {
+                        values[j] = Arrays.copyOf(values[j], capacity);
+                    }
+                }
+                count++;
+            }
+            for (int j = 0; j < columnCount; j++) {
+                values[j][(int) index] = row[j];
+            }
+        }
+        result.close();
+        for (int j = 0; j < columnCount; j++) {
+            ColumnStatistics statistics = ColumnStatistics.calculate(table, values[j], count);
+            if (statistics != null) {
+                columns.get(j).setStatistics(statistics);
+            }
+        }
+    }
+
     public void setTop(int top) {
         this.sampleRows = top;
     }
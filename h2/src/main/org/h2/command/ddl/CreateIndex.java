@@ -5,15 +5,19 @@
  */
 package org.h2.command.ddl;
 
+import java.util.HashSet;
+
 import org.h2.api.ErrorCode;
 import org.h2.command.CommandInterface;
 import org.h2.engine.Constants;
 import org.h2.engine.Database;
 import org.h2.engine.Right;
 import org.h2.engine.Session;
+import org.h2.expression.Expression;
 import org.h2.index.IndexType;
 import org.h2.message.DbException;
 import org.h2.schema.Schema;
+import org.h2.table.Column;
 import org.h2.table.IndexColumn;
 import org.h2.table.Table;
 
@@ -26,7 +30,9 @@ public class CreateIndex extends SchemaCommand {
     private String tableName;
     private String indexName;
     private IndexColumn[] indexColumns;
-    private boolean primaryKey, unique, hash, spatial, affinity;
+    private String[] includedColumnNames;
+    private Expression condition;
+    private boolean primaryKey, unique, hash, spatial, affinity, bitmap;
     private boolean ifTableExists;
     private boolean ifNotExists;
     private String comment;
@@ -55,6 +61,14 @@ public void setIndexColumns(IndexColumn[] columns) {
         this.indexColumns = columns;
     }
 
+    public void setIncludedColumnNames(String[] includedColumnNames) {
+        this.includedColumnNames = includedColumnNames;
+    }
+
+    public void setCondition(Expression condition) {
+        this.condition = condition;
+    }
+
     @Override
     public int update() {
         if (!transactional) {
@@ -96,6 +110,12 @@ public int update() {
                 throw DbException.get(ErrorCode.SECOND_PRIMARY_KEY);
             }
             indexType = IndexType.createPrimaryKey(persistent, hash);
+        } else if (bitmap) {
+            if (unique || hash || spatial) {
+                throw DbException.getUnsupportedException(
+                        unique ? "UNIQUE BITMAP INDEX" : hash ? "HASH BITMAP INDEX" : "SPATIAL BITMAP INDEX");
+            }
+            indexType = IndexType.createBitmap(persistent);
         } else if (unique) {
             indexType = IndexType.createUnique(persistent, hash);
         } else if (affinity) {
@@ -104,8 +124,20 @@ public int update() {
             indexType = IndexType.createNonUnique(persistent, hash, spatial);
         }
         IndexColumn.mapColumns(indexColumns, table);
-        table.addIndex(session, indexName, id, indexColumns, indexType, create,
-                comment);
+        Column[] includedColumns = null;
+        if (includedColumnNames != null) {
+            HashSet<Column> set = new HashSet<>();
+            includedColumns = new Column[includedColumnNames.length];
+            for (int i = 0; i < includedColumns.length; i++) {
+                Column column = table.getColumn(includedColumnNames[i]);
+                if (!set.add(column)) {
+                    throw DbException.get(ErrorCode.DUPLICATE_COLUMN_NAME_1, column.getSQL());
+                }
+                includedColumns[i] = column;
+            }
+        }
+        table.addIndex(session, indexName, id, indexColumns, includedColumns,
+                condition, indexType, create, comment);
         return 0;
     }
 
@@ -125,6 +157,10 @@ public void setSpatial(boolean b) {
         this.spatial = b;
     }
 
+    public void setBitmap(boolean b) {
+        this.bitmap = b;
+    }
+
     public void setAffinity(boolean b) {
         this.affinity = b;
     }
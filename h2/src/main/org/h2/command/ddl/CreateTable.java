@@ -10,6 +10,7 @@
 import org.h2.api.ErrorCode;
 import org.h2.command.CommandInterface;
 import org.h2.command.dml.Insert;
+import org.h2.command.dml.MaterializedView;
 import org.h2.command.dml.Query;
 import org.h2.engine.Database;
 import org.h2.engine.DbObject;
@@ -20,6 +21,7 @@
 import org.h2.schema.Schema;
 import org.h2.schema.Sequence;
 import org.h2.table.Column;
+import org.h2.table.IndexColumn;
 import org.h2.table.Table;
 import org.h2.util.ColumnNamer;
 import org.h2.value.DataType;
@@ -40,6 +42,8 @@ public class CreateTable extends CommandWithColumns {
     private String comment;
     private boolean sortedInsertMode;
     private boolean withNoData;
+    private boolean materialized;
+    private String querySQL;
 
     public CreateTable(Session session, Schema schema) {
         super(session, schema);
@@ -51,6 +55,25 @@ public void setQuery(Query query) {
         this.asQuery = query;
     }
 
+    /**
+     * Create a materialized view instead of a table.
+     *
+     * @param materialized true for a materialized view
+     */
+    public void setMaterialized(boolean materialized) {
+        this.materialized = materialized;
+    }
+
+    /**
+     * Set the query of a materialized view that is not parsed yet, because
+     * the database is starting.
+     *
+     * @param querySQL the query
+     */
+    public void setQuerySQL(String querySQL) {
+        this.querySQL = querySQL;
+    }
+
     public void setTemporary(boolean temporary) {
         data.temporary = temporary;
     }
@@ -93,6 +116,8 @@ public int update() {
                 generateColumnsFromQuery();
             } else if (data.columns.size() != asQuery.getColumnCount()) {
                 throw DbException.get(ErrorCode.COLUMN_COUNT_DOES_NOT_MATCH);
+            } else {
+                setColumnTypesFromQuery();
             }
         }
         changePrimaryKeysToNotNull(data.columns);
@@ -100,6 +125,11 @@ public int update() {
         data.create = create;
         data.session = session;
         Table table = getSchema().createTable(data);
+        MaterializedView view = null;
+        if (materialized) {
+            view = new MaterializedView(table, asQuery != null ? asQuery.getPlanSQL() : querySQL);
+            table.setMaterializedView(view);
+        }
         ArrayList<Sequence> sequences = generateSequences(data.columns, data.temporary);
         table.setComment(comment);
         if (isSessionTemporary) {
@@ -122,7 +152,13 @@ public int update() {
                 table.addSequence(sequence);
             }
             createConstraints();
-            if (asQuery != null && !withNoData) {
+            if (view != null) {
+                if (asQuery != null) {
+                    view.init(session);
+                    createGroupIndex(view);
+                    view.refresh(session);
+                }
+            } else if (asQuery != null && !withNoData) {
                 boolean old = session.isUndoLogEnabled();
                 try {
                     session.setUndoLogEnabled(false);
@@ -180,40 +216,82 @@ private void generateColumnsFromQuery() {
         ColumnNamer columnNamer= new ColumnNamer(session);
         for (int i = 0; i < columnCount; i++) {
             Expression expr = expressions.get(i);
-            int type = expr.getType();
             String name = columnNamer.getColumnName(expr,i,expr.getAlias());
-            long precision = expr.getPrecision();
-            int displaySize = expr.getDisplaySize();
-            DataType dt = DataType.getDataType(type);
-            if (precision > 0 && (dt.defaultPrecision == 0 ||
-                    (dt.defaultPrecision > precision && dt.defaultPrecision < Byte.MAX_VALUE))) {
-                // dont' set precision to MAX_VALUE if this is the default
-                precision = dt.defaultPrecision;
-            }
-            int scale = expr.getScale();
-            if (scale > 0 && (dt.defaultScale == 0 ||
-                    (dt.defaultScale > scale && dt.defaultScale < precision))) {
-                scale = dt.defaultScale;
-            }
-            if (scale > precision) {
-                precision = scale;
+            addColumn(createColumn(expr, name));
+        }
+    }
+
+    /**
+     * Replace the columns without a data type by columns with the data type
+     * of the expression of the query.
+     */
+    private void setColumnTypesFromQuery() {
+        ArrayList<Expression> expressions = asQuery.getExpressions();
+        for (int i = 0, count = data.columns.size(); i < count; i++) {
+            Column column = data.columns.get(i);
+            if (column.getType() == Value.UNKNOWN) {
+                data.columns.set(i, createColumn(expressions.get(i), column.getName()));
             }
-            ExtTypeInfo extTypeInfo = null;
-            int t = dt.type;
-            if (DataType.isExtInfoType(t)) {
-                if (expr instanceof ExpressionColumn) {
-                    extTypeInfo = ((ExpressionColumn) expr).getColumn().getExtTypeInfo();
-                } else if (t == Value.ENUM) {
-                    /*
-                     * Only columns of tables may be enumerated.
-                     */
-                    throw DbException.get(ErrorCode.GENERAL_ERROR_1,
-                            "Unable to resolve enumerators of expression");
-                }
+        }
+    }
+
+    private static Column createColumn(Expression expr, String name) {
+        int type = expr.getType();
+        long precision = expr.getPrecision();
+        int displaySize = expr.getDisplaySize();
+        DataType dt = DataType.getDataType(type);
+        if (precision > 0 && (dt.defaultPrecision == 0 ||
+                (dt.defaultPrecision > precision && dt.defaultPrecision < Byte.MAX_VALUE))) {
+            // dont' set precision to MAX_VALUE if this is the default
+            precision = dt.defaultPrecision;
+        }
+        int scale = expr.getScale();
+        if (scale > 0 && (dt.defaultScale == 0 ||
+                (dt.defaultScale > scale && dt.defaultScale < precision))) {
+            scale = dt.defaultScale;
+        }
+        if (scale > precision) {
+            precision = scale;
+        }
+        ExtTypeInfo extTypeInfo = null;
+        int t = dt.type;
+        if (DataType.isExtInfoType(t)) {
+            if (expr instanceof ExpressionColumn) {
+                extTypeInfo = ((ExpressionColumn) expr).getColumn().getExtTypeInfo();
+            } else if (t == Value.ENUM) {
+                /*
+                 * Only columns of tables may be enumerated.
+                 */
+                throw DbException.get(ErrorCode.GENERAL_ERROR_1,
+                        "Unable to resolve enumerators of expression");
             }
-            Column col = new Column(name, type, precision, scale, displaySize, extTypeInfo);
-            addColumn(col);
         }
+        return new Column(name, type, precision, scale, displaySize, extTypeInfo);
+    }
+
+    /**
+     * Create a unique index on the GROUP BY columns of a materialized view that
+     * is maintained incrementally, so that the row of a group is found quickly
+     * and is not added by two transactions at the same time.
+     *
+     * @param view the materialized view
+     */
+    private void createGroupIndex(MaterializedView view) {
+        int[] groupColumns = view.getGroupColumns();
+        if (groupColumns == null || groupColumns.length == 0) {
+            return;
+        }
+        IndexColumn[] indexColumns = new IndexColumn[groupColumns.length];
+        for (int i = 0; i < groupColumns.length; i++) {
+            IndexColumn c = new IndexColumn();
+            c.columnName = data.columns.get(groupColumns[i]).getName();
+            indexColumns[i] = c;
+        }
+        CreateIndex index = new CreateIndex(session, getSchema());
+        index.setTableName(data.tableName);
+        index.setIndexColumns(indexColumns);
+        index.setUnique(true);
+        index.update();
     }
 
     public void setPersistIndexes(boolean persistIndexes) {
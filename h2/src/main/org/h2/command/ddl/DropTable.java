@@ -9,6 +9,7 @@
 import java.util.concurrent.CopyOnWriteArrayList;
 import org.h2.api.ErrorCode;
 import org.h2.command.CommandInterface;
+import org.h2.command.dml.MaterializedView;
 import org.h2.constraint.Constraint;
 import org.h2.constraint.ConstraintActionType;
 import org.h2.engine.Database;
@@ -31,6 +32,7 @@ public class DropTable extends SchemaCommand {
     private Table table;
     private DropTable next;
     private ConstraintActionType dropAction;
+    private boolean materialized;
 
     public DropTable(Session session, Schema schema) {
         super(session, schema);
@@ -63,6 +65,15 @@ public void setTableName(String tableName) {
         this.tableName = tableName;
     }
 
+    /**
+     * Only drop the table if it contains the rows of a materialized view.
+     *
+     * @param materialized true for DROP MATERIALIZED VIEW
+     */
+    public void setMaterialized(boolean materialized) {
+        this.materialized = materialized;
+    }
+
     private void prepareDrop() {
         table = getSchema().findTableOrView(session, tableName);
         if (table == null) {
@@ -70,6 +81,9 @@ private void prepareDrop() {
                 throw DbException.get(ErrorCode.TABLE_OR_VIEW_NOT_FOUND_1, tableName);
             }
         } else {
+            if (materialized && table.getMaterializedView() == null) {
+                throw DbException.get(ErrorCode.VIEW_NOT_FOUND_1, tableName);
+            }
             session.getUser().checkRight(table, Right.ALL);
             if (!table.canDrop()) {
                 throw DbException.get(ErrorCode.CANNOT_DROP_TABLE_1, tableName);
@@ -83,6 +97,10 @@ private void prepareDrop() {
                         buff.append(v.getName());
                     }
                 }
+                for (MaterializedView v : table.getMaterializedViews()) {
+                    buff.appendExceptFirst(", ");
+                    buff.append(v.getTable().getName());
+                }
                 if (session.getDatabase()
                         .getSettings().standardDropTableRestrict) {
                     final List<Constraint> constraints = table.getConstraints();
@@ -6,8 +6,10 @@
 package org.h2.command.ddl;
 
 import java.util.ArrayList;
+import java.util.List;
 import org.h2.api.ErrorCode;
 import org.h2.command.CommandInterface;
+import org.h2.command.dml.MaterializedView;
 import org.h2.constraint.ConstraintActionType;
 import org.h2.engine.DbObject;
 import org.h2.engine.Right;
@@ -67,6 +69,11 @@ public int update() {
                         throw DbException.get(ErrorCode.CANNOT_DROP_2, viewName, child.getName());
                     }
                 }
+                List<MaterializedView> materializedViews = view.getMaterializedViews();
+                if (!materializedViews.isEmpty()) {
+                    throw DbException.get(ErrorCode.CANNOT_DROP_2, viewName,
+                            materializedViews.get(0).getTable().getName());
+                }
             }
 
             // TODO: Where is the ConstraintReferential.CASCADE style drop processing ? It's
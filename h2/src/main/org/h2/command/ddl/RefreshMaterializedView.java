@@ -0,0 +1,55 @@
+/*
+ * Copyright 2004-2018 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.command.ddl;
+
+import org.h2.api.ErrorCode;
+import org.h2.command.CommandInterface;
+import org.h2.command.dml.MaterializedView;
+import org.h2.engine.Right;
+import org.h2.engine.Session;
+import org.h2.message.DbException;
+import org.h2.schema.Schema;
+import org.h2.table.Table;
+
+/**
+ * This class represents the statement
+ * REFRESH MATERIALIZED VIEW
+ */
+public class RefreshMaterializedView extends SchemaCommand {
+
+    private String viewName;
+
+    public RefreshMaterializedView(Session session, Schema schema) {
+        super(session, schema);
+    }
+
+    public void setViewName(String viewName) {
+        this.viewName = viewName;
+    }
+
+    @Override
+    public boolean isTransactional() {
+        return true;
+    }
+
+    @Override
+    public int update() {
+        Table table = getSchema().findTableOrView(session, viewName);
+        MaterializedView view = table == null ? null : table.getMaterializedView();
+        if (view == null) {
+            throw DbException.get(ErrorCode.VIEW_NOT_FOUND_1, viewName);
+        }
+        session.getUser().checkRight(table, Right.ALL);
+        view.refresh(session);
+        return 0;
+    }
+
+    @Override
+    public int getType() {
+        return CommandInterface.REFRESH_MATERIALIZED_VIEW;
+    }
+
+}
@@ -7,6 +7,7 @@
 
 import org.h2.api.ErrorCode;
 import org.h2.command.CommandInterface;
+import org.h2.command.dml.MaterializedView;
 import org.h2.engine.Right;
 import org.h2.engine.Session;
 import org.h2.message.DbException;
@@ -45,6 +46,11 @@ public int update() {
         session.getUser().checkRight(table, Right.DELETE);
         table.lock(session, true, true);
         table.truncate(session);
+        for (MaterializedView view : table.getMaterializedViews()) {
+            if (view.isIncremental()) {
+                view.refresh(session);
+            }
+        }
         if (restart) {
             for (Column column : table.getColumns()) {
                 Sequence sequence = column.getSequence();
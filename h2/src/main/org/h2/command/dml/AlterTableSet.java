@@ -66,6 +66,14 @@ public int update() {
             table.setCheckForeignKeyConstraints(session, value, value ?
                     checkExisting : false);
             break;
+        case CommandInterface.ALTER_TABLE_SET_RESULT_CACHE: {
+            table.setCacheResults(value);
+            ResultCache resultCache = session.getDatabase().getResultCache();
+            if (!value && resultCache != null) {
+                resultCache.invalidate(table);
+            }
+            break;
+        }
         default:
             DbException.throwInternalError("type="+type);
         }
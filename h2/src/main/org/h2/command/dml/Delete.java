@@ -158,6 +158,7 @@ public void prepare() {
             }
             condition = condition.optimize(session);
             condition.createIndexConditions(session, targetTableFilter);
+            targetTableFilter.setFullCondition(condition);
         }
         TableFilter[] filters;
         if (sourceTableFilter == null) {
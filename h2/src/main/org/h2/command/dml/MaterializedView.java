@@ -0,0 +1,673 @@
+/*
+ * Copyright 2004-2018 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.command.dml;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+import org.h2.api.ErrorCode;
+import org.h2.command.Prepared;
+import org.h2.engine.DbObject;
+import org.h2.engine.Session;
+import org.h2.engine.UndoLogRecord;
+import org.h2.expression.Expression;
+import org.h2.expression.ExpressionColumn;
+import org.h2.expression.ExpressionVisitor;
+import org.h2.expression.aggregate.Aggregate;
+import org.h2.index.Cursor;
+import org.h2.index.Index;
+import org.h2.message.DbException;
+import org.h2.result.ResultInterface;
+import org.h2.result.Row;
+import org.h2.result.SearchRow;
+import org.h2.table.Column;
+import org.h2.table.IndexColumn;
+import org.h2.table.Table;
+import org.h2.table.TableFilter;
+import org.h2.table.TableType;
+import org.h2.util.MathUtils;
+import org.h2.value.Value;
+import org.h2.value.ValueLong;
+import org.h2.value.ValueNull;
+
+/**
+ * The definition of a materialized view. The rows of the view are stored in a
+ * regular table, and are re-calculated by REFRESH MATERIALIZED VIEW. If the
+ * query only reads one table, and either only filters the rows, or groups
+ * them and calculates COUNT and SUM aggregates, the rows of the view are also
+ * updated whenever the rows of the table are changed, within the same
+ * transaction.
+ */
+public final class MaterializedView {
+
+    /**
+     * The column is a GROUP BY expression.
+     */
+    private static final int GROUP = 0;
+
+    /**
+     * The column is COUNT(*).
+     */
+    private static final int COUNT_ALL = 1;
+
+    /**
+     * The column is COUNT(expression).
+     */
+    private static final int COUNT = 2;
+
+    /**
+     * The column is SUM(expression).
+     */
+    private static final int SUM = 3;
+
+    private final Table table;
+
+    private String querySQL;
+
+    private Query query;
+
+    /**
+     * The tables the query depends on.
+     */
+    private Table[] tables;
+
+    /**
+     * The table of the query, if the view is maintained incrementally.
+     */
+    private Table baseTable;
+
+    private TableFilter filter;
+
+    private Expression condition;
+
+    /**
+     * The expression for each column, or the argument of the aggregate.
+     */
+    private Expression[] expressions;
+
+    /**
+     * The kind of each column, or null if the query does not group the rows.
+     * In this case, the key of a row of the view is the key of the row of
+     * the table.
+     */
+    private int[] kinds;
+
+    /**
+     * For each SUM column, the column that counts the rows where the argument
+     * is not NULL.
+     */
+    private int[] counts;
+
+    private int[] groupColumns;
+
+    private int countAllColumn;
+
+    /**
+     * Create a new materialized view definition.
+     *
+     * @param table the table that contains the rows of the view
+     * @param querySQL the query
+     */
+    public MaterializedView(Table table, String querySQL) {
+        this.table = table;
+        this.querySQL = querySQL;
+    }
+
+    /**
+     * Prepare the query, and register the view with the tables it depends on.
+     *
+     * @param session the session
+     */
+    public void init(Session session) {
+        close();
+        Prepared p = session.prepare(querySQL, true, true);
+        if (!(p instanceof Query)) {
+            throw DbException.get(ErrorCode.SYNTAX_ERROR_1, querySQL);
+        }
+        Query q = (Query) p;
+        if (q.getColumnCount() != table.getColumns().length) {
+            throw DbException.get(ErrorCode.COLUMN_COUNT_DOES_NOT_MATCH);
+        }
+        HashSet<DbObject> set = new HashSet<>();
+        q.isEverything(ExpressionVisitor.getDependenciesVisitor(set));
+        ArrayList<Table> list = new ArrayList<>();
+        for (DbObject obj : set) {
+            if (obj instanceof Table) {
+                Table t = (Table) obj;
+                if (t.isTemporary()) {
+                    throw DbException.getUnsupportedException(
+                            "MATERIALIZED VIEW on a temporary table " + t.getSQL());
+                }
+                list.add(t);
+            }
+        }
+        query = q;
+        querySQL = q.getPlanSQL();
+        analyze();
+        tables = list.toArray(new Table[0]);
+        for (Table t : tables) {
+            t.addMaterializedView(this);
+        }
+    }
+
+    /**
+     * Check if the rows of the view can be updated when the rows of the
+     * table are changed.
+     */
+    private void analyze() {
+        baseTable = null;
+        if (!(query instanceof Select)) {
+            return;
+        }
+        Select select = (Select) query;
+        ArrayList<TableFilter> filters = select.getTopFilters();
+        if (filters.size() != 1) {
+            return;
+        }
+        TableFilter f = filters.get(0);
+        if (f.getJoin() != null || f.getNestedJoin() != null ||
+                f.getTable().getTableType() != TableType.TABLE) {
+            return;
+        }
+        if (select.isAnyDistinct() || select.isWindowQuery() || select.getHaving() != null ||
+                select.limitExpr != null || select.offsetExpr != null || select.sampleSizeExpr != null ||
+                !select.isEverything(ExpressionVisitor.DETERMINISTIC_VISITOR)) {
+            return;
+        }
+        Expression cond = select.getCondition();
+        if (cond != null && !cond.isEverything(ExpressionVisitor.PARALLELIZABLE_VISITOR)) {
+            return;
+        }
+        int columnCount = table.getColumns().length;
+        Expression[] exprs = new Expression[columnCount];
+        int[] k = null, c = null, g = null;
+        int countAll = -1;
+        if (!select.isGroupQuery()) {
+            for (int i = 0; i < columnCount; i++) {
+                Expression e = select.expressions.get(i);
+                if (!e.isEverything(ExpressionVisitor.PARALLELIZABLE_VISITOR)) {
+                    return;
+                }
+                exprs[i] = e;
+            }
+        } else {
+            if (select.groupIndex != null) {
+                for (int i : select.groupIndex) {
+                    if (i >= columnCount) {
+                        // a GROUP BY expression that is not a column
+                        return;
+                    }
+                }
+            }
+            k = new int[columnCount];
+            int groupCount = 0;
+            for (int i = 0; i < columnCount; i++) {
+                Expression e = select.expressions.get(i);
+                if (select.groupByExpression != null && select.groupByExpression[i]) {
+                    if (!e.isEverything(ExpressionVisitor.PARALLELIZABLE_VISITOR)) {
+                        return;
+                    }
+                    k[i] = GROUP;
+                    exprs[i] = e;
+                    groupCount++;
+                    continue;
+                }
+                e = e.getNonAliasExpression();
+                if (!(e instanceof Aggregate)) {
+                    return;
+                }
+                Aggregate a = (Aggregate) e;
+                if (a.isDistinct() || a.getFilterCondition() != null || a.getOverCondition() != null) {
+                    return;
+                }
+                Expression on = a.getOn();
+                if (on != null && !on.isEverything(ExpressionVisitor.PARALLELIZABLE_VISITOR)) {
+                    return;
+                }
+                switch (a.getAggregateType()) {
+                case COUNT_ALL:
+                    k[i] = COUNT_ALL;
+                    if (countAll < 0) {
+                        countAll = i;
+                    }
+                    break;
+                case COUNT:
+                    k[i] = COUNT;
+                    break;
+                case SUM:
+                    k[i] = SUM;
+                    break;
+                default:
+                    return;
+                }
+                exprs[i] = on;
+            }
+            // the number of rows of a group is needed to know when the group
+            // is removed
+            if (countAll < 0) {
+                return;
+            }
+            // the number of non-null values is needed to know when a sum
+            // becomes NULL
+            c = new int[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                if (k[i] != SUM) {
+                    continue;
+                }
+                String sql = exprs[i].getSQL();
+                c[i] = -1;
+                for (int j = 0; j < columnCount; j++) {
+                    if (k[j] == COUNT && exprs[j].getSQL().equals(sql)) {
+                        c[i] = j;
+                        break;
+                    }
+                }
+                if (c[i] < 0) {
+                    if (exprs[i] instanceof ExpressionColumn &&
+                            !((ExpressionColumn) exprs[i]).getColumn().isNullable()) {
+                        c[i] = countAll;
+                    } else {
+                        return;
+                    }
+                }
+            }
+            g = new int[groupCount];
+            for (int i = 0, j = 0; i < columnCount; i++) {
+                if (k[i] == GROUP) {
+                    g[j++] = i;
+                }
+            }
+        }
+        filter = f;
+        condition = cond;
+        expressions = exprs;
+        kinds = k;
+        counts = c;
+        groupColumns = g;
+        countAllColumn = countAll;
+        baseTable = f.getTable();
+    }
+
+    /**
+     * Check if the rows of the view are updated when the rows of the table
+     * are changed.
+     *
+     * @return true if the view is maintained incrementally
+     */
+    public boolean isIncremental() {
+        return baseTable != null;
+    }
+
+    /**
+     * Get the columns of the view that are GROUP BY expressions.
+     *
+     * @return the column indexes, or null if the view is not maintained
+     *         incrementally or does not group the rows
+     */
+    public int[] getGroupColumns() {
+        return baseTable == null ? null : groupColumns;
+    }
+
+    /**
+     * Check if the index was created for the GROUP BY expressions of the
+     * view. Such a unique index is created automatically together with the
+     * view, so that concurrent transactions can not both add the row of the
+     * same group.
+     *
+     * @param index the index
+     * @return true if it is
+     */
+    public boolean isGroupIndex(Index index) {
+        int[] g = getGroupColumns();
+        if (g == null || g.length == 0 || !index.getIndexType().isUnique() || index.getIndexType().isScan()
+                || index.getCondition() != null) {
+            return false;
+        }
+        IndexColumn[] cols = index.getIndexColumns();
+        if (cols == null || cols.length != g.length) {
+            return false;
+        }
+        for (int i = 0; i < g.length; i++) {
+            if (cols[i].column.getColumnId() != g[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public Table getTable() {
+        return table;
+    }
+
+    /**
+     * Get the SQL statement of the query.
+     *
+     * @return the SQL statement
+     */
+    public String getQuerySQL() {
+        Query q = query;
+        return q == null ? querySQL : q.getPlanSQL();
+    }
+
+    /**
+     * Re-calculate the rows of the view.
+     *
+     * @param session the session
+     */
+    public void refresh(Session session) {
+        if (query == null) {
+            init(session);
+        }
+        table.lock(session, true, true);
+        ArrayList<Row> rows = new ArrayList<>();
+        Cursor cursor = table.getScanIndex(session).find(session, null, null);
+        while (cursor.next()) {
+            rows.add(cursor.get());
+        }
+        for (Row row : rows) {
+            removeRow(session, row);
+        }
+        if (baseTable != null && kinds == null) {
+            // the keys of the rows need to match the keys of the table
+            baseTable.lock(session, false, false);
+            cursor = baseTable.getScanIndex(session).find(session, null, null);
+            while (cursor.next()) {
+                Row row = cursor.get();
+                Value[] values = evaluate(session, row);
+                if (values != null) {
+                    addRow(session, createRow(values, row.getKey()));
+                }
+            }
+        } else {
+            Query q = (Query) session.prepare(getQuerySQL(), true, true);
+            ResultInterface result = q.query(0);
+            try {
+                while (result.next()) {
+                    addRow(session, createRow(result.currentRow(), 0));
+                }
+            } finally {
+                result.close();
+            }
+        }
+    }
+
+    /**
+     * Update the rows of the view after a row of a table was changed.
+     *
+     * @param session the session
+     * @param oldRow the old row, or null for an insert
+     * @param newRow the new row, or null for a delete
+     */
+    public void update(Session session, Row oldRow, Row newRow) {
+        if (baseTable == null) {
+            return;
+        }
+        Value[] oldValues = oldRow == null ? null : evaluate(session, oldRow);
+        Value[] newValues = newRow == null ? null : evaluate(session, newRow);
+        if (oldValues == null && newValues == null) {
+            return;
+        }
+        // the unique group index does not prevent duplicate NULL groups, so
+        // the changes of such groups are serialized using the table lock
+        boolean nullGroup = kinds != null && (isNullGroup(oldValues) || isNullGroup(newValues));
+        table.lock(session, true, nullGroup);
+        if (kinds == null) {
+            if (oldValues != null) {
+                SearchRow search = table.getTemplateSimpleRow(false);
+                search.setKey(oldRow.getKey());
+                Cursor cursor = table.getScanIndex(session).find(session, search, search);
+                if (cursor.next()) {
+                    removeRow(session, cursor.get());
+                }
+            }
+            if (newValues != null) {
+                addRow(session, createRow(newValues, newRow.getKey()));
+            }
+        } else {
+            if (oldValues != null) {
+                updateGroup(session, oldValues, -1);
+            }
+            if (newValues != null) {
+                updateGroup(session, newValues, 1);
+            }
+        }
+    }
+
+    /**
+     * Evaluate the condition and the expressions of the query for a row of
+     * the table.
+     *
+     * @param session the session
+     * @param row the row
+     * @return the values, or null if the condition is not met
+     */
+    private Value[] evaluate(Session session, Row row) {
+        // the query is never executed, the table filter is only used here
+        synchronized (filter) {
+            filter.set(row);
+            try {
+                if (condition != null && !condition.getBooleanValue(session)) {
+                    return null;
+                }
+                Value[] values = new Value[expressions.length];
+                for (int i = 0; i < values.length; i++) {
+                    Expression e = expressions[i];
+                    values[i] = e == null ? null : e.getValue(session);
+                }
+                return values;
+            } finally {
+                filter.set(null);
+            }
+        }
+    }
+
+    private boolean isNullGroup(Value[] values) {
+        if (values != null) {
+            for (int i : groupColumns) {
+                if (values[i] == ValueNull.INSTANCE) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void updateGroup(Session session, Value[] values, int sign) {
+        Column[] columns = table.getColumns();
+        int columnCount = columns.length;
+        Value[] data = new Value[columnCount];
+        Row old;
+        DbException duplicate = null;
+        long start = 0;
+        while (true) {
+            old = findGroup(session, values);
+            if (old != null) {
+                if (!table.isMVStore()) {
+                    break;
+                }
+                // wait until concurrent changes of the group are committed,
+                // and continue with the latest committed row
+                old = table.lockRow(session, old);
+                if (old != null) {
+                    break;
+                }
+                // the group was removed concurrently
+                continue;
+            }
+            if (sign < 0) {
+                return;
+            }
+            if (duplicate != null) {
+                // not caused by the row of this group
+                throw duplicate;
+            }
+            for (int i = 0; i < columnCount; i++) {
+                Value v = values[i];
+                switch (kinds[i]) {
+                case COUNT_ALL:
+                    v = ValueLong.get(1);
+                    break;
+                case COUNT:
+                    v = ValueLong.get(v == ValueNull.INSTANCE ? 0 : 1);
+                    break;
+                default:
+                }
+                data[i] = v;
+            }
+            try {
+                addRow(session, createRow(data, 0));
+                return;
+            } catch (DbException e) {
+                // another transaction added the row of this group
+                start = filterConcurrentInsert(session, e, start);
+                if (e.getErrorCode() == ErrorCode.DUPLICATE_KEY_1) {
+                    duplicate = e;
+                }
+            }
+        }
+        for (int i = 0; i < columnCount; i++) {
+            Value v = old.getValue(i);
+            switch (kinds[i]) {
+            case COUNT_ALL:
+                v = ValueLong.get(v.getLong() + sign);
+                break;
+            case COUNT:
+                if (values[i] != ValueNull.INSTANCE) {
+                    v = ValueLong.get(v.getLong() + sign);
+                }
+                break;
+            case SUM: {
+                Value x = values[i];
+                if (x != ValueNull.INSTANCE) {
+                    x = columns[i].convert(x);
+                    if (v == ValueNull.INSTANCE) {
+                        v = sign > 0 ? x : x.negate();
+                    } else {
+                        v = sign > 0 ? v.add(x) : v.subtract(x);
+                    }
+                }
+                break;
+            }
+            default:
+            }
+            data[i] = v;
+        }
+        for (int i = 0; i < columnCount; i++) {
+            if (kinds[i] == SUM && data[counts[i]].getLong() == 0) {
+                data[i] = ValueNull.INSTANCE;
+            }
+        }
+        removeRow(session, old);
+        // the row of a query without GROUP BY always exists
+        if (groupColumns.length == 0 || data[countAllColumn].getLong() > 0) {
+            addRow(session, createRow(data, old.getKey()));
+        }
+    }
+
+    /**
+     * Check if adding the row of a group failed because another transaction
+     * added the row of the same group, and wait a bit if the other transaction
+     * is not committed yet.
+     *
+     * @param session the session
+     * @param e the exception
+     * @param start the time of the first attempt, or 0
+     * @return the time of the first attempt
+     */
+    private static long filterConcurrentInsert(Session session, DbException e, long start) {
+        int errorCode = e.getErrorCode();
+        if (errorCode != ErrorCode.DUPLICATE_KEY_1 && errorCode != ErrorCode.CONCURRENT_UPDATE_1) {
+            throw e;
+        }
+        long now = System.nanoTime();
+        if (start != 0 && TimeUnit.NANOSECONDS.toMillis(now - start) > session.getLockTimeout()) {
+            throw DbException.get(ErrorCode.LOCK_TIMEOUT_1, e);
+        }
+        if (errorCode == ErrorCode.CONCURRENT_UPDATE_1) {
+            try {
+                Thread.sleep(1 + MathUtils.randomInt(10));
+            } catch (InterruptedException e1) {
+                // ignore
+            }
+        }
+        return start == 0 ? now : start;
+    }
+
+    private Row findGroup(Session session, Value[] values) {
+        Index index = null;
+        if (groupColumns.length > 0) {
+            for (Index i : table.getIndexes()) {
+                if (isGroupIndex(i)) {
+                    index = i;
+                    break;
+                }
+            }
+        }
+        Cursor cursor;
+        if (index == null) {
+            cursor = table.getScanIndex(session).find(session, null, null);
+        } else {
+            SearchRow search = table.getTemplateSimpleRow(false);
+            for (int i : groupColumns) {
+                search.setValue(i, table.getColumn(i).convert(values[i]));
+            }
+            cursor = index.find(session, search, search);
+        }
+        Column[] columns = table.getColumns();
+        loop: while (cursor.next()) {
+            Row row = cursor.get();
+            for (int i : groupColumns) {
+                Value a = row.getValue(i), b = columns[i].convert(values[i]);
+                if (a == ValueNull.INSTANCE || b == ValueNull.INSTANCE ?
+                        a != b : table.compareValues(a, b) != 0) {
+                    continue loop;
+                }
+            }
+            return row;
+        }
+        return null;
+    }
+
+    private Row createRow(Value[] values, long key) {
+        Column[] columns = table.getColumns();
+        Row row = table.getTemplateRow();
+        for (int i = 0; i < columns.length; i++) {
+            row.setValue(i, columns[i].convert(values[i]));
+        }
+        row.setKey(key);
+        return row;
+    }
+
+    private void addRow(Session session, Row row) {
+        table.addRow(session, row);
+        session.log(table, UndoLogRecord.INSERT, row);
+    }
+
+    private void removeRow(Session session, Row row) {
+        table.removeRow(session, row);
+        session.log(table, UndoLogRecord.DELETE, row);
+    }
+
+    /**
+     * Unregister the view from the tables it depends on.
+     */
+    public void close() {
+        if (query != null) {
+            // the names of the tables or columns could have changed
+            querySQL = query.getPlanSQL();
+        }
+        if (tables != null) {
+            for (Table t : tables) {
+                t.removeMaterializedView(this);
+            }
+            tables = null;
+        }
+        query = null;
+        baseTable = null;
+    }
+
+}
@@ -5,14 +5,20 @@
  */
 package org.h2.command.dml;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
+import java.util.List;
 import java.util.Random;
 import java.util.concurrent.TimeUnit;
 import org.h2.engine.Session;
 import org.h2.expression.Expression;
+import org.h2.expression.ExpressionVisitor;
+import org.h2.index.IndexCondition;
 import org.h2.table.Plan;
 import org.h2.table.PlanItem;
 import org.h2.table.TableFilter;
+import org.h2.table.TableFilter.TableFilterVisitor;
 import org.h2.util.Permutations;
 
 /**
@@ -24,6 +30,7 @@ class Optimizer {
     private static final int MAX_BRUTE_FORCE_FILTERS = 7;
     private static final int MAX_BRUTE_FORCE = 2000;
     private static final int MAX_GENETIC = 500;
+    private static final int MAX_DYNAMIC_PROGRAMMING_FILTERS = 20;
     private long startNs;
     private BitSet switched;
 
@@ -47,6 +54,7 @@ class Optimizer {
     private TableFilter topFilter;
     private double cost;
     private Random random;
+    private String planCacheKey;
     final AllColumnsForPlan allColumnsSet;
 
     Optimizer(TableFilter[] filters, Expression condition, Session session) {
@@ -56,6 +64,16 @@ class Optimizer {
         allColumnsSet = new AllColumnsForPlan(filters);
     }
 
+    /**
+     * Set the key of the query in the plan cache of the database. If set, the
+     * join order is read from and added to the plan cache.
+     *
+     * @param planCacheKey the key
+     */
+    void setPlanCacheKey(String planCacheKey) {
+        this.planCacheKey = planCacheKey;
+    }
+
     /**
      * How many filter to calculate using brute force. The remaining filters are
      * selected using a greedy algorithm which has a runtime of (1 + 2 + ... +
@@ -81,14 +99,32 @@ private void calculateBestPlan() {
         if (filters.length == 1 || session.isForceJoinOrder()) {
             testPlan(filters);
         } else {
+            PlanCache planCache = planCacheKey == null ? null : session.getDatabase().getPlanCache();
+            if (planCache != null) {
+                TableFilter[] order = planCache.get(planCacheKey, filters);
+                if (order != null) {
+                    testPlan(order);
+                    if (cost < Double.POSITIVE_INFINITY) {
+                        return;
+                    }
+                    cost = -1;
+                }
+            }
             startNs = System.nanoTime();
-            if (filters.length <= MAX_BRUTE_FORCE_FILTERS) {
+            int maxDynamic = Math.min(session.getDatabase().getSettings().optimizeJoinOrderTables,
+                    MAX_DYNAMIC_PROGRAMMING_FILTERS);
+            if (filters.length <= maxDynamic) {
+                calculateDynamicProgramming();
+            } else if (filters.length <= MAX_BRUTE_FORCE_FILTERS) {
                 calculateBruteForceAll();
             } else {
                 calculateBruteForceSome();
                 random = new Random(0);
                 calculateGenetic();
             }
+            if (planCache != null) {
+                planCache.put(planCacheKey, bestPlan.getFilters());
+            }
         }
     }
 
@@ -103,6 +139,164 @@ private boolean canStop(int x) {
                 && 10 * (System.nanoTime() - startNs) > cost * TimeUnit.MILLISECONDS.toNanos(1);
     }
 
+    /**
+     * Find the best join order using dynamic programming. For each set of
+     * filters, the cheapest order to join them first is calculated from the
+     * cheapest orders of the sets with one filter less, so that the cost of a
+     * sub-plan is only calculated once. Only filters that are connected to the
+     * set by an index condition are added, unless there are none, so that
+     * cross joins are avoided.
+     */
+    private void calculateDynamicProgramming() {
+        int n = filters.length;
+        Plan all = new Plan(filters, n, condition);
+        // the filters in the order they are joined, including outer joins
+        TableFilter[][] joined = new TableFilter[n][];
+        int allCount = 0;
+        for (int i = 0; i < n; i++) {
+            final ArrayList<TableFilter> list = new ArrayList<>();
+            filters[i].visit(new TableFilterVisitor() {
+                @Override
+                public void accept(TableFilter f) {
+                    list.add(f);
+                }
+            });
+            joined[i] = list.toArray(new TableFilter[0]);
+            allCount += joined[i].length;
+        }
+        int[] connected = getConnectedFilters(joined);
+        int setCount = 1 << n, allSet = setCount - 1;
+        // the lowest cost to join each set of filters first, and the filter
+        // that is joined last in this case
+        double[] costs = new double[setCount];
+        byte[] lastFilter = new byte[setCount];
+        Arrays.fill(costs, -1);
+        costs[0] = 1;
+        PlanItem[] firstItems = new PlanItem[n];
+        int[] order = new int[n];
+        TableFilter[] list = new TableFilter[allCount];
+        for (int set = 0; set < allSet; set++) {
+            double setCost = costs[set];
+            if (setCost < 0) {
+                continue;
+            }
+            int count = Integer.bitCount(set);
+            for (int s = set, i = count; s != 0; s &= ~(1 << lastFilter[s])) {
+                order[--i] = lastFilter[s];
+            }
+            int length = 0;
+            for (int i = 0; i < count; i++) {
+                for (TableFilter f : joined[order[i]]) {
+                    list[length++] = f;
+                    all.setEvaluatable(f, true);
+                }
+            }
+            PlanItem firstItem = count == 0 ? null : firstItems[order[0]];
+            int candidates = 0;
+            for (int i = 0; i < n; i++) {
+                if ((connected[i] & set) != 0) {
+                    candidates |= 1 << i;
+                }
+            }
+            candidates &= ~set;
+            if (candidates == 0) {
+                candidates = allSet & ~set;
+            }
+            for (int i = 0; i < n; i++) {
+                if ((candidates & 1 << i) == 0) {
+                    continue;
+                }
+                TableFilter[] add = joined[i];
+                System.arraycopy(add, 0, list, length, add.length);
+                double cost = setCost;
+                for (int j = 0; j < add.length; j++) {
+                    TableFilter f = add[j];
+                    PlanItem item = Plan.getPlanItem(session, list, length + j, j == 0, firstItem,
+                            allColumnsSet);
+                    if (count == 0 && j == 0) {
+                        firstItems[i] = item;
+                    }
+                    cost = Plan.getJoinCost(cost, item);
+                    all.setEvaluatable(f, true);
+                    Expression on = f.getJoinCondition();
+                    if (on != null && !on.isEverything(ExpressionVisitor.EVALUATABLE_VISITOR)) {
+                        cost = Double.POSITIVE_INFINITY;
+                        break;
+                    }
+                }
+                for (TableFilter f : add) {
+                    all.setEvaluatable(f, false);
+                }
+                int next = set | 1 << i;
+                if (cost < Double.POSITIVE_INFINITY && (costs[next] < 0 || cost < costs[next])) {
+                    costs[next] = cost;
+                    lastFilter[next] = (byte) i;
+                }
+            }
+            for (int i = 0; i < length; i++) {
+                all.setEvaluatable(list[i], false);
+            }
+        }
+        if (costs[allSet] < 0) {
+            // no valid join order was found
+            testPlan(filters);
+            return;
+        }
+        TableFilter[] best = new TableFilter[n];
+        for (int s = allSet, i = n; s != 0; s &= ~(1 << lastFilter[s])) {
+            best[--i] = filters[lastFilter[s]];
+        }
+        testPlan(best);
+    }
+
+    /**
+     * Get the filters that are connected to each filter, because an index
+     * condition of one of them uses a column of the other.
+     *
+     * @param joined the filters including the filters joined to them
+     * @return a bit set of the connected filters for each filter
+     */
+    private static int[] getConnectedFilters(TableFilter[][] joined) {
+        int n = joined.length;
+        int[] connected = new int[n];
+        for (int i = 0; i < n; i++) {
+            for (TableFilter f : joined[i]) {
+                for (IndexCondition c : f.getIndexConditions()) {
+                    for (int j = 0; j < n; j++) {
+                        if (j != i && (connected[i] & 1 << j) == 0 && isDependent(c, joined[j])) {
+                            connected[i] |= 1 << j;
+                            connected[j] |= 1 << i;
+                        }
+                    }
+                }
+            }
+        }
+        return connected;
+    }
+
+    private static boolean isDependent(IndexCondition c, TableFilter[] filters) {
+        for (TableFilter f : filters) {
+            ExpressionVisitor visitor = ExpressionVisitor.getNotFromResolverVisitor(f);
+            Expression e = c.getExpression();
+            if (e != null && !e.isEverything(visitor)) {
+                return true;
+            }
+            List<Expression> list = c.getExpressionList();
+            if (list != null) {
+                for (Expression e2 : list) {
+                    if (!e2.isEverything(visitor)) {
+                        return true;
+                    }
+                }
+            }
+            Query query = c.getExpressionQuery();
+            if (query != null && !query.isEverything(visitor)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private void calculateBruteForceAll() {
         TableFilter[] list = new TableFilter[filters.length];
         Permutations<TableFilter> p = Permutations.create(filters, list);
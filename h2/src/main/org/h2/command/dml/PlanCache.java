@@ -0,0 +1,177 @@
+/*
+ * Copyright 2004-2018 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.command.dml;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import org.h2.table.Table;
+import org.h2.table.TableFilter;
+import org.h2.table.TableFilter.TableFilterVisitor;
+import org.h2.table.TableType;
+import org.h2.util.SmallLRUCache;
+
+/**
+ * The join orders found by the optimizer, shared by all sessions of a
+ * database. Commands are bound to the session that prepared them, so each
+ * session still parses a statement, but the join order of a query is only
+ * calculated once. An entry is no longer used if the indexes or the row count
+ * of one of the tables changed, and it is removed if the statistics of one of
+ * the tables changed.
+ */
+public final class PlanCache {
+
+    /**
+     * A cached join order.
+     */
+    private static final class Entry {
+
+        /**
+         * The tables and aliases of the top level table filters, in the join
+         * order.
+         */
+        final Table[] tables;
+
+        final String[] aliases;
+
+        /**
+         * All tables of the query, including the joined tables, with their
+         * modification ids and row counts at the time the join order was
+         * calculated.
+         */
+        final Table[] dependencies;
+
+        final long[] modificationIds;
+
+        final long[] rowCounts;
+
+        Entry(TableFilter[] order, Table[] dependencies) {
+            int count = order.length;
+            tables = new Table[count];
+            aliases = new String[count];
+            for (int i = 0; i < count; i++) {
+                tables[i] = order[i].getTable();
+                aliases[i] = order[i].getTableAlias();
+            }
+            this.dependencies = dependencies;
+            count = dependencies.length;
+            modificationIds = new long[count];
+            rowCounts = new long[count];
+            for (int i = 0; i < count; i++) {
+                Table t = dependencies[i];
+                modificationIds[i] = t.getModificationId();
+                rowCounts[i] = t.getRowCountApproximation();
+            }
+        }
+
+        boolean isValid() {
+            for (int i = 0; i < dependencies.length; i++) {
+                Table t = dependencies[i];
+                if (!t.isValid() || t.getModificationId() != modificationIds[i]) {
+                    return false;
+                }
+                long rows = t.getRowCountApproximation(), old = rowCounts[i];
+                if (rows > 2 * old || old > 2 * rows) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        boolean dependsOn(Table table) {
+            for (Table t : dependencies) {
+                if (t == table) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+    }
+
+    private final SmallLRUCache<String, Entry> map;
+
+    public PlanCache(int size) {
+        map = SmallLRUCache.newInstance(size);
+    }
+
+    /**
+     * Get the cached join order of the table filters.
+     *
+     * @param key the key of the query
+     * @param filters the top level table filters
+     * @return the table filters in the join order, or null if not cached
+     */
+    TableFilter[] get(String key, TableFilter[] filters) {
+        Entry entry;
+        synchronized (this) {
+            entry = map.get(key);
+        }
+        if (entry == null || entry.tables.length != filters.length || !entry.isValid()) {
+            return null;
+        }
+        int count = filters.length;
+        TableFilter[] order = new TableFilter[count];
+        for (int i = 0; i < count; i++) {
+            Table t = entry.tables[i];
+            String alias = entry.aliases[i];
+            for (TableFilter f : filters) {
+                if (f.getTable() == t && f.getTableAlias().equals(alias)) {
+                    order[i] = f;
+                    break;
+                }
+            }
+            if (order[i] == null) {
+                // the names resolve to other tables
+                return null;
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Add the join order of a query to the cache, if all tables of the query
+     * are regular, persistent tables.
+     *
+     * @param key the key of the query
+     * @param order the top level table filters in the join order
+     */
+    void put(String key, TableFilter[] order) {
+        final ArrayList<Table> dependencies = new ArrayList<>();
+        for (TableFilter f : order) {
+            f.visit(new TableFilterVisitor() {
+                @Override
+                public void accept(TableFilter f) {
+                    dependencies.add(f.getTable());
+                }
+            });
+        }
+        for (Table t : dependencies) {
+            if (t.getTableType() != TableType.TABLE || t.isTemporary()) {
+                return;
+            }
+        }
+        Entry entry = new Entry(order, dependencies.toArray(new Table[0]));
+        synchronized (this) {
+            map.put(key, entry);
+        }
+    }
+
+    /**
+     * Remove the join orders of the queries that use the table, because its
+     * statistics changed.
+     *
+     * @param table the table
+     */
+    public synchronized void invalidate(Table table) {
+        for (Iterator<Entry> it = map.values().iterator(); it.hasNext();) {
+            if (it.next().dependsOn(table)) {
+                it.remove();
+            }
+        }
+    }
+
+}
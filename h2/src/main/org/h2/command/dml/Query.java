@@ -6,6 +6,8 @@
 package org.h2.command.dml;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 
@@ -13,6 +15,7 @@
 import org.h2.command.CommandInterface;
 import org.h2.command.Prepared;
 import org.h2.engine.Database;
+import org.h2.engine.DbObject;
 import org.h2.engine.Mode.ModeEnum;
 import org.h2.engine.Session;
 import org.h2.expression.Alias;
@@ -40,6 +43,22 @@
  */
 public abstract class Query extends Prepared {
 
+    /**
+     * FOR UPDATE waits for rows locked by other sessions.
+     */
+    public static final int FOR_UPDATE_WAIT = 0;
+
+    /**
+     * FOR UPDATE NOWAIT fails immediately on rows locked by other sessions.
+     */
+    public static final int FOR_UPDATE_NOWAIT = 1;
+
+    /**
+     * FOR UPDATE SKIP LOCKED excludes rows locked by other sessions from the
+     * result.
+     */
+    public static final int FOR_UPDATE_SKIP_LOCKED = 2;
+
     /**
      * The column list, including invisible expressions such as order by expressions.
      */
@@ -91,6 +110,12 @@ public abstract class Query extends Prepared {
      */
     boolean randomAccessResult;
 
+    /**
+     * How rows locked by other sessions are handled by the FOR UPDATE clause,
+     * one of FOR_UPDATE_WAIT, FOR_UPDATE_NOWAIT, or FOR_UPDATE_SKIP_LOCKED.
+     */
+    int forUpdateWait;
+
     private boolean noCache;
     private int lastLimit;
     private long lastEvaluated;
@@ -99,6 +124,13 @@ public abstract class Query extends Prepared {
     private boolean cacheableChecked;
     private boolean neverLazy;
 
+    /**
+     * The tables of the query, sorted by id, if the result could be shared
+     * with other sessions, or null if not.
+     */
+    private Table[] resultCacheTables;
+    private boolean resultCacheChecked;
+
     Query(Session session) {
         super(session);
     }
@@ -217,6 +249,17 @@ public boolean hasOrder() {
      */
     public abstract void setForUpdate(boolean forUpdate);
 
+    /**
+     * Set how rows locked by other sessions are handled by the 'for update'
+     * clause.
+     *
+     * @param forUpdateWait FOR_UPDATE_WAIT, FOR_UPDATE_NOWAIT, or
+     *            FOR_UPDATE_SKIP_LOCKED
+     */
+    public void setForUpdateWait(int forUpdateWait) {
+        this.forUpdateWait = forUpdateWait;
+    }
+
     /**
      * Get the column count of this query.
      *
@@ -415,15 +458,102 @@ public final ResultInterface query(int limit, ResultTarget target) {
                 }
             }
         }
+        ResultCache resultCache = session.getDatabase().getResultCache();
+        Table[] tables = null;
+        String key = null;
+        if (resultCache != null && target == null) {
+            tables = getResultCacheTables();
+            if (tables != null) {
+                key = getResultCacheKey(limit, params);
+                ResultInterface r = resultCache.get(session, key, tables);
+                if (r != null) {
+                    return r;
+                }
+            }
+        }
         lastParameters = params;
         closeLastResult();
         ResultInterface r = queryWithoutCacheLazyCheck(limit, target);
         lastResult = r;
         this.lastEvaluated = now;
         lastLimit = limit;
+        if (key != null) {
+            resultCache.put(session, key, tables, now, r);
+        }
         return r;
     }
 
+    /**
+     * Get the tables of the query if the result can be shared with other
+     * sessions. This is the case if the query is the statement of a command
+     * and deterministic, and the result cache is enabled for all tables. The result of a session that contains
+     * uncommitted changes is not shared, as other sessions can not see the
+     * changes.
+     *
+     * @return the tables, or null if the result can not be shared
+     */
+    private Table[] getResultCacheTables() {
+        if (!resultCacheChecked) {
+            if (isTopLevel() && isCacheable() &&
+                    isEverything(ExpressionVisitor.DETERMINISTIC_VISITOR) &&
+                    isEverything(ExpressionVisitor.INDEPENDENT_VISITOR) &&
+                    getMaxDataModificationId() != Long.MAX_VALUE) {
+                HashSet<DbObject> dependencies = new HashSet<>();
+                isEverything(ExpressionVisitor.getDependenciesVisitor(dependencies));
+                ArrayList<Table> tables = new ArrayList<>(dependencies.size());
+                for (DbObject obj : dependencies) {
+                    if (!(obj instanceof Table)) {
+                        tables = null;
+                        break;
+                    }
+                    tables.add((Table) obj);
+                }
+                if (tables != null && !tables.isEmpty()) {
+                    Collections.sort(tables, new Comparator<Table>() {
+                        @Override
+                        public int compare(Table a, Table b) {
+                            return Integer.compare(a.getId(), b.getId());
+                        }
+                    });
+                    resultCacheTables = tables.toArray(new Table[0]);
+                }
+            }
+            resultCacheChecked = true;
+        }
+        if (resultCacheTables == null || session.containsUncommitted()) {
+            return null;
+        }
+        for (Table t : resultCacheTables) {
+            if (!t.getCacheResults()) {
+                return null;
+            }
+        }
+        return resultCacheTables;
+    }
+
+    /**
+     * Get the key of this query in the result cache. The names in the query
+     * are resolved using the current schema and the schema search path.
+     *
+     * @param limit the maximum number of rows to return
+     * @param params the parameter values
+     * @return the key
+     */
+    private String getResultCacheKey(int limit, Value[] params) {
+        StringBuilder builder = new StringBuilder(session.getCurrentSchemaName());
+        String[] searchPath = session.getSchemaSearchPath();
+        if (searchPath != null) {
+            for (String schema : searchPath) {
+                builder.append(',').append(schema);
+            }
+        }
+        builder.append('\n').append(limit).append('\n').append(getSQL());
+        for (Value v : params) {
+            builder.append('\n').append(v.getType()).append(' ').append(v.getSQL());
+        }
+        return builder.toString();
+    }
+
     private void closeLastResult() {
         if (lastResult != null) {
             lastResult.close();
@@ -710,4 +840,22 @@ void appendLimitToSQL(StringBuilder buff) {
         }
     }
 
+    /**
+     * Appends the FOR UPDATE clause to the specified builder.
+     *
+     * @param buff the string builder
+     */
+    void appendForUpdateToSQL(StringBuilder buff) {
+        buff.append("\nFOR UPDATE");
+        switch (forUpdateWait) {
+        case FOR_UPDATE_NOWAIT:
+            buff.append(" NOWAIT");
+            break;
+        case FOR_UPDATE_SKIP_LOCKED:
+            buff.append(" SKIP LOCKED");
+            break;
+        default:
+        }
+    }
+
 }
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2004-2018 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.command.dml;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import org.h2.engine.Constants;
+import org.h2.engine.Session;
+import org.h2.result.ResultInterface;
+import org.h2.table.Table;
+import org.h2.value.Value;
+
+/**
+ * The results of queries, shared by all sessions of a database. Only the
+ * results of deterministic queries over tables with the result cache enabled
+ * are cached. A result is no longer used as soon as the data of one of the
+ * tables was changed after the query was executed. The cache is bounded by
+ * the estimated memory used by the rows; the least recently used results are
+ * removed first.
+ */
+public final class ResultCache {
+
+    /**
+     * A cached result.
+     */
+    private static final class Entry {
+
+        /**
+         * The tables of the query.
+         */
+        final Table[] tables;
+
+        /**
+         * The data modification id of the database before the query was
+         * executed.
+         */
+        final long modificationId;
+
+        /**
+         * The result. It is never read directly, only copies of it are
+         * returned.
+         */
+        final ResultInterface result;
+
+        final long memory;
+
+        Entry(Table[] tables, long modificationId, ResultInterface result, long memory) {
+            this.tables = tables;
+            this.modificationId = modificationId;
+            this.result = result;
+            this.memory = memory;
+        }
+
+        boolean isValid(Table[] queryTables) {
+            if (tables.length != queryTables.length) {
+                return false;
+            }
+            for (int i = 0; i < tables.length; i++) {
+                Table t = tables[i];
+                // the names could now resolve to other tables
+                if (t != queryTables[i] || !t.isValid() || t.getMaxDataModificationId() > modificationId) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+    }
+
+    private final LinkedHashMap<String, Entry> map = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final long maxMemory;
+
+    private long memory;
+
+    /**
+     * Create a new result cache.
+     *
+     * @param maxMemory the maximum memory to use, in bytes
+     */
+    public ResultCache(long maxMemory) {
+        this.maxMemory = maxMemory;
+    }
+
+    /**
+     * Get a copy of the cached result of a query, if the data of the tables
+     * was not changed since the query was executed.
+     *
+     * @param session the session
+     * @param key the key of the query
+     * @param tables the tables of the query
+     * @return the result, or null if not cached
+     */
+    synchronized ResultInterface get(Session session, String key, Table[] tables) {
+        Entry entry = map.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (!entry.isValid(tables)) {
+            map.remove(key);
+            memory -= entry.memory;
+            return null;
+        }
+        return entry.result.createShallowCopy(session);
+    }
+
+    /**
+     * Add the result of a query to the cache, if the rows are kept in memory
+     * and the result is not too large.
+     *
+     * @param session the session
+     * @param key the key of the query
+     * @param tables the tables of the query
+     * @param modificationId the data modification id of the database before
+     *            the query was executed
+     * @param result the result
+     */
+    void put(Session session, String key, Table[] tables, long modificationId, ResultInterface result) {
+        if (result.isLazy() || result.needToClose()) {
+            return;
+        }
+        ResultInterface copy = result.createShallowCopy(session);
+        if (copy == null) {
+            return;
+        }
+        long m = Constants.MEMORY_OBJECT;
+        while (copy.next() && m <= maxMemory) {
+            m += Constants.MEMORY_ARRAY;
+            for (Value v : copy.currentRow()) {
+                m += Constants.MEMORY_POINTER + v.getMemory();
+            }
+        }
+        copy.reset();
+        if (m > maxMemory / 4) {
+            return;
+        }
+        Entry entry = new Entry(tables, modificationId, copy, m);
+        synchronized (this) {
+            Entry old = map.put(key, entry);
+            if (old != null) {
+                memory -= old.memory;
+            }
+            memory += entry.memory;
+            for (Iterator<Entry> it = map.values().iterator(); memory > maxMemory && it.hasNext();) {
+                memory -= it.next().memory;
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Remove all results of the queries that use the table.
+     *
+     * @param table the table
+     */
+    public synchronized void invalidate(Table table) {
+        for (Iterator<Entry> it = map.values().iterator(); it.hasNext();) {
+            Entry entry = it.next();
+            for (Table t : entry.tables) {
+                if (t == table) {
+                    memory -= entry.memory;
+                    it.remove();
+                    break;
+                }
+            }
+        }
+    }
+
+}
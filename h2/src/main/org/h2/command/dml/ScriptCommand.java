@@ -289,7 +289,8 @@ public int compare(Table t1, Table t2) {
                         }
                     }
                 }
-                if (TableType.TABLE == tableType) {
+                MaterializedView view = table.getMaterializedView();
+                if (TableType.TABLE == tableType && view == null) {
                     if (table.canGetRowCount()) {
                         String rowcount = "-- " +
                                 table.getRowCountApproximation() +
@@ -303,7 +304,8 @@ public int compare(Table t1, Table t2) {
                 final ArrayList<Index> indexes = table.getIndexes();
                 for (int j = 0; indexes != null && j < indexes.size(); j++) {
                     Index index = indexes.get(j);
-                    if (!index.getIndexType().getBelongsToConstraint()) {
+                    if (!index.getIndexType().getBelongsToConstraint() &&
+                            (view == null || !view.isGroupIndex(index))) {
                         add(index.getCreateSQL(), false);
                     }
                 }
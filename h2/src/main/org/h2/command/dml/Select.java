@@ -10,9 +10,14 @@
 import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import org.h2.api.ErrorCode;
 import org.h2.api.Trigger;
 import org.h2.command.Parser;
+import org.h2.command.Prepared;
 import org.h2.engine.Constants;
 import org.h2.engine.Database;
 import org.h2.engine.Session;
@@ -21,16 +26,25 @@
 import org.h2.expression.ExpressionColumn;
 import org.h2.expression.ExpressionVisitor;
 import org.h2.expression.Parameter;
+import org.h2.expression.ValueExpression;
 import org.h2.expression.Wildcard;
+import org.h2.expression.aggregate.Aggregate;
+import org.h2.expression.aggregate.VectorAggregate;
 import org.h2.expression.analysis.DataAnalysisOperation;
 import org.h2.expression.analysis.Window;
+import org.h2.expression.compiled.CompiledExpression;
+import org.h2.expression.compiled.ExpressionCompiler;
 import org.h2.expression.condition.Comparison;
 import org.h2.expression.condition.ConditionAndOr;
+import org.h2.expression.vector.VectorBatch;
+import org.h2.expression.vector.VectorExpression;
 import org.h2.index.Cursor;
 import org.h2.index.Index;
 import org.h2.index.IndexType;
+import org.h2.index.JoinIndex;
 import org.h2.index.ViewIndex;
 import org.h2.message.DbException;
+import org.h2.mvstore.db.MVTempHashTable;
 import org.h2.result.LazyResult;
 import org.h2.result.LocalResult;
 import org.h2.result.ResultInterface;
@@ -44,7 +58,6 @@
 import org.h2.table.JoinBatch;
 import org.h2.table.Table;
 import org.h2.table.TableFilter;
-import org.h2.table.TableType;
 import org.h2.table.TableView;
 import org.h2.util.ColumnNamer;
 import org.h2.util.StatementBuilder;
@@ -52,6 +65,7 @@
 import org.h2.util.Utils;
 import org.h2.value.Value;
 import org.h2.value.ValueArray;
+import org.h2.value.ValueLong;
 import org.h2.value.ValueNull;
 
 /**
@@ -69,6 +83,16 @@
  */
 public class Select extends Query {
 
+    /**
+     * The minimum number of rows per thread of a parallel query.
+     */
+    private static final long PARALLEL_MIN_ROWS = 10000;
+
+    /**
+     * The number of partitions of the rows of groups that don't fit in memory.
+     */
+    private static final int GROUP_PARTITIONS = 16;
+
     /**
      * The main (top) table filter.
      */
@@ -107,6 +131,12 @@ public class Select extends Query {
 
     SelectGroups groupData;
 
+    /**
+     * The rows of the groups that didn't fit in memory while the groups were
+     * gathered, or null.
+     */
+    private MVTempHashTable externalGroupRows;
+
     private int havingIndex;
     boolean isGroupQuery;
     private boolean isGroupSortedQuery;
@@ -114,11 +144,22 @@ public class Select extends Query {
     private boolean isForUpdate, isForUpdateMvcc;
     private double cost;
     private boolean isQuickAggregateQuery, isDistinctQuery;
+    private boolean isParallelQuery;
     private boolean isPrepared, checkInit;
     private boolean sortUsingIndex;
 
     private boolean isGroupWindowStage2;
 
+    /**
+     * The number of executions, used to decide when to compile the
+     * expressions.
+     */
+    private int executionCount;
+
+    private CompiledExpression compiledCondition;
+
+    private CompiledExpression[] compiledExpressions;
+
     private HashMap<String, Window> windows;
 
     public Select(Session session) {
@@ -320,10 +361,14 @@ private Index getGroupSortedIndex() {
                 if (index.getIndexType().isScan()) {
                     continue;
                 }
-                if (index.getIndexType().isHash()) {
+                if (index.getIndexType().isHash() || index.getIndexType().isBitmap()) {
                     // does not allow scanning entries
                     continue;
                 }
+                if (index.getCondition() != null) {
+                    // does not contain all rows
+                    continue;
+                }
                 if (isGroupSortedIndex(topTableFilter, index)) {
                     return index;
                 }
@@ -384,13 +429,16 @@ private int getGroupByExpressionCount() {
     }
 
     boolean isConditionMet() {
+        if (compiledCondition != null) {
+            return compiledCondition.getBooleanValue(session);
+        }
         return condition == null || condition.getBooleanValue(session);
     }
 
     private void queryWindow(int columnCount, LocalResult result, long offset, boolean quickOffset) {
         initGroupData(columnCount);
         try {
-            gatherGroup(columnCount, DataAnalysisOperation.STAGE_WINDOW);
+            gatherGroup(columnCount, DataAnalysisOperation.STAGE_WINDOW, 0);
             processGroupResult(columnCount, result, offset, quickOffset);
         } finally {
             groupData.reset();
@@ -400,7 +448,7 @@ private void queryWindow(int columnCount, LocalResult result, long offset, boole
     private void queryGroupWindow(int columnCount, LocalResult result, long offset, boolean quickOffset) {
         initGroupData(columnCount);
         try {
-            gatherGroup(columnCount, DataAnalysisOperation.STAGE_GROUP);
+            gatherGroup(columnCount, DataAnalysisOperation.STAGE_GROUP, 0);
             try {
                 isGroupWindowStage2 = true;
                 while (groupData.next() != null) {
@@ -423,13 +471,108 @@ private void queryGroupWindow(int columnCount, LocalResult result, long offset,
     private void queryGroup(int columnCount, LocalResult result, long offset, boolean quickOffset) {
         initGroupData(columnCount);
         try {
-            gatherGroup(columnCount, DataAnalysisOperation.STAGE_GROUP);
-            processGroupResult(columnCount, result, offset, quickOffset);
+            int maxGroups = 0;
+            if (!gatherGroupParallel()) {
+                maxGroups = getMaxGroups();
+                if (!gatherGroupVectorized(columnCount, maxGroups)) {
+                    gatherGroup(columnCount, DataAnalysisOperation.STAGE_GROUP, maxGroups);
+                }
+            }
+            offset = processGroupResult(columnCount, result, offset, quickOffset);
+            if (externalGroupRows != null) {
+                queryGroupPartitions(columnCount, result, offset, quickOffset, maxGroups, externalGroupRows, 1);
+            }
         } finally {
+            if (externalGroupRows != null) {
+                externalGroupRows.close();
+                externalGroupRows = null;
+            }
             groupData.reset();
         }
     }
 
+    /**
+     * Get the maximum number of groups to keep in memory. If there are more
+     * groups, the rows of the other groups are written to a temporary file,
+     * partitioned by the hash code of their group key.
+     *
+     * @return the maximum number of groups, or 0 if all groups are kept in
+     *         memory
+     */
+    private int getMaxGroups() {
+        Database db = session.getDatabase();
+        if (groupIndex == null || !db.isPersistent() || db.isReadOnly() || isForUpdate ||
+                getSampleSizeValue(session) > 0 || filters.size() != 1 ||
+                topTableFilter.getJoin() != null || topTableFilter.getNestedJoin() != null) {
+            return 0;
+        }
+        int maxMemoryRows = db.getMaxMemoryRows();
+        return maxMemoryRows < Integer.MAX_VALUE ? Math.max(maxMemoryRows, 1) : 0;
+    }
+
+    /**
+     * Gather and process the groups of the rows that were written to a
+     * temporary file, one partition at a time. If a partition has too many
+     * groups, the remaining rows are partitioned again using a different hash
+     * function.
+     */
+    private long queryGroupPartitions(int columnCount, LocalResult result, long offset, boolean quickOffset,
+            int maxGroups, MVTempHashTable rows, int level) {
+        Table table = topTableFilter.getTable();
+        for (int partition = 0; partition < GROUP_PARTITIONS; partition++) {
+            groupData.reset();
+            initGroupData(columnCount);
+            MVTempHashTable external = null;
+            try {
+                for (Iterator<Value[]> it = rows.iterator(partition); it.hasNext();) {
+                    checkCanceled();
+                    Value[] values = it.next();
+                    int last = values.length - 1;
+                    Row row = table.createRow(Arrays.copyOf(values, last), Row.MEMORY_CALCULATE);
+                    row.setKey(values[last].getLong());
+                    topTableFilter.set(row);
+                    ValueArray key = groupData.nextSource(maxGroups);
+                    if (key == null) {
+                        updateAgg(columnCount, DataAnalysisOperation.STAGE_GROUP);
+                    } else {
+                        if (external == null) {
+                            external = createExternalGroupRows();
+                        }
+                        addExternalGroupRow(external, key, level);
+                    }
+                }
+                groupData.done();
+                offset = processGroupResult(columnCount, result, offset, quickOffset);
+                if (external != null) {
+                    offset = queryGroupPartitions(columnCount, result, offset, quickOffset, maxGroups, external,
+                            level + 1);
+                }
+            } finally {
+                if (external != null) {
+                    external.close();
+                }
+            }
+        }
+        return offset;
+    }
+
+    private MVTempHashTable createExternalGroupRows() {
+        return new MVTempHashTable(session.getDatabase(), topTableFilter.getTable().getColumns().length + 1);
+    }
+
+    private void addExternalGroupRow(MVTempHashTable external, ValueArray key, int level) {
+        Row row = topTableFilter.get();
+        int columnCount = topTableFilter.getTable().getColumns().length;
+        Value[] values = new Value[columnCount + 1];
+        for (int i = 0; i < columnCount; i++) {
+            values[i] = row.getValue(i);
+        }
+        values[columnCount] = ValueLong.get(row.getKey());
+        // each level uses a different hash function
+        int hash = (key.hashCode() + level) * 0x9e3779b9;
+        external.add((hash ^ hash >>> 16) & (GROUP_PARTITIONS - 1), values);
+    }
+
     private void initGroupData(int columnCount) {
         if (groupData == null) {
             groupData = SelectGroups.getInstance(session, expressions, isGroupQuery, groupIndex);
@@ -439,18 +582,17 @@ private void initGroupData(int columnCount) {
         groupData.reset();
     }
 
-    private void gatherGroup(int columnCount, int stage) {
+    private void gatherGroup(int columnCount, int stage, int maxGroups) {
         long rowNumber = 0;
         setCurrentRowNumber(0);
         int sampleSize = getSampleSizeValue(session);
         ArrayList<Row>[] forUpdateRows = initForUpdateRows();
         while (topTableFilter.next()) {
             setCurrentRowNumber(rowNumber + 1);
-            if (isConditionMet()) {
+            if (isConditionMet() && lockRowsSkipLocked()) {
                 rowNumber++;
                 addForUpdateRow(forUpdateRows);
-                groupData.nextSource();
-                updateAgg(columnCount, stage);
+                addRowToGroup(columnCount, stage, maxGroups);
                 if (sampleSize > 0 && rowNumber >= sampleSize) {
                     break;
                 }
@@ -460,6 +602,272 @@ private void gatherGroup(int columnCount, int stage) {
         groupData.done();
     }
 
+    /**
+     * Add the current row to its group. If the number of groups in memory is
+     * limited and the group of the row is not in memory, the row is written to
+     * the rows of the groups that didn't fit in memory instead.
+     *
+     * @param columnCount the number of columns
+     * @param stage the stage
+     * @param maxGroups the maximum number of groups in memory, or 0 if not
+     *            limited
+     */
+    private void addRowToGroup(int columnCount, int stage, int maxGroups) {
+        if (maxGroups == 0) {
+            groupData.nextSource();
+            updateAgg(columnCount, stage);
+            return;
+        }
+        ValueArray key = groupData.nextSource(maxGroups);
+        if (key == null) {
+            updateAgg(columnCount, stage);
+        } else {
+            if (externalGroupRows == null) {
+                externalGroupRows = createExternalGroupRows();
+            }
+            addExternalGroupRow(externalGroupRows, key, 0);
+        }
+    }
+
+    /**
+     * Gather the groups using multiple threads, if enabled for this session
+     * and the table is large enough. The rows are split into ranges, and each
+     * thread gathers the groups of one range using its own copy of this
+     * query, prepared in its own session, because sessions are not
+     * thread-safe. The rows are read using cursors over the snapshot of this
+     * session. The groups of all copies are then merged.
+     *
+     * @return true if the groups were gathered, false if the query needs to
+     *         be processed by the current thread
+     */
+    private boolean gatherGroupParallel() {
+        int parallelism = session.getParallelism();
+        if (parallelism < 2 || !isParallelQuery || isForUpdate || getSampleSizeValue(session) > 0 ||
+                !session.getLocalTempTables().isEmpty()) {
+            // the local temporary tables are not visible in other sessions
+            return false;
+        }
+        long rows = topTableFilter.getTable().getRowCountApproximation();
+        int count = (int) Math.min(parallelism, rows / PARALLEL_MIN_ROWS);
+        if (count < 2) {
+            return false;
+        }
+        Cursor[] cursors = topTableFilter.getIndex().findParallel(session, count);
+        if (cursors == null || cursors.length < 2) {
+            return false;
+        }
+        count = cursors.length;
+        String planSQL = getPlanSQL();
+        final Select[] parts = new Select[count];
+        Session[] sessions = new Session[count];
+        try {
+            for (int i = 0; i < count; i++) {
+                Session s = session.createParallelQuerySession();
+                sessions[i] = s;
+                Select part = prepareParallelPart(s, planSQL);
+                if (part == null) {
+                    return false;
+                }
+                parts[i] = part;
+            }
+            ArrayList<Callable<Void>> tasks = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                final Select part = parts[i];
+                final Cursor cursor = cursors[i];
+                tasks.add(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        part.gatherGroupPart(cursor);
+                        return null;
+                    }
+                });
+            }
+            try {
+                for (Future<Void> f : session.getDatabase().getParallelExecutor().invokeAll(tasks)) {
+                    f.get();
+                }
+            } catch (InterruptedException e) {
+                throw DbException.convert(e);
+            } catch (ExecutionException e) {
+                // if the query was canceled, reset the cancel time of this
+                // session
+                checkCanceled();
+                throw DbException.convert(e.getCause());
+            }
+        } finally {
+            for (Session s : sessions) {
+                if (s != null) {
+                    s.close();
+                }
+            }
+        }
+        for (Select part : parts) {
+            groupData.merge(part.groupData);
+        }
+        groupData.done();
+        return true;
+    }
+
+    /**
+     * Create a copy of this query for a thread of a parallel query.
+     *
+     * @param partSession the session of the thread
+     * @param planSQL the plan of this query
+     * @return the copy, or null if the copy can't be created
+     */
+    private Select prepareParallelPart(Session partSession, String planSQL) {
+        if (sqlStatement == null) {
+            return null;
+        }
+        Prepared p;
+        try {
+            p = partSession.prepare(sqlStatement, true, true);
+        } catch (DbException e) {
+            // for example, a subquery that uses columns of the outer query
+            return null;
+        }
+        if (!(p instanceof Select) || !planSQL.equals(p.getPlanSQL())) {
+            return null;
+        }
+        ArrayList<Parameter> list = getParameters(), partList = p.getParameters();
+        int size = list == null ? 0 : list.size();
+        if (size != (partList == null ? 0 : partList.size())) {
+            return null;
+        }
+        for (int i = 0; i < size; i++) {
+            partList.get(i).setValue(list.get(i).getParamValue());
+        }
+        return (Select) p;
+    }
+
+    /**
+     * Gather the groups of a range of rows. This method is called by a thread
+     * of a parallel query for its own copy of the query.
+     *
+     * @param cursor the cursor to iterate over the range
+     */
+    void gatherGroupPart(Cursor cursor) {
+        int columnCount = expressions.size();
+        initGroupData(columnCount);
+        long rowNumber = 0;
+        while (cursor.next()) {
+            if ((++rowNumber & 127) == 0) {
+                checkCanceled();
+            }
+            topTableFilter.set(cursor.get());
+            if (isConditionMet()) {
+                groupData.nextSource();
+                updateAgg(columnCount, DataAnalysisOperation.STAGE_GROUP);
+            }
+        }
+    }
+
+    /**
+     * Gather the groups by processing batches of rows at once, if the
+     * condition or the aggregates can be evaluated in this way. The condition
+     * is evaluated for all rows of a batch, and the aggregates of a query
+     * without GROUP BY are updated for all rows that meet the condition.
+     *
+     * @param columnCount the number of columns
+     * @param maxGroups the maximum number of groups in memory, or 0 if not
+     *            limited
+     * @return true if the groups were gathered, false if the rows need to be
+     *         processed one by one
+     */
+    private boolean gatherGroupVectorized(int columnCount, int maxGroups) {
+        if (!session.getDatabase().getSettings().optimizeVectorized || isForUpdate
+                || topTableFilter.getJoin() != null || topTableFilter.getNestedJoin() != null
+                || !topTableFilter.getIndex().getIndexType().isScan() || getSampleSizeValue(session) > 0) {
+            return false;
+        }
+        VectorExpression cond = null;
+        if (condition != null) {
+            cond = condition.getVectorExpression(session, topTableFilter);
+        }
+        VectorAggregate[] aggregates = groupIndex == null ? getVectorAggregates(columnCount) : null;
+        if (cond == null && aggregates == null) {
+            return false;
+        }
+        VectorBatch batch = new VectorBatch(topTableFilter);
+        int[] selection = new int[batch.getCapacity()];
+        long rowNumber = 0;
+        setCurrentRowNumber(0);
+        for (int size; (size = batch.next()) > 0;) {
+            checkCanceled();
+            for (int i = 0; i < size; i++) {
+                selection[i] = i;
+            }
+            int count;
+            if (cond != null) {
+                count = cond.filter(batch, selection, size);
+            } else if (condition != null) {
+                count = 0;
+                for (int i = 0; i < size; i++) {
+                    topTableFilter.set(batch.getRow(i));
+                    setCurrentRowNumber(rowNumber + count + 1);
+                    if (condition.getBooleanValue(session)) {
+                        selection[count++] = i;
+                    }
+                }
+            } else {
+                count = size;
+            }
+            if (aggregates != null) {
+                if (count > 0) {
+                    if (rowNumber == 0) {
+                        groupData.nextSource();
+                    }
+                    rowNumber += count;
+                    for (VectorAggregate aggregate : aggregates) {
+                        if (aggregate != null) {
+                            aggregate.update(batch, selection, count);
+                        }
+                    }
+                }
+            } else {
+                for (int i = 0; i < count; i++) {
+                    topTableFilter.set(batch.getRow(selection[i]));
+                    setCurrentRowNumber(++rowNumber);
+                    addRowToGroup(columnCount, DataAnalysisOperation.STAGE_GROUP, maxGroups);
+                }
+            }
+        }
+        if (aggregates != null && rowNumber > 0) {
+            setCurrentRowNumber(rowNumber);
+            for (VectorAggregate aggregate : aggregates) {
+                if (aggregate != null) {
+                    aggregate.finish(session, groupData);
+                }
+            }
+        }
+        groupData.done();
+        return true;
+    }
+
+    /**
+     * Get the vectorized versions of the aggregates of this query.
+     *
+     * @param columnCount the number of columns
+     * @return the aggregates (null for constant expressions), or null if an
+     *         expression can't be vectorized
+     */
+    private VectorAggregate[] getVectorAggregates(int columnCount) {
+        VectorAggregate[] aggregates = new VectorAggregate[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            Expression expr = expressions.get(i).getNonAliasExpression();
+            if (expr instanceof Aggregate) {
+                VectorAggregate aggregate = ((Aggregate) expr).getVectorAggregate(session, topTableFilter);
+                if (aggregate == null) {
+                    return null;
+                }
+                aggregates[i] = aggregate;
+            } else if (!(expr instanceof ValueExpression)) {
+                return null;
+            }
+        }
+        return aggregates;
+    }
+
     void updateAgg(int columnCount, int stage) {
         for (int i = 0; i < columnCount; i++) {
             if (groupByExpression == null || !groupByExpression[i]) {
@@ -469,7 +877,7 @@ void updateAgg(int columnCount, int stage) {
         }
     }
 
-    private void processGroupResult(int columnCount, LocalResult result, long offset, boolean quickOffset) {
+    private long processGroupResult(int columnCount, LocalResult result, long offset, boolean quickOffset) {
         for (ValueArray currentGroupsKey; (currentGroupsKey = groupData.next()) != null;) {
             Value[] keyValues = currentGroupsKey.getList();
             Value[] row = new Value[columnCount];
@@ -493,6 +901,7 @@ private void processGroupResult(int columnCount, LocalResult result, long offset
             row = keepOnlyDistinct(row, columnCount);
             result.addRow(row);
         }
+        return offset;
     }
 
     /**
@@ -539,7 +948,8 @@ private Index getSortIndex() {
                     // can't use the scan index
                     continue;
                 }
-                if (index.getIndexType().isHash()) {
+                IndexType indexType = index.getIndexType();
+                if (indexType.isHash() || indexType.isBitmap() || index.getCondition() != null) {
                     continue;
                 }
                 IndexColumn[] indexCols = index.getIndexColumns();
@@ -665,7 +1075,7 @@ private LazyResult queryFlat(int columnCount, ResultTarget result, long offset,
     }
 
     private ArrayList<Row>[] initForUpdateRows() {
-        if (!this.isForUpdateMvcc) {
+        if (!this.isForUpdateMvcc || forUpdateWait == FOR_UPDATE_SKIP_LOCKED) {
             return null;
         }
         int count = filters.size();
@@ -689,12 +1099,64 @@ private void addForUpdateRow(ArrayList<Row>[] forUpdateRows) {
     private void lockForUpdateRows(ArrayList<Row>[] forUpdateRows) {
         if (forUpdateRows != null) {
             int count = filters.size();
+            boolean noWait = forUpdateWait == FOR_UPDATE_NOWAIT;
             for (int i = 0; i < count; i++) {
-                filters.get(i).lockRows(forUpdateRows[i]);
+                TableFilter f = filters.get(i);
+                if (noWait) {
+                    f.lockRowsNoWait(forUpdateRows[i]);
+                } else {
+                    f.lockRows(forUpdateRows[i]);
+                }
             }
         }
     }
 
+    /**
+     * Lock the current rows of all table filters immediately if FOR UPDATE
+     * SKIP LOCKED is used. Rows are locked one by one during the scan, so
+     * concurrent consumers of the same table do not wait for each other.
+     * The locked rows are the latest committed versions, so the condition is
+     * checked again.
+     *
+     * @return false if some of the current rows is locked by another session,
+     *         was removed, or doesn't match the condition anymore and the
+     *         current row should be skipped, true otherwise
+     */
+    private boolean lockRowsSkipLocked() {
+        if (isForUpdateMvcc && forUpdateWait == FOR_UPDATE_SKIP_LOCKED) {
+            for (TableFilter f : filters) {
+                if (!f.lockRowSkipLocked()) {
+                    return false;
+                }
+            }
+            return isConditionMet();
+        }
+        return true;
+    }
+
+    /**
+     * Compile the condition and the select list of a query without grouping,
+     * because the query is executed often.
+     */
+    private void compileExpressions() {
+        if (isGroupQuery || isWindowQuery) {
+            return;
+        }
+        if (condition != null) {
+            compiledCondition = ExpressionCompiler.compile(session, this, condition);
+        }
+        int columnCount = expressions.size();
+        CompiledExpression[] compiled = new CompiledExpression[columnCount];
+        boolean any = false;
+        for (int i = 0; i < columnCount; i++) {
+            compiled[i] = ExpressionCompiler.compile(session, this, expressions.get(i).getNonAliasExpression());
+            any |= compiled[i] != null;
+        }
+        if (any) {
+            compiledExpressions = compiled;
+        }
+    }
+
     private static void skipOffset(LazyResultSelect lazyResult, long offset, boolean quickOffset) {
         if (quickOffset) {
             while (offset > 0 && lazyResult.next()) {
@@ -725,6 +1187,20 @@ public ResultInterface queryMeta() {
     @Override
     protected ResultInterface queryWithoutCache(int maxRows, ResultTarget target) {
         disableLazyForJoinSubqueries(topTableFilter);
+        int compileExpressions = session.getDatabase().getSettings().compileExpressions;
+        if (compileExpressions > 0 && ++executionCount == compileExpressions) {
+            compileExpressions();
+        }
+        if (compiledCondition != null && !compiledCondition.isValid()) {
+            compiledCondition = null;
+        }
+        if (compiledExpressions != null) {
+            for (int i = 0; i < compiledExpressions.length; i++) {
+                if (compiledExpressions[i] != null && !compiledExpressions[i].isValid()) {
+                    compiledExpressions[i] = null;
+                }
+            }
+        }
 
         int limitRows = maxRows == 0 ? -1 : maxRows;
         if (limitExpr != null) {
@@ -791,6 +1267,21 @@ protected ResultInterface queryWithoutCache(int maxRows, ResultTarget target) {
         if (!lazy && (limitRows >= 0 || offset > 0)) {
             result = createLocalResult(result);
         }
+        if (result != null) {
+            // set before the rows are added, so that a sorted result only
+            // needs to keep the first rows
+            if (!quickOffset && offset != 0) {
+                if (offset > Integer.MAX_VALUE) {
+                    throw DbException.getInvalidValueException("OFFSET", offset);
+                }
+                result.setOffset((int) offset);
+            }
+            if (limitRows >= 0) {
+                result.setLimit(limitRows);
+                result.setFetchPercent(fetchPercent);
+                result.setWithTies(withTies);
+            }
+        }
         topTableFilter.startQuery(session);
         topTableFilter.reset();
         boolean exclusive = isForUpdate && !isForUpdateMvcc;
@@ -827,6 +1318,7 @@ protected ResultInterface queryWithoutCache(int maxRows, ResultTarget target) {
             } finally {
                 if (!lazy) {
                     resetJoinBatchAfterQuery();
+                    resetJoinIndexesAfterQuery();
                 }
             }
         }
@@ -841,17 +1333,6 @@ protected ResultInterface queryWithoutCache(int maxRows, ResultTarget target) {
                 return lazyResult;
             }
         }
-        if (offset != 0) {
-            if (offset > Integer.MAX_VALUE) {
-                throw DbException.getInvalidValueException("OFFSET", offset);
-            }
-            result.setOffset((int) offset);
-        }
-        if (limitRows >= 0) {
-            result.setLimit(limitRows);
-            result.setFetchPercent(fetchPercent);
-            result.setWithTies(withTies);
-        }
         if (result != null) {
             result.done();
             if (randomAccessResult && !distinct) {
@@ -874,9 +1355,9 @@ private void disableLazyForJoinSubqueries(final TableFilter top) {
             top.visit(new TableFilter.TableFilterVisitor() {
                 @Override
                 public void accept(TableFilter f) {
-                    if (f != top && f.getTable().getTableType() == TableType.VIEW) {
+                    if (f != top && f.getIndex() instanceof ViewIndex) {
                         ViewIndex idx = (ViewIndex) f.getIndex();
-                        if (idx != null && idx.getQuery() != null) {
+                        if (idx.getQuery() != null) {
                             idx.getQuery().setNeverLazy(true);
                         }
                     }
@@ -895,6 +1376,21 @@ void resetJoinBatchAfterQuery() {
         }
     }
 
+    /**
+     * Discard the state of hash and merge joins to release memory.
+     */
+    private void resetJoinIndexesAfterQuery() {
+        topTableFilter.visit(new TableFilter.TableFilterVisitor() {
+            @Override
+            public void accept(TableFilter f) {
+                Index index = f.getIndex();
+                if (index instanceof JoinIndex) {
+                    ((JoinIndex) index).reset();
+                }
+            }
+        });
+    }
+
     private LocalResult createLocalResult(LocalResult old) {
         return old != null ? old : session.getDatabase().getResultFactory().create(session, expressionArray,
                 visibleColumnCount);
@@ -1218,10 +1714,24 @@ public void prepare() {
                 isGroupSortedQuery = true;
             }
         }
+        isParallelQuery = isGroupQuery && !isQuickAggregateQuery && !isGroupSortedQuery && !isWindowQuery &&
+                filters.size() == 1 && topTableFilter.getJoin() == null && topTableFilter.getNestedJoin() == null &&
+                topTableFilter.getIndexConditions().isEmpty() && isParallelizable();
         expressionArray = expressions.toArray(new Expression[0]);
         isPrepared = true;
     }
 
+    private boolean isParallelizable() {
+        ExpressionVisitor visitor = ExpressionVisitor.PARALLELIZABLE_VISITOR;
+        for (Expression e : expressions) {
+            if (!e.isEverything(visitor)) {
+                return false;
+            }
+        }
+        return (condition == null || condition.isEverything(visitor)) &&
+                (having == null || having.isEverything(visitor));
+    }
+
     @Override
     public void prepareJoinBatch() {
         ArrayList<TableFilter> list = new ArrayList<>();
@@ -1274,6 +1784,9 @@ private double preparePlan(boolean parse) {
         }
 
         Optimizer optimizer = new Optimizer(topArray, condition, session);
+        if (!parse && topArray.length > 1 && session.getDatabase().getPlanCache() != null) {
+            optimizer.setPlanCacheKey(getPlanCacheKey());
+        }
         optimizer.optimize(parse);
         topTableFilter = optimizer.getTopFilter();
         double planCost = optimizer.getCost();
@@ -1286,6 +1799,37 @@ private double preparePlan(boolean parse) {
         return planCost;
     }
 
+    /**
+     * Get the key of this query in the plan cache. The names in the query are
+     * resolved using the current schema and the schema search path, and the
+     * sort order influences the plan.
+     *
+     * @return the key, or null if the query can not be cached
+     */
+    private String getPlanCacheKey() {
+        String sql = getSQL();
+        if (sql == null) {
+            return null;
+        }
+        StringBuilder builder = new StringBuilder(session.getCurrentSchemaName());
+        String[] searchPath = session.getSchemaSearchPath();
+        if (searchPath != null) {
+            for (String schema : searchPath) {
+                builder.append(',').append(schema);
+            }
+        }
+        builder.append('\n').append(sql);
+        if (sort != null) {
+            builder.append("\nORDER BY");
+            int[] indexes = sort.getQueryColumnIndexes();
+            int[] sortTypes = sort.getSortTypes();
+            for (int i = 0; i < indexes.length; i++) {
+                builder.append(' ').append(expressions.get(indexes[i]).getSQL()).append(' ').append(sortTypes[i]);
+            }
+        }
+        return builder.toString();
+    }
+
     private void setEvaluatableRecursive(TableFilter f) {
         for (; f != null; f = f.getJoin()) {
             f.setEvaluatable(f, true);
@@ -1444,7 +1988,7 @@ public String getPlanSQL() {
             sampleSizeExpr.getUnenclosedSQL(buff.builder());
         }
         if (isForUpdate) {
-            buff.append("\nFOR UPDATE");
+            appendForUpdateToSQL(buff.builder());
         }
         if (isQuickAggregateQuery) {
             buff.append("\n/* direct lookup */");
@@ -1643,6 +2187,9 @@ public boolean isEverything(ExpressionVisitor visitor) {
             }
             break;
         }
+        case ExpressionVisitor.PARALLELIZABLE:
+            // subqueries use the session, which is not thread-safe
+            return false;
         default:
         }
         ExpressionVisitor v2 = visitor.incrementQueryLevel(1);
@@ -1665,6 +2212,11 @@ public boolean isReadOnly() {
         return isEverything(ExpressionVisitor.READONLY_VISITOR);
     }
 
+    @Override
+    public boolean isReadOnlyTransactionAllowed() {
+        return !isForUpdate && isReadOnly();
+    }
+
 
     @Override
     public boolean isCacheable() {
@@ -1734,12 +2286,17 @@ protected Value[] fetchNextRow() {
             while ((sampleSize <= 0 || rowNumber < sampleSize) &&
                     topTableFilter.next()) {
                 setCurrentRowNumber(rowNumber + 1);
-                if (isConditionMet()) {
+                if (isConditionMet() && lockRowsSkipLocked()) {
                     ++rowNumber;
                     Value[] row = new Value[columnCount];
+                    CompiledExpression[] compiled = compiledExpressions;
                     for (int i = 0; i < columnCount; i++) {
-                        Expression expr = expressions.get(i);
-                        row[i] = expr.getValue(getSession());
+                        if (compiled != null && compiled[i] != null) {
+                            row[i] = compiled[i].getValue(getSession());
+                        } else {
+                            Expression expr = expressions.get(i);
+                            row[i] = expr.getValue(getSession());
+                        }
                     }
                     return row;
                 }
@@ -8,14 +8,18 @@
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import org.h2.api.ErrorCode;
 import org.h2.engine.Session;
 import org.h2.expression.Expression;
+import org.h2.expression.aggregate.AbstractAggregate;
 import org.h2.expression.analysis.DataAnalysisOperation;
 import org.h2.expression.analysis.PartitionData;
+import org.h2.message.DbException;
 import org.h2.util.ValueHashMap;
 import org.h2.value.Value;
 import org.h2.value.ValueArray;
@@ -33,6 +37,17 @@
  * <li>{@link #next()} is invoked inside a loop until it returns null.</li>
  * </ul>
  * <p>
+ * Call sequence for parallel queries:
+ * </p>
+ * <ul>
+ * <li>{@link #reset()}.</li>
+ * <li>For each part of source rows, in the order of parts,
+ * {@link #merge(SelectGroups)} should be invoked with the data gathered by a
+ * copy of the query.</li>
+ * <li>{@link #done()}.</li>
+ * <li>{@link #next()} is invoked inside a loop until it returns null.</li>
+ * </ul>
+ * <p>
  * Call sequence for lazy group sorted result:
  * </p>
  * <ul>
@@ -79,8 +94,14 @@ public void reset() {
 
         @Override
         public void nextSource() {
+            nextSource(Integer.MAX_VALUE);
+        }
+
+        @Override
+        public ValueArray nextSource(int maxGroups) {
+            ValueArray key;
             if (groupIndex == null) {
-                currentGroupsKey = ValueArray.getEmpty();
+                key = ValueArray.getEmpty();
             } else {
                 Value[] keyValues = new Value[groupIndex.length];
                 // update group
@@ -89,15 +110,20 @@ public void nextSource() {
                     Expression expr = expressions.get(idx);
                     keyValues[i] = expr.getValue(session);
                 }
-                currentGroupsKey = ValueArray.get(keyValues);
+                key = ValueArray.get(keyValues);
             }
-            Object[] values = groupByData.get(currentGroupsKey);
+            Object[] values = groupByData.get(key);
             if (values == null) {
+                if (groupByData.size() >= maxGroups) {
+                    return key;
+                }
                 values = createRow();
-                groupByData.put(currentGroupsKey, values);
+                groupByData.put(key, values);
             }
+            currentGroupsKey = key;
             currentGroupByExprData = values;
             currentGroupRowId++;
+            return null;
         }
 
         @Override
@@ -142,6 +168,21 @@ public void resetLazy() {
             super.resetLazy();
             currentGroupsKey = null;
         }
+
+        @Override
+        public void merge(SelectGroups part) {
+            Expression[] exprs = new Expression[part.exprCount];
+            int[] indexes = getMergedIndexes(part, exprs);
+            for (Entry<ValueArray, Object[]> entry : ((Grouped) part).groupByData.entrySet()) {
+                ValueArray key = entry.getKey();
+                Object[] values = groupByData.get(key);
+                if (values == null || values.length < exprCount) {
+                    values = values == null ? createRow() : Arrays.copyOf(values, exprCount);
+                    groupByData.put(key, values);
+                }
+                mergeRow(exprs, indexes, values, entry.getValue());
+            }
+        }
     }
 
     private static final class Plain extends SelectGroups {
@@ -172,6 +213,16 @@ public void nextSource() {
             currentGroupRowId++;
         }
 
+        @Override
+        public ValueArray nextSource(int maxGroups) {
+            // each row is a group
+            if (rows.size() >= maxGroups) {
+                return ValueArray.getEmpty();
+            }
+            nextSource();
+            return null;
+        }
+
         @Override
         void updateCurrentGroupExprData() {
             rows.set(rows.size() - 1, currentGroupByExprData);
@@ -192,6 +243,24 @@ public ValueArray next() {
             }
             return null;
         }
+
+        @Override
+        public void remove() {
+            cursor.remove();
+            currentGroupByExprData = null;
+            currentGroupRowId--;
+        }
+
+        @Override
+        public void merge(SelectGroups part) {
+            Expression[] exprs = new Expression[part.exprCount];
+            int[] indexes = getMergedIndexes(part, exprs);
+            for (Object[] source : ((Plain) part).rows) {
+                Object[] values = createRow();
+                mergeRow(exprs, indexes, values, source);
+                rows.add(values);
+            }
+        }
     }
 
     final Session session;
@@ -209,6 +278,18 @@ public ValueArray next() {
      */
     private final HashMap<Expression, Integer> exprToIndexInGroupByData = new HashMap<>();
 
+    /**
+     * Maps the SQL of an expression to an index, for data merged from copies
+     * of the query. Expressions of this query are added to
+     * exprToIndexInGroupByData on first access.
+     */
+    private HashMap<String, Integer> sqlToIndexInGroupByData;
+
+    /**
+     * The count of used indexes in the Object[] pointed to by groupByData.
+     */
+    int exprCount;
+
     /**
      * Maps an window expression object to its data.
      */
@@ -263,7 +344,14 @@ public boolean isCurrentGroup() {
     public final Object getCurrentGroupExprData(Expression expr) {
         Integer index = exprToIndexInGroupByData.get(expr);
         if (index == null) {
-            return null;
+            if (sqlToIndexInGroupByData == null) {
+                return null;
+            }
+            index = sqlToIndexInGroupByData.get(expr.getSQL());
+            if (index == null) {
+                return null;
+            }
+            exprToIndexInGroupByData.put(expr, index);
         }
         return currentGroupByExprData[index];
     }
@@ -283,7 +371,7 @@ public final void setCurrentGroupExprData(Expression expr, Object obj) {
             currentGroupByExprData[index] = obj;
             return;
         }
-        index = exprToIndexInGroupByData.size();
+        index = exprCount++;
         exprToIndexInGroupByData.put(expr, index);
         if (index >= currentGroupByExprData.length) {
             currentGroupByExprData = Arrays.copyOf(currentGroupByExprData, currentGroupByExprData.length * 2);
@@ -293,7 +381,86 @@ public final void setCurrentGroupExprData(Expression expr, Object obj) {
     }
 
     final Object[] createRow() {
-        return new Object[Math.max(exprToIndexInGroupByData.size(), expressions.size())];
+        return new Object[Math.max(exprCount, expressions.size())];
+    }
+
+    /**
+     * Get the index of merged data for the expression with the specified SQL.
+     *
+     * @param sql
+     *            the SQL of the expression
+     * @return the index
+     */
+    final int getMergedIndex(String sql) {
+        HashMap<String, Integer> map = sqlToIndexInGroupByData;
+        if (map == null) {
+            sqlToIndexInGroupByData = map = new HashMap<>();
+        }
+        Integer index = map.get(sql);
+        if (index == null) {
+            index = exprCount++;
+            map.put(sql, index);
+        }
+        return index;
+    }
+
+    /**
+     * Get the indexes of merged data for the expressions of a copy of the
+     * query.
+     *
+     * @param part
+     *            the group data of the copy
+     * @param exprs
+     *            the array to fill with the expressions of the copy to merge;
+     *            equal expressions are only merged once
+     * @return the indexes of merged data for the expressions of the copy
+     */
+    final int[] getMergedIndexes(SelectGroups part, Expression[] exprs) {
+        int[] indexes = new int[exprs.length];
+        HashSet<Integer> merged = new HashSet<>();
+        for (Entry<Expression, Integer> entry : part.exprToIndexInGroupByData.entrySet()) {
+            Expression expr = entry.getKey();
+            int index = entry.getValue();
+            int mergedIndex = getMergedIndex(expr.getSQL());
+            // equal expressions of the copy have gathered the same data
+            if (merged.add(mergedIndex)) {
+                exprs[index] = expr;
+                indexes[index] = mergedIndex;
+            }
+        }
+        return indexes;
+    }
+
+    /**
+     * Merge the expression data of a group gathered by a copy of the query.
+     *
+     * @param exprs
+     *            the expressions of the copy
+     * @param indexes
+     *            the indexes of merged data for the expressions of the copy
+     * @param target
+     *            the data of the group to update
+     * @param source
+     *            the data of the same group gathered by the copy
+     */
+    final void mergeRow(Expression[] exprs, int[] indexes, Object[] target, Object[] source) {
+        for (int i = 0, l = Math.min(exprs.length, source.length); i < l; i++) {
+            Expression expr = exprs[i];
+            Object data = source[i];
+            if (expr == null || data == null) {
+                continue;
+            }
+            int index = indexes[i];
+            Object old = target[index];
+            if (old == null) {
+                target[index] = data;
+            } else if (expr instanceof AbstractAggregate) {
+                ((AbstractAggregate) expr).mergeAggregate(session, old, data);
+            } else if (!session.getDatabase().areEqual((Value) old, (Value) data)) {
+                // a column that is not grouped, see ExpressionColumn
+                throw DbException.get(ErrorCode.MUST_GROUP_BY_COLUMN_1, expr.getSQL());
+            }
+        }
     }
 
     /**
@@ -356,6 +523,8 @@ public int getCurrentGroupRowId() {
     public void reset() {
         currentGroupByExprData = null;
         exprToIndexInGroupByData.clear();
+        sqlToIndexInGroupByData = null;
+        exprCount = 0;
         windowData.clear();
         windowPartitionData.clear();
         currentGroupRowId = 0;
@@ -367,6 +536,19 @@ public void reset() {
      */
     public abstract void nextSource();
 
+    /**
+     * Invoked for each source row instead of {@link #nextSource()} if the
+     * number of groups in memory is limited. A new group is only created if
+     * there are less groups than the specified maximum; otherwise the row is
+     * not evaluated, and the caller needs to process it later.
+     *
+     * @param maxGroups
+     *            the maximum number of groups
+     * @return null if the row belongs to a group, or the key of the row if the
+     *         group would need to be created
+     */
+    public abstract ValueArray nextSource(int maxGroups);
+
     /**
      * Invoked after all source rows are evaluated.
      */
@@ -386,9 +568,18 @@ public void done() {
      *
      * @see #next()
      */
-    public void remove() {
-        throw new UnsupportedOperationException();
-    }
+    public abstract void remove();
+
+    /**
+     * Merges the group data gathered by a copy of the query from a part of the
+     * source rows. Parts should be merged in the order of source rows.
+     * Expressions of the copy are matched with expressions of this query by
+     * their SQL.
+     *
+     * @param part
+     *            the group data of the copy
+     */
+    public abstract void merge(SelectGroups part);
 
     /**
      * Resets this group data for reuse in lazy mode.
@@ -402,7 +593,7 @@ public void resetLazy() {
      * Moves group data to the next group in lazy mode.
      */
     public void nextLazyGroup() {
-        currentGroupByExprData = new Object[Math.max(exprToIndexInGroupByData.size(), expressions.size())];
+        currentGroupByExprData = createRow();
     }
 
     /**
@@ -362,6 +362,13 @@ public void setForUpdate(boolean forUpdate) {
         isForUpdate = forUpdate;
     }
 
+    @Override
+    public void setForUpdateWait(int forUpdateWait) {
+        left.setForUpdateWait(forUpdateWait);
+        right.setForUpdateWait(forUpdateWait);
+        super.setForUpdateWait(forUpdateWait);
+    }
+
     @Override
     public int getColumnCount() {
         return left.getColumnCount();
@@ -431,7 +438,7 @@ public String getPlanSQL() {
             sampleSizeExpr.getUnenclosedSQL(buff);
         }
         if (isForUpdate) {
-            buff.append("\nFOR UPDATE");
+            appendForUpdateToSQL(buff);
         }
         return buff.toString();
     }
@@ -446,6 +453,11 @@ public boolean isReadOnly() {
         return left.isReadOnly() && right.isReadOnly();
     }
 
+    @Override
+    public boolean isReadOnlyTransactionAllowed() {
+        return !isForUpdate && left.isReadOnlyTransactionAllowed() && right.isReadOnlyTransactionAllowed();
+    }
+
     @Override
     public void updateAggregate(Session s, int stage) {
         left.updateAggregate(s, stage);
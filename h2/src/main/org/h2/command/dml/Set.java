@@ -57,6 +57,7 @@ public boolean isTransactional() {
         case SetTypes.CLUSTER:
         case SetTypes.VARIABLE:
         case SetTypes.QUERY_TIMEOUT:
+        case SetTypes.PARALLELISM:
         case SetTypes.LOCK_TIMEOUT:
         case SetTypes.TRACE_LEVEL_SYSTEM_OUT:
         case SetTypes.TRACE_LEVEL_FILE:
@@ -572,17 +573,55 @@ public int update() {
             }
             break;
         }
+        case SetTypes.PARALLELISM: {
+            int value = getIntValue();
+            if (value < 1) {
+                throw DbException.getInvalidValueException("PARALLELISM", value);
+            }
+            session.setParallelism(value);
+            break;
+        }
         default:
             DbException.throwInternalError("type="+type);
         }
         // the meta data information has changed
         database.getNextModificationDataId();
-        // query caches might be affected as well, for example
-        // when changing the compatibility mode
-        database.getNextModificationMetaId();
+        if (affectsPreparedStatements()) {
+            // query caches might be affected as well, for example
+            // when changing the compatibility mode
+            database.getNextModificationMetaId();
+        }
         return 0;
     }
 
+    /**
+     * Check whether statements that were prepared before need to be prepared
+     * again. Settings that are only read when running a statement don't
+     * invalidate the query caches; they are set each time a connection is
+     * opened with settings in the database URL.
+     *
+     * @return true if the prepared statements are affected
+     */
+    private boolean affectsPreparedStatements() {
+        switch (type) {
+        case SetTypes.CACHE_SIZE:
+        case SetTypes.LOCK_TIMEOUT:
+        case SetTypes.LOG:
+        case SetTypes.MAX_LOG_SIZE:
+        case SetTypes.MAX_MEMORY_UNDO:
+        case SetTypes.MULTI_THREADED:
+        case SetTypes.QUERY_TIMEOUT:
+        case SetTypes.THROTTLE:
+        case SetTypes.TRACE_LEVEL_FILE:
+        case SetTypes.TRACE_LEVEL_SYSTEM_OUT:
+        case SetTypes.TRACE_MAX_FILE_SIZE:
+        case SetTypes.WRITE_DELAY:
+            return false;
+        default:
+            return true;
+        }
+    }
+
     private int getIntValue() {
         expression = expression.optimize(session);
         return expression.getValue(session).getInt();
@@ -242,6 +242,7 @@ public void prepare() {
             condition.mapColumns(targetTableFilter, 0, Expression.MAP_INITIAL);
             condition = condition.optimize(session);
             condition.createIndexConditions(session, targetTableFilter);
+            targetTableFilter.setFullCondition(condition);
         }
         for (Column c : columns) {
             Expression e = expressionMap.get(c);
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2004-2018 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.engine;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import org.h2.Driver;
+import org.h2.command.ddl.Analyze;
+import org.h2.message.Trace;
+import org.h2.table.Table;
+
+/**
+ * The analyze thread updates the statistics of the tables that were changed a
+ * lot, so that the session that made the changes does not have to wait for
+ * it. The thread is started when a table is added, and stops when there are
+ * no more tables to analyze.
+ */
+class AnalyzeThread implements Runnable {
+
+    private final Database database;
+
+    /**
+     * The tables to analyze, in the order they were added.
+     */
+    private final LinkedHashSet<Table> tables = new LinkedHashSet<>();
+
+    private Thread thread;
+
+    /**
+     * The table that is currently analyzed.
+     */
+    private Table current;
+
+    /**
+     * The session of the thread, while the thread is running.
+     */
+    private Session session;
+
+    private volatile boolean stop;
+
+    AnalyzeThread(Database database) {
+        this.database = database;
+    }
+
+    /**
+     * Add a table to analyze. If the table was already added, but not yet
+     * analyzed, it is only analyzed once.
+     *
+     * @param table the table
+     */
+    synchronized void add(Table table) {
+        if (stop || !tables.add(table) || thread != null) {
+            return;
+        }
+        thread = new Thread(this, "H2 Analyze " + database.getShortName());
+        Driver.setThreadContextClassLoader(thread);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        Session s = database.createSystemSession();
+        synchronized (this) {
+            session = s;
+        }
+        try {
+            analyzeTables(s);
+        } finally {
+            synchronized (this) {
+                session = null;
+            }
+            try {
+                s.close();
+            } catch (Exception e) {
+                // ignore, the database may be closed
+            }
+        }
+    }
+
+    private void analyzeTables(Session s) {
+        while (true) {
+            Table table;
+            synchronized (this) {
+                Iterator<Table> it = tables.iterator();
+                if (stop || !it.hasNext()) {
+                    thread = null;
+                    return;
+                }
+                table = it.next();
+                it.remove();
+                current = table;
+            }
+            try {
+                Analyze.analyzeTable(s, table, database.getSettings().analyzeSample / 10, false);
+                s.commit(true);
+                database.unlockMeta(s);
+            } catch (Exception e) {
+                if (stop) {
+                    // the database is closed
+                    break;
+                }
+                // for example if the table was dropped in the meantime
+                database.getTrace(Trace.DATABASE).debug(e, "analyze " + table.getSQL());
+                try {
+                    s.rollback();
+                    database.unlockMeta(s);
+                } catch (Exception e2) {
+                    // ignore
+                }
+            } finally {
+                synchronized (this) {
+                    current = null;
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove a table that was added, and wait until the table is no longer
+     * analyzed by this thread.
+     *
+     * @param table the table
+     */
+    synchronized void remove(Table table) {
+        tables.remove(table);
+        while (current == table) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                // ignore
+            }
+        }
+    }
+
+    /**
+     * Stop the thread and wait until it has ended. This method is called when
+     * closing the database. The analysis of the current table is canceled.
+     * The wait is limited to the lock timeout, because the caller may hold a
+     * lock that the thread is waiting for.
+     */
+    void stopThread() {
+        Thread t;
+        synchronized (this) {
+            stop = true;
+            tables.clear();
+            t = thread;
+            if (session != null) {
+                session.cancel();
+            }
+        }
+        if (t != null) {
+            try {
+                // join(0) would wait forever
+                t.join(Math.max(1, database.getLockTimeout()));
+            } catch (InterruptedException e) {
+                // ignore
+            }
+        }
+    }
+
+}
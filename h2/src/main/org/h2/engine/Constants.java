@@ -444,6 +444,18 @@ public class Constants {
      */
     public static final String START_URL = "jdbc:h2:";
 
+    /**
+     * The maximum number of most common values of a column to keep when
+     * running ANALYZE.
+     */
+    public static final int STATISTICS_COMMON_VALUES = 10;
+
+    /**
+     * The number of buckets of the histogram of a column calculated by
+     * ANALYZE.
+     */
+    public static final int STATISTICS_HISTOGRAM_BUCKETS = 20;
+
     /**
      * The file name suffix of all database files.
      */
@@ -20,6 +20,7 @@
 import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
@@ -30,6 +31,9 @@
 import org.h2.api.TableEngine;
 import org.h2.command.CommandInterface;
 import org.h2.command.ddl.CreateTableData;
+import org.h2.command.dml.MaterializedView;
+import org.h2.command.dml.PlanCache;
+import org.h2.command.dml.ResultCache;
 import org.h2.command.dml.SetTypes;
 import org.h2.constraint.Constraint;
 import org.h2.index.Cursor;
@@ -162,6 +166,10 @@ public class Database implements DataHandler {
     private Index metaIdIndex;
     private FileLock lock;
     private WriterThread writer;
+    private volatile ForkJoinPool parallelExecutor;
+    private final AnalyzeThread analyzer = new AnalyzeThread(this);
+    private final PlanCache planCache;
+    private final ResultCache resultCache;
     private volatile boolean starting;
     private TraceSystem traceSystem;
     private Trace trace;
@@ -244,6 +252,9 @@ public Database(ConnectionInfo ci, String cipher) {
         String name = ci.getName();
         this.dbSettings = ci.getDbSettings();
         this.reconnectCheckDelayNs = TimeUnit.MILLISECONDS.toNanos(dbSettings.reconnectCheckDelay);
+        this.planCache = dbSettings.planCacheSize > 0 ? new PlanCache(dbSettings.planCacheSize) : null;
+        this.resultCache = dbSettings.resultCacheSize > 0 ? new ResultCache(dbSettings.resultCacheSize * 1024L)
+                : null;
         this.compareMode = CompareMode.getInstance(null, 0);
         this.persistent = ci.isPersistent();
         this.filePasswordHash = ci.getFilePasswordHash();
@@ -848,6 +859,7 @@ private synchronized void open(int traceLevelFile, int traceLevelSystemOut, Conn
             store.removeTemporaryMaps(objectIds);
         }
         recompileInvalidViews(systemSession);
+        initMaterializedViews(systemSession);
         starting = false;
         if (!readOnly) {
             // set CREATE_BUILD in a new database
@@ -971,6 +983,19 @@ private void recompileInvalidViews(Session session) {
         TableView.clearIndexCaches(session.getDatabase());
     }
 
+    private void initMaterializedViews(Session session) {
+        for (Table obj : getAllTablesAndViews(false)) {
+            MaterializedView view = obj.getMaterializedView();
+            if (view != null) {
+                try {
+                    view.init(session);
+                } catch (DbException e) {
+                    trace.error(e, "init materialized view {0}", obj.getSQL());
+                }
+            }
+        }
+    }
+
     private void initMetaTables() {
         if (metaTablesInitialized) {
             return;
@@ -1306,6 +1331,27 @@ public User getUser(String name) {
         return user;
     }
 
+    /**
+     * Create a session of the system user for internal use. The session is
+     * not listed with the user sessions.
+     *
+     * @return the session
+     */
+    synchronized Session createSystemSession() {
+        return createInternalSession(systemUser);
+    }
+
+    /**
+     * Create a session of the given user for internal use. The session is not
+     * listed with the user sessions.
+     *
+     * @param user the user
+     * @return the session
+     */
+    synchronized Session createInternalSession(User user) {
+        return new Session(this, user, ++nextSessionId);
+    }
+
     /**
      * Create a session for the given user.
      *
@@ -1336,15 +1382,17 @@ synchronized Session createSession(User user) {
      * @param session the session
      */
     public synchronized void removeSession(Session session) {
+        // sessions for internal use are not listed with the user sessions,
+        // and closing them doesn't close the database
+        boolean userSession = session == null;
         if (session != null) {
             exclusiveSession.compareAndSet(session, null);
-            userSessions.remove(session);
+            userSession = userSessions.remove(session);
             if (session != systemSession && session != lobSession) {
                 trace.info("disconnecting session #{0}", session.getId());
             }
         }
-        if (userSessions.isEmpty() &&
-                session != systemSession && session != lobSession) {
+        if (userSessions.isEmpty() && userSession) {
             if (closeDelay == 0) {
                 close(false);
             } else if (closeDelay < 0) {
@@ -1511,6 +1559,13 @@ private void stopWriter() {
         }
     }
 
+    private void stopParallelExecutor() {
+        if (parallelExecutor != null) {
+            parallelExecutor.shutdownNow();
+            parallelExecutor = null;
+        }
+    }
+
     /**
      * Close all open files and unlock the database.
      *
@@ -1519,6 +1574,8 @@ private void stopWriter() {
     private synchronized void closeOpenFilesAndUnlock(boolean flush) {
         try {
             stopWriter();
+            analyzer.stopThread();
+            stopParallelExecutor();
             if (pageStore != null) {
                 if (flush) {
                     try {
@@ -1829,6 +1886,10 @@ public Session[] getSessions(boolean includingSystemSession) {
      * @param obj the database object
      */
     public void updateMeta(Session session, DbObject obj) {
+        if (planCache != null && obj instanceof Table) {
+            // for example, the statistics changed
+            planCache.invalidate((Table) obj);
+        }
         if (isMVStore()) {
             int id = obj.getId();
             if (id > 0) {
@@ -1888,6 +1949,11 @@ private synchronized void updateMetaAndFirstLevelChildren(Session session, DbObj
                 }
             }
         }
+        if (obj instanceof Table) {
+            for (MaterializedView view : ((Table) obj).getMaterializedViews()) {
+                updateMeta(session, view.getTable());
+            }
+        }
     }
 
     /**
@@ -2944,6 +3010,64 @@ public Session getLobSession() {
         return lobSession;
     }
 
+    /**
+     * Get the cache of the join orders of queries.
+     *
+     * @return the cache, or null if disabled
+     */
+    public PlanCache getPlanCache() {
+        return planCache;
+    }
+
+    /**
+     * Get the cache of the results of queries.
+     *
+     * @return the cache, or null if disabled
+     */
+    public ResultCache getResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * Get the executor that runs the parts of parallel queries. The threads
+     * are started on demand.
+     *
+     * @return the executor
+     */
+    public ForkJoinPool getParallelExecutor() {
+        ForkJoinPool executor = parallelExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = parallelExecutor;
+                if (executor == null) {
+                    parallelExecutor = executor = new ForkJoinPool();
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Analyze the table in the background. This method is called after a
+     * transaction that changed many rows of the table was committed.
+     *
+     * @param table the table
+     */
+    public void analyzeInBackground(Table table) {
+        analyzer.add(table);
+    }
+
+    /**
+     * Do not analyze the table in the background, and wait until a running
+     * background analysis of the table is finished. This method is called
+     * before the table is analyzed explicitly.
+     *
+     * @param table the table
+     */
+    public void cancelAnalyzeInBackground(Table table) {
+        analyzer.remove(table);
+    }
+
     public void setLogMode(int log) {
         if (log < 0 || log > 2) {
             throw DbException.getInvalidValueException("LOG", log);
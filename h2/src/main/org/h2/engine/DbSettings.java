@@ -43,9 +43,12 @@ public class DbSettings extends SettingsBase {
      * After changing this many rows, ANALYZE is automatically run for a table.
      * Automatically running ANALYZE is disabled if set to 0. If set to 1000,
      * then ANALYZE will run against each user table after about 1000 changes to
-     * that table. The time between running ANALYZE doubles each time since
-     * starting the database. It is not run on local temporary tables, and
-     * tables that have a trigger on SELECT.
+     * that table. After that, the number of changes until ANALYZE is run again
+     * grows with the number of rows in the table (by a tenth of the row
+     * count). ANALYZE is run in a background thread after the changes are
+     * committed, and reads a random sample of ANALYZE_SAMPLE / 10 rows. It is
+     * not run on local temporary tables, and tables that have a trigger on
+     * SELECT.
      */
     public final int analyzeAuto = get("ANALYZE_AUTO", 2000);
 
@@ -55,6 +58,15 @@ public class DbSettings extends SettingsBase {
      */
     public final int analyzeSample = get("ANALYZE_SAMPLE", 10_000);
 
+    /**
+     * Database setting <code>COMPILE_EXPRESSIONS</code> (default: 0).<br />
+     * Compile the condition and the select list of a query without grouping
+     * to Java byte code when the prepared query was executed this many times.
+     * Integer values are then compared and computed without creating value
+     * objects. A Java compiler needs to be available. Disabled if set to 0.
+     */
+    public final int compileExpressions = get("COMPILE_EXPRESSIONS", 0);
+
     /**
      * Database setting <code>DATABASE_TO_UPPER</code> (default: true).<br />
      * Database short names are converted to uppercase for the DATABASE()
@@ -183,6 +195,14 @@ public class DbSettings extends SettingsBase {
     public final boolean optimizeEvaluatableSubqueries = get(
             "OPTIMIZE_EVALUATABLE_SUBQUERIES", true);
 
+    /**
+     * Database setting <code>OPTIMIZE_HASH_JOIN</code> (default: true).<br />
+     * Join a table using a hash table that is built once per query, if the
+     * table would otherwise be read completely for each row of the outer
+     * tables.
+     */
+    public final boolean optimizeHashJoin = get("OPTIMIZE_HASH_JOIN", true);
+
     /**
      * Database setting <code>OPTIMIZE_INSERT_FROM_SELECT</code>
      * (default: true).<br />
@@ -206,6 +226,22 @@ public class DbSettings extends SettingsBase {
      */
     public final boolean optimizeInSelect = get("OPTIMIZE_IN_SELECT", true);
 
+    /**
+     * Database setting <code>OPTIMIZE_JOIN_ORDER_TABLES</code> (default:
+     * 12).<br />
+     * The maximum number of tables of a join for which the best join order is
+     * found using dynamic programming. The join orders of more tables are
+     * found using a faster but less accurate greedy algorithm.
+     */
+    public final int optimizeJoinOrderTables = get("OPTIMIZE_JOIN_ORDER_TABLES", 12);
+
+    /**
+     * Database setting <code>OPTIMIZE_MERGE_JOIN</code> (default: true).<br />
+     * Join a table by reading its index sequentially, if the rows of the
+     * first table are read in the order of the join column.
+     */
+    public final boolean optimizeMergeJoin = get("OPTIMIZE_MERGE_JOIN", true);
+
     /**
      * Database setting <code>OPTIMIZE_OR</code> (default: true).<br />
      * Convert (C=? OR C=?) to (C IN(?, ?)).
@@ -226,6 +262,13 @@ public class DbSettings extends SettingsBase {
      */
     public final boolean optimizeUpdate = get("OPTIMIZE_UPDATE", true);
 
+    /**
+     * Database setting <code>OPTIMIZE_VECTORIZED</code> (default: true).<br />
+     * Evaluate the conditions and aggregates of grouped queries over a single
+     * table for batches of rows, if they only use integer values.
+     */
+    public final boolean optimizeVectorized = get("OPTIMIZE_VECTORIZED", true);
+
     /**
      * Database setting <code>PAGE_STORE_MAX_GROWTH</code>
      * (default: 128 * 1024).<br />
@@ -248,6 +291,16 @@ public class DbSettings extends SettingsBase {
      */
     public final boolean pageStoreTrim = get("PAGE_STORE_TRIM", true);
 
+    /**
+     * Database setting <code>PLAN_CACHE_SIZE</code> (default: 256).<br />
+     * The number of join orders of queries that are cached for all sessions.
+     * When the same query is prepared again, even in another session, the
+     * cached join order is used instead of calculating it again, unless the
+     * indexes, statistics, or the row counts of the tables changed. Set to 0
+     * to disable the cache.
+     */
+    public final int planCacheSize = get("PLAN_CACHE_SIZE", 256);
+
     /**
      * Database setting <code>QUERY_CACHE_SIZE</code> (default: 8).<br />
      * The size of the query cache, in number of cached statements. Each session
@@ -276,6 +329,16 @@ public class DbSettings extends SettingsBase {
      */
     public final int reconnectCheckDelay = get("RECONNECT_CHECK_DELAY", 200);
 
+    /**
+     * Database setting <code>RESULT_CACHE_SIZE</code> (default: 1024).<br />
+     * The memory used to cache the results of queries for all sessions, in
+     * KB. Only the results of deterministic queries over tables where the
+     * result cache was enabled using ALTER TABLE SET RESULT_CACHE are cached.
+     * A cached result is used until the data of one of the tables is changed.
+     * Set to 0 to disable the cache.
+     */
+    public final int resultCacheSize = get("RESULT_CACHE_SIZE", 1024);
+
     /**
      * Database setting <code>REUSE_SPACE</code> (default: true).<br />
      * If disabled, all changes are appended to the database file, and existing
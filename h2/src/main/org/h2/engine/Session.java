@@ -20,7 +20,6 @@
 import org.h2.command.CommandInterface;
 import org.h2.command.Parser;
 import org.h2.command.Prepared;
-import org.h2.command.ddl.Analyze;
 import org.h2.command.dml.Query;
 import org.h2.constraint.Constraint;
 import org.h2.index.Index;
@@ -112,8 +111,14 @@ public enum State { INIT, RUNNING, BLOCKED, SLEEP, CLOSED }
     private boolean undoLogEnabled = true;
     private boolean redoLogBinary = true;
     private boolean autoCommitAtTransactionEnd;
+    private boolean readOnlyHint;
     private String currentTransactionName;
     private volatile long cancelAtNs;
+    /**
+     * The session of the query, if this session runs a part of a parallel
+     * query.
+     */
+    private Session parallelQuerySession;
     private boolean closed;
     private final long sessionStart = System.currentTimeMillis();
     private ValueTimestampTimeZone transactionStart;
@@ -137,6 +142,7 @@ public enum State { INIT, RUNNING, BLOCKED, SLEEP, CLOSED }
     private boolean joinBatchEnabled;
     private boolean forceJoinOrder;
     private boolean lazyQueryExecution;
+    private int parallelism = 1;
     private ColumnNamerConfiguration columnNamerConfiguration;
     /**
      * Tables marked for ANALYZE after the current transaction is committed.
@@ -188,6 +194,38 @@ public boolean isLazyQueryExecution() {
         return lazyQueryExecution;
     }
 
+    /**
+     * Set the maximum number of threads used to execute a query.
+     *
+     * @param parallelism the number of threads, 1 to disable parallel
+     *            execution
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Create a session that runs a part of a parallel query of this session in
+     * another thread. The new session has the same user, current schema, and
+     * schema search path, but doesn't share any other state with this
+     * session. The part is canceled if the query of this session is canceled.
+     * The new session is not listed with the user sessions, and must be closed
+     * after use.
+     *
+     * @return the new session
+     */
+    public Session createParallelQuerySession() {
+        Session s = database.createInternalSession(user);
+        s.currentSchemaName = currentSchemaName;
+        s.schemaSearchPath = schemaSearchPath;
+        s.parallelQuerySession = this;
+        return s;
+    }
+
     public void setForceJoinOrder(boolean forceJoinOrder) {
         this.forceJoinOrder = forceJoinOrder;
     }
@@ -547,6 +585,18 @@ public void setAutoCommit(boolean b) {
         autoCommit = b;
     }
 
+    /**
+     * Set the read-only hint of this session. If set, queries that do not
+     * modify data are executed in lightweight read-only transactions even if
+     * auto-commit is disabled. Data modifications are still allowed, the
+     * read-only transaction is replaced with a regular one in this case.
+     *
+     * @param readOnlyHint the new value
+     */
+    public void setReadOnlyHint(boolean readOnlyHint) {
+        this.readOnlyHint = readOnlyHint;
+    }
+
     public int getLockTimeout() {
         return lockTimeout;
     }
@@ -670,22 +720,17 @@ public void setPowerOffCount(int count) {
     public void commit(boolean ddl) {
         checkCommitRollback();
 
-        int rowCount = getDatabase().getSettings().analyzeSample / 10;
-        if (tablesToAnalyze != null) {
-            for (Table table : tablesToAnalyze) {
-                Analyze.analyzeTable(this, table, rowCount, false);
-            }
-            // analyze can lock the meta
-            database.unlockMeta(this);
-        }
+        HashSet<Table> analyze = tablesToAnalyze;
         tablesToAnalyze = null;
 
         currentTransactionName = null;
         transactionStart = null;
         if (transaction != null) {
             try {
+                transaction.commit();
                 // increment the data mod count, so that other sessions
-                // see the changes
+                // see the changes; only after they are visible, as otherwise
+                // a query could cache a result without them
                 // TODO should not rely on locking
                 if (!locks.isEmpty()) {
                     for (Table t : locks) {
@@ -694,7 +739,6 @@ public void commit(boolean ddl) {
                         }
                     }
                 }
-                transaction.commit();
             } finally {
                 transaction = null;
             }
@@ -718,6 +762,12 @@ public void commit(boolean ddl) {
         }
 
         endTransaction();
+        if (analyze != null) {
+            // the changes are visible to other sessions now
+            for (Table table : analyze) {
+                database.analyzeInBackground(table);
+            }
+        }
     }
 
     private void removeTemporaryLobs(boolean onTimeout) {
@@ -1264,6 +1314,13 @@ public void setCurrentCommand(Command command, Object generatedKeysRequest) {
      */
     public void checkCanceled() {
         throttle();
+        if (parallelQuerySession != null) {
+            // only read: the query is canceled by its own session
+            long cancel = parallelQuerySession.cancelAtNs;
+            if (cancel != 0 && System.nanoTime() >= cancel) {
+                throw DbException.get(ErrorCode.STATEMENT_WAS_CANCELED);
+            }
+        }
         if (cancelAtNs == 0) {
             return;
         }
@@ -1707,6 +1764,31 @@ private long getStatementSavepoint() {
      * Start a new statement within a transaction.
      */
     public void startStatementWithinTransaction() {
+        startStatementWithinTransaction(null);
+    }
+
+    /**
+     * Start a new statement within a transaction. Commands that don't modify
+     * any data are executed within a lightweight read-only transaction, when
+     * possible.
+     *
+     * @param command the command to execute, or null if unknown
+     */
+    public void startStatementWithinTransaction(Command command) {
+        boolean readOnly = command != null && command.isReadOnlyTransactionAllowed();
+        if (transaction != null && transaction.isReadOnly() && !readOnly) {
+            // read-only transaction has nothing to commit, a regular
+            // transaction is started instead
+            transaction.commit();
+            transaction = null;
+        }
+        if (transaction == null && readOnly && (autoCommit || readOnlyHint)) {
+            MVTableEngine.Store store = database.getStore();
+            if (store != null && !store.getMvStore().isClosed()) {
+                transaction = store.getTransactionStore().beginReadOnly(id);
+                startStatement = -1;
+            }
+        }
         Transaction transaction = getTransaction();
         if(transaction != null) {
             transaction.markStatementStart();
@@ -1758,7 +1840,8 @@ public boolean isRemote() {
     }
 
     /**
-     * Mark that the given table needs to be analyzed on commit.
+     * Mark that the given table needs to be analyzed in the background after
+     * the transaction is committed.
      *
      * @param table the table
      */
@@ -1782,9 +1865,9 @@ public int getBlockingSessionId() {
     }
 
     @Override
-    public void onRollback(MVMap<Object, VersionedValue> map, Object key,
-                            VersionedValue existingValue,
-                            VersionedValue restoredValue) {
+    public void onRollback(MVMap<Object, Object> map, Object key,
+                            Object existingValue,
+                            Object restoredValue) {
         // Here we are relying on the fact that map which backs table's primary index
         // has the same name as the table itself
         MVTableEngine.Store store = database.getStore();
@@ -1819,8 +1902,8 @@ public void onRollback(MVMap<Object, VersionedValue> map, Object key,
     }
 
     private static Row getRowFromVersionedValue(MVTable table, long recKey,
-                                                VersionedValue versionedValue) {
-        Object value = versionedValue == null ? null : versionedValue.value;
+                                                Object versionedValue) {
+        Object value = VersionedValue.getCurrentValue(versionedValue);
         if (value == null) {
             return null;
         }
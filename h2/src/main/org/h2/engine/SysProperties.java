@@ -188,6 +188,15 @@ public class SysProperties {
     public static final int DELAY_WRONG_PASSWORD_MAX =
             Utils.getProperty("h2.delayWrongPasswordMax", 4000);
 
+    /**
+     * System property <code>h2.indexBuildMemory</code>
+     * (default: 32768 per GB of available RAM).<br />
+     * The amount of memory in KB used to sort the rows of a table when an
+     * index is created. Larger tables are sorted in blocks of this size.
+     */
+    public static final int INDEX_BUILD_MEMORY =
+            getAutoScaledForMemoryProperty("h2.indexBuildMemory", 32 * 1024);
+
     /**
      * System property <code>h2.javaSystemCompiler</code> (default: true).<br />
      * Whether to use the Java system compiler
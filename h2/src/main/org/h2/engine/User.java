@@ -112,6 +112,10 @@ public void checkRight(Table table, int rightMask) {
     public boolean hasRight(Table table, int rightMask) {
         if (rightMask != Right.SELECT && !systemUser && table != null) {
             table.checkWritingAllowed();
+            if (rightMask != Right.ALL && table.getMaterializedView() != null) {
+                // the rows are only changed by the database
+                throw DbException.getUnsupportedException("MATERIALIZED VIEW");
+            }
         }
         if (admin) {
             return true;
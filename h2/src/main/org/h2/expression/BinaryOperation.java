@@ -9,6 +9,8 @@
 import org.h2.engine.Session;
 import org.h2.expression.IntervalOperation.IntervalOpType;
 import org.h2.expression.function.Function;
+import org.h2.expression.vector.VectorArithmetic;
+import org.h2.expression.vector.VectorExpression;
 import org.h2.message.DbException;
 import org.h2.table.ColumnResolver;
 import org.h2.table.TableFilter;
@@ -401,6 +403,31 @@ private void swap() {
         right = temp;
     }
 
+    @Override
+    public VectorExpression getVectorExpression(Session session, TableFilter filter) {
+        switch (opType) {
+        case PLUS:
+        case MINUS:
+        case MULTIPLY:
+            break;
+        default:
+            return null;
+        }
+        if (!VectorExpression.isSupportedType(dataType) || !VectorExpression.isSupportedType(left.getType())
+                || !VectorExpression.isSupportedType(right.getType())) {
+            return null;
+        }
+        VectorExpression l = left.getVectorExpression(session, filter);
+        if (l == null) {
+            return null;
+        }
+        VectorExpression r = right.getVectorExpression(session, filter);
+        if (r == null) {
+            return null;
+        }
+        return new VectorArithmetic(opType, dataType, l, r);
+    }
+
     @Override
     public void setEvaluatable(TableFilter tableFilter, boolean b) {
         left.setEvaluatable(tableFilter, b);
@@ -454,6 +481,15 @@ public int getCost() {
         return left.getCost() + right.getCost() + 1;
     }
 
+    /**
+     * Get the operation type.
+     *
+     * @return the operation type
+     */
+    public OpType getOperationType() {
+        return opType;
+    }
+
     @Override
     public int getSubexpressionCount() {
         return 2;
@@ -9,6 +9,8 @@
 
 import org.h2.engine.Database;
 import org.h2.engine.Session;
+import org.h2.expression.vector.VectorExpression;
+import org.h2.index.bitmap.BitmapCondition;
 import org.h2.result.ResultInterface;
 import org.h2.table.Column;
 import org.h2.table.ColumnResolver;
@@ -271,6 +273,32 @@ public void createIndexConditions(Session session, TableFilter filter) {
         // default is do nothing
     }
 
+    /**
+     * Get a version of this expression that computes the values of a batch of
+     * rows of the specified table filter at once.
+     *
+     * @param session the session
+     * @param filter the table filter
+     * @return the vectorized expression, or null if not supported
+     */
+    @SuppressWarnings("unused")
+    public VectorExpression getVectorExpression(Session session, TableFilter filter) {
+        return null;
+    }
+
+    /**
+     * Get a version of this condition that finds the matching rows of the
+     * specified table filter using bitmap indexes.
+     *
+     * @param session the session
+     * @param filter the table filter
+     * @return the bitmap condition, or null if not supported
+     */
+    @SuppressWarnings("unused")
+    public BitmapCondition getBitmapCondition(Session session, TableFilter filter) {
+        return null;
+    }
+
     /**
      * Get the column name or alias name of this expression.
      *
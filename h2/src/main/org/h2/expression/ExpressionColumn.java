@@ -13,6 +13,8 @@
 import org.h2.engine.Database;
 import org.h2.engine.Session;
 import org.h2.expression.condition.Comparison;
+import org.h2.expression.vector.VectorColumn;
+import org.h2.expression.vector.VectorExpression;
 import org.h2.index.IndexCondition;
 import org.h2.message.DbException;
 import org.h2.schema.Constant;
@@ -307,6 +309,7 @@ public boolean isEverything(ExpressionVisitor visitor) {
         case ExpressionVisitor.READONLY:
         case ExpressionVisitor.DETERMINISTIC:
         case ExpressionVisitor.QUERY_COMPARABLE:
+        case ExpressionVisitor.PARALLELIZABLE:
             return true;
         case ExpressionVisitor.INDEPENDENT:
             return this.queryLevel < visitor.getQueryLevel();
@@ -352,6 +355,15 @@ public int getCost() {
         return 2;
     }
 
+    @Override
+    public VectorExpression getVectorExpression(Session session, TableFilter filter) {
+        if (getTableFilter() != filter || column.getColumnId() < 0
+                || !VectorExpression.isSupportedType(column.getType())) {
+            return null;
+        }
+        return new VectorColumn(column.getColumnId());
+    }
+
     @Override
     public void createIndexConditions(Session session, TableFilter filter) {
         TableFilter tf = getTableFilter();
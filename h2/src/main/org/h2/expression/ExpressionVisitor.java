@@ -143,6 +143,20 @@ public class ExpressionVisitor {
     public static final ExpressionVisitor QUERY_COMPARABLE_VISITOR =
             new ExpressionVisitor(QUERY_COMPARABLE);
 
+    /**
+     * Can the expression be evaluated by several threads of the same session
+     * concurrently, each for its own part of the rows, with the aggregated
+     * data of the parts merged afterwards? Example: subqueries, user-defined
+     * functions, and sequences are not allowed.
+     */
+    public static final int PARALLELIZABLE = 11;
+
+    /**
+     * The visitor singleton for the type PARALLELIZABLE.
+     */
+    public static final ExpressionVisitor PARALLELIZABLE_VISITOR =
+            new ExpressionVisitor(PARALLELIZABLE);
+
     private final int type;
     private final int queryLevel;
     private final HashSet<DbObject> dependencies;
@@ -8,6 +8,8 @@
 import org.h2.api.ErrorCode;
 import org.h2.engine.Session;
 import org.h2.expression.condition.Comparison;
+import org.h2.expression.vector.VectorConstant;
+import org.h2.expression.vector.VectorExpression;
 import org.h2.message.DbException;
 import org.h2.table.Column;
 import org.h2.table.ColumnResolver;
@@ -103,6 +105,11 @@ public boolean isValueSet() {
         return value != null;
     }
 
+    @Override
+    public VectorExpression getVectorExpression(Session session, TableFilter filter) {
+        return VectorConstant.get(getParamValue());
+    }
+
     @Override
     public void setEvaluatable(TableFilter tableFilter, boolean b) {
         // not bound
@@ -160,6 +167,7 @@ public boolean isEverything(ExpressionVisitor visitor) {
         case ExpressionVisitor.OPTIMIZABLE_AGGREGATE:
         case ExpressionVisitor.DETERMINISTIC:
         case ExpressionVisitor.READONLY:
+        case ExpressionVisitor.PARALLELIZABLE:
         case ExpressionVisitor.GET_COLUMNS1:
         case ExpressionVisitor.GET_COLUMNS2:
             return true;
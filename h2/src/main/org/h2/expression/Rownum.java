@@ -89,6 +89,7 @@ public boolean isEverything(ExpressionVisitor visitor) {
         case ExpressionVisitor.OPTIMIZABLE_AGGREGATE:
         case ExpressionVisitor.DETERMINISTIC:
         case ExpressionVisitor.INDEPENDENT:
+        case ExpressionVisitor.PARALLELIZABLE:
             return false;
         case ExpressionVisitor.EVALUATABLE:
         case ExpressionVisitor.READONLY:
@@ -90,6 +90,7 @@ public boolean isEverything(ExpressionVisitor visitor) {
         case ExpressionVisitor.READONLY:
         case ExpressionVisitor.INDEPENDENT:
         case ExpressionVisitor.QUERY_COMPARABLE:
+        case ExpressionVisitor.PARALLELIZABLE:
             return false;
         case ExpressionVisitor.SET_MAX_DATA_MODIFICATION_ID:
             visitor.addDataModificationId(sequence.getModificationId());
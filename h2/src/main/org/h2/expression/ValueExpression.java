@@ -7,6 +7,8 @@
 
 import org.h2.engine.Session;
 import org.h2.expression.condition.Comparison;
+import org.h2.expression.vector.VectorConstant;
+import org.h2.expression.vector.VectorExpression;
 import org.h2.index.IndexCondition;
 import org.h2.message.DbException;
 import org.h2.table.ColumnResolver;
@@ -79,6 +81,11 @@ public int getType() {
         return value.getType();
     }
 
+    @Override
+    public VectorExpression getVectorExpression(Session session, TableFilter filter) {
+        return VectorConstant.get(value);
+    }
+
     @Override
     public void createIndexConditions(Session session, TableFilter filter) {
         if (value.getType() == Value.BOOLEAN) {
@@ -164,6 +171,7 @@ public boolean isEverything(ExpressionVisitor visitor) {
         case ExpressionVisitor.QUERY_COMPARABLE:
         case ExpressionVisitor.GET_COLUMNS1:
         case ExpressionVisitor.GET_COLUMNS2:
+        case ExpressionVisitor.PARALLELIZABLE:
             return true;
         default:
             throw DbException.throwInternalError("type=" + visitor.getType());
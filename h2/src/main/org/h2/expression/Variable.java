@@ -80,6 +80,7 @@ public boolean isEverything(ExpressionVisitor visitor) {
         case ExpressionVisitor.GET_COLUMNS2:
             return true;
         case ExpressionVisitor.DETERMINISTIC:
+        case ExpressionVisitor.PARALLELIZABLE:
             return false;
         default:
             throw DbException.throwInternalError("type="+visitor.getType());
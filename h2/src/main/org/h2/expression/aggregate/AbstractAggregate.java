@@ -16,6 +16,8 @@
 import org.h2.expression.Expression;
 import org.h2.expression.analysis.DataAnalysisOperation;
 import org.h2.expression.analysis.WindowFrame;
+import org.h2.message.DbException;
+import org.h2.result.SortOrder;
 import org.h2.table.ColumnResolver;
 import org.h2.table.TableFilter;
 import org.h2.value.Value;
@@ -49,6 +51,24 @@ public void setFilterCondition(Expression filterCondition) {
         this.filterCondition = filterCondition;
     }
 
+    /**
+     * Returns the FILTER condition.
+     *
+     * @return the FILTER condition, or null
+     */
+    public Expression getFilterCondition() {
+        return filterCondition;
+    }
+
+    /**
+     * Checks whether this aggregate is a DISTINCT aggregate.
+     *
+     * @return true if DISTINCT was specified
+     */
+    public boolean isDistinct() {
+        return distinct;
+    }
+
     @Override
     public void mapColumnsAnalysis(ColumnResolver resolver, int level, int innerState) {
         if (filterCondition != null) {
@@ -86,6 +106,9 @@ protected void getOrderedResultLoop(Session session, HashMap<Integer, Value> res
             aggregateWholePartition(session, result, ordered, rowIdColumn);
             return;
         }
+        if (aggregateMovingFrames(session, result, ordered, rowIdColumn)) {
+            return;
+        }
         // All other types of frames (slow)
         int size = ordered.size();
         for (int i = 0; i < size; i++) {
@@ -112,6 +135,87 @@ private void aggregateWholePartition(Session session, HashMap<Integer, Value> re
         }
     }
 
+    /**
+     * Aggregates the frames of all rows incrementally, if the aggregate
+     * supports it and the frames are ranges of rows. The rows that enter the
+     * frame of the next row are added to the aggregate data, and the rows that
+     * leave it are removed. If the frame moves backwards, the data is gathered
+     * again. This only saves time: the ordered rows of the partition are
+     * already in memory, and are not spilled to disk.
+     *
+     * @return whether the frames were aggregated
+     */
+    private boolean aggregateMovingFrames(Session session, HashMap<Integer, Value> result,
+            ArrayList<Value[]> ordered, int rowIdColumn) {
+        Object aggregateData = createFrameAggregateData();
+        if (aggregateData == null) {
+            return false;
+        }
+        SortOrder sortOrder = getOverOrderBySort();
+        // the rows from start to end are in the aggregate data
+        int start = 0, end = -1;
+        for (int i = 0, size = ordered.size(); i < size; i++) {
+            int[] range = WindowFrame.getRange(over, session, ordered, sortOrder, i);
+            if (range == null) {
+                return false;
+            }
+            int s = range[0], e = range[1];
+            Value value;
+            if (e < s) {
+                value = getAggregatedValue(session, createAggregateData());
+            } else {
+                if (s < start || e < end || s > end) {
+                    aggregateData = createFrameAggregateData();
+                    start = s;
+                    end = s - 1;
+                }
+                for (; start < s; start++) {
+                    if (!removeFromExpressions(session, aggregateData, ordered.get(start))) {
+                        aggregateData = createFrameAggregateData();
+                        start = s;
+                        end = s - 1;
+                        break;
+                    }
+                }
+                while (end < e) {
+                    updateFromExpressions(session, aggregateData, ordered.get(++end));
+                }
+                value = getAggregatedValue(session, aggregateData);
+            }
+            result.put(ordered.get(i)[rowIdColumn].getInt(), value);
+        }
+        return true;
+    }
+
+    /**
+     * Creates the aggregate data for frames that are aggregated incrementally.
+     * The data needs to support removal of values in the order they were
+     * added.
+     *
+     * @return the aggregate data, or null if this aggregate doesn't support
+     *         incremental aggregation of frames
+     */
+    protected Object createFrameAggregateData() {
+        return null;
+    }
+
+    /**
+     * Removes the remembered expressions of the first row from the frame
+     * aggregate data.
+     *
+     * @param session
+     *            the session
+     * @param aggregateData
+     *            aggregate data created by {@link #createFrameAggregateData()}
+     * @param array
+     *            values of expressions
+     * @return false if the value can't be removed, and the data needs to be
+     *         gathered again
+     */
+    protected boolean removeFromExpressions(Session session, Object aggregateData, Value[] array) {
+        return false;
+    }
+
     /**
      * Updates the provided aggregate data from the remembered expressions.
      *
@@ -150,6 +254,22 @@ protected void updateAggregate(Session session, SelectGroups groupData, int grou
      */
     protected abstract void updateAggregate(Session session, Object aggregateData);
 
+    /**
+     * Merges the partial aggregate data gathered by another instance of this
+     * aggregate, as used by parallel queries.
+     *
+     * @param session
+     *            the session
+     * @param aggregateData
+     *            aggregate data to update
+     * @param other
+     *            aggregate data gathered from the source rows that follow the
+     *            rows of the aggregate data to update
+     */
+    public void mergeAggregate(Session session, Object aggregateData, Object other) {
+        throw DbException.throwInternalError(getSQL());
+    }
+
     @Override
     protected void updateGroupAggregates(Session session, int stage) {
         if (filterCondition != null) {
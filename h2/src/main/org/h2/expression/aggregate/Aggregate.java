@@ -12,6 +12,7 @@
 import java.util.Map.Entry;
 import org.h2.api.ErrorCode;
 import org.h2.command.dml.Select;
+import org.h2.command.dml.SelectGroups;
 import org.h2.command.dml.SelectOrderBy;
 import org.h2.engine.Database;
 import org.h2.engine.Mode;
@@ -19,8 +20,10 @@
 import org.h2.expression.Expression;
 import org.h2.expression.ExpressionColumn;
 import org.h2.expression.ExpressionVisitor;
+import org.h2.expression.Parameter;
 import org.h2.expression.Subquery;
 import org.h2.expression.analysis.Window;
+import org.h2.expression.vector.VectorExpression;
 import org.h2.index.Cursor;
 import org.h2.index.Index;
 import org.h2.message.DbException;
@@ -154,6 +157,16 @@ public enum AggregateType {
          * The aggregate type for ENVELOPE(expression).
          */
         ENVELOPE,
+
+        /**
+         * The aggregate type for APPROX_COUNT_DISTINCT(expression).
+         */
+        APPROX_COUNT_DISTINCT,
+
+        /**
+         * The aggregate type for APPROX_PERCENTILE(expression, fraction).
+         */
+        APPROX_PERCENTILE,
     }
 
     private static final HashMap<String, AggregateType> AGGREGATES = new HashMap<>(64);
@@ -162,6 +175,7 @@ public enum AggregateType {
 
     private Expression on;
     private Expression groupConcatSeparator;
+    private Expression fraction;
     private ArrayList<SelectOrderBy> orderByList;
     private SortOrder orderBySort;
     private int dataType, scale;
@@ -227,6 +241,9 @@ public Aggregate(AggregateType type, Expression on, Select select, boolean disti
         // Oracle compatibility
         addAggregate("STATS_MODE", AggregateType.MODE);
         addAggregate("ENVELOPE", AggregateType.ENVELOPE);
+        addAggregate("APPROX_COUNT_DISTINCT", AggregateType.APPROX_COUNT_DISTINCT);
+        addAggregate("APPROX_PERCENTILE", AggregateType.APPROX_PERCENTILE);
+        addAggregate("APPROX_MEDIAN", AggregateType.APPROX_PERCENTILE);
     }
 
     private static void addAggregate(String name, AggregateType type) {
@@ -266,6 +283,16 @@ public void setGroupConcatSeparator(Expression separator) {
         this.groupConcatSeparator = separator;
     }
 
+    /**
+     * Set the fraction for the APPROX_PERCENTILE() aggregate.
+     *
+     * @param fraction
+     *            the fraction expression, a value between 0 and 1
+     */
+    public void setFraction(Expression fraction) {
+        this.fraction = fraction;
+    }
+
     /**
      * Returns the type of this aggregate.
      *
@@ -275,6 +302,15 @@ public AggregateType getAggregateType() {
         return type;
     }
 
+    /**
+     * Returns the argument of this aggregate.
+     *
+     * @return the argument, or null for COUNT(*)
+     */
+    public Expression getOn() {
+        return on;
+    }
+
     private void sortWithOrderBy(Value[] array) {
         final SortOrder sortOrder = orderBySort;
         if (sortOrder != null) {
@@ -374,6 +410,84 @@ protected Object createAggregateData() {
         return AggregateData.create(type, distinct);
     }
 
+    @Override
+    protected Object createFrameAggregateData() {
+        if (distinct) {
+            return null;
+        }
+        switch (type) {
+        case COUNT_ALL:
+        case COUNT:
+        case SUM:
+        case AVG:
+            return AggregateData.create(type, false);
+        case MIN:
+        case MAX:
+            return new AggregateDataMinMaxQueue(type);
+        default:
+            return null;
+        }
+    }
+
+    @Override
+    protected boolean removeFromExpressions(Session session, Object aggregateData, Value[] array) {
+        Value v = on == null ? null : array[0];
+        return ((AggregateData) aggregateData).remove(session.getDatabase(), dataType, v);
+    }
+
+    @Override
+    public void mergeAggregate(Session session, Object aggregateData, Object other) {
+        ((AggregateData) aggregateData).merge(session.getDatabase(), dataType, (AggregateData) other);
+    }
+
+    /**
+     * Get a version of this aggregate that processes batches of rows of the
+     * specified table filter.
+     *
+     * @param session the session
+     * @param filter the table filter
+     * @return the vectorized aggregate, or null if not supported
+     */
+    public VectorAggregate getVectorAggregate(Session session, TableFilter filter) {
+        if (distinct || filterCondition != null || over != null) {
+            return null;
+        }
+        switch (type) {
+        case COUNT_ALL:
+            return new VectorAggregate(this, type, null, Value.NULL, Value.NULL);
+        case COUNT:
+        case SUM:
+        case AVG:
+        case MIN:
+        case MAX:
+            break;
+        default:
+            return null;
+        }
+        int argumentType = on.getType();
+        if (!VectorExpression.isSupportedType(argumentType)) {
+            return null;
+        }
+        VectorExpression v = on.getVectorExpression(session, filter);
+        if (v == null) {
+            return null;
+        }
+        int sumType = type == AggregateType.AVG ? DataType.getAddProofType(dataType) : dataType;
+        return new VectorAggregate(this, type, v, argumentType, sumType);
+    }
+
+    /**
+     * Combine the data computed by a vectorized aggregate with the data of
+     * the current group.
+     *
+     * @param session the session
+     * @param groupData the group data
+     * @param other the computed data
+     */
+    void mergeVectorAggregate(Session session, SelectGroups groupData, AggregateData other) {
+        mergeAggregate(session, getGroupData(groupData, false), other);
+    }
+
     @Override
     public Value getValue(Session session) {
         return select.isQuickAggregateQuery() ? getValueQuick(session) : super.getValue(session);
@@ -471,12 +585,29 @@ public Value getAggregatedValue(Session session, Object aggregateData) {
         }
         case MODE:
             return getMode(session, data);
+        case APPROX_PERCENTILE:
+            return getApproxPercentile(session, (AggregateDataTDigest) data);
         default:
             // Avoid compiler warning
         }
         return data.getValue(session.getDatabase(), dataType);
     }
 
+    private Value getApproxPercentile(Session session, AggregateDataTDigest data) {
+        if (fraction == null) {
+            return data.getPercentile(0.5);
+        }
+        Value v = fraction.getValue(session);
+        if (v == ValueNull.INSTANCE) {
+            return ValueNull.INSTANCE;
+        }
+        double f = v.getDouble();
+        if (!(f >= 0 && f <= 1)) {
+            throw DbException.getInvalidValueException("fraction", v.getTraceSQL());
+        }
+        return data.getPercentile(f);
+    }
+
     private Value getGroupConcat(Session session, AggregateData data) {
         Value[] array = ((AggregateDataCollecting) data).getArray();
         if (array == null) {
@@ -588,6 +719,9 @@ public void mapColumnsAnalysis(ColumnResolver resolver, int level, int innerStat
         if (groupConcatSeparator != null) {
             groupConcatSeparator.mapColumns(resolver, level, innerState);
         }
+        if (fraction != null) {
+            fraction.mapColumns(resolver, level, innerState);
+        }
         super.mapColumnsAnalysis(resolver, level, innerState);
     }
 
@@ -610,6 +744,13 @@ public Expression optimize(Session session) {
         if (groupConcatSeparator != null) {
             groupConcatSeparator = groupConcatSeparator.optimize(session);
         }
+        if (fraction != null) {
+            fraction = fraction.optimize(session);
+            // the same fraction must be used for all rows of a group
+            if (!fraction.isConstant() && !(fraction instanceof Parameter)) {
+                throw DbException.getInvalidValueException("fraction", fraction.getSQL());
+            }
+        }
         switch (type) {
         case GROUP_CONCAT:
             dataType = Value.STRING;
@@ -618,6 +759,7 @@ public Expression optimize(Session session) {
             break;
         case COUNT_ALL:
         case COUNT:
+        case APPROX_COUNT_DISTINCT:
             dataType = Value.LONG;
             scale = 0;
             precision = ValueLong.PRECISION;
@@ -686,6 +828,15 @@ public Expression optimize(Session session) {
             scale = 0;
             precision = displaySize = Integer.MAX_VALUE;
             break;
+        case APPROX_PERCENTILE:
+            if (!DataType.isNumericType(dataType)) {
+                throw DbException.get(ErrorCode.SUM_OR_AVG_ON_WRONG_DATATYPE_1, getSQL());
+            }
+            dataType = Value.DOUBLE;
+            precision = ValueDouble.PRECISION;
+            displaySize = ValueDouble.DISPLAY_SIZE;
+            scale = 0;
+            break;
         default:
             DbException.throwInternalError("type=" + type);
         }
@@ -705,6 +856,9 @@ public void setEvaluatable(TableFilter tableFilter, boolean b) {
         if (groupConcatSeparator != null) {
             groupConcatSeparator.setEvaluatable(tableFilter, b);
         }
+        if (fraction != null) {
+            fraction.setEvaluatable(tableFilter, b);
+        }
         super.setEvaluatable(tableFilter, b);
     }
 
@@ -749,6 +903,17 @@ private StringBuilder getSQLArrayAggregate(StringBuilder builder) {
         return appendTailConditions(builder);
     }
 
+    private StringBuilder getSQLApproxPercentile(StringBuilder builder) {
+        builder.append(fraction == null ? "APPROX_MEDIAN(" : "APPROX_PERCENTILE(");
+        on.getUnenclosedSQL(builder);
+        if (fraction != null) {
+            builder.append(", ");
+            fraction.getUnenclosedSQL(builder);
+        }
+        builder.append(')');
+        return appendTailConditions(builder);
+    }
+
     @Override
     public StringBuilder getSQL(StringBuilder builder) {
         String text;
@@ -813,6 +978,11 @@ public StringBuilder getSQL(StringBuilder builder) {
         case ENVELOPE:
             text = "ENVELOPE";
             break;
+        case APPROX_COUNT_DISTINCT:
+            text = "APPROX_COUNT_DISTINCT";
+            break;
+        case APPROX_PERCENTILE:
+            return getSQLApproxPercentile(builder);
         default:
             throw DbException.throwInternalError("type=" + type);
         }
@@ -877,12 +1047,24 @@ public boolean isEverything(ExpressionVisitor visitor) {
                 return false;
             }
         }
+        if (visitor.getType() == ExpressionVisitor.PARALLELIZABLE) {
+            switch (type) {
+            case SELECTIVITY:
+            case HISTOGRAM:
+                // results depend on the order of rows
+                return false;
+            default:
+            }
+        }
         if (on != null && !on.isEverything(visitor)) {
             return false;
         }
         if (groupConcatSeparator != null && !groupConcatSeparator.isEverything(visitor)) {
             return false;
         }
+        if (fraction != null && !fraction.isEverything(visitor)) {
+            return false;
+        }
         if (orderByList != null) {
             for (SelectOrderBy o : orderByList) {
                 if (!o.expression.isEverything(visitor)) {
@@ -61,6 +61,10 @@ static AggregateData create(AggregateType aggregateType, boolean distinct) {
             return new AggregateDataDistinctWithCounts(true, Integer.MAX_VALUE);
         case ENVELOPE:
             return new AggregateDataEnvelope();
+        case APPROX_COUNT_DISTINCT:
+            return new AggregateDataHyperLogLog();
+        case APPROX_PERCENTILE:
+            return new AggregateDataTDigest();
         default:
             throw DbException.throwInternalError("type=" + aggregateType);
         }
@@ -84,4 +88,31 @@ static AggregateData create(AggregateType aggregateType, boolean distinct) {
      * @return the value
      */
     abstract Value getValue(Database database, int dataType);
+
+    /**
+     * Remove a value from this aggregate. Values are removed in the order they
+     * were added; this is used for the frames of window aggregates.
+     *
+     * @param database the database
+     * @param dataType the datatype of the computed result
+     * @param v the value
+     * @return false if the value can't be removed, and the data needs to be
+     *         gathered again
+     */
+    boolean remove(Database database, int dataType, Value v) {
+        return false;
+    }
+
+    /**
+     * Merge the data gathered by another instance of the same aggregate into
+     * this data. The other data must be gathered from the source rows that
+     * follow the rows of this data.
+     *
+     * @param database the database
+     * @param dataType the datatype of the computed result
+     * @param other the data to merge
+     */
+    void merge(Database database, int dataType, AggregateData other) {
+        throw DbException.throwInternalError(getClass().getName());
+    }
 }
@@ -57,6 +57,18 @@ Value getValue(Database database, int dataType) {
         return null;
     }
 
+    @Override
+    void merge(Database database, int dataType, AggregateData other) {
+        Collection<Value> c = ((AggregateDataCollecting) other).values;
+        if (c != null) {
+            if (values == null) {
+                values = c;
+            } else {
+                values.addAll(c);
+            }
+        }
+    }
+
     /**
      * Returns the count of values.
      *
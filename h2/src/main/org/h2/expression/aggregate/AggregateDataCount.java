@@ -23,6 +23,15 @@ class AggregateDataCount extends AggregateData {
         this.all = all;
     }
 
+    /**
+     * @param all whether all rows are counted
+     * @param count the number of rows already counted
+     */
+    AggregateDataCount(boolean all, long count) {
+        this.all = all;
+        this.count = count;
+    }
+
     @Override
     void add(Database database, int dataType, Value v) {
         if (all || v != ValueNull.INSTANCE) {
@@ -30,9 +39,22 @@ void add(Database database, int dataType, Value v) {
         }
     }
 
+    @Override
+    boolean remove(Database database, int dataType, Value v) {
+        if (all || v != ValueNull.INSTANCE) {
+            count--;
+        }
+        return true;
+    }
+
     @Override
     Value getValue(Database database, int dataType) {
         return ValueLong.get(count).convertTo(dataType);
     }
 
+    @Override
+    void merge(Database database, int dataType, AggregateData other) {
+        count += ((AggregateDataCount) other).count;
+    }
+
 }
@@ -32,6 +32,17 @@ class AggregateDataDefault extends AggregateData {
         this.aggregateType = aggregateType;
     }
 
+    /**
+     * @param aggregateType the type of the aggregate operation
+     * @param count the number of values already added
+     * @param value the value computed from these values
+     */
+    AggregateDataDefault(AggregateType aggregateType, long count, Value value) {
+        this.aggregateType = aggregateType;
+        this.count = count;
+        this.value = value;
+    }
+
     @Override
     void add(Database database, int dataType, Value v) {
         if (v == ValueNull.INSTANCE) {
@@ -118,6 +129,36 @@ void add(Database database, int dataType, Value v) {
         }
     }
 
+    @Override
+    boolean remove(Database database, int dataType, Value v) {
+        if (v == ValueNull.INSTANCE) {
+            return true;
+        }
+        switch (aggregateType) {
+        case SUM:
+        case AVG:
+            switch (value.getType()) {
+            case Value.BYTE:
+            case Value.SHORT:
+            case Value.INT:
+            case Value.LONG:
+            case Value.DECIMAL:
+                // exact types only, the result must not depend on the order
+                break;
+            default:
+                return false;
+            }
+            if (--count == 0) {
+                value = null;
+            } else {
+                value = value.subtract(v.convertTo(value.getType()));
+            }
+            return true;
+        default:
+            return false;
+        }
+    }
+
     @Override
     Value getValue(Database database, int dataType) {
         Value v = null;
@@ -170,6 +211,31 @@ Value getValue(Database database, int dataType) {
         return v == null ? ValueNull.INSTANCE : v.convertTo(dataType);
     }
 
+    @Override
+    void merge(Database database, int dataType, AggregateData other) {
+        AggregateDataDefault data = (AggregateDataDefault) other;
+        if (data.count == 0) {
+            return;
+        }
+        long n = count + data.count;
+        switch (aggregateType) {
+        case STDDEV_POP:
+        case STDDEV_SAMP:
+        case VAR_POP:
+        case VAR_SAMP: {
+            // Chan's method to combine the results of Welford's method
+            double delta = data.mean - mean;
+            m2 += data.m2 + delta * delta * count * data.count / n;
+            mean += delta * data.count / n;
+            break;
+        }
+        default:
+            // the other value is combined just like a source value
+            add(database, dataType, data.value);
+        }
+        count = n;
+    }
+
     private static Value divide(Value a, long by) {
         if (by == 0) {
             return ValueNull.INSTANCE;
@@ -5,6 +5,8 @@
  */
 package org.h2.expression.aggregate;
 
+import java.util.Map;
+
 import org.h2.engine.Database;
 import org.h2.util.ValueHashMap;
 import org.h2.value.Value;
@@ -60,6 +62,30 @@ Value getValue(Database database, int dataType) {
         return null;
     }
 
+    @Override
+    void merge(Database database, int dataType, AggregateData other) {
+        ValueHashMap<LongDataCounter> map = ((AggregateDataDistinctWithCounts) other).values;
+        if (map == null) {
+            return;
+        }
+        if (values == null) {
+            values = map;
+            return;
+        }
+        for (Map.Entry<Value, LongDataCounter> entry : map.entries()) {
+            Value v = entry.getKey();
+            LongDataCounter a = values.get(v);
+            if (a == null) {
+                if (values.size() >= maxDistinctCount) {
+                    continue;
+                }
+                values.put(v, entry.getValue());
+            } else {
+                a.count += entry.getValue().count;
+            }
+        }
+    }
+
     /**
      * Returns map with values and their counts.
      *
@@ -69,4 +69,9 @@ Value getValue(Database database, int dataType) {
         return ValueGeometry.fromEnvelope(envelope);
     }
 
+    @Override
+    void merge(Database database, int dataType, AggregateData other) {
+        envelope = GeometryUtils.union(envelope, ((AggregateDataEnvelope) other).envelope);
+    }
+
 }
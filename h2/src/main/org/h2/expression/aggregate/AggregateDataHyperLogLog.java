@@ -0,0 +1,174 @@
+/*
+ * Copyright 2004-2018 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.expression.aggregate;
+
+import java.util.HashSet;
+
+import org.h2.engine.Database;
+import org.h2.value.Value;
+import org.h2.value.ValueLong;
+import org.h2.value.ValueNull;
+
+/**
+ * Data stored while calculating an APPROX_COUNT_DISTINCT aggregate. The
+ * number of distinct values is estimated using the HyperLogLog algorithm, see
+ * also https://en.wikipedia.org/wiki/HyperLogLog. The standard error is about
+ * 0.8%. As long as there are only few distinct values, their hash codes are
+ * kept, and the count is exact unless hash codes collide.
+ */
+class AggregateDataHyperLogLog extends AggregateData {
+
+    /**
+     * The number of bits of the hash code that select the register.
+     */
+    private static final int BITS = 14;
+
+    private static final int REGISTERS = 1 << BITS;
+
+    /**
+     * The maximum number of hash codes to keep before the registers are used.
+     */
+    private static final int MAX_HASHES = REGISTERS / 64;
+
+    private HashSet<Long> hashes = new HashSet<>();
+
+    private byte[] registers;
+
+    @Override
+    void add(Database database, int dataType, Value v) {
+        if (v == ValueNull.INSTANCE) {
+            return;
+        }
+        long hash = hash(v);
+        if (registers != null) {
+            addHash(hash);
+        } else {
+            hashes.add(hash);
+            if (hashes.size() > MAX_HASHES) {
+                toRegisters();
+            }
+        }
+    }
+
+    /**
+     * Get a well distributed 64-bit hash code of the value. The hash code is
+     * calculated from the value itself, and not from its 32-bit hash code,
+     * because the estimate would be too low if there are many more distinct
+     * values than 32-bit hash codes.
+     *
+     * @param v the value
+     * @return the hash code
+     */
+    private static long hash(Value v) {
+        long h;
+        switch (v.getType()) {
+        case Value.BOOLEAN:
+        case Value.BYTE:
+        case Value.SHORT:
+        case Value.INT:
+        case Value.LONG:
+            h = v.getLong();
+            break;
+        case Value.DOUBLE:
+        case Value.FLOAT:
+            h = Double.doubleToLongBits(v.getDouble());
+            break;
+        case Value.BYTES: {
+            // FNV-1a
+            h = 0xcbf29ce484222325L;
+            for (byte b : v.getBytesNoCopy()) {
+                h = (h ^ (b & 0xff)) * 0x100000001b3L;
+            }
+            break;
+        }
+        default: {
+            String s = v.getString();
+            if (v.getType() == Value.STRING_IGNORECASE) {
+                // equal values have the same hash code, see ValueStringIgnoreCase
+                s = s.toUpperCase();
+            }
+            // FNV-1a
+            h = 0xcbf29ce484222325L;
+            for (int i = 0, length = s.length(); i < length; i++) {
+                h = (h ^ s.charAt(i)) * 0x100000001b3L;
+            }
+        }
+        }
+        // the finalization step of MurmurHash3
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private void addHash(long hash) {
+        int index = (int) (hash >>> (64 - BITS));
+        // the position of the first 1 bit of the remaining bits
+        int rank = Long.numberOfLeadingZeros(hash << BITS | 1L << (BITS - 1)) + 1;
+        if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+        }
+    }
+
+    private void toRegisters() {
+        registers = new byte[REGISTERS];
+        for (long hash : hashes) {
+            addHash(hash);
+        }
+        hashes = null;
+    }
+
+    @Override
+    Value getValue(Database database, int dataType) {
+        if (registers == null) {
+            return ValueLong.get(hashes.size()).convertTo(dataType);
+        }
+        double sum = 0;
+        int zeros = 0;
+        for (byte r : registers) {
+            sum += 1.0 / (1L << r);
+            if (r == 0) {
+                zeros++;
+            }
+        }
+        double m = REGISTERS;
+        double estimate = 0.7213 / (1 + 1.079 / m) * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            // linear counting is more accurate for small cardinalities
+            estimate = m * Math.log(m / zeros);
+        }
+        return ValueLong.get(Math.round(estimate)).convertTo(dataType);
+    }
+
+    @Override
+    void merge(Database database, int dataType, AggregateData other) {
+        AggregateDataHyperLogLog data = (AggregateDataHyperLogLog) other;
+        if (data.registers == null) {
+            for (long hash : data.hashes) {
+                if (registers != null) {
+                    addHash(hash);
+                } else {
+                    hashes.add(hash);
+                }
+            }
+            if (registers == null && hashes.size() > MAX_HASHES) {
+                toRegisters();
+            }
+        } else {
+            if (registers == null) {
+                toRegisters();
+            }
+            for (int i = 0; i < REGISTERS; i++) {
+                if (data.registers[i] > registers[i]) {
+                    registers[i] = data.registers[i];
+                }
+            }
+        }
+    }
+
+}
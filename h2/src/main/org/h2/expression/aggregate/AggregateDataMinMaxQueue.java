@@ -0,0 +1,65 @@
+/*
+ * Copyright 2004-2018 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.expression.aggregate;
+
+import java.util.ArrayDeque;
+
+import org.h2.engine.Database;
+import org.h2.expression.aggregate.Aggregate.AggregateType;
+import org.h2.value.Value;
+import org.h2.value.ValueNull;
+
+/**
+ * Data stored while calculating MIN or MAX over the frames of a window
+ * aggregate. The queue only contains the values that can still become the
+ * result when older values are removed, so the head of the queue is the
+ * result, and each value is added and removed at most once.
+ */
+class AggregateDataMinMaxQueue extends AggregateData {
+
+    private final boolean max;
+
+    private final ArrayDeque<Value> queue = new ArrayDeque<>();
+
+    /**
+     * @param aggregateType the type of the aggregate operation, MIN or MAX
+     */
+    AggregateDataMinMaxQueue(AggregateType aggregateType) {
+        max = aggregateType == AggregateType.MAX;
+    }
+
+    @Override
+    void add(Database database, int dataType, Value v) {
+        if (v == ValueNull.INSTANCE) {
+            return;
+        }
+        // equal values are kept, as each of them is removed later
+        while (!queue.isEmpty() && isBetter(database, v, queue.peekLast())) {
+            queue.pollLast();
+        }
+        queue.addLast(v);
+    }
+
+    @Override
+    boolean remove(Database database, int dataType, Value v) {
+        if (v != ValueNull.INSTANCE && !queue.isEmpty() && database.compare(v, queue.peekFirst()) == 0) {
+            queue.pollFirst();
+        }
+        return true;
+    }
+
+    private boolean isBetter(Database database, Value v, Value old) {
+        int comp = database.compare(v, old);
+        return max ? comp > 0 : comp < 0;
+    }
+
+    @Override
+    Value getValue(Database database, int dataType) {
+        Value v = queue.peekFirst();
+        return v == null ? ValueNull.INSTANCE : v.convertTo(dataType);
+    }
+
+}
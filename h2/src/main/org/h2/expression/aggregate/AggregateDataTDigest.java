@@ -0,0 +1,166 @@
+/*
+ * Copyright 2004-2018 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.expression.aggregate;
+
+import java.util.Arrays;
+
+import org.h2.engine.Database;
+import org.h2.value.Value;
+import org.h2.value.ValueDouble;
+import org.h2.value.ValueNull;
+
+/**
+ * Data stored while calculating an APPROX_PERCENTILE aggregate. The values
+ * are summarized in a merging t-digest, see also
+ * https://github.com/tdunning/t-digest: sorted centroids (mean and weight),
+ * where the centroids near the minimum and the maximum contain fewer values,
+ * so that the extreme percentiles are more accurate. New values are buffered,
+ * and merged into the centroids when the buffer is full.
+ */
+class AggregateDataTDigest extends AggregateData {
+
+    /**
+     * The compression; the number of centroids is at most about this value.
+     */
+    private static final double COMPRESSION = 100;
+
+    private static final int BUFFER_SIZE = 500;
+
+    private double[] means = new double[0], weights = new double[0];
+
+    private int centroidCount;
+
+    private double[] buffer;
+
+    private int bufferCount;
+
+    private double totalWeight, min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+
+    @Override
+    void add(Database database, int dataType, Value v) {
+        if (v == ValueNull.INSTANCE) {
+            return;
+        }
+        double d = v.getDouble();
+        if (buffer == null) {
+            buffer = new double[BUFFER_SIZE];
+        }
+        buffer[bufferCount++] = d;
+        min = Math.min(min, d);
+        max = Math.max(max, d);
+        if (bufferCount == BUFFER_SIZE) {
+            flush();
+        }
+    }
+
+    private void flush() {
+        if (bufferCount > 0) {
+            Arrays.sort(buffer, 0, bufferCount);
+            double[] w = new double[bufferCount];
+            Arrays.fill(w, 1);
+            mergeCentroids(buffer, w, bufferCount);
+            bufferCount = 0;
+        }
+    }
+
+    /**
+     * Merge sorted centroids into the centroids of this digest.
+     */
+    private void mergeCentroids(double[] m2, double[] w2, int count2) {
+        int count = centroidCount + count2;
+        double total = totalWeight;
+        for (int i = 0; i < count2; i++) {
+            total += w2[i];
+        }
+        double[] m = new double[count], w = new double[count];
+        int c = -1;
+        double before = 0;
+        for (int i = 0, j = 0; i < centroidCount || j < count2;) {
+            double mean, weight;
+            if (j == count2 || i < centroidCount && means[i] <= m2[j]) {
+                mean = means[i];
+                weight = weights[i++];
+            } else {
+                mean = m2[j];
+                weight = w2[j++];
+            }
+            if (c >= 0 && scale((before + w[c] + weight) / total) - scale(before / total) <= 1) {
+                w[c] += weight;
+                m[c] += (mean - m[c]) * weight / w[c];
+            } else {
+                if (c >= 0) {
+                    before += w[c];
+                }
+                c++;
+                m[c] = mean;
+                w[c] = weight;
+            }
+        }
+        means = m;
+        weights = w;
+        centroidCount = c + 1;
+        totalWeight = total;
+    }
+
+    /**
+     * The scale function k1 of the t-digest, which limits the size of the
+     * centroids to a change of 1.
+     */
+    private static double scale(double q) {
+        return COMPRESSION / (2 * Math.PI) * Math.asin(2 * Math.min(q, 1) - 1);
+    }
+
+    /**
+     * Get the estimated value at the specified fraction of the sorted values.
+     *
+     * @param fraction the fraction, between 0 and 1
+     * @return the value, or null if there are no values
+     */
+    Value getPercentile(double fraction) {
+        flush();
+        if (centroidCount == 0) {
+            return ValueNull.INSTANCE;
+        }
+        // interpolate between the minimum, the centers of the centroids, and
+        // the maximum
+        double index = fraction * totalWeight;
+        double prevIndex = 0, prevValue = min;
+        double before = 0;
+        for (int i = 0; i < centroidCount; i++) {
+            double center = before + weights[i] / 2;
+            if (index <= center) {
+                return ValueDouble.get(interpolate(index, prevIndex, prevValue, center, means[i]));
+            }
+            prevIndex = center;
+            prevValue = means[i];
+            before += weights[i];
+        }
+        return ValueDouble.get(interpolate(index, prevIndex, prevValue, totalWeight, max));
+    }
+
+    private static double interpolate(double x, double x1, double y1, double x2, double y2) {
+        if (x2 <= x1) {
+            return y2;
+        }
+        return y1 + (y2 - y1) * (x - x1) / (x2 - x1);
+    }
+
+    @Override
+    Value getValue(Database database, int dataType) {
+        return getPercentile(0.5);
+    }
+
+    @Override
+    void merge(Database database, int dataType, AggregateData other) {
+        AggregateDataTDigest data = (AggregateDataTDigest) other;
+        data.flush();
+        flush();
+        mergeCentroids(data.means, data.weights, data.centroidCount);
+        min = Math.min(min, data.min);
+        max = Math.max(max, data.max);
+    }
+
+}
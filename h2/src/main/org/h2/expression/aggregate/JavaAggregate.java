@@ -90,6 +90,8 @@ public boolean isEverything(ExpressionVisitor visitor) {
             // know (no setting for that)
         case ExpressionVisitor.OPTIMIZABLE_AGGREGATE:
             // user defined aggregate functions can not be optimized
+        case ExpressionVisitor.PARALLELIZABLE:
+            // and their partial results can not be merged
             return false;
         case ExpressionVisitor.GET_DEPENDENCIES:
             visitor.addDependency(userAggregate);
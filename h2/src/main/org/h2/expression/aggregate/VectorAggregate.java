@@ -0,0 +1,171 @@
+/*
+ * Copyright 2004-2018 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.expression.aggregate;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import org.h2.command.dml.SelectGroups;
+import org.h2.engine.Session;
+import org.h2.expression.aggregate.Aggregate.AggregateType;
+import org.h2.expression.vector.VectorBatch;
+import org.h2.expression.vector.VectorExpression;
+import org.h2.value.Value;
+import org.h2.value.ValueDecimal;
+import org.h2.value.ValueLong;
+
+/**
+ * Computes a COUNT, SUM, AVG, MIN, or MAX aggregate over integer values for
+ * batches of rows. The result is combined with the data of the aggregate when
+ * all rows were processed.
+ */
+public final class VectorAggregate {
+
+    private final Aggregate aggregate;
+
+    private final AggregateType type;
+
+    private final VectorExpression on;
+
+    /**
+     * The data type of the argument.
+     */
+    private final int argumentType;
+
+    /**
+     * The data type used to add the values (SUM and AVG only).
+     */
+    private final int sumType;
+
+    private long[] values;
+
+    private boolean[] nulls;
+
+    private long count;
+
+    private long sum, min, max;
+
+    /**
+     * The part of the sum that does not fit in a long value.
+     */
+    private BigInteger bigSum;
+
+    /**
+     * Create a vectorized aggregate.
+     *
+     * @param aggregate the aggregate
+     * @param type the aggregate type
+     * @param on the argument, or null for COUNT(*)
+     * @param argumentType the data type of the argument
+     * @param sumType the data type used to add the values
+     */
+    VectorAggregate(Aggregate aggregate, AggregateType type, VectorExpression on, int argumentType, int sumType) {
+        this.aggregate = aggregate;
+        this.type = type;
+        this.on = on;
+        this.argumentType = argumentType;
+        this.sumType = sumType;
+    }
+
+    /**
+     * Add the values of the selected rows.
+     *
+     * @param batch the batch
+     * @param selection the positions of the rows
+     * @param count the number of selected rows
+     */
+    public void update(VectorBatch batch, int[] selection, int count) {
+        if (on == null) {
+            this.count += count;
+            return;
+        }
+        if (values == null) {
+            values = new long[batch.getCapacity()];
+            nulls = new boolean[batch.getCapacity()];
+        }
+        long[] v = values;
+        boolean[] n = nulls;
+        on.getValues(batch, selection, count, v, n);
+        for (int i = 0; i < count; i++) {
+            int row = selection[i];
+            if (n[row]) {
+                continue;
+            }
+            long x = v[row];
+            switch (type) {
+            case SUM:
+            case AVG:
+                add(x);
+                break;
+            case MIN:
+                if (this.count == 0 || x < min) {
+                    min = x;
+                }
+                break;
+            case MAX:
+                if (this.count == 0 || x > max) {
+                    max = x;
+                }
+                break;
+            default:
+            }
+            this.count++;
+        }
+    }
+
+    private void add(long x) {
+        long result = sum + x;
+        if (((sum ^ result) & (x ^ result)) < 0) {
+            if (sumType != Value.DECIMAL) {
+                // throws the same exception as the row by row evaluation
+                ValueLong.get(sum).add(ValueLong.get(x));
+            }
+            BigInteger b = BigInteger.valueOf(sum).add(BigInteger.valueOf(x));
+            bigSum = bigSum == null ? b : bigSum.add(b);
+            result = 0;
+        }
+        sum = result;
+    }
+
+    /**
+     * Combine the result with the data of the aggregate in the current group.
+     *
+     * @param session the session
+     * @param groupData the group data
+     */
+    public void finish(Session session, SelectGroups groupData) {
+        AggregateData data;
+        switch (type) {
+        case COUNT_ALL:
+        case COUNT:
+            data = new AggregateDataCount(type == AggregateType.COUNT_ALL, count);
+            break;
+        default: {
+            Value v = null;
+            if (count > 0) {
+                switch (type) {
+                case SUM:
+                case AVG:
+                    v = bigSum == null ? ValueLong.get(sum)
+                            : ValueDecimal.get(new BigDecimal(bigSum.add(BigInteger.valueOf(sum))));
+                    break;
+                case MIN:
+                    v = ValueLong.get(min).convertTo(argumentType);
+                    break;
+                default:
+                    v = ValueLong.get(max).convertTo(argumentType);
+                }
+            }
+            data = new AggregateDataDefault(type, count, v);
+        }
+        }
+        aggregate.mergeVectorAggregate(session, groupData, data);
+        count = 0;
+        sum = 0;
+        bigSum = null;
+    }
+
+}
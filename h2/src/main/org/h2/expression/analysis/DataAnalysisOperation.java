@@ -78,6 +78,15 @@ public void setOverCondition(Window over) {
         this.over = over;
     }
 
+    /**
+     * Returns the OVER condition.
+     *
+     * @return the OVER condition, or null
+     */
+    public Window getOverCondition() {
+        return over;
+    }
+
     /**
      * Checks whether this expression is an aggregate function.
      *
@@ -245,6 +254,7 @@ public boolean isEverything(ExpressionVisitor visitor) {
         case ExpressionVisitor.OPTIMIZABLE_AGGREGATE:
         case ExpressionVisitor.DETERMINISTIC:
         case ExpressionVisitor.INDEPENDENT:
+        case ExpressionVisitor.PARALLELIZABLE:
             return false;
         case ExpressionVisitor.EVALUATABLE:
         case ExpressionVisitor.READONLY:
@@ -10,7 +10,8 @@
 import org.h2.value.Value;
 
 /**
- * Partition data of a window aggregate.
+ * Partition data of a window aggregate. The rows of a partition and the
+ * results for all of its rows are kept in memory.
  */
 public final class PartitionData {
 
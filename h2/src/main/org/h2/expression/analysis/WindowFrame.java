@@ -219,6 +219,43 @@ public static Iterator<Value[]> iterator(Window over, Session session, ArrayList
                 reverse);
     }
 
+    /**
+     * Returns the indexes of the first and the last row of the frame of the
+     * specified row, if the frame is a single range of rows.
+     *
+     * @param over
+     *            window
+     * @param session
+     *            the session
+     * @param orderedRows
+     *            ordered rows
+     * @param sortOrder
+     *            sort order
+     * @param currentRow
+     *            index of the current row
+     * @return the indexes of the first and the last row, where the last index
+     *         is less than the first index if the frame is empty, or null if
+     *         rows are excluded from the frame
+     */
+    public static int[] getRange(Window over, Session session, ArrayList<Value[]> orderedRows, SortOrder sortOrder,
+            int currentRow) {
+        WindowFrame frame = over.getWindowFrame();
+        int last = orderedRows.size() - 1;
+        int startIndex, endIndex;
+        if (frame == null) {
+            startIndex = 0;
+            endIndex = over.getOrderBy() == null ? last : toGroupEnd(orderedRows, sortOrder, currentRow, last);
+        } else {
+            if (frame.exclusion != WindowFrameExclusion.EXCLUDE_NO_OTHERS) {
+                return null;
+            }
+            startIndex = Math.max(frame.getIndex(session, orderedRows, sortOrder, currentRow, frame.starting, false),
+                    0);
+            endIndex = Math.min(frame.getEndIndex(session, orderedRows, sortOrder, currentRow), last);
+        }
+        return new int[] { startIndex, endIndex };
+    }
+
     private static Iterator<Value[]> plainIterator(ArrayList<Value[]> orderedRows, int startIndex, int endIndex,
             boolean reverse) {
         if (endIndex < startIndex) {
@@ -351,9 +388,7 @@ public boolean isFullPartition() {
     public Iterator<Value[]> iterator(Session session, ArrayList<Value[]> orderedRows, SortOrder sortOrder,
             int currentRow, boolean reverse) {
         int startIndex = getIndex(session, orderedRows, sortOrder, currentRow, starting, false);
-        int endIndex = following != null ? getIndex(session, orderedRows, sortOrder, currentRow, following, true)
-                : units == WindowFrameUnits.ROWS ? currentRow
-                        : toGroupEnd(orderedRows, sortOrder, currentRow, orderedRows.size() - 1);
+        int endIndex = getEndIndex(session, orderedRows, sortOrder, currentRow);
         if (endIndex < startIndex) {
             return Collections.emptyIterator();
         }
@@ -372,6 +407,12 @@ public Iterator<Value[]> iterator(Session session, ArrayList<Value[]> orderedRow
                 : plainIterator(orderedRows, startIndex, endIndex, reverse);
     }
 
+    private int getEndIndex(Session session, ArrayList<Value[]> orderedRows, SortOrder sortOrder, int currentRow) {
+        return following != null ? getIndex(session, orderedRows, sortOrder, currentRow, following, true)
+                : units == WindowFrameUnits.ROWS ? currentRow
+                        : toGroupEnd(orderedRows, sortOrder, currentRow, orderedRows.size() - 1);
+    }
+
     private int getIndex(Session session, ArrayList<Value[]> orderedRows, SortOrder sortOrder, int currentRow,
             WindowFrameBound bound, boolean forFollowing) {
         int size = orderedRows.size();
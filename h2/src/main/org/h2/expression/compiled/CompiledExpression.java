@@ -0,0 +1,268 @@
+/*
+ * Copyright 2004-2018 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.expression.compiled;
+
+import org.h2.engine.Session;
+import org.h2.expression.Expression;
+import org.h2.expression.Parameter;
+import org.h2.message.DbException;
+import org.h2.table.Column;
+import org.h2.table.TableFilter;
+import org.h2.value.Value;
+import org.h2.value.ValueBoolean;
+import org.h2.value.ValueByte;
+import org.h2.value.ValueInt;
+import org.h2.value.ValueLong;
+import org.h2.value.ValueNull;
+import org.h2.value.ValueShort;
+
+/**
+ * The base class of the classes generated by the expression compiler. The
+ * generated code computes the value of an expression the same way as the
+ * expression itself; parts of the expression that are not compiled are
+ * evaluated by calling the original expression objects.
+ */
+public abstract class CompiledExpression {
+
+    private static final int PLUS = 0, MINUS = 1, MULTIPLY = 2, DIVIDE = 3, MODULUS = 4;
+
+    /**
+     * The expressions that are evaluated by the interpreter.
+     */
+    protected final Expression[] expressions;
+
+    private final TableFilter[] filters;
+
+    private final Column[] columns;
+
+    private final Expression[] columnExpressions;
+
+    private Parameter[] parameters;
+
+    private int[] parameterTypes;
+
+    /**
+     * Create a compiled expression.
+     *
+     * @param expressions the expressions evaluated by the interpreter
+     * @param filters the table filters of the columns that are read directly
+     * @param columns the columns that are read directly
+     * @param columnExpressions the expressions of these columns
+     */
+    protected CompiledExpression(Expression[] expressions, TableFilter[] filters, Column[] columns,
+            Expression[] columnExpressions) {
+        this.expressions = expressions;
+        this.filters = filters;
+        this.columns = columns;
+        this.columnExpressions = columnExpressions;
+    }
+
+    /**
+     * Set the parameters that are used by the compiled code.
+     *
+     * @param parameters the parameters
+     * @param parameterTypes the data types of their values
+     */
+    void setParameters(Parameter[] parameters, int[] parameterTypes) {
+        this.parameters = parameters;
+        this.parameterTypes = parameterTypes;
+    }
+
+    /**
+     * Check whether the values of the parameters still have the data types
+     * for which the code was generated.
+     *
+     * @return true if the compiled code can be used
+     */
+    public boolean isValid() {
+        for (int i = 0; i < parameters.length; i++) {
+            if (parameters[i].getType() != parameterTypes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compute the value of the expression.
+     *
+     * @param session the session
+     * @return the value
+     */
+    public abstract Value getValue(Session session);
+
+    /**
+     * Compute the value of the expression as a condition.
+     *
+     * @param session the session
+     * @return true if the value is TRUE
+     */
+    public boolean getBooleanValue(Session session) {
+        return getValue(session).getBoolean();
+    }
+
+    /**
+     * Get the value of a column of the current row.
+     *
+     * @param session the session
+     * @param index the index of the column
+     * @return the value
+     */
+    protected final Value getColumnValue(Session session, int index) {
+        Value v = filters[index].getValue(columns[index]);
+        if (v == null) {
+            // no current row, the expression reports the error
+            v = columnExpressions[index].getValue(session);
+        }
+        return v;
+    }
+
+    /**
+     * Convert a three-valued boolean to a value.
+     *
+     * @param b 1 for TRUE, 0 for FALSE, -1 for NULL
+     * @return the value
+     */
+    protected static Value toBoolean(int b) {
+        return b < 0 ? ValueNull.INSTANCE : ValueBoolean.get(b == 1);
+    }
+
+    /**
+     * Convert an integer value to a value of the given data type.
+     *
+     * @param x the value
+     * @param type the data type
+     * @return the value
+     */
+    protected static Value toValue(long x, int type) {
+        switch (type) {
+        case Value.BYTE:
+            return ValueByte.get((byte) x);
+        case Value.SHORT:
+            return ValueShort.get((short) x);
+        case Value.INT:
+            return ValueInt.get((int) x);
+        case Value.LONG:
+            return ValueLong.get(x);
+        default:
+            throw DbException.throwInternalError("type=" + type);
+        }
+    }
+
+    /**
+     * Add two integer values of the given data type.
+     *
+     * @param a the first value
+     * @param b the second value
+     * @param type the data type
+     * @return the sum
+     */
+    protected static long add(long a, long b, int type) {
+        long r = a + b;
+        if (((a ^ r) & (b ^ r)) < 0 || !isInRange(r, type)) {
+            return compute(PLUS, a, b, type);
+        }
+        return r;
+    }
+
+    /**
+     * Subtract two integer values of the given data type.
+     *
+     * @param a the first value
+     * @param b the second value
+     * @param type the data type
+     * @return the difference
+     */
+    protected static long subtract(long a, long b, int type) {
+        long r = a - b;
+        if (((a ^ b) & (a ^ r)) < 0 || !isInRange(r, type)) {
+            return compute(MINUS, a, b, type);
+        }
+        return r;
+    }
+
+    /**
+     * Multiply two integer values of the given data type.
+     *
+     * @param a the first value
+     * @param b the second value
+     * @param type the data type
+     * @return the product
+     */
+    protected static long multiply(long a, long b, int type) {
+        long r = a * b;
+        if ((Math.abs(a) | Math.abs(b)) >>> 31 != 0 && b != 0 && (r / b != a || a == Long.MIN_VALUE && b == -1)
+                || !isInRange(r, type)) {
+            return compute(MULTIPLY, a, b, type);
+        }
+        return r;
+    }
+
+    /**
+     * Divide two integer values of the given data type.
+     *
+     * @param a the first value
+     * @param b the second value
+     * @param type the data type
+     * @return the quotient
+     */
+    protected static long divide(long a, long b, int type) {
+        if (b == 0 || b == -1) {
+            return compute(DIVIDE, a, b, type);
+        }
+        return a / b;
+    }
+
+    /**
+     * Compute the remainder of the division of two integer values of the
+     * given data type.
+     *
+     * @param a the first value
+     * @param b the second value
+     * @param type the data type
+     * @return the remainder
+     */
+    protected static long modulus(long a, long b, int type) {
+        if (b == 0) {
+            return compute(MODULUS, a, b, type);
+        }
+        return a % b;
+    }
+
+    private static boolean isInRange(long x, int type) {
+        switch (type) {
+        case Value.BYTE:
+            return (byte) x == x;
+        case Value.SHORT:
+            return (short) x == x;
+        case Value.INT:
+            return (int) x == x;
+        default:
+            return true;
+        }
+    }
+
+    /**
+     * Compute the result using values, so that the same result or exception
+     * as in the interpreter is returned.
+     */
+    private static long compute(int op, long a, long b, int type) {
+        Value l = toValue(a, type), r = toValue(b, type);
+        switch (op) {
+        case PLUS:
+            return l.add(r).getLong();
+        case MINUS:
+            return l.subtract(r).getLong();
+        case MULTIPLY:
+            return l.multiply(r).getLong();
+        case DIVIDE:
+            return l.divide(r).getLong();
+        default:
+            return l.modulus(r).getLong();
+        }
+    }
+
+}
@@ -0,0 +1,408 @@
+/*
+ * Copyright 2004-2018 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.expression.compiled;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.h2.command.dml.Select;
+import org.h2.engine.Session;
+import org.h2.expression.BinaryOperation;
+import org.h2.expression.Expression;
+import org.h2.expression.ExpressionColumn;
+import org.h2.expression.Parameter;
+import org.h2.expression.ValueExpression;
+import org.h2.expression.condition.Comparison;
+import org.h2.expression.condition.ConditionAndOr;
+import org.h2.expression.condition.ConditionNot;
+import org.h2.message.Trace;
+import org.h2.table.Column;
+import org.h2.table.TableFilter;
+import org.h2.util.SourceCompiler;
+import org.h2.value.Value;
+
+/**
+ * Generates and compiles the Java source code of a class that computes the
+ * value of an expression. Comparisons, AND, OR, NOT, and arithmetic
+ * operations on integer values are compiled to operations on primitive
+ * values; the columns of the table filters of the query are read directly.
+ * All other parts of the expression are evaluated by calling the original
+ * expression objects.
+ */
+public final class ExpressionCompiler {
+
+    private static final String PACKAGE_NAME = "org.h2.dynamic";
+
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+
+    /**
+     * The kind of a local variable: long vN and boolean nN (the NULL flag).
+     */
+    private static final int LONG = 0;
+
+    /**
+     * The kind of a local variable: int bN (1 for TRUE, 0 for FALSE, -1 for
+     * NULL).
+     */
+    private static final int BOOLEAN = 1;
+
+    /**
+     * The kind of a local variable: Value xN.
+     */
+    private static final int VALUE = 2;
+
+    private final Select select;
+
+    private final ArrayList<Expression> expressions = new ArrayList<>();
+
+    private final ArrayList<TableFilter> filters = new ArrayList<>();
+
+    private final ArrayList<Column> columns = new ArrayList<>();
+
+    private final ArrayList<Expression> columnExpressions = new ArrayList<>();
+
+    private final ArrayList<Parameter> parameters = new ArrayList<>();
+
+    private final ArrayList<Integer> kinds = new ArrayList<>();
+
+    private final StringBuilder code = new StringBuilder();
+
+    private String indent = "        ";
+
+    private ExpressionCompiler(Select select) {
+        this.select = select;
+    }
+
+    /**
+     * Compile an expression of the specified query.
+     *
+     * @param session the session
+     * @param select the query
+     * @param expr the expression
+     * @return the compiled expression, or null if compiling would not help
+     *         or failed
+     */
+    public static CompiledExpression compile(Session session, Select select, Expression expr) {
+        if (!(expr instanceof Comparison || expr instanceof ConditionAndOr || expr instanceof ConditionNot
+                || expr instanceof BinaryOperation)) {
+            return null;
+        }
+        ExpressionCompiler compiler = new ExpressionCompiler(select);
+        int result = compiler.compileAny(expr);
+        int kind = compiler.kinds.get(result);
+        if (kind == VALUE) {
+            // nothing is compiled
+            return null;
+        }
+        String className = "CompiledExpression" + NEXT_ID.incrementAndGet();
+        String source = compiler.getSource(className, result, expr.getType());
+        try {
+            SourceCompiler sourceCompiler = new SourceCompiler();
+            sourceCompiler.setSource(PACKAGE_NAME + '.' + className, source);
+            Class<?> clazz = sourceCompiler.getClass(PACKAGE_NAME + '.' + className);
+            CompiledExpression compiled = (CompiledExpression) clazz.getConstructor(Expression[].class,
+                    TableFilter[].class, Column[].class, Expression[].class).newInstance(
+                    compiler.expressions.toArray(new Expression[0]), compiler.filters.toArray(new TableFilter[0]),
+                    compiler.columns.toArray(new Column[0]), compiler.columnExpressions.toArray(new Expression[0]));
+            int parameterCount = compiler.parameters.size();
+            int[] parameterTypes = new int[parameterCount];
+            for (int i = 0; i < parameterCount; i++) {
+                parameterTypes[i] = compiler.parameters.get(i).getType();
+            }
+            compiled.setParameters(compiler.parameters.toArray(new Parameter[0]), parameterTypes);
+            return compiled;
+        } catch (Exception e) {
+            session.getDatabase().getTrace(Trace.COMMAND).debug(e, "compile " + expr.getSQL());
+            return null;
+        }
+    }
+
+    private String getSource(String className, int result, int type) {
+        StringBuilder buff = new StringBuilder();
+        buff.append("package ").append(PACKAGE_NAME).append(";\n\n" +
+                "import org.h2.engine.Session;\n" +
+                "import org.h2.expression.Expression;\n" +
+                "import org.h2.expression.compiled.CompiledExpression;\n" +
+                "import org.h2.table.Column;\n" +
+                "import org.h2.table.TableFilter;\n" +
+                "import org.h2.value.Value;\n" +
+                "import org.h2.value.ValueNull;\n\n" +
+                "public final class ").append(className).append(" extends CompiledExpression {\n\n" +
+                "    public ").append(className).append("(Expression[] expressions, TableFilter[] filters, " +
+                "Column[] columns, Expression[] columnExpressions) {\n" +
+                "        super(expressions, filters, columns, columnExpressions);\n" +
+                "    }\n\n");
+        if (kinds.get(result) == BOOLEAN) {
+            buff.append("    @Override\n" +
+                    "    public Value getValue(Session session) {\n" +
+                    "        return toBoolean(test(session));\n" +
+                    "    }\n\n" +
+                    "    @Override\n" +
+                    "    public boolean getBooleanValue(Session session) {\n" +
+                    "        return test(session) == 1;\n" +
+                    "    }\n\n" +
+                    "    private int test(Session session) {\n");
+            appendCode(buff);
+            buff.append("        return b").append(result).append(";\n");
+        } else {
+            buff.append("    @Override\n" +
+                    "    public Value getValue(Session session) {\n");
+            appendCode(buff);
+            buff.append("        return n").append(result).append(" ? ValueNull.INSTANCE : toValue(v").append(result)
+                    .append(", ").append(type).append(");\n");
+        }
+        buff.append("    }\n\n}\n");
+        return buff.toString();
+    }
+
+    private void appendCode(StringBuilder buff) {
+        for (int i = 0, size = kinds.size(); i < size; i++) {
+            switch (kinds.get(i)) {
+            case LONG:
+                buff.append("        long v").append(i).append(" = 0;\n");
+                buff.append("        boolean n").append(i).append(" = false;\n");
+                break;
+            case BOOLEAN:
+                buff.append("        int b").append(i).append(" = 0;\n");
+                break;
+            default:
+                buff.append("        Value x").append(i).append(" = null;\n");
+            }
+        }
+        buff.append(code);
+    }
+
+    private int newVariable(int kind) {
+        kinds.add(kind);
+        return kinds.size() - 1;
+    }
+
+    private void add(String line) {
+        code.append(indent).append(line).append('\n');
+    }
+
+    private void startBlock(String line) {
+        add(line);
+        indent += "    ";
+    }
+
+    private void endBlock() {
+        indent = indent.substring(4);
+        add("}");
+    }
+
+    private static boolean isInteger(int type) {
+        switch (type) {
+        case Value.BYTE:
+        case Value.SHORT:
+        case Value.INT:
+        case Value.LONG:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    private int compileAny(Expression expr) {
+        if (expr instanceof ExpressionColumn) {
+            return compileColumn((ExpressionColumn) expr);
+        } else if (expr instanceof ValueExpression) {
+            Value v = expr.getValue(null);
+            if (isInteger(v.getType())) {
+                int k = newVariable(LONG);
+                add("v" + k + " = " + v.getLong() + "L;");
+                return k;
+            }
+        } else if (expr instanceof Comparison) {
+            return compileComparison((Comparison) expr);
+        } else if (expr instanceof ConditionAndOr) {
+            return compileAndOr((ConditionAndOr) expr);
+        } else if (expr instanceof ConditionNot) {
+            Expression condition = expr.getSubexpression(0);
+            if (condition.getType() == Value.BOOLEAN) {
+                int c = compileBoolean(condition);
+                int k = newVariable(BOOLEAN);
+                add("b" + k + " = b" + c + " < 0 ? -1 : 1 - b" + c + ";");
+                return k;
+            }
+        } else if (expr instanceof BinaryOperation) {
+            return compileOperation((BinaryOperation) expr);
+        }
+        return compileInterpreted(expr);
+    }
+
+    private int compileInterpreted(Expression expr) {
+        if (expr instanceof Parameter) {
+            // the generated code depends on the data type of the value
+            parameters.add((Parameter) expr);
+        }
+        int k = newVariable(VALUE);
+        expressions.add(expr);
+        add("x" + k + " = expressions[" + (expressions.size() - 1) + "].getValue(session);");
+        return k;
+    }
+
+    private int compileColumn(ExpressionColumn expr) {
+        TableFilter filter = expr.getTableFilter();
+        Column column = expr.getColumn();
+        if (filter == null || filter.getSelect() != select || column.getColumnId() < 0
+                || !isInteger(column.getType())) {
+            return compileInterpreted(expr);
+        }
+        int index = filters.size();
+        filters.add(filter);
+        columns.add(column);
+        columnExpressions.add(expr);
+        int x = newVariable(VALUE);
+        add("x" + x + " = getColumnValue(session, " + index + ");");
+        return toLong(x);
+    }
+
+    private int toLong(int x) {
+        int k = newVariable(LONG);
+        add("n" + k + " = x" + x + " == ValueNull.INSTANCE;");
+        startBlock("if (!n" + k + ") {");
+        add("v" + k + " = x" + x + ".getLong();");
+        endBlock();
+        return k;
+    }
+
+    private int compileLong(Expression expr) {
+        int k = compileAny(expr);
+        return kinds.get(k) == VALUE ? toLong(k) : k;
+    }
+
+    private int compileBoolean(Expression expr) {
+        int k = compileAny(expr);
+        if (kinds.get(k) == VALUE) {
+            int b = newVariable(BOOLEAN);
+            add("b" + b + " = x" + k + " == ValueNull.INSTANCE ? -1 : x" + k + ".getBoolean() ? 1 : 0;");
+            return b;
+        }
+        return k;
+    }
+
+    private int compileComparison(Comparison comparison) {
+        int compareType = comparison.getCompareType();
+        Expression left = comparison.getSubexpression(0);
+        String op;
+        switch (compareType) {
+        case Comparison.IS_NULL:
+        case Comparison.IS_NOT_NULL: {
+            int l = compileAny(left);
+            String isNull;
+            switch (kinds.get(l)) {
+            case LONG:
+                isNull = "n" + l;
+                break;
+            case BOOLEAN:
+                isNull = "b" + l + " < 0";
+                break;
+            default:
+                isNull = "x" + l + " == ValueNull.INSTANCE";
+            }
+            int k = newVariable(BOOLEAN);
+            add("b" + k + " = " + isNull + (compareType == Comparison.IS_NULL ? " ? 1 : 0;" : " ? 0 : 1;"));
+            return k;
+        }
+        case Comparison.EQUAL:
+            op = "==";
+            break;
+        case Comparison.NOT_EQUAL:
+            op = "!=";
+            break;
+        case Comparison.BIGGER:
+            op = ">";
+            break;
+        case Comparison.BIGGER_EQUAL:
+            op = ">=";
+            break;
+        case Comparison.SMALLER:
+            op = "<";
+            break;
+        case Comparison.SMALLER_EQUAL:
+            op = "<=";
+            break;
+        default:
+            return compileInterpreted(comparison);
+        }
+        Expression right = comparison.getSubexpression(1);
+        if (!isInteger(left.getType()) || !isInteger(right.getType())) {
+            return compileInterpreted(comparison);
+        }
+        int l = compileLong(left);
+        int k = newVariable(BOOLEAN);
+        // the right expression is not evaluated if the left value is NULL
+        startBlock("if (n" + l + ") {");
+        add("b" + k + " = -1;");
+        indent = indent.substring(4);
+        startBlock("} else {");
+        int r = compileLong(right);
+        add("b" + k + " = n" + r + " ? -1 : v" + l + ' ' + op + " v" + r + " ? 1 : 0;");
+        endBlock();
+        return k;
+    }
+
+    private int compileAndOr(ConditionAndOr condition) {
+        Expression left = condition.getSubexpression(0), right = condition.getSubexpression(1);
+        if (left.getType() != Value.BOOLEAN || right.getType() != Value.BOOLEAN) {
+            return compileInterpreted(condition);
+        }
+        // the right condition is only evaluated if the left condition
+        // doesn't decide the result
+        String decisive = condition.getAndOrType() == ConditionAndOr.AND ? "0" : "1";
+        int l = compileBoolean(left);
+        int k = newVariable(BOOLEAN);
+        add("b" + k + " = b" + l + ";");
+        startBlock("if (b" + k + " != " + decisive + ") {");
+        int r = compileBoolean(right);
+        startBlock("if (b" + r + " == " + decisive + ") {");
+        add("b" + k + " = " + decisive + ";");
+        indent = indent.substring(4);
+        startBlock("} else if (b" + r + " < 0) {");
+        add("b" + k + " = -1;");
+        endBlock();
+        endBlock();
+        return k;
+    }
+
+    private int compileOperation(BinaryOperation operation) {
+        String method;
+        switch (operation.getOperationType()) {
+        case PLUS:
+            method = "add";
+            break;
+        case MINUS:
+            method = "subtract";
+            break;
+        case MULTIPLY:
+            method = "multiply";
+            break;
+        case DIVIDE:
+            method = "divide";
+            break;
+        case MODULUS:
+            method = "modulus";
+            break;
+        default:
+            return compileInterpreted(operation);
+        }
+        Expression left = operation.getSubexpression(0), right = operation.getSubexpression(1);
+        int type = operation.getType();
+        if (!isInteger(type) || !isInteger(left.getType()) || !isInteger(right.getType())) {
+            return compileInterpreted(operation);
+        }
+        int l = compileLong(left);
+        int r = compileLong(right);
+        int k = newVariable(LONG);
+        add("n" + k + " = n" + l + " || n" + r + ";");
+        startBlock("if (!n" + k + ") {");
+        add("v" + k + " = " + method + "(v" + l + ", v" + r + ", " + type + ");");
+        endBlock();
+        return k;
+    }
+
+}
@@ -6,6 +6,7 @@
 package org.h2.expression.condition;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import org.h2.api.ErrorCode;
 import org.h2.engine.Database;
 import org.h2.engine.Session;
@@ -16,7 +17,12 @@
 import org.h2.expression.ValueExpression;
 import org.h2.expression.aggregate.Aggregate;
 import org.h2.expression.aggregate.Aggregate.AggregateType;
+import org.h2.expression.vector.VectorComparison;
+import org.h2.expression.vector.VectorExpression;
 import org.h2.index.IndexCondition;
+import org.h2.index.bitmap.BitmapCondition;
+import org.h2.index.bitmap.BitmapLookup;
+import org.h2.index.bitmap.BitmapNot;
 import org.h2.message.DbException;
 import org.h2.table.Column;
 import org.h2.table.ColumnResolver;
@@ -443,18 +449,62 @@ private int getNotCompareType() {
         }
     }
 
+    @Override
+    public VectorExpression getVectorExpression(Session session, TableFilter filter) {
+        switch (compareType) {
+        case EQUAL:
+        case NOT_EQUAL:
+        case BIGGER:
+        case BIGGER_EQUAL:
+        case SMALLER:
+        case SMALLER_EQUAL:
+        case IS_NULL:
+        case IS_NOT_NULL:
+            break;
+        default:
+            return null;
+        }
+        VectorExpression l = left.getVectorExpression(session, filter);
+        if (l == null) {
+            return null;
+        }
+        VectorExpression r = null;
+        if (right != null) {
+            r = right.getVectorExpression(session, filter);
+            if (r == null) {
+                return null;
+            }
+        }
+        return new VectorComparison(compareType, l, r);
+    }
+
+    @Override
+    public BitmapCondition getBitmapCondition(Session session, TableFilter filter) {
+        BitmapLookup lookup;
+        switch (compareType) {
+        case EQUAL:
+        case NOT_EQUAL:
+            lookup = BitmapLookup.get(filter, left, Collections.singletonList(right));
+            break;
+        case IS_NULL:
+        case IS_NOT_NULL:
+            lookup = BitmapLookup.get(filter, left, null);
+            break;
+        default:
+            return null;
+        }
+        if (lookup == null) {
+            return null;
+        }
+        return compareType == NOT_EQUAL || compareType == IS_NOT_NULL ? new BitmapNot(lookup) : lookup;
+    }
+
     @Override
     public void createIndexConditions(Session session, TableFilter filter) {
         if (!filter.getTable().isQueryComparable()) {
             return;
         }
-        ExpressionColumn l = null;
-        if (left instanceof ExpressionColumn) {
-            l = (ExpressionColumn) left;
-            if (filter != l.getTableFilter()) {
-                l = null;
-            }
-        }
+        ExpressionColumn l = filter.getIndexConditionColumn(left);
         if (right == null) {
             if (l != null) {
                 switch (compareType) {
@@ -465,13 +515,7 @@ public void createIndexConditions(Session session, TableFilter filter) {
             }
             return;
         }
-        ExpressionColumn r = null;
-        if (right instanceof ExpressionColumn) {
-            r = (ExpressionColumn) right;
-            if (filter != r.getTableFilter()) {
-                r = null;
-            }
-        }
+        ExpressionColumn r = filter.getIndexConditionColumn(right);
         // one side must be from the current filter
         if (l == null && r == null) {
             return;
@@ -653,6 +697,15 @@ private static ConditionIn getConditionIn(Session session, Expression left, Expr
         return new ConditionIn(session.getDatabase(), left, right);
     }
 
+    /**
+     * Get the compare type.
+     *
+     * @return the compare type
+     */
+    public int getCompareType() {
+        return compareType;
+    }
+
     @Override
     public int getSubexpressionCount() {
         return compareType == IS_NULL || compareType == IS_NOT_NULL ? 1 : 2;
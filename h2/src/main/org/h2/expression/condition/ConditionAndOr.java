@@ -9,6 +9,10 @@
 import org.h2.expression.Expression;
 import org.h2.expression.ExpressionVisitor;
 import org.h2.expression.ValueExpression;
+import org.h2.expression.vector.VectorAndOr;
+import org.h2.expression.vector.VectorExpression;
+import org.h2.index.bitmap.BitmapAndOr;
+import org.h2.index.bitmap.BitmapCondition;
 import org.h2.message.DbException;
 import org.h2.table.ColumnResolver;
 import org.h2.table.TableFilter;
@@ -60,6 +64,38 @@ public StringBuilder getSQL(StringBuilder builder) {
         return right.getSQL(builder).append(')');
     }
 
+    @Override
+    public VectorExpression getVectorExpression(Session session, TableFilter filter) {
+        if (left.getType() != Value.BOOLEAN || right.getType() != Value.BOOLEAN) {
+            return null;
+        }
+        VectorExpression l = left.getVectorExpression(session, filter);
+        if (l == null) {
+            return null;
+        }
+        VectorExpression r = right.getVectorExpression(session, filter);
+        if (r == null) {
+            return null;
+        }
+        return new VectorAndOr(andOrType == AND, l, r);
+    }
+
+    @Override
+    public BitmapCondition getBitmapCondition(Session session, TableFilter filter) {
+        BitmapCondition l = left.getBitmapCondition(session, filter);
+        BitmapCondition r = right.getBitmapCondition(session, filter);
+        if (andOrType == AND) {
+            if (l == null) {
+                return r == null ? null : new BitmapAndOr(true, r, null);
+            }
+            return new BitmapAndOr(true, l, r);
+        }
+        if (l == null || r == null) {
+            return null;
+        }
+        return new BitmapAndOr(false, l, r);
+    }
+
     @Override
     public void createIndexConditions(Session session, TableFilter filter) {
         if (andOrType == AND) {
@@ -293,6 +329,15 @@ public int getCost() {
         return left.getCost() + right.getCost();
     }
 
+    /**
+     * Get the type of this condition.
+     *
+     * @return {@link #AND} or {@link #OR}
+     */
+    public int getAndOrType() {
+        return andOrType;
+    }
+
     @Override
     public int getSubexpressionCount() {
         return 2;
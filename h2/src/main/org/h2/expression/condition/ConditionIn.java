@@ -16,6 +16,8 @@
 import org.h2.expression.function.Function;
 import org.h2.expression.function.TableFunction;
 import org.h2.index.IndexCondition;
+import org.h2.index.bitmap.BitmapCondition;
+import org.h2.index.bitmap.BitmapLookup;
 import org.h2.result.ResultInterface;
 import org.h2.table.ColumnResolver;
 import org.h2.table.TableFilter;
@@ -164,13 +166,15 @@ private Expression optimize2(Session session, boolean constant, boolean allValue
         return this;
     }
 
+    @Override
+    public BitmapCondition getBitmapCondition(Session session, TableFilter filter) {
+        return BitmapLookup.get(filter, left, valueList);
+    }
+
     @Override
     public void createIndexConditions(Session session, TableFilter filter) {
-        if (!(left instanceof ExpressionColumn)) {
-            return;
-        }
-        ExpressionColumn l = (ExpressionColumn) left;
-        if (filter != l.getTableFilter()) {
+        ExpressionColumn l = filter.getIndexConditionColumn(left);
+        if (l == null) {
             return;
         }
         if (session.getDatabase().getSettings().optimizeInList) {
@@ -15,6 +15,8 @@
 import org.h2.expression.ExpressionColumn;
 import org.h2.expression.ExpressionVisitor;
 import org.h2.index.IndexCondition;
+import org.h2.index.bitmap.BitmapCondition;
+import org.h2.index.bitmap.BitmapLookup;
 import org.h2.message.DbException;
 import org.h2.table.ColumnResolver;
 import org.h2.table.TableFilter;
@@ -100,13 +102,15 @@ public Expression optimize(Session session) {
         return this;
     }
 
+    @Override
+    public BitmapCondition getBitmapCondition(Session session, TableFilter filter) {
+        return BitmapLookup.get(filter, left, valueList);
+    }
+
     @Override
     public void createIndexConditions(Session session, TableFilter filter) {
-        if (!(left instanceof ExpressionColumn)) {
-            return;
-        }
-        ExpressionColumn l = (ExpressionColumn) left;
-        if (filter != l.getTableFilter()) {
+        ExpressionColumn l = filter.getIndexConditionColumn(left);
+        if (l == null) {
             return;
         }
         if (session.getDatabase().getSettings().optimizeInList) {
@@ -149,6 +153,7 @@ public boolean isEverything(ExpressionVisitor visitor) {
         case ExpressionVisitor.QUERY_COMPARABLE:
         case ExpressionVisitor.GET_COLUMNS1:
         case ExpressionVisitor.GET_COLUMNS2:
+        case ExpressionVisitor.PARALLELIZABLE:
             return true;
         default:
             throw DbException.throwInternalError("type=" + visitor.getType());
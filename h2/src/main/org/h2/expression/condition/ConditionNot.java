@@ -9,6 +9,8 @@
 import org.h2.expression.Expression;
 import org.h2.expression.ExpressionVisitor;
 import org.h2.expression.ValueExpression;
+import org.h2.index.bitmap.BitmapCondition;
+import org.h2.index.bitmap.BitmapNot;
 import org.h2.table.ColumnResolver;
 import org.h2.table.TableFilter;
 import org.h2.value.Value;
@@ -44,6 +46,15 @@ public void mapColumns(ColumnResolver resolver, int level, int state) {
         condition.mapColumns(resolver, level, state);
     }
 
+    @Override
+    public BitmapCondition getBitmapCondition(Session session, TableFilter filter) {
+        BitmapCondition c = condition.getBitmapCondition(session, filter);
+        if (c == null || !c.isExact()) {
+            return null;
+        }
+        return new BitmapNot(c);
+    }
+
     @Override
     public Expression optimize(Session session) {
         Expression e2 = condition.getNotIfPossible(session);
@@ -2763,6 +2763,7 @@ public boolean isEverything(ExpressionVisitor visitor) {
         case ExpressionVisitor.DETERMINISTIC:
         case ExpressionVisitor.QUERY_COMPARABLE:
         case ExpressionVisitor.READONLY:
+        case ExpressionVisitor.PARALLELIZABLE:
             return info.deterministic;
         case ExpressionVisitor.EVALUATABLE:
         case ExpressionVisitor.GET_DEPENDENCIES:
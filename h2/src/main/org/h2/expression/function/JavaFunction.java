@@ -137,6 +137,9 @@ public boolean isEverything(ExpressionVisitor visitor) {
             }
             // only if all parameters are deterministic as well
             break;
+        case ExpressionVisitor.PARALLELIZABLE:
+            // user-defined functions may not be thread-safe
+            return false;
         case ExpressionVisitor.GET_DEPENDENCIES:
             visitor.addDependency(functionAlias);
             break;
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2004-2018 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.expression.vector;
+
+/**
+ * An AND or OR condition.
+ */
+public class VectorAndOr extends VectorExpression {
+
+    private final boolean and;
+
+    private final VectorExpression left, right;
+
+    private long[] rightValues;
+
+    private boolean[] rightNulls;
+
+    private int[] undecided;
+
+    /**
+     * Create an AND or OR condition.
+     *
+     * @param and true for AND, false for OR
+     * @param left the left condition
+     * @param right the right condition
+     */
+    public VectorAndOr(boolean and, VectorExpression left, VectorExpression right) {
+        this.and = and;
+        this.left = left;
+        this.right = right;
+    }
+
+    @Override
+    public void getValues(VectorBatch batch, int[] selection, int count, long[] values, boolean[] nulls) {
+        if (rightValues == null) {
+            int capacity = batch.getCapacity();
+            rightValues = new long[capacity];
+            rightNulls = new boolean[capacity];
+            undecided = new int[capacity];
+        }
+        left.getValues(batch, selection, count, values, nulls);
+        // the right condition is only evaluated if the left condition
+        // doesn't decide the result
+        long decisive = and ? 0 : 1;
+        int undecidedCount = 0;
+        for (int i = 0; i < count; i++) {
+            int row = selection[i];
+            if (nulls[row] || values[row] != decisive) {
+                undecided[undecidedCount++] = row;
+            }
+        }
+        long[] r = rightValues;
+        boolean[] rn = rightNulls;
+        right.getValues(batch, undecided, undecidedCount, r, rn);
+        for (int i = 0; i < undecidedCount; i++) {
+            int row = undecided[i];
+            if (!rn[row] && r[row] == decisive) {
+                values[row] = decisive;
+                nulls[row] = false;
+            } else if (rn[row]) {
+                nulls[row] = true;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2004-2018 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.expression.vector;
+
+import org.h2.expression.BinaryOperation.OpType;
+import org.h2.message.DbException;
+import org.h2.value.Value;
+import org.h2.value.ValueLong;
+
+/**
+ * An addition, subtraction, or multiplication of integer values.
+ */
+public class VectorArithmetic extends VectorExpression {
+
+    private final OpType opType;
+
+    private final int dataType;
+
+    private final VectorExpression left, right;
+
+    private long[] rightValues;
+
+    private boolean[] rightNulls;
+
+    /**
+     * Create an arithmetic operation.
+     *
+     * @param opType the operation type (PLUS, MINUS, or MULTIPLY)
+     * @param dataType the data type of the result
+     * @param left the left expression
+     * @param right the right expression
+     */
+    public VectorArithmetic(OpType opType, int dataType, VectorExpression left, VectorExpression right) {
+        this.opType = opType;
+        this.dataType = dataType;
+        this.left = left;
+        this.right = right;
+    }
+
+    @Override
+    public void getValues(VectorBatch batch, int[] selection, int count, long[] values, boolean[] nulls) {
+        if (rightValues == null) {
+            rightValues = new long[batch.getCapacity()];
+            rightNulls = new boolean[batch.getCapacity()];
+        }
+        left.getValues(batch, selection, count, values, nulls);
+        long[] r = rightValues;
+        boolean[] rn = rightNulls;
+        right.getValues(batch, selection, count, r, rn);
+        for (int i = 0; i < count; i++) {
+            int row = selection[i];
+            if (nulls[row] || rn[row]) {
+                nulls[row] = true;
+                continue;
+            }
+            long a = values[row], b = r[row], result;
+            boolean overflow;
+            switch (opType) {
+            case PLUS:
+                result = a + b;
+                overflow = ((a ^ result) & (b ^ result)) < 0;
+                break;
+            case MINUS:
+                result = a - b;
+                overflow = ((a ^ b) & (a ^ result)) < 0;
+                break;
+            case MULTIPLY:
+                result = a * b;
+                overflow = (Math.abs(a) | Math.abs(b)) >>> 31 != 0 && b != 0
+                        && (result / b != a || a == Long.MIN_VALUE && b == -1);
+                break;
+            default:
+                throw DbException.throwInternalError("type=" + opType);
+            }
+            if (overflow || !isInRange(result)) {
+                throw getOverflow(a, b);
+            }
+            values[row] = result;
+        }
+    }
+
+    private boolean isInRange(long x) {
+        switch (dataType) {
+        case Value.BYTE:
+            return (byte) x == x;
+        case Value.SHORT:
+            return (short) x == x;
+        case Value.INT:
+            return (int) x == x;
+        default:
+            return true;
+        }
+    }
+
+    /**
+     * Compute the result using the regular values, so that the same exception
+     * as in the row by row evaluation is thrown.
+     */
+    private RuntimeException getOverflow(long a, long b) {
+        Value l = ValueLong.get(a).convertTo(dataType);
+        Value r = ValueLong.get(b).convertTo(dataType);
+        switch (opType) {
+        case PLUS:
+            l.add(r);
+            break;
+        case MINUS:
+            l.subtract(r);
+            break;
+        default:
+            l.multiply(r);
+        }
+        return DbException.throwInternalError(a + " " + opType + " " + b);
+    }
+
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2004-2018 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.expression.vector;
+
+import org.h2.result.Row;
+import org.h2.table.TableFilter;
+import org.h2.value.Value;
+import org.h2.value.ValueNull;
+
+/**
+ * A batch of rows read from a table filter. The values of a column are
+ * copied to a primitive array when they are first used by a vectorized
+ * expression.
+ */
+public final class VectorBatch {
+
+    /**
+     * The maximum number of rows in a batch.
+     */
+    public static final int MAX_SIZE = 1024;
+
+    private final TableFilter filter;
+
+    private final int capacity;
+
+    private final Row[] rows;
+
+    private final long[][] values;
+
+    private final boolean[][] nulls;
+
+    /**
+     * The id of the batch for which the values of a column were loaded.
+     */
+    private final int[] loaded;
+
+    private int batchId;
+
+    private int size;
+
+    /**
+     * Create a batch for the rows of the specified table filter.
+     *
+     * @param filter the table filter
+     */
+    public VectorBatch(TableFilter filter) {
+        this.filter = filter;
+        capacity = (int) Math.min(MAX_SIZE, Math.max(16, filter.getTable().getRowCountApproximation()));
+        rows = new Row[capacity];
+        int columnCount = filter.getTable().getColumns().length;
+        values = new long[columnCount][];
+        nulls = new boolean[columnCount][];
+        loaded = new int[columnCount];
+    }
+
+    /**
+     * Read the next batch of rows.
+     *
+     * @return the number of rows, 0 if there are no more rows
+     */
+    public int next() {
+        batchId++;
+        int size = 0;
+        while (size < capacity && filter.next()) {
+            rows[size++] = filter.get();
+        }
+        for (int i = size; i < this.size; i++) {
+            rows[i] = null;
+        }
+        this.size = size;
+        return size;
+    }
+
+    /**
+     * Get the maximum number of rows in a batch.
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Get the row at the given position.
+     *
+     * @param index the position
+     * @return the row
+     */
+    public Row getRow(int index) {
+        return rows[index];
+    }
+
+    /**
+     * Get the values of the specified column. The values of NULL are 0.
+     *
+     * @param columnId the column id
+     * @return the values
+     */
+    public long[] getValues(int columnId) {
+        load(columnId);
+        return values[columnId];
+    }
+
+    /**
+     * Get the flags for NULL values of the specified column.
+     *
+     * @param columnId the column id
+     * @return the flags
+     */
+    public boolean[] getNulls(int columnId) {
+        load(columnId);
+        return nulls[columnId];
+    }
+
+    private void load(int columnId) {
+        if (loaded[columnId] == batchId) {
+            return;
+        }
+        long[] v = values[columnId];
+        boolean[] n = nulls[columnId];
+        if (v == null) {
+            values[columnId] = v = new long[capacity];
+            nulls[columnId] = n = new boolean[capacity];
+        }
+        for (int i = 0; i < size; i++) {
+            Value x = rows[i].getValue(columnId);
+            if (x == ValueNull.INSTANCE) {
+                v[i] = 0;
+                n[i] = true;
+            } else {
+                v[i] = x.getLong();
+                n[i] = false;
+            }
+        }
+        loaded[columnId] = batchId;
+    }
+
+}
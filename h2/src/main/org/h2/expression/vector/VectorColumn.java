@@ -0,0 +1,35 @@
+/*
+ * Copyright 2004-2018 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.expression.vector;
+
+/**
+ * The values of a column.
+ */
+public class VectorColumn extends VectorExpression {
+
+    private final int columnId;
+
+    /**
+     * Create the values of a column.
+     *
+     * @param columnId the column id
+     */
+    public VectorColumn(int columnId) {
+        this.columnId = columnId;
+    }
+
+    @Override
+    public void getValues(VectorBatch batch, int[] selection, int count, long[] values, boolean[] nulls) {
+        long[] v = batch.getValues(columnId);
+        boolean[] n = batch.getNulls(columnId);
+        for (int i = 0; i < count; i++) {
+            int row = selection[i];
+            values[row] = v[row];
+            nulls[row] = n[row];
+        }
+    }
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2004-2018 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.expression.vector;
+
+import org.h2.expression.condition.Comparison;
+import org.h2.message.DbException;
+
+/**
+ * A comparison of two values, or a check for NULL.
+ */
+public class VectorComparison extends VectorExpression {
+
+    private final int compareType;
+
+    private final VectorExpression left, right;
+
+    private long[] leftValues, rightValues;
+
+    private boolean[] leftNulls, rightNulls;
+
+    private int[] notNull;
+
+    /**
+     * Create a comparison.
+     *
+     * @param compareType the compare type, see {@link Comparison}
+     * @param left the left expression
+     * @param right the right expression, or null for IS NULL and IS NOT NULL
+     */
+    public VectorComparison(int compareType, VectorExpression left, VectorExpression right) {
+        this.compareType = compareType;
+        this.left = left;
+        this.right = right;
+    }
+
+    @Override
+    public void getValues(VectorBatch batch, int[] selection, int count, long[] values, boolean[] nulls) {
+        if (leftValues == null) {
+            int capacity = batch.getCapacity();
+            leftValues = new long[capacity];
+            leftNulls = new boolean[capacity];
+            if (right != null) {
+                rightValues = new long[capacity];
+                rightNulls = new boolean[capacity];
+                notNull = new int[capacity];
+            }
+        }
+        long[] l = leftValues;
+        boolean[] ln = leftNulls;
+        left.getValues(batch, selection, count, l, ln);
+        if (right == null) {
+            boolean isNull = compareType == Comparison.IS_NULL;
+            for (int i = 0; i < count; i++) {
+                int row = selection[i];
+                values[row] = ln[row] == isNull ? 1 : 0;
+                nulls[row] = false;
+            }
+            return;
+        }
+        // the right expression is not evaluated if the left value is NULL
+        int notNullCount = 0;
+        for (int i = 0; i < count; i++) {
+            int row = selection[i];
+            if (ln[row]) {
+                nulls[row] = true;
+            } else {
+                notNull[notNullCount++] = row;
+            }
+        }
+        long[] r = rightValues;
+        boolean[] rn = rightNulls;
+        right.getValues(batch, notNull, notNullCount, r, rn);
+        for (int i = 0; i < notNullCount; i++) {
+            int row = notNull[i];
+            if (rn[row]) {
+                nulls[row] = true;
+                continue;
+            }
+            long a = l[row], b = r[row];
+            boolean result;
+            switch (compareType) {
+            case Comparison.EQUAL:
+                result = a == b;
+                break;
+            case Comparison.NOT_EQUAL:
+                result = a != b;
+                break;
+            case Comparison.BIGGER:
+                result = a > b;
+                break;
+            case Comparison.BIGGER_EQUAL:
+                result = a >= b;
+                break;
+            case Comparison.SMALLER:
+                result = a < b;
+                break;
+            case Comparison.SMALLER_EQUAL:
+                result = a <= b;
+                break;
+            default:
+                throw DbException.throwInternalError("type=" + compareType);
+            }
+            values[row] = result ? 1 : 0;
+            nulls[row] = false;
+        }
+    }
+
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2004-2018 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.expression.vector;
+
+import org.h2.value.Value;
+import org.h2.value.ValueNull;
+
+/**
+ * A constant value.
+ */
+public class VectorConstant extends VectorExpression {
+
+    private final long value;
+
+    private final boolean isNull;
+
+    private VectorConstant(long value, boolean isNull) {
+        this.value = value;
+        this.isNull = isNull;
+    }
+
+    /**
+     * Get a vectorized constant for the given value.
+     *
+     * @param v the value
+     * @return the constant, or null if the value is not supported
+     */
+    public static VectorConstant get(Value v) {
+        if (v == ValueNull.INSTANCE) {
+            return new VectorConstant(0, true);
+        } else if (isSupportedType(v.getType())) {
+            return new VectorConstant(v.getLong(), false);
+        }
+        return null;
+    }
+
+    @Override
+    public void getValues(VectorBatch batch, int[] selection, int count, long[] values, boolean[] nulls) {
+        for (int i = 0; i < count; i++) {
+            int row = selection[i];
+            values[row] = value;
+            nulls[row] = isNull;
+        }
+    }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2004-2018 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.expression.vector;
+
+import org.h2.value.Value;
+
+/**
+ * An expression that computes its values for a batch of rows at once. All
+ * values are stored as long values: integer values as they are, and boolean
+ * values as 1 (true) and 0 (false).
+ * <p>
+ * Only the rows of the selection are processed. The positions in the
+ * selection are ascending.
+ */
+public abstract class VectorExpression {
+
+    private long[] filterValues;
+
+    private boolean[] filterNulls;
+
+    /**
+     * Compute the values of the selected rows. The value of the row at
+     * position i is stored in values[i] and nulls[i].
+     *
+     * @param batch the batch
+     * @param selection the positions of the rows
+     * @param count the number of selected rows
+     * @param values the values
+     * @param nulls the flags for NULL values
+     */
+    public abstract void getValues(VectorBatch batch, int[] selection, int count, long[] values, boolean[] nulls);
+
+    /**
+     * Keep only the rows for which this condition is true.
+     *
+     * @param batch the batch
+     * @param selection the positions of the rows, updated in place
+     * @param count the number of selected rows
+     * @return the new number of selected rows
+     */
+    public int filter(VectorBatch batch, int[] selection, int count) {
+        if (filterValues == null) {
+            filterValues = new long[batch.getCapacity()];
+            filterNulls = new boolean[batch.getCapacity()];
+        }
+        long[] values = filterValues;
+        boolean[] nulls = filterNulls;
+        getValues(batch, selection, count, values, nulls);
+        int result = 0;
+        for (int i = 0; i < count; i++) {
+            int row = selection[i];
+            if (!nulls[row] && values[row] != 0) {
+                selection[result++] = row;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Check whether values of the given data type can be stored as long
+     * values without loss.
+     *
+     * @param type the data type
+     * @return true if yes
+     */
+    public static boolean isSupportedType(int type) {
+        switch (type) {
+        case Value.BYTE:
+        case Value.SHORT:
+        case Value.INT:
+        case Value.LONG:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+}
@@ -11,6 +11,11 @@
 import org.h2.engine.Constants;
 import org.h2.engine.DbObject;
 import org.h2.engine.Session;
+import org.h2.expression.Expression;
+import org.h2.expression.ExpressionColumn;
+import org.h2.expression.ValueExpression;
+import org.h2.expression.condition.Comparison;
+import org.h2.expression.condition.ConditionAndOr;
 import org.h2.message.DbException;
 import org.h2.message.Trace;
 import org.h2.result.Row;
@@ -18,6 +23,7 @@
 import org.h2.result.SortOrder;
 import org.h2.schema.SchemaObjectBase;
 import org.h2.table.Column;
+import org.h2.table.ColumnStatistics;
 import org.h2.table.IndexColumn;
 import org.h2.table.Table;
 import org.h2.table.TableFilter;
@@ -35,6 +41,8 @@ public abstract class BaseIndex extends SchemaObjectBase implements Index {
     protected IndexColumn[] indexColumns;
     protected Column[] columns;
     protected int[] columnIds;
+    protected Column[] includedColumns;
+    protected Expression condition;
     protected final Table table;
     protected final IndexType indexType;
 
@@ -146,6 +154,11 @@ public Cursor findNext(Session session, SearchRow higherThan, SearchRow last) {
         throw DbException.throwInternalError(toString());
     }
 
+    @Override
+    public Cursor[] findParallel(Session session, int count) {
+        return null;
+    }
+
     /**
      * Calculate the cost for the given mask as if this index was a typical
      * b-tree range index. This is the estimated cost required to search one
@@ -164,16 +177,25 @@ public Cursor findNext(Session session, SearchRow higherThan, SearchRow last) {
     protected final long getCostRangeIndex(int[] masks, long rowCount,
             TableFilter[] filters, int filter, SortOrder sortOrder,
             boolean isScanIndex, AllColumnsForPlan allColumnsSet) {
+        long actualRowCount = rowCount;
         rowCount += Constants.COST_ROW_OFFSET;
         int totalSelectivity = 0;
         long rowsCost = rowCount;
         if (masks != null) {
             int i = 0, len = columns.length;
             boolean tryAdditional = false;
+            TableFilter tableFilter = filters == null ? null : filters[filter];
+            // the estimated fraction of the rows, if the statistics of all
+            // used columns are known
+            double fraction = tableFilter == null ? -1 : 1;
             while (i < len) {
                 Column column = columns[i++];
                 int index = column.getColumnId();
                 int mask = masks[index];
+                ColumnStatistics statistics = column.getStatistics();
+                if (statistics == null) {
+                    fraction = -1;
+                }
                 if ((mask & IndexCondition.EQUALITY) == IndexCondition.EQUALITY) {
                     if (i == len && getIndexType().isUnique()) {
                         rowsCost = 3;
@@ -186,17 +208,30 @@ protected final long getCostRangeIndex(int[] masks, long rowCount,
                         distinctRows = 1;
                     }
                     rowsCost = 2 + Math.max(rowCount / distinctRows, 1);
+                    if (fraction >= 0) {
+                        fraction *= getEqualFraction(tableFilter, column, statistics);
+                        rowsCost = 2 + Math.max((long) (actualRowCount * fraction), 1);
+                    }
                 } else if ((mask & IndexCondition.RANGE) == IndexCondition.RANGE) {
                     rowsCost = 2 + rowsCost / 4;
                     tryAdditional = true;
+                    if (fraction >= 0) {
+                        rowsCost = getRangeCost(tableFilter, column, statistics, actualRowCount * fraction, rowsCost);
+                    }
                     break;
                 } else if ((mask & IndexCondition.START) == IndexCondition.START) {
                     rowsCost = 2 + rowsCost / 3;
                     tryAdditional = true;
+                    if (fraction >= 0) {
+                        rowsCost = getRangeCost(tableFilter, column, statistics, actualRowCount * fraction, rowsCost);
+                    }
                     break;
                 } else if ((mask & IndexCondition.END) == IndexCondition.END) {
                     rowsCost = rowsCost / 3;
                     tryAdditional = true;
+                    if (fraction >= 0) {
+                        rowsCost = getRangeCost(tableFilter, column, statistics, actualRowCount * fraction, rowsCost);
+                    }
                     break;
                 } else {
                     if (mask == 0) {
@@ -277,6 +312,14 @@ protected final long getCostRangeIndex(int[] masks, long rowCount,
                             break;
                         }
                     }
+                    if (!found && includedColumns != null) {
+                        for (Column c2 : includedColumns) {
+                            if (c == c2) {
+                                found = true;
+                                break;
+                            }
+                        }
+                    }
                     if (!found) {
                         foundAllColumnsWeNeed = false;
                         break;
@@ -303,6 +346,207 @@ protected final long getCostRangeIndex(int[] masks, long rowCount,
         return rc;
     }
 
+    /**
+     * Check whether the condition of a partial index is implied by the
+     * condition of the query, that is, whether the index contains all rows
+     * the query could need. The index condition is implied if each of its
+     * AND terms is a term of the query condition, or a comparison of a column
+     * with a constant that is implied by such a term.
+     *
+     * @param filters all joined table filters
+     * @param filter the current table filter index
+     * @return true if the index may be used
+     */
+    protected final boolean isConditionImplied(TableFilter[] filters, int filter) {
+        if (condition == null) {
+            return true;
+        }
+        if (filters == null) {
+            return false;
+        }
+        TableFilter tableFilter = filters[filter];
+        if (tableFilter.isJoinOuter() || tableFilter.isJoinOuterIndirect()) {
+            // null rows of outer joins could match the query condition
+            return false;
+        }
+        Expression fullCondition = tableFilter.getFullCondition();
+        if (fullCondition == null) {
+            return false;
+        }
+        ArrayList<Expression> queryTerms = new ArrayList<>();
+        addAndTerms(fullCondition, queryTerms);
+        ArrayList<Expression> indexTerms = new ArrayList<>();
+        addAndTerms(condition, indexTerms);
+        for (Expression indexTerm : indexTerms) {
+            boolean implied = false;
+            for (Expression queryTerm : queryTerms) {
+                if (implies(queryTerm, indexTerm, tableFilter)) {
+                    implied = true;
+                    break;
+                }
+            }
+            if (!implied) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void addAndTerms(Expression e, ArrayList<Expression> terms) {
+        if (e instanceof ConditionAndOr && ((ConditionAndOr) e).getAndOrType() == ConditionAndOr.AND) {
+            addAndTerms(e.getSubexpression(0), terms);
+            addAndTerms(e.getSubexpression(1), terms);
+        } else {
+            terms.add(e);
+        }
+    }
+
+    private boolean implies(Expression queryTerm, Expression indexTerm, TableFilter tableFilter) {
+        if (tableFilter.isEquivalent(queryTerm, indexTerm)) {
+            return true;
+        }
+        if (!(queryTerm instanceof Comparison) || !(indexTerm instanceof Comparison)) {
+            return false;
+        }
+        Comparison q = (Comparison) queryTerm, i = (Comparison) indexTerm;
+        int qType = q.getCompareType(), iType = i.getCompareType();
+        if (q.getSubexpressionCount() != 2 || qType == Comparison.NOT_EQUAL
+                || qType == Comparison.NOT_EQUAL_NULL_SAFE
+                || !tableFilter.isEquivalent(q.getSubexpression(0), i.getSubexpression(0))
+                || !(q.getSubexpression(0) instanceof ExpressionColumn)
+                || !(q.getSubexpression(1) instanceof ValueExpression)) {
+            return false;
+        }
+        Value qValue = q.getSubexpression(1).getValue(null);
+        if (qValue == ValueNull.INSTANCE) {
+            return false;
+        }
+        if (iType == Comparison.IS_NOT_NULL) {
+            // all other comparisons with a non-null value reject nulls
+            return true;
+        }
+        if (!(i.getSubexpression(1) instanceof ValueExpression)) {
+            return false;
+        }
+        Value iValue = i.getSubexpression(1).getValue(null);
+        if (iValue == ValueNull.INSTANCE) {
+            return false;
+        }
+        int c = database.compare(qValue, iValue);
+        switch (iType) {
+        case Comparison.EQUAL:
+            return qType == Comparison.EQUAL && c == 0;
+        case Comparison.BIGGER:
+            return qType == Comparison.BIGGER ? c >= 0
+                    : (qType == Comparison.EQUAL || qType == Comparison.BIGGER_EQUAL) && c > 0;
+        case Comparison.BIGGER_EQUAL:
+            return (qType == Comparison.EQUAL || qType == Comparison.BIGGER
+                    || qType == Comparison.BIGGER_EQUAL) && c >= 0;
+        case Comparison.SMALLER:
+            return qType == Comparison.SMALLER ? c <= 0
+                    : (qType == Comparison.EQUAL || qType == Comparison.SMALLER_EQUAL) && c < 0;
+        case Comparison.SMALLER_EQUAL:
+            return (qType == Comparison.EQUAL || qType == Comparison.SMALLER
+                    || qType == Comparison.SMALLER_EQUAL) && c <= 0;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Estimate the fraction of the rows that match the equality conditions on
+     * the specified column, using the statistics of the column. If the
+     * compared value is not known yet, the average fraction of a value is
+     * used.
+     */
+    private static double getEqualFraction(TableFilter tableFilter, Column column,
+            ColumnStatistics statistics) {
+        Table table = column.getTable();
+        double fraction = -1;
+        for (IndexCondition condition : tableFilter.getIndexConditions()) {
+            if (condition.getColumn() != column) {
+                continue;
+            }
+            double f = -1;
+            switch (condition.getCompareType()) {
+            case Comparison.EQUAL: {
+                Value v = getConstantValue(tableFilter, condition.getExpression());
+                f = statistics.getEqualFraction(table, v);
+                break;
+            }
+            case Comparison.IN_LIST: {
+                f = 0;
+                for (Expression e : condition.getExpressionList()) {
+                    f += statistics.getEqualFraction(table, getConstantValue(tableFilter, e));
+                }
+                break;
+            }
+            default:
+            }
+            if (f >= 0 && (fraction < 0 || f < fraction)) {
+                fraction = f;
+            }
+        }
+        return fraction < 0 ? statistics.getEqualFraction(table, null) : Math.min(fraction, 1);
+    }
+
+    /**
+     * Estimate the cost to iterate over the rows that match the range
+     * conditions on the specified column, using the statistics of the column.
+     * If the bounds are not known yet, the specified default cost is used.
+     */
+    private static long getRangeCost(TableFilter tableFilter, Column column, ColumnStatistics statistics,
+            double rows, long defaultCost) {
+        Table table = column.getTable();
+        Value low = null, high = null;
+        for (IndexCondition condition : tableFilter.getIndexConditions()) {
+            if (condition.getColumn() != column) {
+                continue;
+            }
+            Value v;
+            switch (condition.getCompareType()) {
+            case Comparison.BIGGER:
+            case Comparison.BIGGER_EQUAL:
+                v = getConstantValue(tableFilter, condition.getExpression());
+                if (v == null) {
+                    return defaultCost;
+                }
+                if (low == null || table.compareValues(v, low) > 0) {
+                    low = v;
+                }
+                break;
+            case Comparison.SMALLER:
+            case Comparison.SMALLER_EQUAL:
+                v = getConstantValue(tableFilter, condition.getExpression());
+                if (v == null) {
+                    return defaultCost;
+                }
+                if (high == null || table.compareValues(v, high) < 0) {
+                    high = v;
+                }
+                break;
+            default:
+            }
+        }
+        if (low == null && high == null) {
+            return defaultCost;
+        }
+        long cost = 2 + Math.max((long) (rows * statistics.getRangeFraction(table, low, high)), 1);
+        // prefer indexes that use more conditions
+        return Math.min(cost, 2 + (long) rows - 1);
+    }
+
+    private static Value getConstantValue(TableFilter tableFilter, Expression expr) {
+        if (expr == null || !expr.isConstant()) {
+            return null;
+        }
+        try {
+            return expr.getValue(tableFilter.getSession());
+        } catch (DbException e) {
+            return null;
+        }
+    }
+
     @Override
     public int compareRows(SearchRow rowData, SearchRow compare) {
         if (rowData == compare) {
@@ -432,6 +676,19 @@ public String getCreateSQLForCopy(Table targetTable, String quotedName) {
             StringUtils.quoteStringSQL(buff, comment);
         }
         buff.append('(').append(getColumnListSQL()).append(')');
+        if (includedColumns != null) {
+            buff.append(" INCLUDE(");
+            for (int i = 0; i < includedColumns.length; i++) {
+                if (i > 0) {
+                    buff.append(", ");
+                }
+                buff.append(includedColumns[i].getSQL());
+            }
+            buff.append(')');
+        }
+        if (condition != null) {
+            buff.append(" WHERE ").append(StringUtils.unEnclose(condition.getSQL()));
+        }
         return buff.toString();
     }
 
@@ -450,6 +707,16 @@ public Column[] getColumns() {
         return columns;
     }
 
+    @Override
+    public Column[] getIncludedColumns() {
+        return includedColumns;
+    }
+
+    @Override
+    public Expression getCondition() {
+        return condition;
+    }
+
     @Override
     public IndexType getIndexType() {
         return indexType;
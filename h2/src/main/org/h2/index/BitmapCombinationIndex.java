@@ -0,0 +1,154 @@
+/*
+ * Copyright 2004-2018 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.index;
+
+import java.util.LinkedHashSet;
+
+import org.h2.command.dml.AllColumnsForPlan;
+import org.h2.engine.Session;
+import org.h2.expression.Expression;
+import org.h2.index.bitmap.BitmapCondition;
+import org.h2.message.DbException;
+import org.h2.result.Row;
+import org.h2.result.SearchRow;
+import org.h2.result.SortOrder;
+import org.h2.table.IndexColumn;
+import org.h2.table.Table;
+import org.h2.table.TableFilter;
+import org.h2.util.RoaringBitmap;
+
+/**
+ * An index that finds the rows of a table using the bitmap indexes of
+ * multiple columns. The bitmaps of the conditions on the indexed columns are
+ * combined with AND, OR, and NOT, and only the rows of the result are read.
+ * The result is computed on the first lookup of a query, and is then used for
+ * all further lookups of the same query.
+ */
+public class BitmapCombinationIndex extends JoinIndex {
+
+    private final BitmapCondition condition;
+
+    private RoaringBitmap rowKeys;
+
+    private BitmapCombinationIndex(Table table, IndexColumn[] columns, Index source,
+            BitmapCondition condition) {
+        super(table, columns, source);
+        this.condition = condition;
+    }
+
+    /**
+     * Create an index for the condition of the query, if the condition uses
+     * bitmap indexes of at least two columns or values.
+     *
+     * @param session the session
+     * @param filter the table filter
+     * @return the index, or null if the bitmap indexes can't be combined
+     */
+    public static BitmapCombinationIndex create(Session session, TableFilter filter) {
+        Expression fullCondition = filter.getFullCondition();
+        if (fullCondition == null || filter.isJoinOuter() || filter.isJoinOuterIndirect()) {
+            // null rows of outer joins could match the query condition
+            return null;
+        }
+        BitmapCondition condition = fullCondition.getBitmapCondition(session, filter);
+        if (condition == null || condition.getLookupCount() < 2) {
+            return null;
+        }
+        LinkedHashSet<BitmapIndex> indexes = new LinkedHashSet<>();
+        condition.addIndexes(indexes);
+        IndexColumn[] columns = new IndexColumn[indexes.size()];
+        int i = 0;
+        for (BitmapIndex index : indexes) {
+            columns[i++] = index.getIndexColumns()[0];
+        }
+        Table table = filter.getTable();
+        return new BitmapCombinationIndex(table, columns, table.getScanIndex(session), condition);
+    }
+
+    /**
+     * Discard the result. It will be computed again on the next lookup.
+     */
+    @Override
+    public void reset() {
+        rowKeys = null;
+    }
+
+    @Override
+    public boolean isFindUsingFullTableScan() {
+        // the rows are found using the bitmaps, and not the index conditions
+        return true;
+    }
+
+    @Override
+    public Cursor find(Session session, SearchRow first, SearchRow last) {
+        if (rowKeys == null) {
+            rowKeys = condition.getRowKeys(session);
+        }
+        return new BitmapCursor(session, rowKeys.iterator());
+    }
+
+    @Override
+    public double getCost(Session session, int[] masks,
+            TableFilter[] filters, int filter, SortOrder sortOrder,
+            AllColumnsForPlan allColumnsSet) {
+        long rowCount = table.getRowCountApproximation();
+        long rowsCost = 2 + Math.max((long) (condition.getFraction() * rowCount), 1);
+        // each lookup of a bitmap index is about as expensive as reading a row
+        long cost = rowsCost + rowsCost + 20 + condition.getLookupCount();
+        if (sortOrder != null) {
+            cost += 100 + rowCount / 10;
+        }
+        // the same scale as the secondary indexes of the MVStore engine
+        return 10 * cost;
+    }
+
+    @Override
+    public String getPlanSQL() {
+        return condition.getSQL(new StringBuilder("bitmap ")).toString();
+    }
+
+    /**
+     * A cursor over the rows with the keys of a bitmap.
+     */
+    private final class BitmapCursor implements Cursor {
+
+        private final Session session;
+        private final RoaringBitmap.LongIterator it;
+        private Row row;
+
+        BitmapCursor(Session session, RoaringBitmap.LongIterator it) {
+            this.session = session;
+            this.it = it;
+        }
+
+        @Override
+        public Row get() {
+            return row;
+        }
+
+        @Override
+        public SearchRow getSearchRow() {
+            return row;
+        }
+
+        @Override
+        public boolean next() {
+            if (it.next()) {
+                row = table.getRow(session, it.get());
+                return true;
+            }
+            row = null;
+            return false;
+        }
+
+        @Override
+        public boolean previous() {
+            throw DbException.getUnsupportedException("previous");
+        }
+
+    }
+
+}
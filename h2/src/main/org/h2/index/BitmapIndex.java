@@ -0,0 +1,29 @@
+/*
+ * Copyright 2004-2018 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.index;
+
+import org.h2.engine.Session;
+import org.h2.util.RoaringBitmap;
+import org.h2.value.Value;
+
+/**
+ * A bitmap index. Bitmap indexes store the keys of the rows with the same
+ * value of the indexed column as a bitmap, so that the results of conditions
+ * on multiple columns can be combined before the rows are read.
+ */
+public interface BitmapIndex extends Index {
+
+    /**
+     * Get the keys of the rows with the given value in the indexed column.
+     *
+     * @param session the session
+     * @param value the value (NULL for the rows where the column is NULL),
+     *            or null for all rows
+     * @return the row keys
+     */
+    RoaringBitmap getRowKeys(Session session, Value value);
+
+}
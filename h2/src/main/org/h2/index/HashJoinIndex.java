@@ -0,0 +1,265 @@
+/*
+ * Copyright 2004-2018 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.index;
+
+import java.util.ArrayList;
+
+import org.h2.command.dml.AllColumnsForPlan;
+import org.h2.engine.Database;
+import org.h2.engine.Session;
+import org.h2.message.DbException;
+import org.h2.mvstore.db.MVTempHashTable;
+import org.h2.result.Row;
+import org.h2.result.SearchRow;
+import org.h2.result.SortOrder;
+import org.h2.table.Column;
+import org.h2.table.IndexColumn;
+import org.h2.table.Table;
+import org.h2.table.TableFilter;
+import org.h2.table.TableView;
+import org.h2.util.Utils;
+import org.h2.util.ValueHashMap;
+import org.h2.value.CompareMode;
+import org.h2.value.Value;
+import org.h2.value.ValueArray;
+import org.h2.value.ValueLong;
+
+/**
+ * An index used to join a table using a hash table. The hash table is built
+ * on the first lookup of a query from all rows of the table (or view), and is
+ * then used for all further lookups of the same query. This avoids reading
+ * the whole table for each row of the outer tables if there is no other
+ * usable index. If there are more rows than fit in memory, they are moved to
+ * a temporary file.
+ */
+public class HashJoinIndex extends JoinIndex {
+
+    private ValueHashMap<ArrayList<Row>> rows;
+
+    private MVTempHashTable external;
+
+    private int rowCount;
+
+    private HashJoinIndex(Table table, IndexColumn[] columns, Index source) {
+        super(table, columns, source);
+    }
+
+    /**
+     * Create a hash join index for the equality conditions of the specified
+     * table, if possible.
+     *
+     * @param session the session
+     * @param table the table
+     * @param masks the condition masks of the table columns
+     * @return the index, or null if the table can't be joined using a hash
+     *         table
+     */
+    public static HashJoinIndex create(Session session, Table table, int[] masks) {
+        if (!table.isDeterministic() || table.isView() && !((TableView) table).isIndependent()) {
+            return null;
+        }
+        Database database = session.getDatabase();
+        ArrayList<IndexColumn> list = Utils.newSmallArrayList();
+        for (Column column : table.getColumns()) {
+            if ((masks[column.getColumnId()] & IndexCondition.EQUALITY) == IndexCondition.EQUALITY
+                    && isHashable(database, column.getType())) {
+                IndexColumn c = new IndexColumn();
+                c.column = column;
+                c.columnName = column.getName();
+                list.add(c);
+            }
+        }
+        if (list.isEmpty()) {
+            return null;
+        }
+        return new HashJoinIndex(table, list.toArray(new IndexColumn[0]), table.getScanIndex(session));
+    }
+
+    /**
+     * Check whether values of the specified type are equal if and only if
+     * they are equal according to the database comparison rules, so that
+     * they can be used as keys of a hash table.
+     */
+    private static boolean isHashable(Database database, int type) {
+        switch (type) {
+        case Value.BOOLEAN:
+        case Value.BYTE:
+        case Value.SHORT:
+        case Value.INT:
+        case Value.LONG:
+        case Value.DATE:
+        case Value.TIME:
+        case Value.TIMESTAMP:
+        case Value.UUID:
+            return true;
+        case Value.STRING:
+            return CompareMode.OFF.equals(database.getCompareMode().getName());
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Get the cost of a full scan of the source, which is also the cost to
+     * build the hash table.
+     *
+     * @param session the session
+     * @param filters all joined table filters
+     * @param filter the current table filter index
+     * @param allColumnsSet the set of all columns
+     * @return the cost
+     */
+    public double getBuildCost(Session session, TableFilter[] filters, int filter,
+            AllColumnsForPlan allColumnsSet) {
+        return source.getCost(session, null, filters, filter, null, allColumnsSet);
+    }
+
+    /**
+     * Discard the hash table. It will be built again on the next lookup.
+     */
+    @Override
+    public void reset() {
+        rows = null;
+        rowCount = 0;
+        if (external != null) {
+            external.close();
+            external = null;
+        }
+    }
+
+    private void build(Session session) {
+        rows = new ValueHashMap<>();
+        Database database = session.getDatabase();
+        int maxMemoryRows = database.isPersistent() && !database.isReadOnly() ?
+                database.getMaxMemoryRows() : Integer.MAX_VALUE;
+        Cursor cursor = source.find(session, null, null);
+        while (cursor.next()) {
+            Row row = cursor.get();
+            if (external != null) {
+                addExternal(row);
+            } else {
+                Value key = getKey(row);
+                ArrayList<Row> list = rows.get(key);
+                if (list == null) {
+                    list = Utils.newSmallArrayList();
+                    rows.put(key, list);
+                }
+                list.add(row);
+                if (++rowCount > maxMemoryRows) {
+                    external = new MVTempHashTable(database, table.getColumns().length + 1);
+                    for (ArrayList<Row> l : rows.values()) {
+                        for (Row r : l) {
+                            addExternal(r);
+                        }
+                    }
+                    rows = null;
+                }
+            }
+        }
+    }
+
+    private void addExternal(Row row) {
+        int columnCount = table.getColumns().length;
+        Value[] values = new Value[columnCount + 1];
+        for (int i = 0; i < columnCount; i++) {
+            values[i] = row.getValue(i);
+        }
+        values[columnCount] = ValueLong.get(row.getKey());
+        external.add(getKey(row).hashCode(), values);
+    }
+
+    private Value getKey(SearchRow row) {
+        if (columnIds.length == 1) {
+            return row.getValue(columnIds[0]);
+        }
+        Value[] key = new Value[columnIds.length];
+        for (int i = 0; i < key.length; i++) {
+            key[i] = row.getValue(columnIds[i]);
+        }
+        return ValueArray.get(key);
+    }
+
+    @Override
+    public Cursor find(Session session, SearchRow first, SearchRow last) {
+        Value key = getSearchKey(first, last);
+        if (key == null) {
+            // not a lookup by all columns
+            return source.find(session, null, null);
+        }
+        if (rows == null && external == null) {
+            build(session);
+        }
+        ArrayList<Row> list;
+        if (external == null) {
+            list = rows.get(key);
+            if (list == null) {
+                list = new ArrayList<>(0);
+            }
+        } else {
+            list = new ArrayList<>();
+            for (Value[] values : external.get(key.hashCode())) {
+                Row row = createRow(values);
+                if (key.equals(getKey(row))) {
+                    list.add(row);
+                }
+            }
+        }
+        return new MetaCursor(list);
+    }
+
+    private Value getSearchKey(SearchRow first, SearchRow last) {
+        if (first == null || first != last && (last == null || compareRows(first, last) != 0)) {
+            return null;
+        }
+        Value[] values = new Value[columnIds.length];
+        for (int i = 0; i < values.length; i++) {
+            Value v = first.getValue(columnIds[i]);
+            if (v == null) {
+                return null;
+            }
+            // the search value may have a different data type
+            try {
+                values[i] = v.convertTo(columns[i].getType(), database.getMode());
+            } catch (DbException e) {
+                return null;
+            }
+        }
+        return values.length == 1 ? values[0] : ValueArray.get(values);
+    }
+
+    private Row createRow(Value[] values) {
+        int columnCount = values.length - 1;
+        Value[] data = new Value[columnCount];
+        System.arraycopy(values, 0, data, 0, columnCount);
+        Row row = table.createRow(data, Row.MEMORY_CALCULATE);
+        row.setKey(values[columnCount].getLong());
+        return row;
+    }
+
+    @Override
+    public double getCost(Session session, int[] masks,
+            TableFilter[] filters, int filter, SortOrder sortOrder,
+            AllColumnsForPlan allColumnsSet) {
+        for (Column column : columns) {
+            if ((masks[column.getColumnId()] & IndexCondition.EQUALITY) != IndexCondition.EQUALITY) {
+                return Long.MAX_VALUE;
+            }
+        }
+        long rowCount = table.getRowCountApproximation();
+        // a lookup costs a bit more than a lookup in a regular index of the
+        // table, so that regular indexes are preferred; the costs of the
+        // indexes of different kinds of tables use different scales
+        double scale = getBuildCost(session, filters, filter, allColumnsSet)
+                / getCostRangeIndex(null, rowCount, filters, filter, null, true, null);
+        return 1.1 * scale * getCostRangeIndex(masks, rowCount, filters, filter, sortOrder, false, null);
+    }
+
+    @Override
+    public String getPlanSQL() {
+        return "hash join " + source.getPlanSQL();
+    }
+
+}
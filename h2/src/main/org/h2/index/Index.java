@@ -7,6 +7,7 @@
 
 import org.h2.command.dml.AllColumnsForPlan;
 import org.h2.engine.Session;
+import org.h2.expression.Expression;
 import org.h2.result.Row;
 import org.h2.result.SearchRow;
 import org.h2.result.SortOrder;
@@ -160,6 +161,18 @@ public interface Index extends SchemaObject {
      */
     Cursor findFirstOrLast(Session session, boolean first);
 
+    /**
+     * Split the rows of this index into ranges that can be read concurrently
+     * by different threads. The ranges are returned in the index order, and
+     * together contain the same rows as a full scan of the index.
+     *
+     * @param session the session
+     * @param count the preferred number of ranges
+     * @return the cursors to iterate over the ranges, or null if this index
+     *         does not support concurrent reads
+     */
+    Cursor[] findParallel(Session session, int count);
+
     /**
      * Check if the index needs to be rebuilt.
      * This method is called after opening an index.
@@ -230,6 +243,22 @@ public interface Index extends SchemaObject {
      */
     Column[] getColumns();
 
+    /**
+     * Get the columns that are stored in the index in addition to the indexed
+     * columns, so that queries can read them without accessing the table.
+     *
+     * @return the included columns, or null if there are none
+     */
+    Column[] getIncludedColumns();
+
+    /**
+     * Get the condition of a partial index. Only rows that match the condition
+     * are contained in such an index.
+     *
+     * @return the condition, or null if the index contains all rows
+     */
+    Expression getCondition();
+
     /**
      * Get the index type.
      *
@@ -14,9 +14,11 @@
 import org.h2.result.ResultInterface;
 import org.h2.result.Row;
 import org.h2.result.SearchRow;
+import org.h2.result.SimpleRow;
 import org.h2.result.SortOrder;
 import org.h2.table.Column;
 import org.h2.table.IndexColumn;
+import org.h2.table.IndexExpressionColumn;
 import org.h2.table.Table;
 import org.h2.table.TableFilter;
 import org.h2.value.Value;
@@ -55,7 +57,7 @@ public void setIndex(Index index) {
         this.index = index;
         this.table = index.getTable();
         Column[] columns = table.getColumns();
-        indexColumns = new IndexColumn[columns.length];
+        indexColumns = new IndexColumn[table.getColumnIdLimit()];
         IndexColumn[] idxCols = index.getIndexColumns();
         if (idxCols != null) {
             for (int i = 0, len = columns.length; i < len; i++) {
@@ -64,6 +66,11 @@ public void setIndex(Index index) {
                     indexColumns[i] = idxCols[idx];
                 }
             }
+            for (IndexColumn c : idxCols) {
+                if (c != null && c.column instanceof IndexExpressionColumn) {
+                    indexColumns[c.column.getColumnId()] = c;
+                }
+            }
         }
     }
 
@@ -143,7 +150,7 @@ public void prepare(Session s, ArrayList<IndexCondition> indexConditions) {
             }
         }
         if (inColumn != null) {
-            start = table.getTemplateRow();
+            start = getTemplateRow();
         }
     }
 
@@ -189,9 +196,23 @@ private boolean canUseIndexFor(Column column) {
         return idxCol == null || idxCol.column == column;
     }
 
+    /**
+     * Get an empty search row. If the table has expression indexes, the row
+     * also contains the values of the expressions.
+     *
+     * @return the search row
+     */
+    private SearchRow getTemplateRow() {
+        int limit = table.getColumnIdLimit();
+        if (limit == table.getColumns().length) {
+            return table.getTemplateRow();
+        }
+        return new SimpleRow(new Value[limit]);
+    }
+
     private SearchRow getSpatialSearchRow(SearchRow row, int columnId, Value v) {
         if (row == null) {
-            row = table.getTemplateRow();
+            row = getTemplateRow();
         } else if (row.getValue(columnId) != null) {
             // if an object needs to overlap with both a and b,
             // then it needs to overlap with the the union of a and b
@@ -211,7 +232,7 @@ private SearchRow getSpatialSearchRow(SearchRow row, int columnId, Value v) {
 
     private SearchRow getSearchRow(SearchRow row, int columnId, Value v, boolean max) {
         if (row == null) {
-            row = table.getTemplateRow();
+            row = getTemplateRow();
         } else {
             v = getMax(row.getValue(columnId), v, max);
         }
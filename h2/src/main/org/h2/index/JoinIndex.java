@@ -0,0 +1,108 @@
+/*
+ * Copyright 2004-2018 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.index;
+
+import org.h2.engine.Session;
+import org.h2.message.DbException;
+import org.h2.result.Row;
+import org.h2.table.IndexColumn;
+import org.h2.table.Table;
+
+/**
+ * The base class for indexes that are used for a single query to join a
+ * table, and that keep state between the lookups of the query.
+ */
+public abstract class JoinIndex extends BaseIndex {
+
+    /**
+     * The source of the rows.
+     */
+    protected final Index source;
+
+    /**
+     * Create a join index.
+     *
+     * @param table the table
+     * @param columns the columns
+     * @param source the source of the rows
+     */
+    protected JoinIndex(Table table, IndexColumn[] columns, Index source) {
+        super(table, 0, null, columns, IndexType.createNonUnique(false));
+        this.source = source;
+    }
+
+    /**
+     * Discard the state of the previous lookups. This method is called
+     * before and after each execution of the query.
+     */
+    public abstract void reset();
+
+    @Override
+    public void close(Session session) {
+        reset();
+    }
+
+    @Override
+    public void add(Session session, Row row) {
+        throw DbException.getUnsupportedException("JOIN");
+    }
+
+    @Override
+    public void remove(Session session, Row row) {
+        throw DbException.getUnsupportedException("JOIN");
+    }
+
+    @Override
+    public void remove(Session session) {
+        throw DbException.getUnsupportedException("JOIN");
+    }
+
+    @Override
+    public void truncate(Session session) {
+        throw DbException.getUnsupportedException("JOIN");
+    }
+
+    @Override
+    public void checkRename() {
+        throw DbException.getUnsupportedException("JOIN");
+    }
+
+    @Override
+    public boolean needRebuild() {
+        return false;
+    }
+
+    @Override
+    public boolean canGetFirstOrLast() {
+        return false;
+    }
+
+    @Override
+    public Cursor findFirstOrLast(Session session, boolean first) {
+        throw DbException.getUnsupportedException("JOIN");
+    }
+
+    @Override
+    public boolean canScan() {
+        return false;
+    }
+
+    @Override
+    public long getRowCount(Session session) {
+        return source.getRowCount(session);
+    }
+
+    @Override
+    public long getRowCountApproximation() {
+        return table.getRowCountApproximation();
+    }
+
+    @Override
+    public long getDiskSpaceUsed() {
+        return 0;
+    }
+
+}
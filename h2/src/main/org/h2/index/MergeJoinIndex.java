@@ -0,0 +1,257 @@
+/*
+ * Copyright 2004-2018 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.index;
+
+import java.util.ArrayList;
+
+import org.h2.command.dml.AllColumnsForPlan;
+import org.h2.engine.Session;
+import org.h2.expression.Expression;
+import org.h2.expression.ExpressionColumn;
+import org.h2.expression.condition.Comparison;
+import org.h2.message.DbException;
+import org.h2.mvstore.db.MVDelegateIndex;
+import org.h2.mvstore.db.MVPrimaryIndex;
+import org.h2.mvstore.db.MVSecondaryIndex;
+import org.h2.result.Row;
+import org.h2.result.SearchRow;
+import org.h2.result.SortOrder;
+import org.h2.table.Column;
+import org.h2.table.IndexColumn;
+import org.h2.table.TableFilter;
+import org.h2.value.Value;
+import org.h2.value.ValueNull;
+
+/**
+ * An index used to join a table if the rows of the outer table are read in
+ * the order of the join column. Instead of searching the index from the root
+ * for each row of the outer table, a single cursor over the index is moved
+ * forward, so that both tables are read sequentially. The rows with the
+ * current key are kept, because the next row of the outer table usually has
+ * the same key. If the key of a lookup is smaller than the key of the previous
+ * lookup, the index is searched again.
+ */
+public class MergeJoinIndex extends JoinIndex {
+
+    /**
+     * The join column.
+     */
+    private final Column column;
+
+    private final int maxRunRows;
+
+    /**
+     * Whether the search rows of the source contain all columns.
+     */
+    private final boolean fullRows;
+
+    private Cursor cursor;
+
+    private SearchRow pending;
+
+    private Value runKey;
+
+    private ArrayList<SearchRow> run;
+
+    private MergeJoinIndex(TableFilter filter, Column column, Index index) {
+        super(filter.getTable(), index.getIndexColumns(), index);
+        this.column = column;
+        maxRunRows = filter.getSession().getDatabase().getMaxMemoryRows();
+        fullRows = !(index instanceof MVSecondaryIndex);
+    }
+
+    /**
+     * Create a merge join index for the specified table filter, if the rows
+     * of the outer table filter are read in the order of the join column.
+     *
+     * @param filter the table filter
+     * @param index the index that would be used otherwise
+     * @param outer the outer table filter
+     * @param outerIndex the index used to read the outer table filter
+     * @param outerMasks the condition masks of the outer table filter
+     * @return the index, or null if a merge join is not possible
+     */
+    public static MergeJoinIndex create(TableFilter filter, Index index, TableFilter outer, Index outerIndex,
+            int[] outerMasks) {
+        Column column = getSortedColumn(index);
+        Column outerColumn = getSortedColumn(outerIndex);
+        if (column == null || outerColumn == null || column.getType() != outerColumn.getType()) {
+            return null;
+        }
+        if (outerMasks != null && (outerMasks[outerColumn.getColumnId()] & IndexCondition.EQUALITY) != 0) {
+            // a single key of the outer table filter
+            return null;
+        }
+        for (IndexCondition condition : filter.getIndexConditions()) {
+            if (condition.getColumn() == column && condition.getCompareType() == Comparison.EQUAL) {
+                Expression expr = condition.getExpression();
+                if (expr instanceof ExpressionColumn) {
+                    ExpressionColumn c = (ExpressionColumn) expr;
+                    if (c.getTableFilter() == outer && c.getColumn() == outerColumn) {
+                        return new MergeJoinIndex(filter, column, index);
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the column in which order a scan of the index returns the rows.
+     *
+     * @param index the index
+     * @return the column, or null if the order is not known
+     */
+    private static Column getSortedColumn(Index index) {
+        if (index instanceof MVPrimaryIndex) {
+            int mainIndexColumn = ((MVPrimaryIndex) index).getMainIndexColumn();
+            return mainIndexColumn < 0 ? null : index.getTable().getColumn(mainIndexColumn);
+        } else if (index instanceof MVSecondaryIndex || index instanceof MVDelegateIndex) {
+            IndexColumn first = index.getIndexColumns()[0];
+            return first.sortType == SortOrder.ASCENDING && first.expression == null ? first.column : null;
+        }
+        return null;
+    }
+
+    @Override
+    public void reset() {
+        cursor = null;
+        pending = null;
+        runKey = null;
+        run = null;
+    }
+
+    @Override
+    public Cursor find(Session session, SearchRow first, SearchRow last) {
+        Value key = getSearchKey(first, last);
+        if (key == null) {
+            // not an equality lookup
+            return source.find(session, first, last);
+        }
+        if (runKey != null) {
+            int comp = table.compareValues(key, runKey);
+            if (comp == 0) {
+                return new RunCursor(session, run);
+            } else if (comp < 0) {
+                reset();
+            }
+        }
+        if (runKey == null) {
+            SearchRow start = table.getTemplateRow();
+            start.setValue(column.getColumnId(), key);
+            cursor = source.find(session, start, null);
+        }
+        runKey = key;
+        run = new ArrayList<>();
+        int columnId = column.getColumnId();
+        while (true) {
+            SearchRow row = pending;
+            pending = null;
+            int comp;
+            if (row != null) {
+                comp = table.compareValues(row.getValue(columnId), key);
+            } else {
+                if (cursor == null || !cursor.next()) {
+                    cursor = null;
+                    break;
+                }
+                row = cursor.getSearchRow();
+                Value v = row.getValue(columnId);
+                if (v == ValueNull.INSTANCE) {
+                    continue;
+                }
+                comp = table.compareValues(v, key);
+            }
+            if (comp < 0) {
+                continue;
+            } else if (comp > 0) {
+                pending = row;
+                break;
+            }
+            if (run.size() >= maxRunRows) {
+                // too many rows with the same key
+                reset();
+                return source.find(session, first, last);
+            }
+            run.add(row);
+        }
+        return new RunCursor(session, run);
+    }
+
+    /**
+     * A cursor over the rows with the same key. Only the search rows are
+     * kept, so that the rows are only read if needed.
+     */
+    private final class RunCursor implements Cursor {
+
+        private final Session session;
+
+        private final ArrayList<SearchRow> rows;
+
+        private int index;
+
+        private SearchRow current;
+
+        private Row row;
+
+        RunCursor(Session session, ArrayList<SearchRow> rows) {
+            this.session = session;
+            this.rows = rows;
+        }
+
+        @Override
+        public Row get() {
+            if (row == null && current != null) {
+                row = fullRows ? (Row) current : table.getRow(session, current.getKey());
+            }
+            return row;
+        }
+
+        @Override
+        public SearchRow getSearchRow() {
+            return current;
+        }
+
+        @Override
+        public boolean next() {
+            current = index < rows.size() ? rows.get(index++) : null;
+            row = null;
+            return current != null;
+        }
+
+        @Override
+        public boolean previous() {
+            throw DbException.throwInternalError(toString());
+        }
+
+    }
+
+    private Value getSearchKey(SearchRow first, SearchRow last) {
+        if (first == null || last == null) {
+            return null;
+        }
+        int columnId = column.getColumnId();
+        Value v = first.getValue(columnId), w = last.getValue(columnId);
+        if (v == null || w == null || v == ValueNull.INSTANCE || v != w && table.compareValues(v, w) != 0) {
+            return null;
+        }
+        return v;
+    }
+
+    @Override
+    public double getCost(Session session, int[] masks,
+            TableFilter[] filters, int filter, SortOrder sortOrder,
+            AllColumnsForPlan allColumnsSet) {
+        // the index does not need to be searched from the root
+        return source.getCost(session, masks, filters, filter, sortOrder, allColumnsSet) / 2;
+    }
+
+    @Override
+    public String getPlanSQL() {
+        return "merge join " + source.getPlanSQL();
+    }
+
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2004-2018 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.index.bitmap;
+
+import java.util.Set;
+import org.h2.engine.Session;
+import org.h2.index.BitmapIndex;
+import org.h2.util.RoaringBitmap;
+
+/**
+ * An AND or OR combination of two bitmap conditions.
+ */
+public class BitmapAndOr extends BitmapCondition {
+
+    private final boolean and;
+    private final BitmapCondition left, right;
+
+    /**
+     * Create an AND or OR combination. For AND, the right condition may be
+     * null if the other operand of the AND condition can't be evaluated
+     * using bitmap indexes.
+     *
+     * @param and true for AND, false for OR
+     * @param left the left condition
+     * @param right the right condition, or null
+     */
+    public BitmapAndOr(boolean and, BitmapCondition left, BitmapCondition right) {
+        this.and = and;
+        this.left = left;
+        this.right = right;
+    }
+
+    @Override
+    public RoaringBitmap getRowKeys(Session session) {
+        if (right == null) {
+            return left.getRowKeys(session);
+        }
+        if (!and) {
+            return left.getRowKeys(session).or(right.getRowKeys(session));
+        }
+        // "A AND NOT B" doesn't need the set of all rows
+        if (right instanceof BitmapNot) {
+            return left.getRowKeys(session).andNot(((BitmapNot) right).getCondition().getRowKeys(session));
+        } else if (left instanceof BitmapNot) {
+            return right.getRowKeys(session).andNot(((BitmapNot) left).getCondition().getRowKeys(session));
+        }
+        return left.getRowKeys(session).and(right.getRowKeys(session));
+    }
+
+    @Override
+    public boolean isExact() {
+        return right != null && left.isExact() && right.isExact();
+    }
+
+    @Override
+    public double getFraction() {
+        if (right == null) {
+            return left.getFraction();
+        }
+        if (and) {
+            return left.getFraction() * right.getFraction();
+        }
+        return Math.min(left.getFraction() + right.getFraction(), 1);
+    }
+
+    @Override
+    public int getLookupCount() {
+        return left.getLookupCount() + (right == null ? 0 : right.getLookupCount());
+    }
+
+    @Override
+    public void addIndexes(Set<BitmapIndex> indexes) {
+        left.addIndexes(indexes);
+        if (right != null) {
+            right.addIndexes(indexes);
+        }
+    }
+
+    @Override
+    public StringBuilder getSQL(StringBuilder builder) {
+        if (right == null) {
+            return left.getSQL(builder);
+        }
+        builder.append('(');
+        left.getSQL(builder).append(and ? " AND " : " OR ");
+        return right.getSQL(builder).append(')');
+    }
+
+}
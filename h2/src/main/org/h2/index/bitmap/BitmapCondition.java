@@ -0,0 +1,65 @@
+/*
+ * Copyright 2004-2018 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.index.bitmap;
+
+import java.util.Set;
+import org.h2.engine.Session;
+import org.h2.index.BitmapIndex;
+import org.h2.util.RoaringBitmap;
+
+/**
+ * A condition that is evaluated using bitmap indexes. The result is the set
+ * of the keys of the rows that may match the condition. The condition of the
+ * query is still evaluated for each of these rows.
+ */
+public abstract class BitmapCondition {
+
+    /**
+     * Get the keys of the rows that may match the condition.
+     *
+     * @param session the session
+     * @return the row keys
+     */
+    public abstract RoaringBitmap getRowKeys(Session session);
+
+    /**
+     * Check whether the result contains exactly the rows for which the
+     * condition is true, and not only a superset of them.
+     *
+     * @return true if the result is exact
+     */
+    public abstract boolean isExact();
+
+    /**
+     * Estimate the fraction of the rows of the table in the result.
+     *
+     * @return the fraction, between 0 and 1
+     */
+    public abstract double getFraction();
+
+    /**
+     * Get the number of index lookups needed to evaluate the condition.
+     *
+     * @return the number of lookups
+     */
+    public abstract int getLookupCount();
+
+    /**
+     * Add the bitmap indexes used by this condition to the set.
+     *
+     * @param indexes the set of indexes
+     */
+    public abstract void addIndexes(Set<BitmapIndex> indexes);
+
+    /**
+     * Append the SQL snippet of this condition, for the query plan.
+     *
+     * @param builder the string builder
+     * @return the string builder
+     */
+    public abstract StringBuilder getSQL(StringBuilder builder);
+
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2004-2018 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.index.bitmap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import org.h2.engine.Constants;
+import org.h2.engine.Session;
+import org.h2.expression.Expression;
+import org.h2.expression.ExpressionColumn;
+import org.h2.expression.Parameter;
+import org.h2.expression.ValueExpression;
+import org.h2.index.BitmapIndex;
+import org.h2.index.Index;
+import org.h2.table.Column;
+import org.h2.table.IndexHints;
+import org.h2.table.TableFilter;
+import org.h2.util.RoaringBitmap;
+import org.h2.value.Value;
+import org.h2.value.ValueNull;
+
+/**
+ * The rows where a column is equal to one of a list of values, read from a
+ * bitmap index.
+ */
+public class BitmapLookup extends BitmapCondition {
+
+    private final BitmapIndex index;
+    private final Expression column;
+    private final Expression[] values;
+    private final boolean matchNull;
+
+    private BitmapLookup(BitmapIndex index, Expression column,
+            Expression[] values, boolean matchNull) {
+        this.index = index;
+        this.column = column;
+        this.values = values;
+        this.matchNull = matchNull;
+    }
+
+    /**
+     * Create a lookup for a condition that compares a column with a list of
+     * values. This is only possible if the column has a bitmap index, and
+     * the values are constants or parameters.
+     *
+     * @param filter the table filter
+     * @param column the compared expression
+     * @param values the values, or null to find the rows where the column is
+     *            NULL
+     * @return the lookup, or null if no bitmap index can be used
+     */
+    public static BitmapLookup get(TableFilter filter, Expression column,
+            List<Expression> values) {
+        if (!(column instanceof ExpressionColumn)
+                || ((ExpressionColumn) column).getTableFilter() != filter) {
+            return null;
+        }
+        Expression[] array;
+        if (values == null) {
+            array = new Expression[] { ValueExpression.getNull() };
+        } else {
+            for (Expression e : values) {
+                if (!e.isConstant() && !(e instanceof Parameter)) {
+                    return null;
+                }
+            }
+            array = values.toArray(new Expression[0]);
+        }
+        Column c = ((ExpressionColumn) column).getColumn();
+        ArrayList<Index> indexes = filter.getTable().getIndexes();
+        if (indexes == null) {
+            return null;
+        }
+        IndexHints indexHints = filter.getIndexHints();
+        for (Index index : indexes) {
+            if (index instanceof BitmapIndex && index.getColumns()[0] == c
+                    && (indexHints == null || indexHints.allowIndex(index))) {
+                return new BitmapLookup((BitmapIndex) index, column, array, values == null);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public RoaringBitmap getRowKeys(Session session) {
+        RoaringBitmap result = null;
+        for (Expression e : values) {
+            Value v = e.getValue(session);
+            if (v == ValueNull.INSTANCE && !matchNull) {
+                // a comparison with NULL is never true
+                continue;
+            }
+            RoaringBitmap rowKeys = index.getRowKeys(session, v);
+            result = result == null ? rowKeys : result.or(rowKeys);
+        }
+        return result == null ? new RoaringBitmap() : result;
+    }
+
+    /**
+     * Get the bitmap index.
+     *
+     * @return the index
+     */
+    public BitmapIndex getIndex() {
+        return index;
+    }
+
+    @Override
+    public boolean isExact() {
+        return true;
+    }
+
+    @Override
+    public double getFraction() {
+        Column column = index.getColumns()[0];
+        long rowCount = index.getTable().getRowCountApproximation() + Constants.COST_ROW_OFFSET;
+        long distinctRows = Math.max(rowCount * column.getSelectivity() / 100, 1);
+        return Math.min((double) values.length / distinctRows, 1);
+    }
+
+    @Override
+    public int getLookupCount() {
+        return 1;
+    }
+
+    @Override
+    public void addIndexes(Set<BitmapIndex> indexes) {
+        indexes.add(index);
+    }
+
+    @Override
+    public StringBuilder getSQL(StringBuilder builder) {
+        builder.append('(');
+        column.getSQL(builder);
+        if (matchNull) {
+            builder.append(" IS NULL");
+        } else if (values.length == 1) {
+            values[0].getSQL(builder.append(" = "));
+        } else {
+            builder.append(" IN(");
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    builder.append(", ");
+                }
+                values[i].getSQL(builder);
+            }
+            builder.append(')');
+        }
+        return builder.append(')');
+    }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2004-2018 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.index.bitmap;
+
+import java.util.HashSet;
+import java.util.Set;
+import org.h2.engine.Session;
+import org.h2.index.BitmapIndex;
+import org.h2.util.RoaringBitmap;
+
+/**
+ * The rows that don't match a bitmap condition. The condition must be exact,
+ * that is, its result must not contain rows for which it is not true.
+ */
+public class BitmapNot extends BitmapCondition {
+
+    private final BitmapCondition condition;
+    private final BitmapIndex index;
+
+    /**
+     * Create a NOT condition.
+     *
+     * @param condition the exact condition
+     */
+    public BitmapNot(BitmapCondition condition) {
+        this.condition = condition;
+        // all rows are read from one of the indexes of the condition
+        HashSet<BitmapIndex> indexes = new HashSet<>();
+        condition.addIndexes(indexes);
+        index = indexes.iterator().next();
+    }
+
+    /**
+     * Get the negated condition.
+     *
+     * @return the condition
+     */
+    public BitmapCondition getCondition() {
+        return condition;
+    }
+
+    @Override
+    public RoaringBitmap getRowKeys(Session session) {
+        return index.getRowKeys(session, null).andNot(condition.getRowKeys(session));
+    }
+
+    @Override
+    public boolean isExact() {
+        // the rows where the condition is NULL are included
+        return false;
+    }
+
+    @Override
+    public double getFraction() {
+        return 1 - condition.getFraction();
+    }
+
+    @Override
+    public int getLookupCount() {
+        // reading all rows is one more lookup
+        return condition.getLookupCount() + 1;
+    }
+
+    @Override
+    public void addIndexes(Set<BitmapIndex> indexes) {
+        condition.addIndexes(indexes);
+    }
+
+    @Override
+    public StringBuilder getSQL(StringBuilder builder) {
+        builder.append("(NOT ");
+        return condition.getSQL(builder).append(')');
+    }
+
+}
@@ -39,6 +39,7 @@
 import org.h2.engine.Constants;
 import org.h2.engine.Mode;
 import org.h2.engine.Mode.ModeEnum;
+import org.h2.engine.Session;
 import org.h2.engine.SessionInterface;
 import org.h2.engine.SessionRemote;
 import org.h2.engine.SysProperties;
@@ -561,7 +562,7 @@ public String nativeSQL(String sql) throws SQLException {
      * According to the JDBC specs, this setting is only a hint to the database
      * to enable optimizations - it does not cause writes to be prohibited.
      *
-     * @param readOnly ignored
+     * @param readOnly the read-only hint
      * @throws SQLException if the connection is closed
      */
     @Override
@@ -571,6 +572,9 @@ public void setReadOnly(boolean readOnly) throws SQLException {
                 debugCode("setReadOnly(" + readOnly + ");");
             }
             checkClosed();
+            if (session instanceof Session) {
+                ((Session) session).setReadOnlyHint(readOnly);
+            }
         } catch (Exception e) {
             throw logAndConvert(e);
         }
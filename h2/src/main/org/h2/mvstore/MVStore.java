@@ -234,6 +234,17 @@ public class MVStore implements AutoCloseable {
 
     private final UncaughtExceptionHandler backgroundExceptionHandler;
 
+    /**
+     * The listener to call when changes are written, or null.
+     */
+    private volatile StoreListener storeListener;
+
+    /**
+     * The listener that was called before the changes that are written now,
+     * and still needs to be called once the versions are set.
+     */
+    private StoreListener pendingStoreListener;
+
     private volatile long currentVersion;
 
     /**
@@ -1138,11 +1149,19 @@ private void store() {
                                 DataUtils.ERROR_WRITING_FAILED, "This store is read-only");
                     }
                     try {
+                        StoreListener listener = storeListener;
+                        if (listener != null) {
+                            listener.beforeStore();
+                            pendingStoreListener = listener;
+                        }
                         storeNow();
                     } catch (IllegalStateException e) {
                         panic(e);
                     } catch (Throwable e) {
                         panic(DataUtils.newIllegalStateException(DataUtils.ERROR_INTERNAL, e.toString(), e));
+                    } finally {
+                        // if storing failed before the versions were set
+                        afterVersionSet();
                     }
                 }
             }
@@ -1225,6 +1244,8 @@ private void storeNow() {
                 }
             }
         }
+        // later changes are not part of this chunk
+        afterVersionSet();
         WriteBuffer buff = getWriteBuffer();
         // need to patch the header later
         c.writeChunkHeader(buff, 0);
@@ -2759,6 +2780,23 @@ private void stopBackgroundThread() {
         }
     }
 
+    /**
+     * Set the listener to call when changes are written to the file.
+     *
+     * @param listener the listener, or null
+     */
+    public void setStoreListener(StoreListener listener) {
+        storeListener = listener;
+    }
+
+    private void afterVersionSet() {
+        StoreListener listener = pendingStoreListener;
+        if (listener != null) {
+            pendingStoreListener = null;
+            listener.afterVersionSet();
+        }
+    }
+
     /**
      * Set the maximum delay in milliseconds to auto-commit changes.
      * <p>
@@ -3004,6 +3042,28 @@ public void run() {
 
     }
 
+    /**
+     * A listener that is called by the thread that writes changes to the file,
+     * while holding the store lock.
+     */
+    public interface StoreListener {
+
+        /**
+         * Called before the changes are collected. The listener may modify
+         * maps, and such modifications are written together with other
+         * changes.
+         */
+        void beforeStore();
+
+        /**
+         * Called once after {@link #beforeStore()}, when the version of all
+         * maps was set. Changes made afterwards are written with the next
+         * version. Also called if writing failed before.
+         */
+        void afterVersionSet();
+
+    }
+
     /**
      * A builder for an MVStore.
      */
@@ -0,0 +1,440 @@
+/*
+ * Copyright 2004-2018 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.mvstore.db;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import org.h2.api.ErrorCode;
+import org.h2.command.dml.AllColumnsForPlan;
+import org.h2.engine.Database;
+import org.h2.engine.Session;
+import org.h2.index.BaseIndex;
+import org.h2.index.BitmapIndex;
+import org.h2.index.Cursor;
+import org.h2.index.IndexType;
+import org.h2.message.DbException;
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+import org.h2.mvstore.tx.Transaction;
+import org.h2.mvstore.tx.TransactionMap;
+import org.h2.mvstore.tx.VersionedValue;
+import org.h2.result.Row;
+import org.h2.result.SearchRow;
+import org.h2.result.SortOrder;
+import org.h2.table.Column;
+import org.h2.table.IndexColumn;
+import org.h2.table.TableFilter;
+import org.h2.util.RoaringBitmap;
+import org.h2.value.Value;
+import org.h2.value.ValueArray;
+import org.h2.value.ValueBytes;
+import org.h2.value.ValueLong;
+
+/**
+ * A bitmap index stored in a MVStore. The keys of the map are the value of
+ * the indexed column and the container key of the row keys (the row key
+ * without the low bits), and the values are the containers of a compressed
+ * bitmap of the row keys with this value.
+ * <p>
+ * A change of a row locks the container of its row key, so that concurrent
+ * changes of rows with the same value and similar row keys wait for each
+ * other. Bitmap indexes are meant for columns with few distinct values in
+ * tables that are mostly read.
+ */
+public final class MVBitmapIndex extends BaseIndex implements MVIndex, BitmapIndex {
+
+    /**
+     * The prefix of the names of the maps of bitmap indexes.
+     */
+    static final String MAP_PREFIX = "bitmap.";
+
+    /**
+     * The multi-value table.
+     */
+    final MVTable mvTable;
+    private final Column column;
+    private final TransactionMap<Value, Value> dataMap;
+
+    public MVBitmapIndex(Database db, MVTable table, int id, String indexName,
+            IndexColumn[] columns, IndexType indexType) {
+        super(table, id, indexName, columns, indexType);
+        this.mvTable = table;
+        if (!database.isStarting()) {
+            checkIndexColumnTypes(columns);
+        }
+        column = columns[0].column;
+        String mapName = MAP_PREFIX + getId();
+        assert db.isStarting() || !db.getStore().getMvStore().getMetaMap().containsKey("name." + mapName);
+        ValueDataType keyType = getKeyType();
+        ValueDataType valueType = new ValueDataType();
+        Transaction t = mvTable.getTransactionBegin();
+        dataMap = t.openMap(mapName, keyType, valueType);
+        dataMap.map.setVolatile(!table.isPersistData() || !indexType.isPersistent());
+        t.commit();
+        if (!keyType.equals(dataMap.getKeyType())) {
+            throw DbException.throwInternalError(
+                    "Incompatible key type, expected " + keyType + " but got "
+                            + dataMap.getKeyType() + " for index " + indexName);
+        }
+    }
+
+    private ValueDataType getKeyType() {
+        // the value and the container key
+        return new ValueDataType(database, new int[] { SortOrder.ASCENDING, SortOrder.ASCENDING });
+    }
+
+    @Override
+    public void addRowsToBuffer(List<Row> rows, String bufferName) {
+        MVMap<ValueArray, Value> map = openMap(bufferName);
+        // the rows are sorted by the value, and then by the row key
+        Value value = null;
+        RoaringBitmap bitmap = null;
+        for (Row row : rows) {
+            Value v = convert(row.getValue(column.getColumnId()));
+            if (bitmap != null && database.compare(v, value) != 0) {
+                addToBuffer(map, value, bitmap);
+                bitmap = null;
+            }
+            if (bitmap == null) {
+                value = v;
+                bitmap = new RoaringBitmap();
+            }
+            bitmap.add(row.getKey());
+        }
+        if (bitmap != null) {
+            addToBuffer(map, value, bitmap);
+        }
+    }
+
+    private static void addToBuffer(MVMap<ValueArray, Value> map, Value value, RoaringBitmap bitmap) {
+        for (int i = 0, count = bitmap.getContainerCount(); i < count; i++) {
+            long containerKey = bitmap.getContainerKey(i);
+            ValueArray key = getKey(value, containerKey);
+            byte[] data = bitmap.getContainerData(i);
+            Value old = map.get(key);
+            if (old != null) {
+                // equal values in a different form, for example with a
+                // different case
+                data = merge(old, containerKey, data);
+            }
+            map.put(key, ValueBytes.getNoCopy(data));
+        }
+    }
+
+    private static byte[] merge(Value old, long containerKey, byte[] data) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        bitmap.addContainer(containerKey, old.getBytesNoCopy());
+        bitmap.addContainer(containerKey, data);
+        return bitmap.getContainerData(0);
+    }
+
+    @Override
+    public void addBufferedRows(List<String> bufferNames) {
+        try {
+            for (String bufferName : bufferNames) {
+                MVMap<ValueArray, Value> buffer = openMap(bufferName);
+                for (Iterator<ValueArray> it = buffer.keyIterator(null); it.hasNext();) {
+                    ValueArray key = it.next();
+                    byte[] data = buffer.get(key).getBytesNoCopy();
+                    Value old = (Value) VersionedValue.getCurrentValue(dataMap.map.get(key));
+                    if (old != null) {
+                        // the rows of a container can be in multiple buffers
+                        data = merge(old, getContainerKey(key), data);
+                    }
+                    dataMap.putCommitted(key, ValueBytes.getNoCopy(data));
+                }
+            }
+        } finally {
+            MVStore mvStore = database.getStore().getMvStore();
+            for (String tempMapName : bufferNames) {
+                mvStore.removeMap(tempMapName);
+            }
+        }
+    }
+
+    private MVMap<ValueArray, Value> openMap(String mapName) {
+        ValueDataType keyType = getKeyType();
+        ValueDataType valueType = new ValueDataType();
+        MVMap.Builder<ValueArray, Value> builder =
+                new MVMap.Builder<ValueArray, Value>()
+                        .singleWriter()
+                        .keyType(keyType).valueType(valueType);
+        MVMap<ValueArray, Value> map = database.getStore().
+                getMvStore().openMap(mapName, builder);
+        if (!keyType.equals(map.getKeyType())) {
+            throw DbException.throwInternalError(
+                    "Incompatible key type, expected " + keyType + " but got "
+                            + map.getKeyType() + " for map " + mapName);
+        }
+        return map;
+    }
+
+    @Override
+    public void close(Session session) {
+        // ok
+    }
+
+    @Override
+    public void add(Session session, Row row) {
+        TransactionMap<Value, Value> map = getMap(session);
+        long rowKey = row.getKey();
+        long containerKey = RoaringBitmap.getContainerKey(rowKey);
+        ValueArray key = getKey(convert(row.getValue(column.getColumnId())), containerKey);
+        try {
+            while (true) {
+                RoaringBitmap bitmap = new RoaringBitmap();
+                bitmap.add(rowKey);
+                Value old = map.putIfAbsent(key, ValueBytes.getNoCopy(bitmap.getContainerData(0)));
+                if (old == null) {
+                    return;
+                }
+                // lock the container before it is read, so that the changes
+                // of concurrent transactions are not lost
+                old = map.lock(key);
+                if (old != null) {
+                    bitmap.addContainer(containerKey, old.getBytesNoCopy());
+                    map.put(key, ValueBytes.getNoCopy(bitmap.getContainerData(0)));
+                    return;
+                }
+                // the container was removed in the meantime
+            }
+        } catch (IllegalStateException e) {
+            throw mvTable.convertException(e);
+        }
+    }
+
+    @Override
+    public void remove(Session session, Row row) {
+        TransactionMap<Value, Value> map = getMap(session);
+        long rowKey = row.getKey();
+        long containerKey = RoaringBitmap.getContainerKey(rowKey);
+        ValueArray key = getKey(convert(row.getValue(column.getColumnId())), containerKey);
+        try {
+            Value old = map.lock(key);
+            RoaringBitmap bitmap = new RoaringBitmap();
+            if (old != null) {
+                bitmap.addContainer(containerKey, old.getBytesNoCopy());
+            }
+            if (!bitmap.remove(rowKey)) {
+                throw DbException.get(ErrorCode.ROW_NOT_FOUND_WHEN_DELETING_1,
+                        getSQL() + ": " + rowKey);
+            }
+            if (bitmap.isEmpty()) {
+                map.remove(key);
+            } else {
+                map.put(key, ValueBytes.getNoCopy(bitmap.getContainerData(0)));
+            }
+        } catch (IllegalStateException e) {
+            throw mvTable.convertException(e);
+        }
+    }
+
+    @Override
+    public void update(Session session, Row oldRow, Row newRow) {
+        int columnId = column.getColumnId();
+        Value v1 = oldRow.getValue(columnId);
+        Value v2 = newRow.getValue(columnId);
+        if (oldRow.getKey() != newRow.getKey() || (v1 == null ? v2 != null : !v1.equals(v2))) {
+            super.update(session, oldRow, newRow);
+        }
+    }
+
+    @Override
+    public Cursor find(Session session, SearchRow first, SearchRow last) {
+        ValueArray min = null, max = null;
+        int columnId = column.getColumnId();
+        if (first != null && first.getValue(columnId) != null) {
+            min = getKey(convert(first.getValue(columnId)), Long.MIN_VALUE);
+        }
+        if (last != null && last.getValue(columnId) != null) {
+            max = getKey(convert(last.getValue(columnId)), Long.MAX_VALUE);
+        }
+        return new MVStoreCursor(session, getMap(session).entryIterator(min, max));
+    }
+
+    @Override
+    public RoaringBitmap getRowKeys(Session session, Value value) {
+        RoaringBitmap result = new RoaringBitmap();
+        ValueArray min = null, max = null;
+        if (value != null) {
+            Value v;
+            try {
+                v = convert(value);
+            } catch (DbException e) {
+                // no value of the column is equal to this value
+                return result;
+            }
+            if (!database.areEqual(v, value)) {
+                return result;
+            }
+            min = getKey(v, Long.MIN_VALUE);
+            max = getKey(v, Long.MAX_VALUE);
+        }
+        Iterator<Map.Entry<Value, Value>> it = getMap(session).entryIterator(min, max);
+        while (it.hasNext()) {
+            Map.Entry<Value, Value> entry = it.next();
+            result.addContainer(getContainerKey((ValueArray) entry.getKey()),
+                    entry.getValue().getBytesNoCopy());
+        }
+        return result;
+    }
+
+    private Value convert(Value v) {
+        return v.convertTo(column.getType(), -1, database.getMode(), null, column.getExtTypeInfo());
+    }
+
+    private static ValueArray getKey(Value value, long containerKey) {
+        return ValueArray.get(new Value[] { value, ValueLong.get(containerKey) });
+    }
+
+    private static long getContainerKey(ValueArray key) {
+        return key.getList()[1].getLong();
+    }
+
+    @Override
+    public MVTable getTable() {
+        return mvTable;
+    }
+
+    @Override
+    public double getCost(Session session, int[] masks,
+            TableFilter[] filters, int filter, SortOrder sortOrder,
+            AllColumnsForPlan allColumnsSet) {
+        try {
+            // the index can't be used for sorting
+            return 10 * getCostRangeIndex(masks, mvTable.getRowCountApproximation(),
+                    filters, filter, null, false, allColumnsSet);
+        } catch (IllegalStateException e) {
+            throw DbException.get(ErrorCode.OBJECT_CLOSED, e);
+        }
+    }
+
+    @Override
+    public void remove(Session session) {
+        TransactionMap<Value, Value> map = getMap(session);
+        if (!map.isClosed()) {
+            Transaction t = session.getTransaction();
+            t.removeMap(map);
+        }
+    }
+
+    @Override
+    public void truncate(Session session) {
+        TransactionMap<Value, Value> map = getMap(session);
+        map.clear();
+    }
+
+    @Override
+    public boolean canGetFirstOrLast() {
+        return false;
+    }
+
+    @Override
+    public Cursor findFirstOrLast(Session session, boolean first) {
+        throw DbException.getUnsupportedException("BITMAP");
+    }
+
+    @Override
+    public boolean canScan() {
+        return false;
+    }
+
+    @Override
+    public boolean needRebuild() {
+        try {
+            return dataMap.sizeAsLongMax() == 0;
+        } catch (IllegalStateException e) {
+            throw DbException.get(ErrorCode.OBJECT_CLOSED, e);
+        }
+    }
+
+    @Override
+    public long getRowCount(Session session) {
+        // each row is in exactly one bitmap
+        return mvTable.getRowCount(session);
+    }
+
+    @Override
+    public long getRowCountApproximation() {
+        return mvTable.getRowCountApproximation();
+    }
+
+    @Override
+    public long getDiskSpaceUsed() {
+        // TODO estimate disk space usage
+        return 0;
+    }
+
+    @Override
+    public void checkRename() {
+        // ok
+    }
+
+    /**
+     * Get the map to store the data.
+     *
+     * @param session the session
+     * @return the map
+     */
+    private TransactionMap<Value, Value> getMap(Session session) {
+        if (session == null) {
+            return dataMap;
+        }
+        Transaction t = session.getTransaction();
+        return dataMap.getInstance(t);
+    }
+
+    /**
+     * A cursor over the rows of a range of bitmaps.
+     */
+    final class MVStoreCursor implements Cursor {
+
+        private final Session session;
+        private final Iterator<Map.Entry<Value, Value>> it;
+        private RoaringBitmap.LongIterator rowKeys;
+        private Row row;
+
+        MVStoreCursor(Session session, Iterator<Map.Entry<Value, Value>> it) {
+            this.session = session;
+            this.it = it;
+        }
+
+        @Override
+        public Row get() {
+            return row;
+        }
+
+        @Override
+        public SearchRow getSearchRow() {
+            return row;
+        }
+
+        @Override
+        public boolean next() {
+            while (rowKeys == null || !rowKeys.next()) {
+                if (!it.hasNext()) {
+                    rowKeys = null;
+                    row = null;
+                    return false;
+                }
+                Map.Entry<Value, Value> entry = it.next();
+                RoaringBitmap bitmap = new RoaringBitmap();
+                bitmap.addContainer(getContainerKey((ValueArray) entry.getKey()),
+                        entry.getValue().getBytesNoCopy());
+                rowKeys = bitmap.iterator();
+            }
+            row = mvTable.getRow(session, rowKeys.get());
+            return true;
+        }
+
+        @Override
+        public boolean previous() {
+            throw DbException.getUnsupportedException("previous");
+        }
+    }
+
+}
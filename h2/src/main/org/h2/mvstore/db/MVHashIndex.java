@@ -0,0 +1,494 @@
+/*
+ * Copyright 2004-2018 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.mvstore.db;
+
+import java.util.Iterator;
+import java.util.List;
+import org.h2.api.ErrorCode;
+import org.h2.command.dml.AllColumnsForPlan;
+import org.h2.engine.Database;
+import org.h2.engine.Session;
+import org.h2.index.BaseIndex;
+import org.h2.index.Cursor;
+import org.h2.index.IndexCondition;
+import org.h2.index.IndexType;
+import org.h2.message.DbException;
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+import org.h2.mvstore.tx.Transaction;
+import org.h2.mvstore.tx.TransactionMap;
+import org.h2.result.Row;
+import org.h2.result.SearchRow;
+import org.h2.result.SortOrder;
+import org.h2.table.Column;
+import org.h2.table.IndexColumn;
+import org.h2.table.TableFilter;
+import org.h2.value.CompareMode;
+import org.h2.value.Value;
+import org.h2.value.ValueArray;
+import org.h2.value.ValueInt;
+import org.h2.value.ValueLong;
+import org.h2.value.ValueNull;
+
+/**
+ * A hash index stored in a MVStore. The keys of the map are the hash code of
+ * the values of the indexed columns, the values of the indexed columns, and
+ * the row key. The entries are ordered by the hash code first, so that a
+ * lookup usually only compares hash codes, and the values of the indexed
+ * columns are only compared for the entries with the same hash code. The
+ * index only supports lookups of all indexed columns; it does not support
+ * range queries or sorted access.
+ */
+public final class MVHashIndex extends BaseIndex implements MVIndex {
+
+    /**
+     * The prefix of the names of the maps of hash indexes.
+     */
+    static final String MAP_PREFIX = "hash.";
+
+    /**
+     * The multi-value table.
+     */
+    final MVTable mvTable;
+    private final int keyColumns;
+    private final boolean binaryCollation;
+    private final TransactionMap<Value, Value> dataMap;
+
+    public MVHashIndex(Database db, MVTable table, int id, String indexName,
+            IndexColumn[] columns, IndexType indexType) {
+        super(table, id, indexName, columns, indexType);
+        this.mvTable = table;
+        if (!database.isStarting()) {
+            checkIndexColumnTypes(columns);
+        }
+        binaryCollation = CompareMode.OFF.equals(db.getCompareMode().getName());
+        // the hash code, the index columns, and the row key
+        keyColumns = columns.length + 2;
+        String mapName = MAP_PREFIX + getId();
+        assert db.isStarting() || !db.getStore().getMvStore().getMetaMap().containsKey("name." + mapName);
+        ValueDataType keyType = getKeyType();
+        ValueDataType valueType = new ValueDataType();
+        Transaction t = mvTable.getTransactionBegin();
+        dataMap = t.openMap(mapName, keyType, valueType);
+        dataMap.map.setVolatile(!table.isPersistData() || !indexType.isPersistent());
+        t.commit();
+        if (!keyType.equals(dataMap.getKeyType())) {
+            throw DbException.throwInternalError(
+                    "Incompatible key type, expected " + keyType + " but got "
+                            + dataMap.getKeyType() + " for index " + indexName);
+        }
+    }
+
+    private ValueDataType getKeyType() {
+        int[] sortTypes = new int[keyColumns];
+        for (int i = 0; i < keyColumns; i++) {
+            sortTypes[i] = SortOrder.ASCENDING;
+        }
+        return new ValueDataType(database, sortTypes);
+    }
+
+    @Override
+    public void addRowsToBuffer(List<Row> rows, String bufferName) {
+        MVMap<ValueArray, Value> map = openMap(bufferName);
+        for (Row row : rows) {
+            // the rows are not sorted by the hash code
+            map.put(convertToKey(row, null), ValueNull.INSTANCE);
+        }
+    }
+
+    @Override
+    public void addBufferedRows(List<String> bufferNames) {
+        try {
+            for (String bufferName : bufferNames) {
+                Iterator<ValueArray> it = openMap(bufferName).keyIterator(null);
+                while (it.hasNext()) {
+                    ValueArray key = it.next();
+                    if (indexType.isUnique() && !mayHaveNullDuplicates(convertToSearchRow(key))) {
+                        checkUnique(dataMap, key, Long.MIN_VALUE);
+                    }
+                    dataMap.putCommitted(key, ValueNull.INSTANCE);
+                }
+            }
+        } finally {
+            MVStore mvStore = database.getStore().getMvStore();
+            for (String tempMapName : bufferNames) {
+                mvStore.removeMap(tempMapName);
+            }
+        }
+    }
+
+    private MVMap<ValueArray, Value> openMap(String mapName) {
+        ValueDataType keyType = getKeyType();
+        ValueDataType valueType = new ValueDataType();
+        MVMap.Builder<ValueArray, Value> builder =
+                new MVMap.Builder<ValueArray, Value>()
+                        .singleWriter()
+                        .keyType(keyType).valueType(valueType);
+        MVMap<ValueArray, Value> map = database.getStore().
+                getMvStore().openMap(mapName, builder);
+        if (!keyType.equals(map.getKeyType())) {
+            throw DbException.throwInternalError(
+                    "Incompatible key type, expected " + keyType + " but got "
+                            + map.getKeyType() + " for map " + mapName);
+        }
+        return map;
+    }
+
+    @Override
+    public void close(Session session) {
+        // ok
+    }
+
+    @Override
+    public void add(Session session, Row row) {
+        TransactionMap<Value, Value> map = getMap(session);
+        ValueArray key = convertToKey(row, null);
+        boolean checkRequired = indexType.isUnique() && !mayHaveNullDuplicates(row);
+        if (checkRequired) {
+            checkUnique(map, key, Long.MIN_VALUE);
+        }
+        try {
+            map.put(key, ValueNull.INSTANCE);
+        } catch (IllegalStateException e) {
+            throw mvTable.convertException(e);
+        }
+        if (checkRequired) {
+            checkUnique(map, key, row.getKey());
+        }
+    }
+
+    private void checkUnique(TransactionMap<Value, Value> map, ValueArray key, long newKey) {
+        Iterator<Value> it = map.keyIterator(convertToKey(key, ValueLong.MIN),
+                convertToKey(key, ValueLong.MAX), true);
+        while (it.hasNext()) {
+            ValueArray k = (ValueArray) it.next();
+            Value[] array = k.getList();
+            Value rowKey = array[array.length - 1];
+            if (newKey != rowKey.getLong()) {
+                if (map.get(k) != null) {
+                    // committed
+                    throw getDuplicateKeyException(rowKey.toString());
+                }
+                throw DbException.get(ErrorCode.CONCURRENT_UPDATE_1, table.getName());
+            }
+        }
+    }
+
+    @Override
+    public void remove(Session session, Row row) {
+        ValueArray key = convertToKey(row, null);
+        TransactionMap<Value, Value> map = getMap(session);
+        try {
+            Value old = map.remove(key);
+            if (old == null) {
+                throw DbException.get(ErrorCode.ROW_NOT_FOUND_WHEN_DELETING_1,
+                        getSQL() + ": " + row.getKey());
+            }
+        } catch (IllegalStateException e) {
+            throw mvTable.convertException(e);
+        }
+    }
+
+    @Override
+    public void update(Session session, Row oldRow, Row newRow) {
+        if (!rowsAreEqual(oldRow, newRow)) {
+            super.update(session, oldRow, newRow);
+        }
+    }
+
+    private boolean rowsAreEqual(SearchRow rowOne, SearchRow rowTwo) {
+        if (rowOne == rowTwo) {
+            return true;
+        }
+        for (int index : columnIds) {
+            Value v1 = rowOne.getValue(index);
+            Value v2 = rowTwo.getValue(index);
+            if (v1 == null ? v2 != null : !v1.equals(v2)) {
+                return false;
+            }
+        }
+        return rowOne.getKey() == rowTwo.getKey();
+    }
+
+    @Override
+    public Cursor find(Session session, SearchRow first, SearchRow last) {
+        TransactionMap<Value, Value> map = getMap(session);
+        if (first != null && last != null && hasAllValues(first) && hasAllValues(last)
+                && compareRows(first, last) == 0) {
+            return new MVStoreCursor(session, map.keyIterator(convertToKey(first, ValueLong.MIN),
+                    convertToKey(first, ValueLong.MAX), false), null, null);
+        }
+        // not a lookup of all index columns, check all entries
+        return new MVStoreCursor(session, map.keyIterator(null), first, last);
+    }
+
+    private boolean hasAllValues(SearchRow r) {
+        for (int index : columnIds) {
+            if (r.getValue(index) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static ValueArray convertToKey(ValueArray r, ValueLong key) {
+        Value[] values = r.getList().clone();
+        values[values.length - 1] = key;
+        return ValueArray.get(values);
+    }
+
+    private ValueArray convertToKey(SearchRow r, ValueLong key) {
+        Value[] array = new Value[keyColumns];
+        int hash = 0;
+        for (int i = 0; i < columns.length; i++) {
+            Column c = columns[i];
+            Value v = r.getValue(c.getColumnId());
+            v = v.convertTo(c.getType(), -1, database.getMode(), null, c.getExtTypeInfo());
+            array[i + 1] = v;
+            hash = 31 * hash + getHashCode(v);
+        }
+        array[0] = ValueInt.get(hash);
+        array[keyColumns - 1] = key != null ? key : ValueLong.get(r.getKey());
+        return ValueArray.get(array);
+    }
+
+    /**
+     * Get the hash code of a value. Values that are equal must have the same
+     * hash code, so for data types where equal values may have a different
+     * hash code (for example, because of the collation or the time zone) the
+     * value isn't used.
+     *
+     * @param v the value
+     * @return the hash code
+     */
+    private int getHashCode(Value v) {
+        switch (v.getType()) {
+        case Value.BOOLEAN:
+        case Value.BYTE:
+        case Value.SHORT:
+        case Value.INT:
+        case Value.LONG:
+        case Value.DOUBLE:
+        case Value.FLOAT:
+        case Value.DATE:
+        case Value.TIME:
+        case Value.TIMESTAMP:
+        case Value.BYTES:
+        case Value.UUID:
+            return v.hashCode();
+        case Value.DECIMAL:
+            return v.getBigDecimal().stripTrailingZeros().hashCode();
+        case Value.STRING:
+        case Value.STRING_FIXED:
+            return binaryCollation ? v.hashCode() : 0;
+        case Value.STRING_IGNORECASE: {
+            if (!binaryCollation) {
+                return 0;
+            }
+            // consistent with String.compareToIgnoreCase
+            String s = v.getString();
+            int hash = 0;
+            for (int i = 0, len = s.length(); i < len; i++) {
+                hash = 31 * hash + Character.toLowerCase(Character.toUpperCase(s.charAt(i)));
+            }
+            return hash;
+        }
+        default:
+            return 0;
+        }
+    }
+
+    /**
+     * Convert an index key to a search row.
+     *
+     * @param key the index key
+     * @return the row
+     */
+    SearchRow convertToSearchRow(ValueArray key) {
+        Value[] array = key.getList();
+        SearchRow searchRow = mvTable.getTemplateRow();
+        searchRow.setKey(array[array.length - 1].getLong());
+        for (int i = 0; i < columns.length; i++) {
+            searchRow.setValue(columns[i].getColumnId(), array[i + 1]);
+        }
+        return searchRow;
+    }
+
+    @Override
+    public MVTable getTable() {
+        return mvTable;
+    }
+
+    @Override
+    public double getCost(Session session, int[] masks,
+            TableFilter[] filters, int filter, SortOrder sortOrder,
+            AllColumnsForPlan allColumnsSet) {
+        if (masks == null) {
+            return Long.MAX_VALUE;
+        }
+        for (Column column : columns) {
+            if ((masks[column.getColumnId()] & IndexCondition.EQUALITY) != IndexCondition.EQUALITY) {
+                return Long.MAX_VALUE;
+            }
+        }
+        try {
+            // slightly cheaper than a secondary index, as the lookup mostly
+            // compares hash codes; the index can't be used for sorting
+            return 8 * getCostRangeIndex(masks, dataMap.sizeAsLongMax(),
+                    filters, filter, null, false, allColumnsSet);
+        } catch (IllegalStateException e) {
+            throw DbException.get(ErrorCode.OBJECT_CLOSED, e);
+        }
+    }
+
+    @Override
+    public void remove(Session session) {
+        TransactionMap<Value, Value> map = getMap(session);
+        if (!map.isClosed()) {
+            Transaction t = session.getTransaction();
+            t.removeMap(map);
+        }
+    }
+
+    @Override
+    public void truncate(Session session) {
+        TransactionMap<Value, Value> map = getMap(session);
+        map.clear();
+    }
+
+    @Override
+    public boolean canGetFirstOrLast() {
+        return false;
+    }
+
+    @Override
+    public Cursor findFirstOrLast(Session session, boolean first) {
+        throw DbException.getUnsupportedException("HASH");
+    }
+
+    @Override
+    public boolean canScan() {
+        return false;
+    }
+
+    @Override
+    public boolean needRebuild() {
+        try {
+            return dataMap.sizeAsLongMax() == 0;
+        } catch (IllegalStateException e) {
+            throw DbException.get(ErrorCode.OBJECT_CLOSED, e);
+        }
+    }
+
+    @Override
+    public long getRowCount(Session session) {
+        TransactionMap<Value, Value> map = getMap(session);
+        return map.sizeAsLong();
+    }
+
+    @Override
+    public long getRowCountApproximation() {
+        try {
+            return dataMap.sizeAsLongMax();
+        } catch (IllegalStateException e) {
+            throw DbException.get(ErrorCode.OBJECT_CLOSED, e);
+        }
+    }
+
+    @Override
+    public long getDiskSpaceUsed() {
+        // TODO estimate disk space usage
+        return 0;
+    }
+
+    @Override
+    public void checkRename() {
+        // ok
+    }
+
+    /**
+     * Get the map to store the data.
+     *
+     * @param session the session
+     * @return the map
+     */
+    private TransactionMap<Value, Value> getMap(Session session) {
+        if (session == null) {
+            return dataMap;
+        }
+        Transaction t = session.getTransaction();
+        return dataMap.getInstance(t);
+    }
+
+    /**
+     * A cursor.
+     */
+    final class MVStoreCursor implements Cursor {
+
+        private final Session session;
+        private final Iterator<Value> it;
+        private final SearchRow first, last;
+        private ValueArray current;
+        private SearchRow searchRow;
+        private Row row;
+
+        /**
+         * Create a cursor. If the first or last row is set, only the entries
+         * between these rows are returned.
+         */
+        MVStoreCursor(Session session, Iterator<Value> it, SearchRow first, SearchRow last) {
+            this.session = session;
+            this.it = it;
+            this.first = first;
+            this.last = last;
+        }
+
+        @Override
+        public Row get() {
+            if (row == null) {
+                if (current != null) {
+                    Value[] values = current.getList();
+                    row = mvTable.getRow(session, values[values.length - 1].getLong());
+                }
+            }
+            return row;
+        }
+
+        @Override
+        public SearchRow getSearchRow() {
+            if (searchRow == null && current != null) {
+                searchRow = convertToSearchRow(current);
+            }
+            return searchRow;
+        }
+
+        @Override
+        public boolean next() {
+            row = null;
+            while (it.hasNext()) {
+                current = (ValueArray) it.next();
+                searchRow = null;
+                if (first == null && last == null) {
+                    return true;
+                }
+                SearchRow r = getSearchRow();
+                if ((first == null || compareRows(r, first) >= 0)
+                        && (last == null || compareRows(r, last) <= 0)) {
+                    return true;
+                }
+            }
+            current = null;
+            searchRow = null;
+            return false;
+        }
+
+        @Override
+        public boolean previous() {
+            throw DbException.getUnsupportedException("previous");
+        }
+    }
+
+}
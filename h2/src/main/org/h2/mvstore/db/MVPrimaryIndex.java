@@ -6,9 +6,11 @@
 package org.h2.mvstore.db;
 
 import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
 import java.util.Map.Entry;
 import java.util.concurrent.atomic.AtomicLong;
 import org.h2.api.ErrorCode;
@@ -19,6 +21,8 @@
 import org.h2.index.Cursor;
 import org.h2.index.IndexType;
 import org.h2.message.DbException;
+import org.h2.mvstore.DataUtils;
+import org.h2.mvstore.MVMap;
 import org.h2.mvstore.tx.Transaction;
 import org.h2.mvstore.tx.TransactionMap;
 import org.h2.result.Row;
@@ -217,6 +221,22 @@ void lockRows(Session session, Iterable<Row> rowsForUpdate) {
         }
     }
 
+    void lockRowsNoWait(Session session, Iterable<Row> rowsForUpdate) {
+        TransactionMap<Value, Value> map = getMap(session);
+        for (Row row : rowsForUpdate) {
+            long key = row.getKey();
+            try {
+                map.lock(ValueLong.get(key), 0);
+            } catch (IllegalStateException ex) {
+                if (DataUtils.getErrorCode(ex.getMessage()) == DataUtils.ERROR_TRANSACTION_LOCKED) {
+                    // do not let the command retry the statement
+                    throw DbException.get(ErrorCode.LOCK_TIMEOUT_1, ex, mvTable.getName());
+                }
+                throw mvTable.convertException(ex);
+            }
+        }
+    }
+
     Row lockRow(Session session, Row row) {
         TransactionMap<Value, Value> map = getMap(session);
         long key = row.getKey();
@@ -224,6 +244,18 @@ Row lockRow(Session session, Row row) {
         return array == null ? null : getRow(session, key, array);
     }
 
+    Row lockRowSkipLocked(Session session, Row row) {
+        TransactionMap<Value, Value> map = getMap(session);
+        long key = row.getKey();
+        ValueArray array;
+        try {
+            array = (ValueArray) map.tryLock(ValueLong.get(key));
+        } catch (IllegalStateException ex) {
+            throw mvTable.convertException(ex);
+        }
+        return array == null ? null : getRow(session, key, array);
+    }
+
     private Value lockRow(TransactionMap<Value, Value> map, long key) {
         try {
             return map.lock(ValueLong.get(key));
@@ -279,6 +311,40 @@ public Row getRow(Session session, long key, ValueArray array) {
         return row;
     }
 
+    /**
+     * Read a random sample of the rows without reading the other rows. The
+     * map is split into ranges of the same number of entries, and the row at
+     * a random position within each range is read using the entry counts of
+     * the pages. Rows that are not visible to the session are skipped.
+     *
+     * @param session the session
+     * @param count the number of rows
+     * @param random the random number generator
+     * @return the rows in key order, or null if the map does not contain more
+     *         than the specified number of entries
+     */
+    public ArrayList<Row> getSample(Session session, int count, Random random) {
+        TransactionMap<Value, Value> map = getMap(session);
+        MVMap<Value, Object> rawMap = map.map;
+        long size = rawMap.sizeAsLong();
+        if (size <= count) {
+            return null;
+        }
+        ArrayList<Row> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Value key = rawMap.getKey((long) ((i + random.nextDouble()) * size / count));
+            if (key == null) {
+                // rows were removed concurrently
+                break;
+            }
+            Value v = map.get(key);
+            if (v != null) {
+                rows.add(getRow(session, key.getLong(), (ValueArray) v));
+            }
+        }
+        return rows;
+    }
+
     @Override
     public double getCost(Session session, int[] masks,
             TableFilter[] filters, int filter, SortOrder sortOrder,
@@ -341,6 +407,27 @@ public Cursor findFirstOrLast(Session session, boolean first) {
         return c;
     }
 
+    @Override
+    public Cursor[] findParallel(Session session, int count) {
+        TransactionMap<Value, Value> map = getMap(session);
+        // split by position, the map may contain uncommitted entries
+        MVMap<Value, Object> m = map.map;
+        long size = m.sizeAsLong();
+        ArrayList<Cursor> list = new ArrayList<>(count);
+        ValueLong from = ValueLong.MIN;
+        for (int i = 1; i < count; i++) {
+            ValueLong key = (ValueLong) m.getKey(size * i / count);
+            if (key == null || key.getLong() <= from.getLong()) {
+                continue;
+            }
+            ValueLong to = ValueLong.get(key.getLong() - 1);
+            list.add(new MVStoreCursor(session, map.entryIterator(from, to)));
+            from = key;
+        }
+        list.add(new MVStoreCursor(session, map.entryIterator(from, ValueLong.MAX)));
+        return list.toArray(new Cursor[0]);
+    }
+
     @Override
     public boolean needRebuild() {
         return false;
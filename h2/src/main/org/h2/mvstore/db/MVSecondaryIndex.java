@@ -5,9 +5,11 @@
  */
 package org.h2.mvstore.db;
 
+import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.PriorityQueue;
 import java.util.Queue;
 import org.h2.api.ErrorCode;
@@ -15,6 +17,7 @@
 import org.h2.engine.Database;
 import org.h2.engine.Mode;
 import org.h2.engine.Session;
+import org.h2.expression.Expression;
 import org.h2.index.BaseIndex;
 import org.h2.index.Cursor;
 import org.h2.index.IndexType;
@@ -25,18 +28,26 @@
 import org.h2.mvstore.tx.TransactionMap;
 import org.h2.result.Row;
 import org.h2.result.SearchRow;
+import org.h2.result.SimpleRow;
 import org.h2.result.SortOrder;
 import org.h2.table.Column;
 import org.h2.table.IndexColumn;
+import org.h2.table.IndexExpressionColumn;
 import org.h2.table.TableFilter;
 import org.h2.value.CompareMode;
+import org.h2.value.DataType;
 import org.h2.value.Value;
 import org.h2.value.ValueArray;
 import org.h2.value.ValueLong;
 import org.h2.value.ValueNull;
 
 /**
- * A table stored in a MVStore.
+ * A secondary index stored in a MVStore. The keys of the map are the values of
+ * the indexed columns and the row key. The values of the map are the values of
+ * the included columns, or NULL if the index has no included columns. A
+ * partial index only contains the rows that match its condition. The values
+ * of the expressions of an expression index are calculated when a row is
+ * added or removed.
  */
 public final class MVSecondaryIndex extends BaseIndex implements MVIndex {
 
@@ -46,13 +57,36 @@ public final class MVSecondaryIndex extends BaseIndex implements MVIndex {
     final MVTable                             mvTable;
     private final int                         keyColumns;
     private final TransactionMap<Value,Value> dataMap;
+    private final TableFilter                 conditionFilter;
+    private final boolean                     hasExpressions;
 
     public MVSecondaryIndex(Database db, MVTable table, int id, String indexName,
-                IndexColumn[] columns, IndexType indexType) {
+                IndexColumn[] columns, Column[] includedColumns, Expression condition,
+                IndexType indexType) {
         super(table, id, indexName, columns, indexType);
         this.mvTable = table;
+        this.includedColumns = includedColumns;
+        if (condition != null) {
+            conditionFilter = new TableFilter(db.getSystemSession(), table, null, true, null, 0, null);
+            this.condition = table.mapIndexExpression(conditionFilter, condition, "Partial index condition");
+        } else {
+            conditionFilter = null;
+        }
+        boolean expressions = false;
+        for (Column c : this.columns) {
+            expressions |= c instanceof IndexExpressionColumn;
+        }
+        hasExpressions = expressions;
         if (!database.isStarting()) {
             checkIndexColumnTypes(columns);
+            if (includedColumns != null) {
+                for (Column c : includedColumns) {
+                    if (DataType.isLargeObject(c.getType())) {
+                        throw DbException.getUnsupportedException(
+                                "Index on BLOB or CLOB column: " + c.getCreateSQL());
+                    }
+                }
+            }
         }
         // always store the row key in the map key,
         // even for unique indexes, as some of the index columns could be null
@@ -80,25 +114,38 @@ public MVSecondaryIndex(Database db, MVTable table, int id, String indexName,
     @Override
     public void addRowsToBuffer(List<Row> rows, String bufferName) {
         MVMap<ValueArray, Value> map = openMap(bufferName);
+        Session session = database.getSystemSession();
         for (Row row : rows) {
-            ValueArray key = convertToKey(row, null);
-            map.append(key, ValueNull.INSTANCE);
+            if (!isIndexed(session, row)) {
+                continue;
+            }
+            SearchRow r = calculateExpressions(session, row);
+            ValueArray key = convertToKey(r, null);
+            if (hasExpressions) {
+                // the rows are not sorted by the values of the expressions
+                map.put(key, convertToValue(r));
+            } else {
+                map.append(key, convertToValue(r));
+            }
         }
     }
 
     private static final class Source {
-        private final Iterator<ValueArray> iterator;
+        private final org.h2.mvstore.Cursor<ValueArray, Value> iterator;
         ValueArray currentRowData;
+        Value currentValue;
 
-        public Source(Iterator<ValueArray> iterator) {
+        public Source(org.h2.mvstore.Cursor<ValueArray, Value> iterator) {
             this.iterator = iterator;
             this.currentRowData = iterator.next();
+            this.currentValue = iterator.getValue();
         }
 
         public boolean hasNext() {
             boolean result = iterator.hasNext();
             if(result) {
                 currentRowData = iterator.next();
+                currentValue = iterator.getValue();
             }
             return result;
         }
@@ -130,7 +177,7 @@ public void addBufferedRows(List<String> bufferNames) {
         Queue<Source> queue = new PriorityQueue<>(buffersCount,
                 new Source.Comparator(database.getMode(), compareMode));
         for (String bufferName : bufferNames) {
-            Iterator<ValueArray> iter = openMap(bufferName).keyIterator(null);
+            org.h2.mvstore.Cursor<ValueArray, Value> iter = openMap(bufferName).cursor(null);
             if (iter.hasNext()) {
                 queue.offer(new Source(iter));
             }
@@ -140,13 +187,13 @@ public void addBufferedRows(List<String> bufferNames) {
             while (!queue.isEmpty()) {
                 Source s = queue.poll();
                 ValueArray rowData = s.next();
-                SearchRow row = convertToSearchRow(rowData);
+                SearchRow row = convertToSearchRow(rowData, null);
 
                 if (indexType.isUnique() && !mayHaveNullDuplicates(row)) {
                     checkUnique(dataMap, rowData, Long.MIN_VALUE);
                 }
 
-                dataMap.putCommitted(rowData, ValueNull.INSTANCE);
+                dataMap.putCommitted(rowData, s.currentValue);
 
                 if (s.hasNext()) {
                     queue.offer(s);
@@ -187,8 +234,59 @@ public void close(Session session) {
         // ok
     }
 
+    /**
+     * Check whether the row is contained in this index, that is, whether it
+     * matches the condition of a partial index.
+     *
+     * @param session the session
+     * @param row the row
+     * @return true if the row is contained in this index
+     */
+    private boolean isIndexed(Session session, Row row) {
+        if (condition == null) {
+            return true;
+        }
+        synchronized (conditionFilter) {
+            conditionFilter.set(row);
+            return condition.getBooleanValue(session);
+        }
+    }
+
+    /**
+     * Get a row that also contains the values of the expressions of an
+     * expression index.
+     *
+     * @param session the session
+     * @param row the row of the table
+     * @return the row with the values of the expressions, or the row itself
+     */
+    private SearchRow calculateExpressions(Session session, Row row) {
+        if (!hasExpressions) {
+            return row;
+        }
+        int count = row.getColumnCount();
+        Value[] values = new Value[mvTable.getColumnIdLimit()];
+        for (int i = 0; i < count; i++) {
+            values[i] = row.getValue(i);
+        }
+        for (Column c : columns) {
+            if (c instanceof IndexExpressionColumn) {
+                values[c.getColumnId()] = ((IndexExpressionColumn) c).getValue(session, row);
+            }
+        }
+        SearchRow r = new SimpleRow(values);
+        r.setKey(row.getKey());
+        return r;
+    }
+
     @Override
     public void add(Session session, Row row) {
+        if (isIndexed(session, row)) {
+            addEntry(session, calculateExpressions(session, row));
+        }
+    }
+
+    private void addEntry(Session session, SearchRow row) {
         TransactionMap<Value, Value> map = getMap(session);
         ValueArray array = convertToKey(row, null);
         boolean checkRequired = indexType.isUnique() && !mayHaveNullDuplicates(row);
@@ -197,7 +295,7 @@ public void add(Session session, Row row) {
         }
 
         try {
-            map.put(array, ValueNull.INSTANCE);
+            map.put(array, convertToValue(row));
         } catch (IllegalStateException e) {
             throw mvTable.convertException(e);
         }
@@ -226,6 +324,12 @@ private void checkUnique(TransactionMap<Value, Value> map, ValueArray row, long
 
     @Override
     public void remove(Session session, Row row) {
+        if (isIndexed(session, row)) {
+            removeEntry(session, calculateExpressions(session, row));
+        }
+    }
+
+    private void removeEntry(Session session, SearchRow row) {
         ValueArray array = convertToKey(row, null);
         TransactionMap<Value, Value> map = getMap(session);
         try {
@@ -241,8 +345,18 @@ public void remove(Session session, Row row) {
 
     @Override
     public void update(Session session, Row oldRow, Row newRow) {
-        if (!rowsAreEqual(oldRow, newRow)) {
-            super.update(session, oldRow, newRow);
+        boolean oldIndexed = isIndexed(session, oldRow);
+        boolean newIndexed = isIndexed(session, newRow);
+        SearchRow o = oldIndexed ? calculateExpressions(session, oldRow) : null;
+        SearchRow n = newIndexed ? calculateExpressions(session, newRow) : null;
+        if (oldIndexed && newIndexed && rowsAreEqual(o, n)) {
+            return;
+        }
+        if (oldIndexed) {
+            removeEntry(session, o);
+        }
+        if (newIndexed) {
+            addEntry(session, n);
         }
     }
 
@@ -257,6 +371,16 @@ private boolean rowsAreEqual(SearchRow rowOne, SearchRow rowTwo) {
                 return false;
             }
         }
+        if (includedColumns != null) {
+            for (Column c : includedColumns) {
+                int index = c.getColumnId();
+                Value v1 = rowOne.getValue(index);
+                Value v2 = rowTwo.getValue(index);
+                if (v1 == null ? v2 != null : !v1.equals(v2)) {
+                    return false;
+                }
+            }
+        }
         return rowOne.getKey() == rowTwo.getKey();
     }
 
@@ -269,7 +393,10 @@ private Cursor find(Session session, SearchRow first, boolean bigger, SearchRow
         ValueArray min = convertToKey(first, bigger ? ValueLong.MAX : ValueLong.MIN);
         ValueArray max = convertToKey(last, ValueLong.MAX);
         TransactionMap<Value,Value> map = getMap(session);
-        return new MVStoreCursor(session, map.keyIterator(min, max, false));
+        if (includedColumns != null) {
+            return new MVStoreCursor(session, null, map.entryIterator(min, max));
+        }
+        return new MVStoreCursor(session, map.keyIterator(min, max, false), null);
     }
 
     private static ValueArray convertToKey(ValueArray r, ValueLong key) {
@@ -295,15 +422,35 @@ private ValueArray convertToKey(SearchRow r, ValueLong key) {
         return ValueArray.get(array);
     }
 
+    /**
+     * Get the value to store in the map for the given row.
+     *
+     * @param r the row
+     * @return the values of the included columns, or NULL
+     */
+    private Value convertToValue(SearchRow r) {
+        if (includedColumns == null) {
+            return ValueNull.INSTANCE;
+        }
+        int len = includedColumns.length;
+        Value[] array = new Value[len];
+        for (int i = 0; i < len; i++) {
+            array[i] = r.getValue(includedColumns[i].getColumnId());
+        }
+        return ValueArray.get(array);
+    }
+
     /**
      * Convert array of values to a SearchRow.
      *
      * @param key the index key
+     * @param value the values of the included columns, or null
      * @return the row
      */
-    SearchRow convertToSearchRow(ValueArray key) {
+    SearchRow convertToSearchRow(ValueArray key, Value value) {
         Value[] array = key.getList();
-        SearchRow searchRow = mvTable.getTemplateRow();
+        SearchRow searchRow = hasExpressions ? new SimpleRow(new Value[mvTable.getColumnIdLimit()])
+                : mvTable.getTemplateRow();
         searchRow.setKey((array[array.length - 1]).getLong());
         Column[] cols = getColumns();
         for (int i = 0; i < array.length - 1; i++) {
@@ -312,6 +459,12 @@ SearchRow convertToSearchRow(ValueArray key) {
             Value v = array[i];
             searchRow.setValue(idx, v);
         }
+        if (includedColumns != null && value instanceof ValueArray) {
+            Value[] included = ((ValueArray) value).getList();
+            for (int i = 0; i < included.length; i++) {
+                searchRow.setValue(includedColumns[i].getColumnId(), included[i]);
+            }
+        }
         return searchRow;
     }
 
@@ -324,6 +477,9 @@ public MVTable getTable() {
     public double getCost(Session session, int[] masks,
             TableFilter[] filters, int filter, SortOrder sortOrder,
             AllColumnsForPlan allColumnsSet) {
+        if (!isConditionImplied(filters, filter)) {
+            return Long.MAX_VALUE;
+        }
         try {
             return 10 * getCostRangeIndex(masks, dataMap.sizeAsLongMax(),
                     filters, filter, sortOrder, false, allColumnsSet);
@@ -359,15 +515,22 @@ public Cursor findFirstOrLast(Session session, boolean first) {
         while (true) {
             if (key == null) {
                 return new MVStoreCursor(session,
-                        Collections.<Value>emptyIterator());
+                        Collections.<Value>emptyIterator(), null);
             }
             if (((ValueArray) key).getList()[0] != ValueNull.INSTANCE) {
                 break;
             }
             key = first ? map.higherKey(key) : map.lowerKey(key);
         }
-        MVStoreCursor cursor = new MVStoreCursor(session,
-                                Collections.singletonList(key).iterator());
+        MVStoreCursor cursor;
+        if (includedColumns != null) {
+            Map.Entry<Value, Value> entry = new SimpleImmutableEntry<>(key, map.get(key));
+            cursor = new MVStoreCursor(session, null,
+                    Collections.singletonList(entry).iterator());
+        } else {
+            cursor = new MVStoreCursor(session,
+                    Collections.singletonList(key).iterator(), null);
+        }
         cursor.next();
         return cursor;
     }
@@ -438,12 +601,20 @@ final class MVStoreCursor implements Cursor {
 
         private final Session session;
         private final Iterator<Value> it;
+        private final Iterator<Map.Entry<Value, Value>> entryIt;
         private ValueArray current;
+        private Value currentValue;
         private Row row;
 
-        MVStoreCursor(Session session, Iterator<Value> it) {
+        /**
+         * Create a cursor that iterates over either the keys, or the entries if
+         * the values of the included columns are needed.
+         */
+        MVStoreCursor(Session session, Iterator<Value> it,
+                Iterator<Map.Entry<Value, Value>> entryIt) {
             this.session = session;
             this.it = it;
+            this.entryIt = entryIt;
         }
 
         @Override
@@ -459,12 +630,23 @@ public Row get() {
 
         @Override
         public SearchRow getSearchRow() {
-            return current == null ? null : convertToSearchRow(current);
+            return current == null ? null : convertToSearchRow(current, currentValue);
         }
 
         @Override
         public boolean next() {
-            current = it.hasNext() ? (ValueArray)it.next() : null;
+            if (entryIt != null) {
+                if (entryIt.hasNext()) {
+                    Map.Entry<Value, Value> entry = entryIt.next();
+                    current = (ValueArray) entry.getKey();
+                    currentValue = entry.getValue();
+                } else {
+                    current = null;
+                    currentValue = null;
+                }
+            } else {
+                current = it.hasNext() ? (ValueArray)it.next() : null;
+            }
             row = null;
             return current != null;
         }
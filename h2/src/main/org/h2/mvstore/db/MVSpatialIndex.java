@@ -54,7 +54,7 @@ public class MVSpatialIndex extends BaseIndex implements SpatialIndex, MVIndex {
     final MVTable mvTable;
 
     private final TransactionMap<SpatialKey, Value> dataMap;
-    private final MVRTreeMap<VersionedValue> spatialMap;
+    private final MVRTreeMap<Object> spatialMap;
 
     /**
      * Constructor.
@@ -99,8 +99,8 @@ public MVSpatialIndex(
         String mapName = "index." + getId();
         ValueDataType vt = new ValueDataType(db, null);
         VersionedValue.Type valueType = new VersionedValue.Type(vt);
-        MVRTreeMap.Builder<VersionedValue> mapBuilder =
-                new MVRTreeMap.Builder<VersionedValue>().
+        MVRTreeMap.Builder<Object> mapBuilder =
+                new MVRTreeMap.Builder<Object>().
                 valueType(valueType);
         spatialMap = db.getStore().getMvStore().openMap(mapName, mapBuilder);
         Transaction t = mvTable.getTransactionBegin();
@@ -10,10 +10,14 @@
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.h2.api.DatabaseEventListener;
@@ -25,12 +29,14 @@
 import org.h2.engine.DbObject;
 import org.h2.engine.Session;
 import org.h2.engine.SysProperties;
+import org.h2.expression.Expression;
 import org.h2.index.Cursor;
 import org.h2.index.Index;
 import org.h2.index.IndexType;
 import org.h2.message.DbException;
 import org.h2.message.Trace;
 import org.h2.mvstore.DataUtils;
+import org.h2.mvstore.MVStore;
 import org.h2.mvstore.db.MVTableEngine.Store;
 import org.h2.mvstore.tx.Transaction;
 import org.h2.mvstore.tx.TransactionStore;
@@ -39,6 +45,7 @@
 import org.h2.schema.SchemaObject;
 import org.h2.table.Column;
 import org.h2.table.IndexColumn;
+import org.h2.table.IndexExpressionColumn;
 import org.h2.table.Table;
 import org.h2.table.TableBase;
 import org.h2.table.TableType;
@@ -92,6 +99,18 @@ public String getEventText() {
     }
     private static final String NO_EXTRA_INFO = "";
 
+    /**
+     * The minimum number of rows per thread when an index is built using
+     * multiple threads.
+     */
+    private static final long PARALLEL_MIN_ROWS = 10000;
+
+    /**
+     * The number of rows between progress events when an index is built
+     * using multiple threads (a power of two).
+     */
+    private static final int PARALLEL_PROGRESS_ROWS = 1024;
+
     static {
         if (SysProperties.THREAD_DEADLOCK_DETECTOR) {
             WAITING_FOR_LOCK = new DebuggingThreadLocal<>();
@@ -119,8 +138,6 @@ public String getEventText() {
      */
     private final ArrayDeque<Session> waitingSessions = new ArrayDeque<>();
     private final Trace traceLock;
-    private final AtomicInteger changesUntilAnalyze;
-    private int nextAnalyze;
     private final boolean containsLargeObject;
     private Column rowIdColumn;
 
@@ -129,8 +146,6 @@ public String getEventText() {
 
     public MVTable(CreateTableData data, MVTableEngine.Store store) {
         super(data);
-        nextAnalyze = database.getSettings().analyzeAuto;
-        changesUntilAnalyze = nextAnalyze <= 0 ? null : new AtomicInteger(nextAnalyze);
         this.store = store;
         this.transactionStore = store.getTransactionStore();
         this.isHidden = data.isHidden;
@@ -481,6 +496,59 @@ public Row getRow(Session session, long key) {
     public Index addIndex(Session session, String indexName, int indexId,
             IndexColumn[] cols, IndexType indexType, boolean create,
             String indexComment) {
+        return addIndex(session, indexName, indexId, cols, null, null,
+                indexType, create, indexComment);
+    }
+
+    @Override
+    public Index addIndex(Session session, String indexName, int indexId,
+            IndexColumn[] cols, Column[] includedColumns, Expression condition,
+            IndexType indexType, boolean create, String indexComment) {
+        if (indexType.isSpatial()) {
+            if (includedColumns != null) {
+                throw DbException.getUnsupportedException("SPATIAL INDEX INCLUDE");
+            }
+            if (condition != null) {
+                throw DbException.getUnsupportedException("Partial SPATIAL INDEX");
+            }
+        }
+        if (indexType.isHash()) {
+            if (includedColumns != null) {
+                throw DbException.getUnsupportedException("HASH INDEX INCLUDE");
+            }
+            if (condition != null) {
+                throw DbException.getUnsupportedException("Partial HASH INDEX");
+            }
+        }
+        if (indexType.isBitmap()) {
+            if (cols.length != 1) {
+                throw DbException.getUnsupportedException("BITMAP INDEX on multiple columns");
+            }
+            if (includedColumns != null) {
+                throw DbException.getUnsupportedException("BITMAP INDEX INCLUDE");
+            }
+            if (condition != null) {
+                throw DbException.getUnsupportedException("Partial BITMAP INDEX");
+            }
+        }
+        if (condition != null && indexType.isPrimaryKey()) {
+            throw DbException.getUnsupportedException("Partial PRIMARY KEY");
+        }
+        boolean expressions = false;
+        for (IndexColumn c : cols) {
+            if (c.expression != null) {
+                if (indexType.isPrimaryKey() || indexType.isSpatial() || indexType.isHash()
+                        || indexType.isBitmap()) {
+                    throw DbException.getUnsupportedException(
+                            (indexType.isPrimaryKey() ? "PRIMARY KEY"
+                                    : indexType.isSpatial() ? "SPATIAL INDEX"
+                                    : indexType.isHash() ? "HASH INDEX" : "BITMAP INDEX")
+                            + " on expression " + c.expression.getSQL());
+                }
+                c.column = getIndexExpressionColumn(c.expression);
+                expressions |= c.column instanceof IndexExpressionColumn;
+            }
+        }
         if (indexType.isPrimaryKey()) {
             for (IndexColumn c : cols) {
                 Column column = c.column;
@@ -499,26 +567,39 @@ public Index addIndex(Session session, String indexName, int indexId,
         MVIndex index;
         int mainIndexColumn = primaryIndex.getMainIndexColumn() != SearchRow.ROWID_INDEX
                 ? SearchRow.ROWID_INDEX : getMainIndexColumn(indexType, cols);
+        boolean hash = indexType.isHash();
         if (database.isStarting()) {
             // if index does exists as a separate map it can't be a delegate
             if (transactionStore.hasMap("index." + indexId)) {
                 // we can not reuse primary index
                 mainIndexColumn = SearchRow.ROWID_INDEX;
+                // hash indexes of older versions are secondary indexes
+                hash = false;
+            } else if (transactionStore.hasMap(MVHashIndex.MAP_PREFIX + indexId)
+                    || transactionStore.hasMap(MVBitmapIndex.MAP_PREFIX + indexId)) {
+                mainIndexColumn = SearchRow.ROWID_INDEX;
             }
         } else if (primaryIndex.getRowCountMax() != 0) {
             mainIndexColumn = SearchRow.ROWID_INDEX;
         }
 
-        if (mainIndexColumn != SearchRow.ROWID_INDEX) {
+        if (mainIndexColumn != SearchRow.ROWID_INDEX && includedColumns == null && condition == null
+                && !expressions) {
             primaryIndex.setMainIndexColumn(mainIndexColumn);
             index = new MVDelegateIndex(this, indexId, indexName, primaryIndex,
                     indexType);
         } else if (indexType.isSpatial()) {
             index = new MVSpatialIndex(session.getDatabase(), this, indexId,
                     indexName, cols, indexType);
+        } else if (hash) {
+            index = new MVHashIndex(session.getDatabase(), this, indexId,
+                    indexName, cols, indexType);
+        } else if (indexType.isBitmap()) {
+            index = new MVBitmapIndex(session.getDatabase(), this, indexId,
+                    indexName, cols, indexType);
         } else {
             index = new MVSecondaryIndex(session.getDatabase(), this, indexId,
-                    indexName, cols, indexType);
+                    indexName, cols, includedColumns, condition, indexType);
         }
         if (index.needRebuild()) {
             rebuildIndex(session, index, indexName);
@@ -548,6 +629,7 @@ private void rebuildIndex(Session session, MVIndex index, String indexName) {
             }
         } catch (DbException e) {
             getSchema().freeUniqueName(indexName);
+            removeUnusedExpressionColumns();
             try {
                 index.remove(session);
             } catch (DbException e2) {
@@ -561,58 +643,137 @@ private void rebuildIndex(Session session, MVIndex index, String indexName) {
         }
     }
 
-    private void rebuildIndexBlockMerge(Session session, MVIndex index) {
+    private void rebuildIndexBlockMerge(Session session, final MVIndex index) {
         if (index instanceof MVSpatialIndex) {
             // the spatial index doesn't support multi-way merge sort
             rebuildIndexBuffered(session, index);
+            return;
         }
         // Read entries in memory, sort them, write to a new map (in sorted
-        // order); repeat (using a new map for every block of 1 MB) until all
-        // record are read. Merge all maps to the target (using merge sort;
-        // duplicates are detected in the target). For randomly ordered data,
-        // this should use relatively few write operations.
-        // A possible optimization is: change the buffer size from "row count"
-        // to "amount of memory", and buffer index keys instead of rows.
+        // order); repeat (using a new map for every block of rows that use
+        // the configured amount of memory) until all record are read. Merge
+        // all maps to the target (using merge sort; duplicates are detected in
+        // the target). For randomly ordered data, this should use relatively
+        // few write operations. If parallelism is enabled, slices of the
+        // table are read and sorted concurrently, and the memory is split
+        // between them.
+        // A possible optimization is: buffer index keys instead of rows.
         Index scan = getScanIndex(session);
-        long remaining = scan.getRowCount(session);
-        long total = remaining;
-        Cursor cursor = scan.find(session, null, null);
-        long i = 0;
-        Store store = session.getDatabase().getStore();
+        final long total = scan.getRowCount(session);
+        long memory = SysProperties.INDEX_BUILD_MEMORY * 1024L;
+        Cursor[] cursors = null;
+        int count = (int) Math.min(session.getParallelism(), total / PARALLEL_MIN_ROWS);
+        if (count > 1) {
+            cursors = scan.findParallel(session, count);
+        }
+        final AtomicLong progress = new AtomicLong();
+        // the names are added before the maps are written, so that the maps
+        // of failed threads are removed as well
+        final List<String> bufferNames = Collections.synchronizedList(new ArrayList<String>());
+        try {
+            if (cursors == null || cursors.length < 2) {
+                ArrayList<Row> buffer = readSortedRuns(scan.find(session, null, null), index, memory, bufferNames,
+                        progress, total, true);
+                if (buffer != null) {
+                    addRowsToIndex(session, buffer, index);
+                }
+            } else {
+                final long partMemory = memory / cursors.length;
+                ArrayList<Callable<Void>> tasks = new ArrayList<>(cursors.length);
+                for (final Cursor cursor : cursors) {
+                    tasks.add(new Callable<Void>() {
+                        @Override
+                        public Void call() {
+                            readSortedRuns(cursor, index, partMemory, bufferNames, progress, total, false);
+                            return null;
+                        }
+                    });
+                }
+                DbException failure = null;
+                for (Future<Void> f : database.getParallelExecutor().invokeAll(tasks)) {
+                    try {
+                        f.get();
+                    } catch (InterruptedException e) {
+                        failure = DbException.convert(e);
+                    } catch (ExecutionException e) {
+                        failure = DbException.convert(e.getCause());
+                    }
+                }
+                if (failure != null) {
+                    throw failure;
+                }
+            }
+            if (!bufferNames.isEmpty()) {
+                index.addBufferedRows(bufferNames);
+            }
+        } finally {
+            MVStore mvStore = database.getStore().getMvStore();
+            synchronized (bufferNames) {
+                for (String mapName : bufferNames) {
+                    mvStore.removeMap(mapName);
+                }
+            }
+        }
+        if (progress.get() != total) {
+            DbException.throwInternalError("rowcount remaining=" + (total - progress.get()) +
+                    " " + getName());
+        }
+    }
 
-        int bufferSize = database.getMaxMemoryRows() / 2;
-        ArrayList<Row> buffer = new ArrayList<>(bufferSize);
+    /**
+     * Read the rows of the cursor, and write them in sorted blocks to
+     * temporary maps. A block is written when the rows use more than the
+     * given amount of memory.
+     *
+     * @param cursor the cursor
+     * @param index the index to build
+     * @param memory the amount of memory for a block, in bytes
+     * @param bufferNames the list to add the names of the new maps to, before
+     *            they are written
+     * @param progress the count of read rows of all cursors
+     * @param total the total row count of the table
+     * @param keepSingleBlock whether the rows should be returned instead of
+     *            written, if all of them fit into one block
+     * @return the sorted rows, or null if they were written to maps
+     */
+    private ArrayList<Row> readSortedRuns(Cursor cursor, MVIndex index, long memory,
+            List<String> bufferNames, AtomicLong progress, long total, boolean keepSingleBlock) {
+        Store store = database.getStore();
         String n = getName() + ":" + index.getName();
         int t = MathUtils.convertLongToInt(total);
-        ArrayList<String> bufferNames = Utils.newSmallArrayList();
+        ArrayList<Row> buffer = new ArrayList<>();
+        long used = 0;
         while (cursor.next()) {
             Row row = cursor.get();
             buffer.add(row);
-            database.setProgress(DatabaseEventListener.STATE_CREATE_INDEX, n,
-                    MathUtils.convertLongToInt(i++), t);
-            if (buffer.size() >= bufferSize) {
+            long i = progress.getAndIncrement();
+            if (keepSingleBlock || (i & (PARALLEL_PROGRESS_ROWS - 1)) == 0) {
+                // the listener may not be thread-safe
+                synchronized (progress) {
+                    database.setProgress(DatabaseEventListener.STATE_CREATE_INDEX, n,
+                            MathUtils.convertLongToInt(i), t);
+                }
+            }
+            used += row.getMemory() + Constants.MEMORY_POINTER;
+            if (used >= memory) {
                 sortRows(buffer, index);
                 String mapName = store.nextTemporaryMapName();
-                index.addRowsToBuffer(buffer, mapName);
                 bufferNames.add(mapName);
+                index.addRowsToBuffer(buffer, mapName);
                 buffer.clear();
+                used = 0;
             }
-            remaining--;
         }
         sortRows(buffer, index);
-        if (!bufferNames.isEmpty()) {
+        if (keepSingleBlock && bufferNames.isEmpty()) {
+            return buffer;
+        }
+        if (!buffer.isEmpty()) {
             String mapName = store.nextTemporaryMapName();
-            index.addRowsToBuffer(buffer, mapName);
             bufferNames.add(mapName);
-            buffer.clear();
-            index.addBufferedRows(bufferNames);
-        } else {
-            addRowsToIndex(session, buffer, index);
-        }
-        if (remaining != 0) {
-            DbException.throwInternalError("rowcount remaining=" + remaining +
-                    " " + getName());
+            index.addRowsToBuffer(buffer, mapName);
         }
+        return null;
     }
 
     private void rebuildIndexBuffered(Session session, Index index) {
@@ -652,6 +813,16 @@ private static void addRowsToIndex(Session session, ArrayList<Row> list,
     }
 
     private static void sortRows(ArrayList<? extends SearchRow> list, final Index index) {
+        if (index instanceof MVHashIndex) {
+            // the entries of a hash index are ordered by the hash code
+            return;
+        }
+        for (Column c : index.getColumns()) {
+            if (c instanceof IndexExpressionColumn) {
+                // the rows don't contain the values of the expressions
+                return;
+            }
+        }
         Collections.sort(list, new Comparator<SearchRow>() {
             @Override
             public int compare(SearchRow r1, SearchRow r2) {
@@ -688,9 +859,7 @@ public void truncate(Session session) {
             Index index = indexes.get(i);
             index.truncate(session);
         }
-        if (changesUntilAnalyze != null) {
-            changesUntilAnalyze.set(nextAnalyze);
-        }
+        resetChangesUntilAnalyze();
     }
 
     @Override
@@ -739,21 +908,19 @@ public void lockRows(Session session, Iterable<Row> rowsForUpdate) {
         primaryIndex.lockRows(session, rowsForUpdate);
     }
 
+    @Override
+    public void lockRowsNoWait(Session session, Iterable<Row> rowsForUpdate) {
+        primaryIndex.lockRowsNoWait(session, rowsForUpdate);
+    }
+
     @Override
     public Row lockRow(Session session, Row row) {
         return primaryIndex.lockRow(session, row);
     }
 
-    private void analyzeIfRequired(Session session) {
-        if (changesUntilAnalyze != null) {
-            if (changesUntilAnalyze.decrementAndGet() == 0) {
-                if (nextAnalyze <= Integer.MAX_VALUE / 2) {
-                    nextAnalyze *= 2;
-                }
-                changesUntilAnalyze.set(nextAnalyze);
-                session.markTableForAnalyze(this);
-            }
-        }
+    @Override
+    public Row lockRowSkipLocked(Session session, Row row) {
+        return primaryIndex.lockRowSkipLocked(session, row);
     }
 
     @Override
@@ -776,6 +943,11 @@ public Index getUniqueIndex() {
         return primaryIndex;
     }
 
+    @Override
+    public ArrayList<Row> getSample(Session session, int count, Random random) {
+        return primaryIndex.getSample(session, count, random);
+    }
+
     @Override
     public ArrayList<Index> getIndexes() {
         return indexes;
@@ -267,7 +267,9 @@ public void removeTemporaryMaps(BitSet objectIds) {
             for (String mapName : mvStore.getMapNames()) {
                 if (mapName.startsWith("temp.")) {
                     mvStore.removeMap(mapName);
-                } else if (mapName.startsWith("table.") || mapName.startsWith("index.")) {
+                } else if (mapName.startsWith("table.") || mapName.startsWith("index.")
+                        || mapName.startsWith(MVHashIndex.MAP_PREFIX)
+                        || mapName.startsWith(MVBitmapIndex.MAP_PREFIX)) {
                     int id = StringUtils.parseUInt31(mapName, mapName.indexOf('.') + 1, mapName.length());
                     if (!objectIds.get(id)) {
                         mvStore.removeMap(mapName);
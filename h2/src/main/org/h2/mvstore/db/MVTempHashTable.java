@@ -0,0 +1,171 @@
+/*
+ * Copyright 2004-2018 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.mvstore.db;
+
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.h2.engine.Constants;
+import org.h2.engine.Database;
+import org.h2.message.DbException;
+import org.h2.mvstore.Cursor;
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+import org.h2.mvstore.MVStore.Builder;
+import org.h2.store.fs.FileUtils;
+import org.h2.util.TempFileDeleter;
+import org.h2.value.Value;
+import org.h2.value.ValueArray;
+
+/**
+ * A temporary hash table stored in a file. Rows are grouped by the hash code
+ * of their key; the caller needs to compare the keys of the rows with the
+ * same hash code.
+ */
+public final class MVTempHashTable {
+
+    private static final class CloseImpl implements AutoCloseable {
+
+        private final MVStore store;
+
+        private final String fileName;
+
+        CloseImpl(MVStore store, String fileName) {
+            this.store = store;
+            this.fileName = fileName;
+        }
+
+        @Override
+        public void close() throws Exception {
+            store.closeImmediately();
+            FileUtils.tryDelete(fileName);
+        }
+
+    }
+
+    /**
+     * Key: the hash code in the upper 32 bits and a row counter in the lower
+     * 32 bits, value: the row.
+     */
+    private final MVMap<Long, ValueArray> map;
+
+    private final TempFileDeleter tempFileDeleter;
+
+    private final CloseImpl closeable;
+
+    private final Reference<?> fileRef;
+
+    private int counter;
+
+    /**
+     * Creates a new temporary hash table.
+     *
+     * @param database
+     *            database
+     * @param columnCount
+     *            count of values in a row
+     */
+    public MVTempHashTable(Database database, int columnCount) {
+        try {
+            String fileName = FileUtils.createTempFile("h2tmp", Constants.SUFFIX_TEMP_FILE, false, true);
+            Builder builder = new MVStore.Builder().fileName(fileName).cacheSize(0).autoCommitDisabled();
+            byte[] key = database.getFileEncryptionKey();
+            if (key != null) {
+                builder.encryptionKey(MVTableEngine.decodePassword(key));
+            }
+            MVStore store = builder.open();
+            ValueDataType valueType = new ValueDataType(database, new int[columnCount]);
+            map = store.openMap("tmp", new MVMap.Builder<Long, ValueArray>().valueType(valueType));
+            tempFileDeleter = database.getTempFileDeleter();
+            closeable = new CloseImpl(store, fileName);
+            fileRef = tempFileDeleter.addFile(closeable, this);
+        } catch (IOException e) {
+            throw DbException.convert(e);
+        }
+    }
+
+    /**
+     * Add a row.
+     *
+     * @param hash
+     *            the hash code of the key of the row
+     * @param values
+     *            the row
+     */
+    public void add(int hash, Value[] values) {
+        map.put(((long) hash << 32) | (counter++ & 0xffffffffL), ValueArray.get(values));
+    }
+
+    /**
+     * Get all rows with the specified hash code of the key.
+     *
+     * @param hash
+     *            the hash code
+     * @return the rows
+     */
+    public ArrayList<Value[]> get(int hash) {
+        ArrayList<Value[]> list = new ArrayList<>();
+        long last = ((long) hash << 32) | 0xffffffffL;
+        Cursor<Long, ValueArray> cursor = map.cursor((long) hash << 32);
+        while (cursor.hasNext() && cursor.next() <= last) {
+            list.add(cursor.getValue().getList());
+        }
+        return list;
+    }
+
+    /**
+     * Iterate over all rows with the specified hash code of the key, in the
+     * order they were added. Unlike {@link #get(int)}, the rows are read from
+     * the file while iterating.
+     *
+     * @param hash
+     *            the hash code
+     * @return the iterator
+     */
+    public Iterator<Value[]> iterator(int hash) {
+        final long last = ((long) hash << 32) | 0xffffffffL;
+        final Cursor<Long, ValueArray> cursor = map.cursor((long) hash << 32);
+        return new Iterator<Value[]>() {
+
+            private Value[] next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null && cursor.hasNext() && cursor.next() <= last) {
+                    next = cursor.getValue().getList();
+                }
+                return next != null;
+            }
+
+            @Override
+            public Value[] next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Value[] row = next;
+                next = null;
+                return row;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+
+        };
+    }
+
+    /**
+     * Close the table and delete the file.
+     */
+    public void close() {
+        tempFileDeleter.deleteFile(fileRef, closeable);
+    }
+
+}
@@ -0,0 +1,338 @@
+/*
+ * Copyright 2004-2018 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.mvstore.tx;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.Lock;
+import org.h2.mvstore.MVMap;
+
+/**
+ * The undo log of a transaction slot.
+ * <p>
+ * Undo records are appended to an in-memory buffer and are copied to the
+ * persistent undo log map only when the buffer grows too large, or when the
+ * store is about to write changes (so that in-doubt transactions can still be
+ * rolled back after a crash). Short transactions usually never touch the map.
+ * <p>
+ * The map is stored in the same store as the transactional maps, so the
+ * records of large transactions are still written to the same chunks as the
+ * data, and use the same cache. There is no separate undo log file.
+ * <p>
+ * The buffer is modified by the owning transaction only, but the store may
+ * copy buffered records to the map concurrently. Both synchronize on this
+ * object. The owner never accesses the map while holding the lock, because
+ * map operations may wait for the store. Records are not appended while the
+ * store collects the changes to write, so that a change is never written
+ * before its undo log record.
+ */
+final class BufferedUndoLog {
+
+    /**
+     * The maximum number of buffered records. If the buffer grows larger,
+     * all records are moved to the map.
+     */
+    static final int MAX_BUFFERED_RECORDS = 1024;
+
+    private static final int SEGMENT_BITS = 7;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    /**
+     * The persistent undo log.
+     * <p>
+     * Key: opId, value: [ mapId, key, oldValue ].
+     */
+    final MVMap<Long, Object[]> map;
+
+    private final TransactionStore store;
+
+    private final int transactionId;
+
+    /**
+     * Buffered records, split into segments of equal size. The record with
+     * the log id "base" is the first record of the first segment.
+     */
+    private volatile Object[][] segments = new Object[1][];
+
+    /**
+     * The log id of the first buffered record. Records with smaller log ids
+     * are only available in the map.
+     */
+    private volatile long base;
+
+    /**
+     * The number of records, which is also the next log id.
+     */
+    private volatile long size;
+
+    /**
+     * Records with smaller log ids are stored in the map.
+     */
+    private long stored;
+
+    /**
+     * Whether the transaction is committed without using the map.
+     */
+    private boolean committing;
+
+    /**
+     * Whether the map was renamed to the "committed" name by the store.
+     */
+    private boolean renamed;
+
+    BufferedUndoLog(TransactionStore store, int transactionId, MVMap<Long, Object[]> map) {
+        this.store = store;
+        this.transactionId = transactionId;
+        this.map = map;
+    }
+
+    /**
+     * Initialize the log of a transaction found during recovery. All its
+     * records are in the map.
+     *
+     * @param logId the next log id
+     */
+    synchronized void recover(long logId) {
+        base = size = stored = logId;
+    }
+
+    /**
+     * Check whether this log has any records.
+     *
+     * @return true if it doesn't
+     */
+    boolean isEmpty() {
+        return size == 0 && map.isEmpty();
+    }
+
+    /**
+     * Append a record.
+     *
+     * @param logId the log id of the record
+     * @param record the record: [ mapId, key, oldValue ]
+     */
+    void append(long logId, Object[] record) {
+        boolean full;
+        Lock barrier = store.undoLogBarrier.readLock();
+        barrier.lock();
+        try {
+            synchronized (this) {
+                assert logId >= size : logId + " < " + size;
+                int index = (int) (logId - base);
+                Object[][] segments = this.segments;
+                int segment = index >>> SEGMENT_BITS;
+                if (segment >= segments.length) {
+                    segments = Arrays.copyOf(segments, Math.max(segment + 1, segments.length * 2));
+                }
+                Object[] s = segments[segment];
+                if (s == null) {
+                    s = segments[segment] = new Object[SEGMENT_SIZE];
+                }
+                s[index & SEGMENT_MASK] = record;
+                this.segments = segments;
+                size = logId + 1;
+                full = size - base > MAX_BUFFERED_RECORDS;
+            }
+        } finally {
+            barrier.unlock();
+        }
+        if (full) {
+            moveToMap();
+        }
+    }
+
+    /**
+     * Remove all records starting from the given log id.
+     *
+     * @param logId the log id of the first record to remove
+     */
+    void truncate(long logId) {
+        long removeFrom, removeTo;
+        synchronized (this) {
+            for (long i = Math.max(logId, base); i < size; i++) {
+                int index = (int) (i - base);
+                Object[] s = segments[index >>> SEGMENT_BITS];
+                if (s != null) {
+                    s[index & SEGMENT_MASK] = null;
+                }
+            }
+            removeFrom = logId;
+            removeTo = stored;
+            if (logId < stored) {
+                stored = logId;
+            }
+            if (logId < size) {
+                size = logId;
+            }
+            if (size < base) {
+                segments = new Object[1][];
+                base = size;
+            }
+        }
+        for (long i = removeFrom; i < removeTo; i++) {
+            map.remove(TransactionStore.getOperationId(transactionId, i));
+        }
+    }
+
+    /**
+     * Get the record with the given log id.
+     *
+     * @param logId the log id
+     * @return the record, or null if not found
+     */
+    Object[] get(long logId) {
+        synchronized (this) {
+            if (logId >= base && logId < size) {
+                int index = (int) (logId - base);
+                Object[] s = segments[index >>> SEGMENT_BITS];
+                return s == null ? null : (Object[]) s[index & SEGMENT_MASK];
+            }
+        }
+        return map.get(TransactionStore.getOperationId(transactionId, logId));
+    }
+
+    /**
+     * Get the number of records, which is also the next log id.
+     *
+     * @return the number of records
+     */
+    long size() {
+        return size;
+    }
+
+    /**
+     * Get the number of records, if all of them are available in the buffer,
+     * without locking.
+     *
+     * @return the number of records, or -1 if some records are only
+     *         available in the map
+     */
+    long getBufferedSize() {
+        long size = this.size;
+        return base == 0 ? size : -1;
+    }
+
+    /**
+     * Get the buffered record with the given log id without locking.
+     *
+     * @param logId the log id
+     * @return the record, or null if it is not available
+     */
+    Object[] getBuffered(long logId) {
+        Object[][] segments = this.segments;
+        long index = logId - base;
+        if (index < 0 || index >= size - base) {
+            return null;
+        }
+        int segment = (int) (index >>> SEGMENT_BITS);
+        if (segment >= segments.length) {
+            return null;
+        }
+        Object[] s = segments[segment];
+        return s == null ? null : (Object[]) s[(int) index & SEGMENT_MASK];
+    }
+
+    /**
+     * Start the commit. If the map contains no records, the transaction may
+     * be committed using the buffered records only.
+     *
+     * @return true if all records are available in the buffer
+     */
+    synchronized boolean startCommit() {
+        if (stored == 0 && base == 0) {
+            committing = true;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Remove all records after a commit or rollback.
+     */
+    void clear() {
+        boolean inMap, wasRenamed;
+        synchronized (this) {
+            wasRenamed = renamed;
+            inMap = stored > 0 || wasRenamed;
+            committing = renamed = false;
+            segments = new Object[1][];
+            base = size = stored = 0;
+        }
+        if (inMap) {
+            map.clear();
+        }
+        if (wasRenamed) {
+            store.store.renameMap(map, TransactionStore.getUndoLogName(false, transactionId));
+        }
+    }
+
+    /**
+     * Move all buffered records to the map and release the buffer. This
+     * method is called by the owning transaction.
+     */
+    void moveToMap() {
+        copyToMap();
+        synchronized (this) {
+            if (stored == size) {
+                segments = new Object[1][];
+                base = size;
+            }
+        }
+    }
+
+    /**
+     * Copy all buffered records that are not stored yet to the map. This
+     * method is called by the owning transaction, without holding the lock.
+     */
+    private void copyToMap() {
+        long from, to;
+        Object[][] segments;
+        long base;
+        synchronized (this) {
+            from = stored;
+            to = size;
+            segments = this.segments;
+            base = this.base;
+        }
+        for (long logId = from; logId < to; logId++) {
+            put(segments, base, logId);
+        }
+        synchronized (this) {
+            if (stored < to && size >= to) {
+                stored = to;
+            }
+        }
+    }
+
+    /**
+     * Copy all buffered records that are not stored yet to the map, while
+     * the store is about to write changes. The buffer is kept, so that the
+     * owning transaction can continue using it.
+     */
+    synchronized void store() {
+        if (stored < size) {
+            if (committing && !renamed) {
+                // let the transaction be committed on recovery
+                store.store.renameMap(map, TransactionStore.getUndoLogName(true, transactionId));
+                renamed = true;
+            }
+            for (long logId = stored; logId < size; logId++) {
+                put(segments, base, logId);
+            }
+            stored = size;
+        }
+    }
+
+    private void put(Object[][] segments, long base, long logId) {
+        int index = (int) (logId - base);
+        Object[] s = segments[index >>> SEGMENT_BITS];
+        Object[] record = s == null ? null : (Object[]) s[index & SEGMENT_MASK];
+        if (record != null) {
+            map.put(TransactionStore.getOperationId(transactionId, logId), record);
+        }
+    }
+
+}
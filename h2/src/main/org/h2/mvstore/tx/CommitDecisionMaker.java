@@ -14,7 +14,7 @@
  *
  * @author <a href='mailto:andrei.tokar@gmail.com'>Andrei Tokar</a>
  */
-final class CommitDecisionMaker extends MVMap.DecisionMaker<VersionedValue> {
+final class CommitDecisionMaker extends MVMap.DecisionMaker<Object> {
     private long undoKey;
     private MVMap.Decision decision;
 
@@ -24,19 +24,19 @@ void setUndoKey(long undoKey) {
     }
 
     @Override
-    public MVMap.Decision decide(VersionedValue existingValue, VersionedValue providedValue) {
+    public MVMap.Decision decide(Object existingValue, Object providedValue) {
         assert decision == null;
         if (existingValue == null ||
             // map entry was treated as already committed, and then
             // it has been removed by another transaction (committed and closed by now)
-            existingValue.getOperationId() != undoKey) {
+            VersionedValue.getOperationId(existingValue) != undoKey) {
             // this is not a final undo log entry for this key,
             // or map entry was treated as already committed and then
             // overwritten by another transaction
             // see TxDecisionMaker.decide()
 
             decision = MVMap.Decision.ABORT;
-        } else /* this is final undo log entry for this key */ if (existingValue.value == null) {
+        } else /* this is final undo log entry for this key */ if (VersionedValue.getCurrentValue(existingValue) == null) {
             decision = MVMap.Decision.REMOVE;
         } else {
             decision = MVMap.Decision.PUT;
@@ -46,10 +46,11 @@ public MVMap.Decision decide(VersionedValue existingValue, VersionedValue provid
 
     @SuppressWarnings("unchecked")
     @Override
-    public VersionedValue selectValue(VersionedValue existingValue, VersionedValue providedValue) {
+    public Object selectValue(Object existingValue, Object providedValue) {
         assert decision == MVMap.Decision.PUT;
         assert existingValue != null;
-        return VersionedValue.getInstance(existingValue.value);
+        // committed values are stored without a wrapper
+        return VersionedValue.getCurrentValue(existingValue);
     }
 
     @Override
@@ -60,6 +60,12 @@ public class Transaction {
      */
     private static final int STATUS_ROLLED_BACK  = 5;
 
+    /**
+     * The id of read-only transactions. This slot is never allocated to a
+     * regular transaction.
+     */
+    static final int READ_ONLY_TRANSACTION_ID = 0;
+
     private static final String STATUS_NAMES[] = {
             "CLOSED", "OPEN", "PREPARED", "COMMITTED", "ROLLING_BACK", "ROLLED_BACK"
     };
@@ -137,7 +143,7 @@ public class Transaction {
     /**
      * Map on which this transaction is blocked.
      */
-    MVMap<?,VersionedValue> blockingMap;
+    MVMap<?,Object> blockingMap;
 
     /**
      * Key in blockingMap on which this transaction is blocked.
@@ -225,8 +231,20 @@ public boolean hasChanges() {
         return hasChanges(statusAndLogId.get());
     }
 
+    /**
+     * Check whether this is a read-only transaction. Such transaction does
+     * not occupy a transaction slot and does not have an undo log, it can
+     * only see committed data and can not modify any map.
+     *
+     * @return true if it is read-only
+     */
+    public boolean isReadOnly() {
+        return transactionId == READ_ONLY_TRANSACTION_ID;
+    }
+
     public void setName(String name) {
         checkNotClosed();
+        checkNotReadOnly();
         this.name = name;
         store.storeTransaction(this);
     }
@@ -268,7 +286,8 @@ public void markStatementEnd() {
      * @param key the key
      * @param oldValue the old value
      */
-    long log(int mapId, Object key, VersionedValue oldValue) {
+    long log(int mapId, Object key, Object oldValue) {
+        checkNotReadOnly();
         long currentState = statusAndLogId.getAndIncrement();
         long logId = getLogId(currentState);
         if (logId >= LOG_ID_LIMIT) {
@@ -297,7 +316,7 @@ void logUndo() {
         }
         int currentStatus = getStatus(currentState);
         checkOpen(currentStatus);
-        store.removeUndoLogRecord(transactionId);
+        store.removeUndoLogRecord(transactionId, logId);
     }
 
     /**
@@ -324,7 +343,7 @@ public <K, V> TransactionMap<K, V> openMap(String name) {
      */
     public <K, V> TransactionMap<K, V> openMap(String name,
                                                 DataType keyType, DataType valueType) {
-        MVMap<K, VersionedValue> map = store.openMap(name, keyType, valueType);
+        MVMap<K, Object> map = store.openMap(name, keyType, valueType);
         return openMap(map);
     }
 
@@ -336,7 +355,7 @@ public <K, V> TransactionMap<K, V> openMap(String name,
      * @param map the base map
      * @return the transactional map
      */
-    public <K, V> TransactionMap<K, V> openMap(MVMap<K, VersionedValue> map) {
+    public <K, V> TransactionMap<K, V> openMap(MVMap<K, Object> map) {
         checkNotClosed();
         return new TransactionMap<>(this, map);
     }
@@ -346,6 +365,7 @@ public <K, V> TransactionMap<K, V> openMap(MVMap<K, VersionedValue> map) {
      * committed or completely rolled back.
      */
     public void prepare() {
+        checkNotReadOnly();
         setStatus(STATUS_PREPARED);
         store.storeTransaction(this);
     }
@@ -354,7 +374,7 @@ public void prepare() {
      * Commit the transaction. Afterwards, this transaction is closed.
      */
     public void commit() {
-        assert store.openTransactions.get().get(transactionId);
+        assert isReadOnly() || store.openTransactions.get().get(transactionId);
         Throwable ex = null;
         boolean hasChanges = false;
         try {
@@ -460,6 +480,17 @@ private void checkOpen(int status) {
         }
     }
 
+    /**
+     * Check whether this transaction may modify data.
+     */
+    private void checkNotReadOnly() {
+        if (isReadOnly()) {
+            throw DataUtils.newIllegalStateException(
+                    DataUtils.ERROR_TRANSACTION_ILLEGAL_STATE,
+                    "Transaction {0} is read-only", transactionId);
+        }
+    }
+
     /**
      * Check whether this transaction is open or prepared.
      */
@@ -482,8 +513,26 @@ private synchronized void notifyAllWaitingTransactions() {
         notifyAll();
     }
 
+    /**
+     * Wait for the given transaction to end, no longer than the lock timeout
+     * of this transaction.
+     *
+     * @param toWaitFor the transaction to wait for
+     * @return true if the transaction has ended, false on timeout
+     */
     public boolean waitFor(Transaction toWaitFor) {
-        if (isDeadlocked(toWaitFor)) {
+        return waitFor(toWaitFor, timeoutMillis);
+    }
+
+    /**
+     * Wait for the given transaction to end.
+     *
+     * @param toWaitFor the transaction to wait for
+     * @param timeoutMillis how long to wait, 0 to check only
+     * @return true if the transaction has ended, false on timeout
+     */
+    public boolean waitFor(Transaction toWaitFor, int timeoutMillis) {
+        if (timeoutMillis > 0 && isDeadlocked(toWaitFor)) {
             StringBuilder details = new StringBuilder(
                     String.format("Transaction %d has been chosen as a deadlock victim. Details:%n", transactionId));
             for (Transaction tx = toWaitFor, nextTx; (nextTx = tx.blockingTransaction) != null; tx = nextTx) {
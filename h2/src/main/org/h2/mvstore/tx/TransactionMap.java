@@ -40,14 +40,14 @@
      * Key: key the key of the data.
      * Value: { transactionId, oldVersion, value }
      */
-    public final MVMap<K, VersionedValue> map;
+    public final MVMap<K, Object> map;
 
     /**
      * The transaction which is used for this map.
      */
     final Transaction transaction;
 
-    TransactionMap(Transaction transaction, MVMap<K, VersionedValue> map) {
+    TransactionMap(Transaction transaction, MVMap<K, Object> map) {
         this.transaction = transaction;
         this.map = map;
     }
@@ -100,26 +100,36 @@ public long sizeAsLong() {
         // when none of the variables concurrently changes it's value.
         BitSet committingTransactions;
         MVMap.RootReference mapRootReference;
-        MVMap.RootReference[] undoLogRootReferences;
+        BufferedUndoLog[] undoLogs;
+        long[] undoLogSizes;
         long undoLogSize;
+        boolean buffered;
         do {
             committingTransactions = store.committingTransactions.get();
             mapRootReference = map.getRoot();
             BitSet opentransactions = store.openTransactions.get();
-            undoLogRootReferences = new MVMap.RootReference[opentransactions.length()];
+            undoLogs = new BufferedUndoLog[opentransactions.length()];
+            undoLogSizes = new long[opentransactions.length()];
             undoLogSize = 0;
+            buffered = true;
             for (int i = opentransactions.nextSetBit(0); i >= 0; i = opentransactions.nextSetBit(i+1)) {
-                MVMap<Long, Object[]> undoLog = store.undoLogs[i];
+                BufferedUndoLog undoLog = store.undoLogs[i];
                 if (undoLog != null) {
-                    MVMap.RootReference rootReference = undoLog.getRoot();
-                    undoLogRootReferences[i] = rootReference;
-                    undoLogSize += rootReference.root.getTotalCount() + rootReference.getAppendCounter();
+                    long bufferedSize = undoLog.getBufferedSize();
+                    if (bufferedSize < 0) {
+                        // some records are only available in the map
+                        buffered = false;
+                        bufferedSize = undoLog.size();
+                    }
+                    undoLogs[i] = undoLog;
+                    undoLogSizes[i] = bufferedSize;
+                    undoLogSize += bufferedSize;
                 }
             }
         } while(committingTransactions != store.committingTransactions.get() ||
                 mapRootReference != map.getRoot());
         // Now we have a snapshot, where mapRootReference points to state of the map,
-        // undoLogRootReference captures the state of undo log
+        // undoLogSizes capture the state of undo logs
         // and committingTransactions mask tells us which of seemingly uncommitted changes
         // should be considered as committed.
         // Subsequent processing uses this snapshot info only.
@@ -134,53 +144,66 @@ public long sizeAsLong() {
         // which are committed but not closed yet,
         // and entries about additions to the map by other uncommitted transactions were counted,
         // but they should not contribute into total count.
-        if (2 * undoLogSize > size) {
-            // the undo log is larger than half of the map - scan the entries of the map directly
-            Cursor<K, VersionedValue> cursor = new Cursor<>(mapRootPage, null);
-            while(cursor.hasNext()) {
-                cursor.next();
-                VersionedValue currentValue = cursor.getValue();
-                assert currentValue != null;
-                long operationId = currentValue.getOperationId();
-                if (operationId != 0) {  // skip committed entries
-                    int txId = TransactionStore.getTransactionId(operationId);
-                    boolean isVisible = txId == transaction.transactionId ||
-                                            committingTransactions.get(txId);
-                    Object v = isVisible ? currentValue.value : currentValue.getCommittedValue();
-                    if (v == null) {
-                        --size;
-                    }
-                }
-            }
-        } else {
+        if (buffered && 2 * undoLogSize <= size) {
             // The undo logs are much smaller than the map - scan all undo logs,
             // and then lookup relevant map entry.
-            for (MVMap.RootReference undoLogRootReference : undoLogRootReferences) {
-                if (undoLogRootReference != null) {
-                    Cursor<Long, Object[]> cursor = new Cursor<>(undoLogRootReference.root, null);
-                    while (cursor.hasNext()) {
-                        cursor.next();
-                        Object op[] = cursor.getValue();
-                        if ((int) op[0] == map.getId()) {
-                            VersionedValue currentValue = map.get(mapRootPage, op[1]);
-                            // If map entry is not there, then we never counted
-                            // it, in the first place, so skip it.
-                            // This is possible when undo entry exists because
-                            // it belongs to a committed but not yet closed
-                            // transaction, and it was later deleted by some
-                            // other already committed and closed transaction.
-                            if (currentValue != null) {
-                                // only the last undo entry for any given map
-                                // key should be considered
-                                long operationId = cursor.getKey();
-                                if (currentValue.getOperationId() == operationId) {
-                                    int txId = TransactionStore.getTransactionId(operationId);
-                                    boolean isVisible = txId == transaction.transactionId ||
-                                            committingTransactions.get(txId);
-                                    Object v = isVisible ? currentValue.value : currentValue.getCommittedValue();
-                                    if (v == null) {
-                                        --size;
-                                    }
+            long result = adjustSize(size, mapRootPage, committingTransactions, undoLogs, undoLogSizes);
+            if (result >= 0) {
+                return result;
+            }
+        }
+        // the undo log is larger than half of the map, or some of its records
+        // are not buffered - scan the entries of the map directly
+        Cursor<K, Object> cursor = new Cursor<>(mapRootPage, null);
+        while(cursor.hasNext()) {
+            cursor.next();
+            Object currentValue = cursor.getValue();
+            assert currentValue != null;
+            long operationId = VersionedValue.getOperationId(currentValue);
+            if (operationId != 0) {  // skip committed entries
+                int txId = TransactionStore.getTransactionId(operationId);
+                boolean isVisible = txId == transaction.transactionId ||
+                                        committingTransactions.get(txId);
+                Object v = isVisible ? VersionedValue.getCurrentValue(currentValue) :
+                        VersionedValue.getCommittedValue(currentValue);
+                if (v == null) {
+                    --size;
+                }
+            }
+        }
+        return size;
+    }
+
+    private long adjustSize(long size, Page mapRootPage, BitSet committingTransactions,
+            BufferedUndoLog[] undoLogs, long[] undoLogSizes) {
+        for (int i = 0; i < undoLogs.length; i++) {
+            BufferedUndoLog undoLog = undoLogs[i];
+            if (undoLog != null) {
+                for (long logId = 0; logId < undoLogSizes[i]; logId++) {
+                    Object op[] = undoLog.getBuffered(logId);
+                    if (op == null) {
+                        // the undo log was changed concurrently
+                        return -1;
+                    }
+                    if ((int) op[0] == map.getId()) {
+                        Object currentValue = map.get(mapRootPage, op[1]);
+                        // If map entry is not there, then we never counted
+                        // it, in the first place, so skip it.
+                        // This is possible when undo entry exists because
+                        // it belongs to a committed but not yet closed
+                        // transaction, and it was later deleted by some
+                        // other already committed and closed transaction.
+                        if (currentValue != null) {
+                            // only the last undo entry for any given map
+                            // key should be considered
+                            long operationId = TransactionStore.getOperationId(i, logId);
+                            if (VersionedValue.getOperationId(currentValue) == operationId) {
+                                boolean isVisible = i == transaction.transactionId ||
+                                        committingTransactions.get(i);
+                                Object v = isVisible ? VersionedValue.getCurrentValue(currentValue) :
+                                        VersionedValue.getCommittedValue(currentValue);
+                                if (v == null) {
+                                    --size;
                                 }
                             }
                         }
@@ -251,8 +274,45 @@ public V putIfAbsent(K key, V value) {
      * @throws IllegalStateException if a lock timeout occurs
      */
     public V lock(K key) {
+        return lock(key, transaction.timeoutMillis);
+    }
+
+    /**
+     * Lock row for the given key.
+     * <p>
+     * If the row is locked, this method will retry until the row could be
+     * updated or until the specified timeout.
+     *
+     * @param key the key
+     * @param timeoutMillis how long to wait for a blocking transaction,
+     *            0 to fail immediately
+     * @return the locked value
+     * @throws IllegalStateException if a lock timeout occurs
+     */
+    public V lock(K key, int timeoutMillis) {
         TxDecisionMaker decisionMaker = new TxDecisionMaker.LockDecisionMaker(map.getId(), key, transaction);
-        return set(key, decisionMaker);
+        Object result = set(key, decisionMaker, timeoutMillis);
+        if (isBlocked(decisionMaker)) {
+            throw getLockedException(key, result, decisionMaker.getBlockingTransaction(), timeoutMillis);
+        }
+        return getValue(result);
+    }
+
+    /**
+     * Try to lock row for the given key without waiting.
+     * <p>
+     * Unlike {@link #lock(Object, int)} this method does not throw an
+     * exception if the row is locked by another open transaction, so it can
+     * be used to skip such rows.
+     *
+     * @param key the key
+     * @return the locked value, or null if the row does not exist or is
+     *         locked by another transaction
+     */
+    public V tryLock(K key) {
+        TxDecisionMaker decisionMaker = new TxDecisionMaker.LockDecisionMaker(map.getId(), key, transaction);
+        Object result = set(key, decisionMaker, 0);
+        return isBlocked(decisionMaker) ? null : getValue(result);
     }
 
     /**
@@ -264,10 +324,10 @@ public V lock(K key) {
      */
     public V putCommitted(K key, V value) {
         DataUtils.checkArgument(value != null, "The value may not be null");
-        VersionedValue newValue = VersionedValue.getInstance(value);
-        VersionedValue oldValue = map.put(key, newValue);
+        // committed values are stored without a wrapper
+        Object oldValue = map.put(key, value);
         @SuppressWarnings("unchecked")
-        V result = (V) (oldValue == null ? null : oldValue.value);
+        V result = (V) VersionedValue.getCurrentValue(oldValue);
         return result;
     }
 
@@ -277,12 +337,29 @@ private V set(Object key, V value) {
     }
 
     private V set(Object key, TxDecisionMaker decisionMaker) {
+        Object result = set(key, decisionMaker, transaction.timeoutMillis);
+        if (isBlocked(decisionMaker)) {
+            throw getLockedException(key, result, decisionMaker.getBlockingTransaction(),
+                    transaction.timeoutMillis);
+        }
+        return getValue(result);
+    }
+
+    /**
+     * Update the map using the given decision maker, waiting for blocking
+     * transactions no longer than the specified time. If the entry is still
+     * locked by another transaction afterwards, the decision maker is left
+     * in the aborted state with the blocking transaction set.
+     *
+     * @param key the key
+     * @param decisionMaker the decision maker
+     * @param timeoutMillis how long to wait for a blocking transaction
+     * @return the previous map entry
+     */
+    private Object set(Object key, TxDecisionMaker decisionMaker, int timeoutMillis) {
         TransactionStore store = transaction.store;
-        Transaction blockingTransaction;
-        long sequenceNumWhenStarted;
-        VersionedValue result;
-        do {
-            sequenceNumWhenStarted = store.openTransactions.get().getVersion();
+        while (true) {
+            long sequenceNumWhenStarted = store.openTransactions.get().getVersion();
             assert transaction.getBlockerId() == 0;
             // although second parameter (value) is not really used,
             // since TxDecisionMaker has it embedded,
@@ -290,29 +367,44 @@ private V set(Object key, TxDecisionMaker decisionMaker) {
             // and any non-null value will do
             @SuppressWarnings("unchecked")
             K k = (K) key;
-            result = map.put(k, VersionedValue.DUMMY, decisionMaker);
+            Object result = map.put(k, VersionedValue.DUMMY, decisionMaker);
 
             MVMap.Decision decision = decisionMaker.getDecision();
             assert decision != null;
             assert decision != MVMap.Decision.REPEAT;
-            blockingTransaction = decisionMaker.getBlockingTransaction();
+            Transaction blockingTransaction = decisionMaker.getBlockingTransaction();
             if (decision != MVMap.Decision.ABORT || blockingTransaction == null) {
                 transaction.blockingMap = null;
                 transaction.blockingKey = null;
-                @SuppressWarnings("unchecked")
-                V res = result == null ? null : (V) result.value;
-                return res;
+                return result;
             }
-            decisionMaker.reset();
             transaction.blockingMap = map;
             transaction.blockingKey = key;
-        } while (blockingTransaction.sequenceNum > sequenceNumWhenStarted || transaction.waitFor(blockingTransaction));
+            if (blockingTransaction.sequenceNum <= sequenceNumWhenStarted
+                    && !transaction.waitFor(blockingTransaction, timeoutMillis)) {
+                // decision maker is left in the aborted state
+                return result;
+            }
+            decisionMaker.reset();
+        }
+    }
+
+    private static boolean isBlocked(TxDecisionMaker decisionMaker) {
+        return decisionMaker.getDecision() == MVMap.Decision.ABORT && decisionMaker.getBlockingTransaction() != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private V getValue(Object result) {
+        return (V) VersionedValue.getCurrentValue(result);
+    }
 
-        throw DataUtils.newIllegalStateException(DataUtils.ERROR_TRANSACTION_LOCKED,
+    private IllegalStateException getLockedException(Object key, Object result,
+            Transaction blockingTransaction, int timeoutMillis) {
+        return DataUtils.newIllegalStateException(DataUtils.ERROR_TRANSACTION_LOCKED,
                 "Map entry <{0}> with key <{1}> and value {2} is locked by tx {3} and can not be updated by tx {4}"
                         + " within allocated time interval {5} ms.",
                 map.getName(), key, result, blockingTransaction.transactionId, transaction.transactionId,
-                transaction.timeoutMillis);
+                timeoutMillis);
     }
 
     /**
@@ -375,22 +467,18 @@ public boolean trySet(K key, V value) {
     @Override
     @SuppressWarnings("unchecked")
     public V get(Object key) {
-        VersionedValue data = map.get(key);
-        if (data == null) {
-            // doesn't exist or deleted by a committed transaction
-            return null;
+        Object data = map.get(key);
+        if (VersionedValue.isCommitted(data)) {
+            // it is committed, doesn't exist, or deleted by a committed
+            // transaction
+            return (V) data;
         }
-        long id = data.getOperationId();
-        if (id == 0) {
-            // it is committed
-            return (V)data.value;
-        }
-        int tx = TransactionStore.getTransactionId(id);
+        int tx = TransactionStore.getTransactionId(VersionedValue.getOperationId(data));
         if (tx == transaction.transactionId || transaction.store.committingTransactions.get().get(tx)) {
             // added by this transaction or another transaction which is committed by now
-            return (V)data.value;
+            return (V) VersionedValue.getCurrentValue(data);
         } else {
-            return (V) data.getCommittedValue();
+            return (V) VersionedValue.getCommittedValue(data);
         }
     }
 
@@ -414,12 +502,12 @@ public boolean containsKey(Object key) {
      * @return true if yes
      */
     public boolean isSameTransaction(K key) {
-        VersionedValue data = map.get(key);
+        Object data = map.get(key);
         if (data == null) {
             // doesn't exist or deleted by a committed transaction
             return false;
         }
-        int tx = TransactionStore.getTransactionId(data.getOperationId());
+        int tx = TransactionStore.getTransactionId(VersionedValue.getOperationId(data));
         return tx == transaction.transactionId;
     }
 
@@ -643,7 +731,7 @@ public KeyIterator(TransactionMap<K, ?> transactionMap, K from, K to, boolean in
         }
 
         @Override
-        protected K registerCurrent(K key, VersionedValue data) {
+        protected K registerCurrent(K key, Object value) {
             return key;
         }
     }
@@ -656,15 +744,15 @@ public EntryIterator(TransactionMap<K, ?> transactionMap, K from, K to) {
 
         @Override
         @SuppressWarnings("unchecked")
-        protected Map.Entry<K, V> registerCurrent(K key, VersionedValue data) {
-            return new AbstractMap.SimpleImmutableEntry<>(key, (V) data.value);
+        protected Map.Entry<K, V> registerCurrent(K key, Object value) {
+            return new AbstractMap.SimpleImmutableEntry<>(key, (V) value);
         }
     }
 
     private abstract static class TMIterator<K,X> implements Iterator<X> {
         private final int transactionId;
         private final BitSet committingTransactions;
-        private final Cursor<K,VersionedValue> cursor;
+        private final Cursor<K,Object> cursor;
         private final boolean includeAllUncommitted;
         private X current;
 
@@ -672,7 +760,7 @@ protected TMIterator(TransactionMap<K,?> transactionMap, K from, K to, boolean i
             Transaction transaction = transactionMap.transaction;
             this.transactionId = transaction.transactionId;
             TransactionStore store = transaction.store;
-            MVMap<K, VersionedValue> map = transactionMap.map;
+            MVMap<K, Object> map = transactionMap.map;
             // The purpose of the following loop is to get a coherent picture
             // of a state of two independent volatile / atomic variables,
             // which they had at some recent moment in time.
@@ -695,33 +783,30 @@ protected TMIterator(TransactionMap<K,?> transactionMap, K from, K to, boolean i
             fetchNext();
         }
 
-        protected abstract X registerCurrent(K key, VersionedValue data);
+        protected abstract X registerCurrent(K key, Object value);
 
         private void fetchNext() {
             while (cursor.hasNext()) {
                 K key = cursor.next();
-                VersionedValue data = cursor.getValue();
-                if (!includeAllUncommitted) {
-                    // If value doesn't exist or it was deleted by a committed transaction,
-                    // or if value is a committed one, just return it.
-                    if (data != null) {
-                        long id = data.getOperationId();
-                        if (id != 0) {
-                            int tx = TransactionStore.getTransactionId(id);
-                            if (tx != transactionId && !committingTransactions.get(tx)) {
-                                // current value comes from another uncommitted transaction
-                                // take committed value instead
-                                Object committedValue = data.getCommittedValue();
-                                data = committedValue == null ? null : VersionedValue.getInstance(committedValue);
-                            }
+                Object data = cursor.getValue();
+                // If value doesn't exist, it was deleted by a committed transaction
+                if (data != null) {
+                    // committed values are returned as is, without any wrapper
+                    Object value = VersionedValue.getCurrentValue(data);
+                    long id = VersionedValue.getOperationId(data);
+                    if (id != 0 && !includeAllUncommitted) {
+                        int tx = TransactionStore.getTransactionId(id);
+                        if (tx != transactionId && !committingTransactions.get(tx)) {
+                            // current value comes from another uncommitted transaction
+                            // take committed value instead
+                            value = VersionedValue.getCommittedValue(data);
                         }
                     }
-                }
-                if (data != null && (data.value != null ||
-                        includeAllUncommitted && transactionId !=
-                                                    TransactionStore.getTransactionId(data.getOperationId()))) {
-                    current = registerCurrent(key, data);
-                    return;
+                    if (value != null || includeAllUncommitted &&
+                            transactionId != TransactionStore.getTransactionId(id)) {
+                        current = registerCurrent(key, value);
+                        return;
+                    }
                 }
             }
             current = null;
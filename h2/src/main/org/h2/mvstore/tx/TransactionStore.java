@@ -12,6 +12,7 @@
 import java.util.List;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import org.h2.mvstore.Cursor;
 import org.h2.mvstore.DataUtils;
 import org.h2.mvstore.MVMap;
@@ -48,15 +49,23 @@ public class TransactionStore {
      * If the first entry for a transaction doesn't have a logId
      * of 0, then the transaction is partially committed (which means rollback
      * is not possible). Log entries are written before the data is changed
-     * (write-ahead).
+     * (write-ahead). They are buffered in memory and are written to the undo
+     * log map of the transaction before the changes are stored.
      * <p>
      * Key: opId, value: [ mapId, key, oldValue ].
      */
-    @SuppressWarnings("unchecked")
-    final MVMap<Long,Object[]> undoLogs[] = new MVMap[MAX_OPEN_TRANSACTIONS];
+    final BufferedUndoLog undoLogs[] = new BufferedUndoLog[MAX_OPEN_TRANSACTIONS];
     private final MVMap.Builder<Long,Object[]> undoLogBuilder;
 
-    private final MVMap.Builder<Object, VersionedValue> mapBuilder;
+    private final MVMap.Builder<Object, Object> mapBuilder;
+
+    /**
+     * Blocks appending undo log records while the store copies the buffered
+     * records to the maps and sets the version of the changes to write. A
+     * change of a transaction is only made after its undo log record was
+     * appended, so no change is written without its undo log record.
+     */
+    final ReentrantReadWriteLock undoLogBarrier = new ReentrantReadWriteLock();
 
     /**
      * This BitSet is used as vacancy indicator for transaction slots in transactions[].
@@ -133,11 +142,27 @@ public TransactionStore(MVStore store, DataType dataType, int timeoutMillis) {
                 new ObjectDataType(), dataType, oldValueType
         });
         undoLogBuilder = new MVMap.Builder<Long, Object[]>()
-                .singleWriter()
                 .valueType(undoLogValueType);
         DataType vt = new VersionedValue.Type(dataType);
-        mapBuilder = new MVMap.Builder<Object, VersionedValue>()
+        mapBuilder = new MVMap.Builder<Object, Object>()
                             .keyType(dataType).valueType(vt);
+        store.setStoreListener(new MVStore.StoreListener() {
+            @Override
+            public void beforeStore() {
+                undoLogBarrier.writeLock().lock();
+                try {
+                    storeUndoLogs();
+                } catch (RuntimeException | Error e) {
+                    undoLogBarrier.writeLock().unlock();
+                    throw e;
+                }
+            }
+
+            @Override
+            public void afterVersionSet() {
+                undoLogBarrier.writeLock().unlock();
+            }
+        });
     }
 
     /**
@@ -172,11 +197,13 @@ public void init() {
                                     status = Transaction.STATUS_COMMITTED;
                                 }
                                 MVMap<Long, Object[]> undoLog = store.openMap(mapName, undoLogBuilder);
-                                undoLogs[transactionId] = undoLog;
                                 Long lastUndoKey = undoLog.lastKey();
                                 assert committed || lastUndoKey != null;
                                 assert committed || getTransactionId(lastUndoKey) == transactionId;
                                 long logId = lastUndoKey == null ? 0 : getLogId(lastUndoKey) + 1;
+                                BufferedUndoLog bufferedUndoLog = new BufferedUndoLog(this, transactionId, undoLog);
+                                bufferedUndoLog.recover(logId);
+                                undoLogs[transactionId] = bufferedUndoLog;
                                 registerTransaction(transactionId, status, name, logId, timeoutMillis, 0,
                                         RollbackListener.NONE);
                                 continue;
@@ -326,6 +353,20 @@ public Transaction begin(RollbackListener listener, int timeoutMillis, int owner
         return transaction;
     }
 
+    /**
+     * Begin a new read-only transaction. Unlike regular transactions, it does
+     * not allocate a transaction slot and never creates an undo log, so it is
+     * cheap to start and to end. Such transaction only sees committed data
+     * and fails on any attempt to modify or lock an entry.
+     *
+     * @param ownerId of the owner (Session?) to be reported by getBlockerId
+     * @return the transaction
+     */
+    public Transaction beginReadOnly(int ownerId) {
+        return new Transaction(this, Transaction.READ_ONLY_TRANSACTION_ID, openTransactions.get().getVersion(),
+                Transaction.STATUS_OPEN, null, 0, timeoutMillis, ownerId, RollbackListener.NONE);
+    }
+
     private Transaction registerTransaction(int txId, int status, String name, long logId,
                                             int timeoutMillis, int ownerId, RollbackListener listener) {
         int transactionId;
@@ -361,7 +402,7 @@ private Transaction registerTransaction(int txId, int status, String name, long
         if (undoLogs[transactionId] == null) {
             String undoName = getUndoLogName(status == Transaction.STATUS_COMMITTED, transactionId);
             MVMap<Long, Object[]> undoLog = store.openMap(undoName, undoLogBuilder);
-            undoLogs[transactionId] = undoLog;
+            undoLogs[transactionId] = new BufferedUndoLog(this, transactionId, undoLog);
         }
         return transaction;
     }
@@ -388,8 +429,8 @@ void storeTransaction(Transaction t) {
      * @param undoLogRecord Object[mapId, key, previousValue]
      */
     long addUndoLogRecord(int transactionId, long logId, Object[] undoLogRecord) {
-        MVMap<Long, Object[]> undoLog = undoLogs[transactionId];
-        Long undoKey = getOperationId(transactionId, logId);
+        BufferedUndoLog undoLog = undoLogs[transactionId];
+        long undoKey = getOperationId(transactionId, logId);
         if (logId == 0 && !undoLog.isEmpty()) {
             throw DataUtils.newIllegalStateException(
                     DataUtils.ERROR_TOO_MANY_OPEN_TRANSACTIONS,
@@ -397,16 +438,33 @@ long addUndoLogRecord(int transactionId, long logId, Object[] undoLogRecord) {
                     "is still open: {0}",
                     transactionId);
         }
-        undoLog.append(undoKey, undoLogRecord);
+        undoLog.append(logId, undoLogRecord);
         return undoKey;
     }
 
     /**
      * Remove an undo log entry.
      * @param transactionId id of the transaction
+     * @param logId sequential number of the log record within transaction
      */
-    void removeUndoLogRecord(int transactionId) {
-        undoLogs[transactionId].trimLast();
+    void removeUndoLogRecord(int transactionId, long logId) {
+        undoLogs[transactionId].truncate(logId);
+    }
+
+    /**
+     * Write buffered undo log records of all open transactions to their
+     * undo log maps. This is called by the store before it writes changes,
+     * so that stored changes of open transactions can be rolled back or
+     * committed after a crash.
+     */
+    void storeUndoLogs() {
+        BitSet openTrans = openTransactions.get();
+        for (int i = openTrans.nextSetBit(0); i >= 0; i = openTrans.nextSetBit(i + 1)) {
+            BufferedUndoLog undoLog = undoLogs[i];
+            if (undoLog != null) {
+                undoLog.store();
+            }
+        }
     }
 
     /**
@@ -434,38 +492,55 @@ void commit(Transaction t, boolean recovery) {
             flipCommittingTransactionsBit(transactionId, true);
 
             CommitDecisionMaker commitDecisionMaker = new CommitDecisionMaker();
+            BufferedUndoLog bufferedUndoLog = undoLogs[transactionId];
             try {
-                MVMap<Long, Object[]> undoLog = undoLogs[transactionId];
-                if(!recovery) {
-                    store.renameMap(undoLog, getUndoLogName(true, transactionId));
-                }
-                try {
-                    Cursor<Long, Object[]> cursor = undoLog.cursor(null);
-                    while (cursor.hasNext()) {
-                        Long undoKey = cursor.next();
-                        Object[] op = cursor.getValue();
-                        int mapId = (Integer) op[0];
-                        MVMap<Object, VersionedValue> map = openMap(mapId);
-                        if (map != null) { // might be null if map was removed later
-                            Object key = op[1];
-                            commitDecisionMaker.setUndoKey(undoKey);
-                            // although second parameter (value) is not really
-                            // used by CommitDecisionMaker, MVRTreeMap has weird
-                            // traversal logic based on it, and any non-null
-                            // value will do, to signify update, not removal
-                            map.operate(key, VersionedValue.DUMMY, commitDecisionMaker);
+                if (!recovery && bufferedUndoLog.startCommit()) {
+                    // the undo log map is not used, unless the store writes
+                    // changes concurrently
+                    for (long logId = 0, size = bufferedUndoLog.size(); logId < size; logId++) {
+                        Object[] op = bufferedUndoLog.getBuffered(logId);
+                        if (op != null) {
+                            commit(op, getOperationId(transactionId, logId), commitDecisionMaker);
+                        }
+                    }
+                } else {
+                    bufferedUndoLog.moveToMap();
+                    MVMap<Long, Object[]> undoLog = bufferedUndoLog.map;
+                    if(!recovery) {
+                        store.renameMap(undoLog, getUndoLogName(true, transactionId));
+                    }
+                    try {
+                        Cursor<Long, Object[]> cursor = undoLog.cursor(null);
+                        while (cursor.hasNext()) {
+                            Long undoKey = cursor.next();
+                            commit(cursor.getValue(), undoKey, commitDecisionMaker);
                         }
+                        undoLog.clear();
+                    } finally {
+                        store.renameMap(undoLog, getUndoLogName(false, transactionId));
                     }
-                    undoLog.clear();
-                } finally {
-                    store.renameMap(undoLog, getUndoLogName(false, transactionId));
                 }
+                bufferedUndoLog.clear();
             } finally {
                 flipCommittingTransactionsBit(transactionId, false);
             }
         }
     }
 
+    private void commit(Object[] op, long undoKey, CommitDecisionMaker commitDecisionMaker) {
+        int mapId = (Integer) op[0];
+        MVMap<Object, Object> map = openMap(mapId);
+        if (map != null) { // might be null if map was removed later
+            Object key = op[1];
+            commitDecisionMaker.setUndoKey(undoKey);
+            // although second parameter (value) is not really
+            // used by CommitDecisionMaker, MVRTreeMap has weird
+            // traversal logic based on it, and any non-null
+            // value will do, to signify update, not removal
+            map.operate(key, VersionedValue.DUMMY, commitDecisionMaker);
+        }
+    }
+
     private void flipCommittingTransactionsBit(int transactionId, boolean flag) {
         boolean success;
         do {
@@ -486,7 +561,7 @@ private void flipCommittingTransactionsBit(int transactionId, boolean flag) {
      * @param valueType the value type
      * @return the map
      */
-    <K> MVMap<K, VersionedValue> openMap(String name,
+    <K> MVMap<K, Object> openMap(String name,
             DataType keyType, DataType valueType) {
         if (keyType == null) {
             keyType = new ObjectDataType();
@@ -495,9 +570,9 @@ <K> MVMap<K, VersionedValue> openMap(String name,
             valueType = new ObjectDataType();
         }
         VersionedValue.Type vt = new VersionedValue.Type(valueType);
-        MVMap<K, VersionedValue> map;
-        MVMap.Builder<K, VersionedValue> builder =
-                new MVMap.Builder<K, VersionedValue>().
+        MVMap<K, Object> map;
+        MVMap.Builder<K, Object> builder =
+                new MVMap.Builder<K, Object>().
                 keyType(keyType).valueType(vt);
         map = store.openMap(name, builder);
         return map;
@@ -509,8 +584,8 @@ <K> MVMap<K, VersionedValue> openMap(String name,
      * @param mapId the id
      * @return the map
      */
-    MVMap<Object, VersionedValue> openMap(int mapId) {
-        MVMap<Object, VersionedValue> map = store.getMap(mapId);
+    MVMap<Object, Object> openMap(int mapId) {
+        MVMap<Object, Object> map = store.getMap(mapId);
         if (map == null) {
             String mapName = store.getMapName(mapId);
             if (mapName == null) {
@@ -534,6 +609,10 @@ MVMap<Object, VersionedValue> openMap(int mapId) {
      */
     void endTransaction(Transaction t, boolean hasChanges) {
         t.closeIt();
+        if (t.isReadOnly()) {
+            // read-only transactions do not occupy a slot
+            return;
+        }
         int txId = t.transactionId;
         transactions.set(txId, null);
 
@@ -573,7 +652,7 @@ void endTransaction(Transaction t, boolean hasChanges) {
     private boolean isUndoEmpty() {
         BitSet openTrans = openTransactions.get();
         for (int i = openTrans.nextSetBit(0); i >= 0; i = openTrans.nextSetBit(i + 1)) {
-            MVMap<Long, Object[]> undoLog = undoLogs[i];
+            BufferedUndoLog undoLog = undoLogs[i];
             if (undoLog != null && !undoLog.isEmpty()) {
                 return false;
             }
@@ -594,12 +673,29 @@ Transaction getTransaction(int transactionId) {
      */
     void rollbackTo(Transaction t, long maxLogId, long toLogId) {
         int transactionId = t.getId();
-        MVMap<Long, Object[]> undoLog = undoLogs[transactionId];
-        RollbackDecisionMaker decisionMaker = new RollbackDecisionMaker(this, transactionId, toLogId, t.listener);
+        BufferedUndoLog undoLog = undoLogs[transactionId];
         for (long logId = maxLogId - 1; logId >= toLogId; logId--) {
-            Long undoKey = getOperationId(transactionId, logId);
-            undoLog.operate(undoKey, null, decisionMaker);
-            decisionMaker.reset();
+            Object[] op = undoLog.get(logId);
+            // normally the record will always be there except of db initialization
+            // where some undo log entry was captured on disk but actual map entry was not
+            if (op != null) {
+                Object valueToRestore = op[2];
+                long operationId;
+                if (valueToRestore == null ||
+                        (operationId = VersionedValue.getOperationId(valueToRestore)) == 0 ||
+                        getTransactionId(operationId) == transactionId
+                                && getLogId(operationId) < toLogId) {
+                    int mapId = (Integer) op[0];
+                    MVMap<Object, Object> map = openMap(mapId);
+                    if (map != null && !map.isClosed()) {
+                        Object key = op[1];
+                        Object previousValue = map.operate(key, valueToRestore,
+                                MVMap.DecisionMaker.DEFAULT);
+                        t.listener.onRollback(map, key, previousValue, valueToRestore);
+                    }
+                }
+            }
+            undoLog.truncate(logId);
         }
     }
 
@@ -615,32 +711,24 @@ void rollbackTo(Transaction t, long maxLogId, long toLogId) {
     Iterator<Change> getChanges(final Transaction t, final long maxLogId,
             final long toLogId) {
 
-        final MVMap<Long, Object[]> undoLog = undoLogs[t.getId()];
+        final BufferedUndoLog undoLog = undoLogs[t.getId()];
         return new Iterator<Change>() {
 
             private long logId = maxLogId - 1;
             private Change current;
 
             private void fetchNext() {
-                int transactionId = t.getId();
                 while (logId >= toLogId) {
-                    Long undoKey = getOperationId(transactionId, logId);
-                    Object[] op = undoLog.get(undoKey);
+                    Object[] op = undoLog.get(logId);
                     logId--;
                     if (op == null) {
-                        // partially rolled back: load previous
-                        undoKey = undoLog.floorKey(undoKey);
-                        if (undoKey == null || getTransactionId(undoKey) != transactionId) {
-                            break;
-                        }
-                        logId = getLogId(undoKey);
+                        // partially rolled back
                         continue;
                     }
                     int mapId = (int)op[0];
-                    MVMap<Object, VersionedValue> m = openMap(mapId);
+                    MVMap<Object, Object> m = openMap(mapId);
                     if (m != null) { // could be null if map was removed later on
-                        VersionedValue oldValue = (VersionedValue) op[2];
-                        current = new Change(m.getName(), op[1], oldValue == null ? null : oldValue.value);
+                        current = new Change(m.getName(), op[1], VersionedValue.getCurrentValue(op[2]));
                         return;
                     }
                 }
@@ -712,8 +800,8 @@ public interface RollbackListener {
 
         RollbackListener NONE = new RollbackListener() {
             @Override
-            public void onRollback(MVMap<Object, VersionedValue> map, Object key,
-                                    VersionedValue existingValue, VersionedValue restoredValue) {
+            public void onRollback(MVMap<Object, Object> map, Object key,
+                                    Object existingValue, Object restoredValue) {
                 // do nothing
             }
         };
@@ -725,8 +813,8 @@ public void onRollback(MVMap<Object, VersionedValue> map, Object key,
          * @param existingValue value in the map (null if delete is rolled back)
          * @param restoredValue value to be restored (null if add is rolled back)
          */
-        void onRollback(MVMap<Object,VersionedValue> map, Object key,
-                        VersionedValue existingValue, VersionedValue restoredValue);
+        void onRollback(MVMap<Object,Object> map, Object key,
+                        Object existingValue, Object restoredValue);
     }
 
     /**
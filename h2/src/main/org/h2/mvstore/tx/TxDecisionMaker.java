@@ -12,7 +12,7 @@
  *
  * @author <a href='mailto:andrei.tokar@gmail.com'>Andrei Tokar</a>
  */
-abstract class TxDecisionMaker extends MVMap.DecisionMaker<VersionedValue> {
+abstract class TxDecisionMaker extends MVMap.DecisionMaker<Object> {
     private final int            mapId;
     private final Object         key;
     final Object                 value;
@@ -30,14 +30,14 @@ abstract class TxDecisionMaker extends MVMap.DecisionMaker<VersionedValue> {
     }
 
     @Override
-    public MVMap.Decision decide(VersionedValue existingValue, VersionedValue providedValue) {
+    public MVMap.Decision decide(Object existingValue, Object providedValue) {
         assert decision == null;
         long id;
         int blockingId;
         // if map does not have that entry yet
         if (existingValue == null ||
                 // or entry is a committed one
-                (id = existingValue.getOperationId()) == 0 ||
+                (id = VersionedValue.getOperationId(existingValue)) == 0 ||
                 // or it came from the same transaction
                 isThisTransaction(blockingId = TransactionStore.getTransactionId(id))) {
             logIt(existingValue);
@@ -47,7 +47,7 @@ public MVMap.Decision decide(VersionedValue existingValue, VersionedValue provid
             // We assume that we are looking at the final value for this transaction,
             // and if it's not the case, then it will fail later,
             // because a tree root has definitely been changed.
-            logIt(existingValue.value == null ? null : VersionedValue.getInstance(existingValue.value));
+            logIt(VersionedValue.getCurrentValue(existingValue));
             decision = MVMap.Decision.PUT;
         } else if (getBlockingTransaction() != null) {
             // this entry comes from a different transaction, and this
@@ -62,8 +62,7 @@ public MVMap.Decision decide(VersionedValue existingValue, VersionedValue provid
             // Now we assume it's a leftover after unclean shutdown (map update
             // was written but not undo log), and will effectively roll it back
             // (just assume committed value and overwrite).
-            Object committedValue = existingValue.getCommittedValue();
-            logIt(committedValue == null ? null : VersionedValue.getInstance(committedValue));
+            logIt(VersionedValue.getCommittedValue(existingValue));
             decision = MVMap.Decision.PUT;
         } else {
             // transaction has been committed/rolled back and is closed by now, so
@@ -97,7 +96,7 @@ final Transaction getBlockingTransaction() {
         return blockingTransaction;
     }
 
-    final void logIt(VersionedValue value) {
+    final void logIt(Object value) {
         undoKey = transaction.log(mapId, key, value);
     }
 
@@ -137,9 +136,9 @@ public static class PutDecisionMaker extends TxDecisionMaker
 
         @SuppressWarnings("unchecked")
         @Override
-        public final VersionedValue selectValue(VersionedValue existingValue, VersionedValue providedValue) {
+        public final Object selectValue(Object existingValue, Object providedValue) {
             return VersionedValue.getInstance(undoKey, value,
-                                                existingValue == null ? null : existingValue.getCommittedValue());
+                                                VersionedValue.getCommittedValue(existingValue));
         }
     }
 
@@ -151,7 +150,7 @@ public static final class PutIfAbsentDecisionMaker extends PutDecisionMaker
         }
 
         @Override
-        public MVMap.Decision decide(VersionedValue existingValue, VersionedValue providedValue) {
+        public MVMap.Decision decide(Object existingValue, Object providedValue) {
             assert getDecision() == null;
             int blockingId;
             // if map does not have that entry yet
@@ -159,11 +158,11 @@ public MVMap.Decision decide(VersionedValue existingValue, VersionedValue provid
                 logIt(null);
                 return setDecision(MVMap.Decision.PUT);
             } else {
-                long id = existingValue.getOperationId();
+                long id = VersionedValue.getOperationId(existingValue);
                 if (id == 0 // entry is a committed one
                             // or it came from the same transaction
                         || isThisTransaction(blockingId = TransactionStore.getTransactionId(id))) {
-                    if(existingValue.value != null) {
+                    if(VersionedValue.getCurrentValue(existingValue) != null) {
                         return setDecision(MVMap.Decision.ABORT);
                     }
                     logIt(existingValue);
@@ -171,7 +170,7 @@ public MVMap.Decision decide(VersionedValue existingValue, VersionedValue provid
                 } else if (isCommitted(blockingId)) {
                     // entry belongs to a committing transaction
                     // and therefore will be committed soon
-                    if(existingValue.value != null) {
+                    if(VersionedValue.getCurrentValue(existingValue) != null) {
                         return setDecision(MVMap.Decision.ABORT);
                     }
                     logIt(null);
@@ -191,7 +190,7 @@ public MVMap.Decision decide(VersionedValue existingValue, VersionedValue provid
                     // update was written but not undo log), and will
                     // effectively roll it back (just assume committed value and
                     // overwrite).
-                    Object committedValue = existingValue.getCommittedValue();
+                    Object committedValue = VersionedValue.getCommittedValue(existingValue);
                     if (committedValue != null) {
                         return setDecision(MVMap.Decision.ABORT);
                     }
@@ -216,7 +215,7 @@ public static final class LockDecisionMaker extends TxDecisionMaker
         }
 
         @Override
-        public MVMap.Decision decide(VersionedValue existingValue, VersionedValue providedValue) {
+        public MVMap.Decision decide(Object existingValue, Object providedValue) {
             MVMap.Decision decision = super.decide(existingValue, providedValue);
             if (existingValue == null) {
                 assert decision == MVMap.Decision.PUT;
@@ -227,10 +226,10 @@ public MVMap.Decision decide(VersionedValue existingValue, VersionedValue provid
 
         @SuppressWarnings("unchecked")
         @Override
-        public VersionedValue selectValue(VersionedValue existingValue, VersionedValue providedValue) {
+        public Object selectValue(Object existingValue, Object providedValue) {
             return VersionedValue.getInstance(undoKey,
-                    existingValue == null ? null : existingValue.value,
-                    existingValue == null ? null : existingValue.getCommittedValue());
+                    VersionedValue.getCurrentValue(existingValue),
+                    VersionedValue.getCommittedValue(existingValue));
         }
     }
 }
@@ -12,87 +12,96 @@
 import java.nio.ByteBuffer;
 
 /**
- * A versioned value (possibly null).
- * It contains current value and latest committed value if current one is uncommitted.
- * Also for uncommitted values it contains operationId - a combination of
- * transactionId and logId.
+ * An uncommitted versioned value (possibly null).
+ * It contains current value and latest committed value,
+ * and the operationId - a combination of transactionId and logId.
+ * <p>
+ * Committed values are stored in transactional maps as they are, without a
+ * wrapper. Only the entries with an uncommitted change are instances of this
+ * class. The static methods of this class can be used for both kinds of
+ * entries.
  */
-public class VersionedValue {
-
-    public static final VersionedValue DUMMY = new VersionedValue(new Object());
+public final class VersionedValue {
 
     /**
-     * The current value.
+     * A placeholder that is used as the provided value if the decision
+     * maker computes the new value.
      */
-    public final Object value;
+    public static final Object DUMMY = new Object();
+
+    private final long operationId;
+    private final Object value;
+    private final Object committedValue;
 
-    static VersionedValue getInstance(Object value) {
-        assert value != null;
-        return new VersionedValue(value);
+    private VersionedValue(long operationId, Object value, Object committedValue) {
+        assert operationId != 0;
+        this.operationId = operationId;
+        this.value = value;
+        this.committedValue = committedValue;
     }
 
+    /**
+     * Create an uncommitted entry.
+     *
+     * @param operationId the operation id
+     * @param value the current value
+     * @param committedValue the committed value
+     * @return the entry
+     */
     public static VersionedValue getInstance(long operationId, Object value, Object committedValue) {
-        return new Uncommitted(operationId, value, committedValue);
+        return new VersionedValue(operationId, value, committedValue);
     }
 
-    VersionedValue(Object value) {
-        this.value = value;
+    /**
+     * Check whether the map entry is committed.
+     *
+     * @param entry the map entry (may be null)
+     * @return true if the entry is null or committed
+     */
+    public static boolean isCommitted(Object entry) {
+        return !(entry instanceof VersionedValue);
     }
 
-    public boolean isCommitted() {
-        return true;
+    /**
+     * Get the operation id of a map entry.
+     *
+     * @param entry the map entry (may be null)
+     * @return the operation id, or 0 if the entry is null or committed
+     */
+    public static long getOperationId(Object entry) {
+        return entry instanceof VersionedValue ? ((VersionedValue) entry).operationId : 0L;
     }
 
-    public long getOperationId() {
-        return 0L;
+    /**
+     * Get the current value of a map entry.
+     *
+     * @param entry the map entry (may be null)
+     * @return the current value
+     */
+    public static Object getCurrentValue(Object entry) {
+        return entry instanceof VersionedValue ? ((VersionedValue) entry).value : entry;
     }
 
-    public Object getCommittedValue() {
-        return value;
+    /**
+     * Get the latest committed value of a map entry.
+     *
+     * @param entry the map entry (may be null)
+     * @return the committed value
+     */
+    public static Object getCommittedValue(Object entry) {
+        return entry instanceof VersionedValue ? ((VersionedValue) entry).committedValue : entry;
     }
 
     @Override
     public String toString() {
-        return String.valueOf(value);
-    }
-
-    private static class Uncommitted extends VersionedValue
-    {
-        private final long   operationId;
-        private final Object committedValue;
-
-        Uncommitted(long operationId, Object value, Object committedValue) {
-            super(value);
-            assert operationId != 0;
-            this.operationId = operationId;
-            this.committedValue = committedValue;
-        }
-
-        @Override
-        public boolean isCommitted() {
-            return false;
-        }
-
-        @Override
-        public long getOperationId() {
-            return operationId;
-        }
-
-        @Override
-        public Object getCommittedValue() {
-            return committedValue;
-        }
-
-        @Override
-        public String toString() {
-            return super.toString() +
-                    " " + TransactionStore.getTransactionId(operationId) + "/" +
-                    TransactionStore.getLogId(operationId) + " " + committedValue;
-        }
+        return String.valueOf(value) +
+                " " + TransactionStore.getTransactionId(operationId) + "/" +
+                TransactionStore.getLogId(operationId) + " " + committedValue;
     }
 
     /**
-     * The value type for a versioned value.
+     * The data type for the entries of a transactional map: committed values,
+     * and versioned values for uncommitted entries.
      */
     public static class Type implements DataType {
 
@@ -104,14 +113,14 @@ public Type(DataType valueType) {
 
         @Override
         public int getMemory(Object obj) {
-            if(obj == null) return 0;
-            VersionedValue v = (VersionedValue) obj;
-            int res = Constants.MEMORY_OBJECT + 8 + 2 * Constants.MEMORY_POINTER +
-                    getValMemory(v.value);
-            if (v.getOperationId() != 0) {
-                res += getValMemory(v.getCommittedValue());
+            if (obj == null) {
+                return 0;
+            } else if (!(obj instanceof VersionedValue)) {
+                return valueType.getMemory(obj);
             }
-            return res;
+            VersionedValue v = (VersionedValue) obj;
+            return Constants.MEMORY_OBJECT + 8 + 2 * Constants.MEMORY_POINTER +
+                    getValMemory(v.value) + getValMemory(v.committedValue);
         }
 
         private int getValMemory(Object obj) {
@@ -127,11 +136,9 @@ public int compare(Object aObj, Object bObj) {
             } else if (bObj == null) {
                 return 1;
             }
-            VersionedValue a = (VersionedValue) aObj;
-            VersionedValue b = (VersionedValue) bObj;
-            long comp = a.getOperationId() - b.getOperationId();
+            long comp = getOperationId(aObj) - getOperationId(bObj);
             if (comp == 0) {
-                return valueType.compare(a.value, b.value);
+                return valueType.compare(getCurrentValue(aObj), getCurrentValue(bObj));
             }
             return Long.signum(comp);
         }
@@ -141,7 +148,7 @@ public void read(ByteBuffer buff, Object[] obj, int len, boolean key) {
             if (buff.get() == 0) {
                 // fast path (no op ids or null entries)
                 for (int i = 0; i < len; i++) {
-                    obj[i] = new VersionedValue(valueType.read(buff));
+                    obj[i] = valueType.read(buff);
                 }
             } else {
                 // slow path (some entries may be null)
@@ -155,12 +162,12 @@ public void read(ByteBuffer buff, Object[] obj, int len, boolean key) {
         public Object read(ByteBuffer buff) {
             long operationId = DataUtils.readVarLong(buff);
             if (operationId == 0) {
-                return new VersionedValue(valueType.read(buff));
+                return valueType.read(buff);
             } else {
                 byte flags = buff.get();
                 Object value = (flags & 1) != 0 ? valueType.read(buff) : null;
                 Object committedValue = (flags & 2) != 0 ? valueType.read(buff) : null;
-                return new Uncommitted(operationId, value, committedValue);
+                return new VersionedValue(operationId, value, committedValue);
             }
         }
 
@@ -168,16 +175,16 @@ public Object read(ByteBuffer buff) {
         public void write(WriteBuffer buff, Object[] obj, int len, boolean key) {
             boolean fastPath = true;
             for (int i = 0; i < len; i++) {
-                VersionedValue v = (VersionedValue) obj[i];
-                if (v.getOperationId() != 0 || v.value == null) {
+                Object v = obj[i];
+                if (v == null || v instanceof VersionedValue) {
                     fastPath = false;
+                    break;
                 }
             }
             if (fastPath) {
                 buff.put((byte) 0);
                 for (int i = 0; i < len; i++) {
-                    VersionedValue v = (VersionedValue) obj[i];
-                    valueType.write(buff, v.value);
+                    valueType.write(buff, obj[i]);
                 }
             } else {
                 // slow path:
@@ -191,21 +198,22 @@ public void write(WriteBuffer buff, Object[] obj, int len, boolean key) {
 
         @Override
         public void write(WriteBuffer buff, Object obj) {
+            if (!(obj instanceof VersionedValue)) {
+                buff.putVarLong(0);
+                valueType.write(buff, obj);
+                return;
+            }
             VersionedValue v = (VersionedValue) obj;
-            long operationId = v.getOperationId();
-            buff.putVarLong(operationId);
-            if (operationId == 0) {
-                valueType.write(buff, v.value);
-            } else {
-                Object committedValue = v.getCommittedValue();
-                int flags = (v.value == null ? 0 : 1) | (committedValue == null ? 0 : 2);
-                buff.put((byte) flags);
-                if (v.value != null) {
-                    valueType.write(buff, v.value);
-                }
-                if (committedValue != null) {
-                    valueType.write(buff, committedValue);
-                }
+            buff.putVarLong(v.operationId);
+            Object value = v.value;
+            Object committedValue = v.committedValue;
+            int flags = (value == null ? 0 : 1) | (committedValue == null ? 0 : 2);
+            buff.put((byte) flags);
+            if (value != null) {
+                valueType.write(buff, value);
+            }
+            if (committedValue != null) {
+                valueType.write(buff, committedValue);
             }
         }
     }
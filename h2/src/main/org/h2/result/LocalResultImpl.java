@@ -7,6 +7,8 @@
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.PriorityQueue;
 import org.h2.engine.Database;
 import org.h2.engine.Session;
 import org.h2.engine.SessionInterface;
@@ -47,6 +49,15 @@ public class LocalResultImpl implements LocalResult {
     private boolean containsLobs;
     private Boolean containsNull;
 
+    /**
+     * The first rows in sort order, if the result is sorted and only the rows
+     * up to the offset plus the limit are needed. The head of the queue is the
+     * last of these rows, and it is replaced if a smaller row is added.
+     */
+    private PriorityQueue<Value[]> topRows;
+    private int topRowCount;
+    private boolean topRowsChecked;
+
     /**
      * Construct a local result object.
      */
@@ -332,6 +343,14 @@ public void addRow(Value[] values) {
             } else {
                 rowCount = external.addRow(values);
             }
+        } else if (useTopRows()) {
+            if (rowCount < topRowCount) {
+                topRows.add(values);
+                rowCount++;
+            } else if (sort.compare(values, topRows.peek()) < 0) {
+                topRows.poll();
+                topRows.add(values);
+            }
         } else {
             rows.add(values);
             rowCount++;
@@ -341,6 +360,27 @@ public void addRow(Value[] values) {
         }
     }
 
+    /**
+     * Check whether only the first rows in sort order need to be kept. This is
+     * decided when the first row is added, so the sort order, offset, and limit
+     * need to be set before.
+     *
+     * @return true if the rows are added to the top rows queue
+     */
+    private boolean useTopRows() {
+        if (!topRowsChecked) {
+            topRowsChecked = true;
+            if (sort != null && limit > 0 && !withTies && !fetchPercent && external == null && rows.isEmpty()) {
+                long count = (long) offset + limit;
+                if (count <= maxMemoryRows) {
+                    topRowCount = (int) count;
+                    topRows = new PriorityQueue<>(Math.min(topRowCount, 1024), Collections.reverseOrder(sort));
+                }
+            }
+        }
+        return topRows != null;
+    }
+
     private void addRowsToDisk() {
         if (external == null) {
             createExternalResult();
@@ -364,6 +404,9 @@ public void done() {
         } else {
             if (isAnyDistinct()) {
                 rows = distinctRows.values();
+            } else if (topRows != null) {
+                rows = new ArrayList<>(topRows);
+                topRows = null;
             }
             if (sort != null && limit != 0) {
                 boolean withLimit = limit > 0 && !withTies;
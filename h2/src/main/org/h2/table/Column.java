@@ -84,6 +84,7 @@ public class Column {
     private boolean isComputed;
     private TableFilter computeTableFilter;
     private int selectivity;
+    private ColumnStatistics statistics;
     private SingleColumnResolver resolver;
     private String comment;
     private boolean primaryKey;
@@ -478,14 +479,24 @@ public void prepareExpression(Session session) {
     }
 
     public String getCreateSQLWithoutName() {
-        return getCreateSQL(false);
+        return getCreateSQL(false, false);
     }
 
     public String getCreateSQL() {
-        return getCreateSQL(true);
+        return getCreateSQL(true, false);
     }
 
-    private String getCreateSQL(boolean includeName) {
+    /**
+     * Get the SQL snippet of the column definition including the statistics
+     * calculated by ANALYZE, as used in the CREATE TABLE statement.
+     *
+     * @return the SQL snippet
+     */
+    public String getCreateSQLWithStatistics() {
+        return getCreateSQL(true, true);
+    }
+
+    private String getCreateSQL(boolean includeName, boolean includeStatistics) {
         StringBuilder buff = new StringBuilder();
         if (includeName && name != null) {
             Parser.quoteIdentifier(buff, name).append(' ');
@@ -564,6 +575,10 @@ private String getCreateSQL(boolean includeName) {
         if (selectivity != 0) {
             buff.append(" SELECTIVITY ").append(selectivity);
         }
+        if (includeStatistics && statistics != null) {
+            buff.append(" STATISTICS ");
+            statistics.getValue().getSQL(buff);
+        }
         if (comment != null) {
             buff.append(" COMMENT ");
             StringUtils.quoteStringSQL(buff, comment);
@@ -654,6 +669,25 @@ public void setSelectivity(int selectivity) {
         this.selectivity = selectivity;
     }
 
+    /**
+     * Get the distribution of the values of the column, as calculated by
+     * ANALYZE.
+     *
+     * @return the statistics, or null if not calculated
+     */
+    public ColumnStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Set the distribution of the values of the column.
+     *
+     * @param statistics the statistics, or null
+     */
+    public void setStatistics(ColumnStatistics statistics) {
+        this.statistics = statistics;
+    }
+
     /**
      * Add a check constraint expression to this column. An existing check
      * constraint constraint is added using AND.
@@ -868,6 +902,7 @@ public void copy(Column source) {
         computeTableFilter = source.computeTableFilter;
         isComputed = source.isComputed;
         selectivity = source.selectivity;
+        statistics = source.statistics;
         primaryKey = source.primaryKey;
         visible = source.visible;
     }
@@ -0,0 +1,374 @@
+/*
+ * Copyright 2004-2018 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.table;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import org.h2.api.ErrorCode;
+import org.h2.engine.Constants;
+import org.h2.message.DbException;
+import org.h2.value.DataType;
+import org.h2.value.Value;
+import org.h2.value.ValueArray;
+import org.h2.value.ValueLong;
+import org.h2.value.ValueNull;
+
+/**
+ * The distribution of the values of a column, as calculated by ANALYZE from a
+ * sample of the rows. It consists of the number of NULL and distinct values,
+ * the most common values with their number of occurrences, and an equi-depth
+ * histogram of the remaining values: the number of remaining rows between two
+ * adjacent bounds of the histogram is the same for all buckets.
+ */
+public final class ColumnStatistics {
+
+    private static final Value[] EMPTY_VALUES = new Value[0];
+
+    private final long rowCount;
+
+    private final long nullCount;
+
+    private final long distinctCount;
+
+    private final Value[] commonValues;
+
+    private final long[] commonCounts;
+
+    private final Value[] histogram;
+
+    private ColumnStatistics(long rowCount, long nullCount, long distinctCount, Value[] commonValues,
+            long[] commonCounts, Value[] histogram) {
+        this.rowCount = rowCount;
+        this.nullCount = nullCount;
+        this.distinctCount = distinctCount;
+        this.commonValues = commonValues;
+        this.commonCounts = commonCounts;
+        this.histogram = histogram;
+    }
+
+    /**
+     * Check whether statistics can be calculated for columns of the specified
+     * data type.
+     *
+     * @param type the data type
+     * @return true if the values can be ordered and are small enough
+     */
+    public static boolean isSupportedType(int type) {
+        if (DataType.isLargeObject(type)) {
+            return false;
+        }
+        switch (type) {
+        case Value.ARRAY:
+        case Value.ROW:
+        case Value.RESULT_SET:
+        case Value.JAVA_OBJECT:
+        case Value.GEOMETRY:
+            return false;
+        default:
+            return true;
+        }
+    }
+
+    /**
+     * Calculate the statistics from a sample of the values of a column.
+     *
+     * @param table the table
+     * @param values the sampled values
+     * @param count the number of sampled values
+     * @return the statistics, or null if there are no values
+     */
+    public static ColumnStatistics calculate(final Table table, Value[] values, int count) {
+        if (count == 0) {
+            return null;
+        }
+        Value[] sorted = new Value[count];
+        int nonNullCount = 0;
+        for (int i = 0; i < count; i++) {
+            Value v = values[i];
+            if (v != ValueNull.INSTANCE) {
+                sorted[nonNullCount++] = v;
+            }
+        }
+        Arrays.sort(sorted, 0, nonNullCount, new Comparator<Value>() {
+            @Override
+            public int compare(Value a, Value b) {
+                return table.compareValues(a, b);
+            }
+        });
+        // the runs of equal values
+        int[] runStart = new int[nonNullCount + 1];
+        int distinct = 0;
+        for (int i = 0; i < nonNullCount; i++) {
+            if (i == 0 || table.compareValues(sorted[i - 1], sorted[i]) != 0) {
+                runStart[distinct++] = i;
+            }
+        }
+        runStart[distinct] = nonNullCount;
+        // if there are only a few distinct values, all repeated values are
+        // kept, otherwise only those that occur clearly more often than the
+        // average
+        long minCommonCount = distinct <= Constants.STATISTICS_COMMON_VALUES ? 2
+                : Math.max(2, nonNullCount * 5L / 4 / distinct + 1);
+        Integer[] runs = new Integer[distinct];
+        int candidates = 0;
+        for (int i = 0; i < distinct; i++) {
+            if (runStart[i + 1] - runStart[i] >= minCommonCount) {
+                runs[candidates++] = i;
+            }
+        }
+        final int[] starts = runStart;
+        Arrays.sort(runs, 0, candidates, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Integer.compare(starts[b + 1] - starts[b], starts[a + 1] - starts[a]);
+            }
+        });
+        int commonCount = Math.min(candidates, Constants.STATISTICS_COMMON_VALUES);
+        // keep the common values in their natural order
+        Arrays.sort(runs, 0, commonCount);
+        boolean[] isCommon = new boolean[distinct];
+        Value[] commonValues = new Value[commonCount];
+        long[] commonCounts = new long[commonCount];
+        for (int i = 0; i < commonCount; i++) {
+            int run = runs[i];
+            isCommon[run] = true;
+            commonValues[i] = sorted[runStart[run]];
+            commonCounts[i] = runStart[run + 1] - runStart[run];
+        }
+        ArrayList<Value> other = new ArrayList<>();
+        for (int i = 0; i < distinct; i++) {
+            if (!isCommon[i]) {
+                for (int j = runStart[i]; j < runStart[i + 1]; j++) {
+                    other.add(sorted[j]);
+                }
+            }
+        }
+        int otherCount = other.size();
+        Value[] histogram;
+        if (otherCount == 0) {
+            histogram = EMPTY_VALUES;
+        } else if (table.compareValues(other.get(0), other.get(otherCount - 1)) == 0) {
+            histogram = new Value[] { other.get(0) };
+        } else {
+            int buckets = Math.min(Constants.STATISTICS_HISTOGRAM_BUCKETS, otherCount - 1);
+            histogram = new Value[buckets + 1];
+            for (int i = 0; i <= buckets; i++) {
+                histogram[i] = other.get(buckets == 0 ? 0 : (int) ((long) i * (otherCount - 1) / buckets));
+            }
+        }
+        return new ColumnStatistics(count, count - nonNullCount, distinct, commonValues, commonCounts, histogram);
+    }
+
+    /**
+     * Read the statistics from the value returned by {@link #getValue()}.
+     *
+     * @param column the column
+     * @param value the value
+     * @return the statistics
+     */
+    public static ColumnStatistics get(Column column, Value value) {
+        try {
+            Value[] list = ((ValueArray) value.convertTo(Value.ARRAY)).getList();
+            Value[] commonValues = convert(column, list[3]);
+            Value[] counts = ((ValueArray) list[4].convertTo(Value.ARRAY)).getList();
+            if (counts.length != commonValues.length) {
+                throw DbException.get(ErrorCode.INVALID_VALUE_2, "STATISTICS", value.getTraceSQL());
+            }
+            long[] commonCounts = new long[counts.length];
+            for (int i = 0; i < counts.length; i++) {
+                commonCounts[i] = counts[i].getLong();
+            }
+            return new ColumnStatistics(list[0].getLong(), list[1].getLong(), list[2].getLong(), commonValues,
+                    commonCounts, convert(column, list[5]));
+        } catch (ClassCastException | ArrayIndexOutOfBoundsException e) {
+            throw DbException.get(ErrorCode.INVALID_VALUE_2, e, "STATISTICS", value.getTraceSQL());
+        }
+    }
+
+    private static Value[] convert(Column column, Value value) {
+        Value[] list = ((ValueArray) value.convertTo(Value.ARRAY)).getList();
+        Value[] result = new Value[list.length];
+        for (int i = 0; i < list.length; i++) {
+            result[i] = column.convert(list[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Get the statistics as an array value, in the form
+     * ARRAY [sampleRows, nullCount, distinctCount, ARRAY [commonValue, ...],
+     * ARRAY [commonCount, ...], ARRAY [histogramBound, ...]].
+     *
+     * @return the value
+     */
+    public Value getValue() {
+        Value[] counts = new Value[commonCounts.length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = ValueLong.get(commonCounts[i]);
+        }
+        return ValueArray.get(new Value[] { ValueLong.get(rowCount), ValueLong.get(nullCount),
+                ValueLong.get(distinctCount), ValueArray.get(commonValues), ValueArray.get(counts),
+                ValueArray.get(histogram) });
+    }
+
+    /**
+     * Get the number of sampled rows.
+     *
+     * @return the number of rows
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Get the fraction of NULL values.
+     *
+     * @return the fraction
+     */
+    public double getNullFraction() {
+        return (double) nullCount / rowCount;
+    }
+
+    /**
+     * Get the number of distinct values in the sample.
+     *
+     * @return the number of distinct values
+     */
+    public long getDistinctCount() {
+        return distinctCount;
+    }
+
+    /**
+     * Get the most common values.
+     *
+     * @return the values
+     */
+    public Value[] getCommonValues() {
+        return commonValues;
+    }
+
+    /**
+     * Get the fraction of the rows for each of the most common values.
+     *
+     * @return the fractions
+     */
+    public double[] getCommonFractions() {
+        double[] fractions = new double[commonCounts.length];
+        for (int i = 0; i < fractions.length; i++) {
+            fractions[i] = (double) commonCounts[i] / rowCount;
+        }
+        return fractions;
+    }
+
+    /**
+     * Get the bounds of the histogram.
+     *
+     * @return the bounds
+     */
+    public Value[] getHistogram() {
+        return histogram;
+    }
+
+    /**
+     * Estimate the fraction of the rows where the column is equal to the
+     * specified value.
+     *
+     * @param table the table
+     * @param v the value, or null if the value is not known
+     * @return the fraction
+     */
+    public double getEqualFraction(Table table, Value v) {
+        if (v == ValueNull.INSTANCE) {
+            return 0;
+        }
+        if (v != null) {
+            for (int i = 0; i < commonValues.length; i++) {
+                if (table.compareValues(commonValues[i], v) == 0) {
+                    return (double) commonCounts[i] / rowCount;
+                }
+            }
+            if (histogram.length > 0 && (table.compareValues(v, histogram[0]) < 0
+                    || table.compareValues(v, histogram[histogram.length - 1]) > 0)) {
+                // not in the sample; assume it is as rare as possible
+                return 1d / rowCount;
+            }
+            long otherDistinct = distinctCount - commonValues.length;
+            return otherDistinct <= 0 ? 1d / rowCount : (double) getOtherCount() / otherDistinct / rowCount;
+        }
+        return distinctCount == 0 ? 0 : (double) (rowCount - nullCount) / distinctCount / rowCount;
+    }
+
+    /**
+     * Estimate the fraction of the rows where the column is between the
+     * specified values.
+     *
+     * @param table the table
+     * @param low the lower bound, or null for no lower bound
+     * @param high the upper bound, or null for no upper bound
+     * @return the fraction
+     */
+    public double getRangeFraction(Table table, Value low, Value high) {
+        if (low == ValueNull.INSTANCE || high == ValueNull.INSTANCE) {
+            return 0;
+        }
+        long count = 0;
+        for (int i = 0; i < commonValues.length; i++) {
+            Value v = commonValues[i];
+            if ((low == null || table.compareValues(v, low) >= 0)
+                    && (high == null || table.compareValues(v, high) <= 0)) {
+                count += commonCounts[i];
+            }
+        }
+        double position = (high == null ? 1 : getPosition(table, high)) - (low == null ? 0 : getPosition(table, low));
+        return (count + Math.max(position, 0) * getOtherCount()) / rowCount;
+    }
+
+    private long getOtherCount() {
+        long count = rowCount - nullCount;
+        for (long c : commonCounts) {
+            count -= c;
+        }
+        return count;
+    }
+
+    /**
+     * Get the estimated fraction of the values of the histogram that are
+     * smaller than the specified value.
+     */
+    private double getPosition(Table table, Value v) {
+        int length = histogram.length;
+        if (length == 0 || table.compareValues(v, histogram[0]) < 0) {
+            return 0;
+        } else if (table.compareValues(v, histogram[length - 1]) >= 0) {
+            return 1;
+        }
+        int low = 0, high = length - 1;
+        while (high - low > 1) {
+            int mid = (low + high) >>> 1;
+            if (table.compareValues(v, histogram[mid]) < 0) {
+                high = mid;
+            } else {
+                low = mid;
+            }
+        }
+        Value a = histogram[low], b = histogram[high];
+        double offset = 0.5;
+        if (DataType.isNumericType(a.getType())) {
+            double x = a.getDouble(), y = b.getDouble();
+            if (y > x) {
+                try {
+                    offset = (v.convertTo(Value.DOUBLE).getDouble() - x) / (y - x);
+                } catch (DbException e) {
+                    // ignore
+                }
+            }
+        }
+        return (low + offset) / (length - 1);
+    }
+
+}
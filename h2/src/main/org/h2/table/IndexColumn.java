@@ -5,6 +5,7 @@
  */
 package org.h2.table;
 
+import org.h2.expression.Expression;
 import org.h2.result.SortOrder;
 
 /**
@@ -23,6 +24,12 @@ public class IndexColumn {
      */
     public Column column;
 
+    /**
+     * The expression of an expression index, or null if this is a column of
+     * the table.
+     */
+    public Expression expression;
+
     /**
      * The sort type. Ascending (the default) and descending are supported;
      * nulls can be sorted first or last.
@@ -64,7 +71,9 @@ public static IndexColumn[] wrap(Column[] columns) {
      */
     public static void mapColumns(IndexColumn[] indexColumns, Table table) {
         for (IndexColumn col : indexColumns) {
-            col.column = table.getColumn(col.columnName);
+            if (col.expression == null) {
+                col.column = table.getColumn(col.columnName);
+            }
         }
     }
 
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2004-2018 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.table;
+
+import org.h2.engine.Session;
+import org.h2.expression.Expression;
+import org.h2.result.Row;
+import org.h2.util.StringUtils;
+import org.h2.value.Value;
+
+/**
+ * A column of an expression index. The column is not part of the table; its
+ * value is calculated from the other columns of a row using the expression.
+ * The column id of such a column is larger than the ids of the columns of the
+ * table.
+ */
+public class IndexExpressionColumn extends Column {
+
+    private final Expression expression;
+    private final TableFilter filter;
+
+    /**
+     * Create a new column for an expression of an expression index.
+     *
+     * @param expression the expression, mapped to the filter and optimized
+     * @param filter the filter used to evaluate the expression
+     */
+    IndexExpressionColumn(Expression expression, TableFilter filter) {
+        super(StringUtils.unEnclose(expression.getSQL()), expression.getType(),
+                expression.getPrecision(), expression.getScale(),
+                expression.getDisplaySize());
+        this.expression = expression;
+        this.filter = filter;
+    }
+
+    public Expression getExpression() {
+        return expression;
+    }
+
+    /**
+     * Calculate the value of the expression for the given row.
+     *
+     * @param session the session
+     * @param row the row of the table
+     * @return the value
+     */
+    public synchronized Value getValue(Session session, Row row) {
+        filter.set(row);
+        return convert(expression.getValue(session));
+    }
+
+    @Override
+    public String getSQL() {
+        return expression.getSQL();
+    }
+
+    @Override
+    public String getName() {
+        return StringUtils.unEnclose(expression.getSQL());
+    }
+
+}
@@ -64,6 +64,7 @@
 import org.h2.value.CompareMode;
 import org.h2.value.DataType;
 import org.h2.value.Value;
+import org.h2.value.ValueArray;
 import org.h2.value.ValueBoolean;
 import org.h2.value.ValueDouble;
 import org.h2.value.ValueInt;
@@ -118,7 +119,8 @@ public class MetaTable extends Table {
     private static final int TABLE_CONSTRAINTS = 30;
     private static final int KEY_COLUMN_USAGE = 31;
     private static final int REFERENTIAL_CONSTRAINTS = 32;
-    private static final int META_TABLE_TYPE_COUNT = REFERENTIAL_CONSTRAINTS + 1;
+    private static final int COLUMN_STATISTICS = 33;
+    private static final int META_TABLE_TYPE_COUNT = COLUMN_STATISTICS + 1;
 
     private final int type;
     private final int indexColumn;
@@ -622,6 +624,23 @@ public MetaTable(Schema schema, int id, int type) {
             );
             break;
         }
+        case COLUMN_STATISTICS: {
+            setObjectName("COLUMN_STATISTICS");
+            cols = createColumns(
+                    "TABLE_CATALOG",
+                    "TABLE_SCHEMA",
+                    "TABLE_NAME",
+                    "COLUMN_NAME",
+                    "SAMPLE_ROWS BIGINT",
+                    "NULL_FRACTION DOUBLE",
+                    "DISTINCT_COUNT BIGINT",
+                    "MOST_COMMON_VALUES ARRAY",
+                    "MOST_COMMON_FREQUENCIES ARRAY",
+                    "HISTOGRAM_BOUNDS ARRAY"
+            );
+            indexColumnName = "TABLE_NAME";
+            break;
+        }
         default:
             throw DbException.throwInternalError("type="+type);
         }
@@ -2143,6 +2162,51 @@ public ArrayList<Row> generateRows(Session session, SearchRow first,
             }
             break;
         }
+        case COLUMN_STATISTICS: {
+            for (Table table : getAllTables(session)) {
+                String tableName = identifier(table.getName());
+                if (!checkIndex(session, tableName, indexFrom, indexTo)) {
+                    continue;
+                }
+                if (hideTable(table, session)) {
+                    continue;
+                }
+                for (Column c : table.getColumns()) {
+                    ColumnStatistics statistics = c.getStatistics();
+                    if (statistics == null) {
+                        continue;
+                    }
+                    double[] fractions = statistics.getCommonFractions();
+                    Value[] frequencies = new Value[fractions.length];
+                    for (int i = 0; i < fractions.length; i++) {
+                        frequencies[i] = ValueDouble.get(fractions[i]);
+                    }
+                    add(rows,
+                            // TABLE_CATALOG
+                            catalog,
+                            // TABLE_SCHEMA
+                            identifier(table.getSchema().getName()),
+                            // TABLE_NAME
+                            tableName,
+                            // COLUMN_NAME
+                            identifier(c.getName()),
+                            // SAMPLE_ROWS
+                            ValueLong.get(statistics.getRowCount()),
+                            // NULL_FRACTION
+                            ValueDouble.get(statistics.getNullFraction()),
+                            // DISTINCT_COUNT
+                            ValueLong.get(statistics.getDistinctCount()),
+                            // MOST_COMMON_VALUES
+                            ValueArray.get(statistics.getCommonValues()),
+                            // MOST_COMMON_FREQUENCIES
+                            ValueArray.get(frequencies),
+                            // HISTOGRAM_BOUNDS
+                            ValueArray.get(statistics.getHistogram())
+                    );
+                }
+            }
+            break;
+        }
         default:
             DbException.throwInternalError("type="+type);
         }
@@ -13,6 +13,7 @@
 import org.h2.engine.Session;
 import org.h2.expression.Expression;
 import org.h2.expression.ExpressionVisitor;
+import org.h2.index.MergeJoinIndex;
 import org.h2.message.Trace;
 import org.h2.table.TableFilter.TableFilterVisitor;
 
@@ -116,13 +117,14 @@ public double calculateCost(Session session, AllColumnsForPlan allColumnsSet) {
             if (t.isDebugEnabled()) {
                 t.debug("Plan       :   for table filter {0}", tableFilter);
             }
-            PlanItem item = tableFilter.getBestPlanItem(session, allFilters, i, allColumnsSet);
+            PlanItem item = getPlanItem(session, allFilters, i, Arrays.asList(filters).contains(tableFilter),
+                    i == 0 ? null : planItems.get(allFilters[0]), allColumnsSet);
             planItems.put(tableFilter, item);
             if (t.isDebugEnabled()) {
                 t.debug("Plan       :   best plan item cost {0} index {1}",
                         item.cost, item.getIndex().getPlanSQL());
             }
-            cost += cost * item.cost;
+            cost = getJoinCost(cost, item);
             setEvaluatable(tableFilter, true);
             Expression on = tableFilter.getJoinCondition();
             if (on != null) {
@@ -144,7 +146,57 @@ public double calculateCost(Session session, AllColumnsForPlan allColumnsSet) {
         return cost;
     }
 
-    private void setEvaluatable(TableFilter filter, boolean b) {
+    /**
+     * Get the best plan item for a table filter. The table filters that are
+     * joined before need to be marked as evaluatable.
+     *
+     * @param session the session
+     * @param allFilters all table filters of the plan, in the join order
+     * @param i the index of the table filter
+     * @param topLevel whether the table filter is not joined to another table
+     *            filter (as in an outer join)
+     * @param firstItem the plan item of the first table filter, or null if
+     *            this is the first table filter
+     * @param allColumnsSet the columns used by the query
+     * @return the plan item
+     */
+    public static PlanItem getPlanItem(Session session, TableFilter[] allFilters, int i, boolean topLevel,
+            PlanItem firstItem, AllColumnsForPlan allColumnsSet) {
+        TableFilter tableFilter = allFilters[i];
+        PlanItem item = tableFilter.getBestPlanItem(session, allFilters, i, allColumnsSet);
+        if (firstItem != null && topLevel && item.getJoinPlan() == null && item.getNestedJoinPlan() == null
+                && session.getDatabase().getSettings().optimizeMergeJoin) {
+            MergeJoinIndex mergeIndex = MergeJoinIndex.create(tableFilter, item.getIndex(),
+                    allFilters[0], firstItem.getIndex(), firstItem.getMasks());
+            if (mergeIndex != null) {
+                item.setIndex(mergeIndex);
+                // the index does not need to be searched from the root
+                // for each row of the first table
+                item.cost /= 2;
+            }
+        }
+        return item;
+    }
+
+    /**
+     * Get the cost of a plan after a table filter is joined.
+     *
+     * @param cost the cost of the plan before
+     * @param item the plan item of the table filter
+     * @return the new cost
+     */
+    public static double getJoinCost(double cost, PlanItem item) {
+        return cost + cost * item.cost + item.buildCost;
+    }
+
+    /**
+     * Mark a table filter as evaluatable or not evaluatable in the conditions
+     * of this plan.
+     *
+     * @param filter the table filter
+     * @param b the new value
+     */
+    public void setEvaluatable(TableFilter filter, boolean b) {
         filter.setEvaluatable(filter, b);
         for (Expression e : allConditions) {
             e.setEvaluatable(filter, b);
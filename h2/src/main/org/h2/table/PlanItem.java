@@ -18,6 +18,12 @@ public class PlanItem {
      */
     double cost;
 
+    /**
+     * The cost that is spent only once per query, for example to build a
+     * hash table.
+     */
+    double buildCost;
+
     private int[] masks;
     private Index index;
     private PlanItem joinPlan;
@@ -68,13 +68,10 @@ public class RegularTable extends TableBase {
     private long lastModificationId;
     private final boolean containsLargeObject;
     private final PageDataIndex mainIndex;
-    private int changesSinceAnalyze;
-    private int nextAnalyze;
     private Column rowIdColumn;
 
     public RegularTable(CreateTableData data) {
         super(data);
-        nextAnalyze = database.getSettings().analyzeAuto;
         this.isHidden = data.isHidden;
         boolean b = false;
         for (Column col : getColumns()) {
@@ -357,19 +354,7 @@ public void truncate(Session session) {
             index.truncate(session);
         }
         rowCount = 0;
-        changesSinceAnalyze = 0;
-    }
-
-    private void analyzeIfRequired(Session session) {
-        if (nextAnalyze == 0 || nextAnalyze > changesSinceAnalyze++) {
-            return;
-        }
-        changesSinceAnalyze = 0;
-        int n = 2 * nextAnalyze;
-        if (n > 0) {
-            nextAnalyze = n;
-        }
-        session.markTableForAnalyze(this);
+        resetChangesUntilAnalyze();
     }
 
     @Override
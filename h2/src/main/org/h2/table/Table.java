@@ -9,12 +9,15 @@
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.h2.api.ErrorCode;
 import org.h2.command.Prepared;
 import org.h2.command.dml.AllColumnsForPlan;
+import org.h2.command.dml.MaterializedView;
 import org.h2.constraint.Constraint;
 import org.h2.engine.Constants;
 import org.h2.engine.DbObject;
@@ -22,6 +25,7 @@
 import org.h2.engine.Session;
 import org.h2.engine.UndoLogRecord;
 import org.h2.expression.Expression;
+import org.h2.expression.ExpressionColumn;
 import org.h2.expression.ExpressionVisitor;
 import org.h2.index.Index;
 import org.h2.index.IndexType;
@@ -85,10 +89,24 @@ public abstract class Table extends SchemaObjectBase {
      */
     private final CopyOnWriteArrayList<TableView> dependentViews = new CopyOnWriteArrayList<>();
     private ArrayList<TableSynonym> synonyms;
+    private ArrayList<IndexExpressionColumn> expressionColumns;
+    /**
+     * materialized views that depend on this table
+     */
+    private final CopyOnWriteArrayList<MaterializedView> materializedViews = new CopyOnWriteArrayList<>();
+    /** The definition of the materialized view whose rows this table contains. */
+    private MaterializedView materializedView;
     /** Is foreign key constraint checking enabled for this table. */
     private boolean checkForeignKeyConstraints = true;
+    /** Can the results of queries over this table be shared between sessions. */
+    private volatile boolean cacheResults;
     private boolean onCommitDrop, onCommitTruncate;
     private volatile Row nullRow;
+    /**
+     * The number of row changes until the table is analyzed again, or null if
+     * tables are not analyzed automatically.
+     */
+    private final AtomicInteger changesUntilAnalyze;
     private boolean tableExpression;
 
     public Table(Schema schema, int id, String name, boolean persistIndexes,
@@ -98,6 +116,8 @@ public Table(Schema schema, int id, String name, boolean persistIndexes,
         this.persistIndexes = persistIndexes;
         this.persistData = persistData;
         compareMode = schema.getDatabase().getCompareMode();
+        int analyzeAuto = schema.getDatabase().getSettings().analyzeAuto;
+        changesUntilAnalyze = analyzeAuto <= 0 ? null : new AtomicInteger(analyzeAuto);
     }
 
     @Override
@@ -156,6 +176,44 @@ public abstract Index addIndex(Session session, String indexName,
             int indexId, IndexColumn[] cols, IndexType indexType,
             boolean create, String indexComment);
 
+    /**
+     * Create an index for this table that also stores the values of the given
+     * columns, or that only contains the rows that match the given condition.
+     * Only some table implementations support included columns, partial
+     * indexes, and bitmap indexes.
+     *
+     * @param session the session
+     * @param indexName the name of the index
+     * @param indexId the id
+     * @param cols the index columns
+     * @param includedColumns the included columns, or null
+     * @param condition the condition of a partial index, or null
+     * @param indexType the index type
+     * @param create whether this is a new index
+     * @param indexComment the comment
+     * @return the index
+     */
+    public Index addIndex(Session session, String indexName, int indexId,
+            IndexColumn[] cols, Column[] includedColumns, Expression condition,
+            IndexType indexType, boolean create, String indexComment) {
+        if (includedColumns != null) {
+            throw DbException.getUnsupportedException("INCLUDE");
+        }
+        if (condition != null) {
+            throw DbException.getUnsupportedException("Partial index");
+        }
+        if (indexType.isBitmap()) {
+            throw DbException.getUnsupportedException("BITMAP INDEX");
+        }
+        for (IndexColumn c : cols) {
+            if (c.expression != null) {
+                throw DbException.getUnsupportedException("Index on expression " + c.expression.getSQL());
+            }
+        }
+        return addIndex(session, indexName, indexId, cols, indexType, create,
+                indexComment);
+    }
+
     /**
      * Get the given row.
      *
@@ -188,6 +246,17 @@ public void lockRows(Session session, Iterable<Row> rowsForUpdate) {
         }
     }
 
+    /**
+     * Locks rows, preventing any updated to them, except from the session
+     * specified. Fails immediately if some row is locked by another session.
+     *
+     * @param session the session
+     * @param rowsForUpdate rows to lock
+     */
+    public void lockRowsNoWait(Session session, Iterable<Row> rowsForUpdate) {
+        lockRows(session, rowsForUpdate);
+    }
+
     /**
      * Locks row, preventing any updated to it, except from the session specified.
      *
@@ -204,6 +273,19 @@ public Row lockRow(Session session, Row row) {
         return row;
     }
 
+    /**
+     * Locks row, preventing any updated to it, except from the session
+     * specified. Does not wait if the row is locked by another session.
+     *
+     * @param session the session
+     * @param row to lock
+     * @return locked row, or null if row does not exist anymore or is locked
+     *         by another session
+     */
+    public Row lockRowSkipLocked(Session session, Row row) {
+        return lockRow(session, row);
+    }
+
     /**
      * Remove all rows from the table and indexes.
      *
@@ -211,6 +293,49 @@ public Row lockRow(Session session, Row row) {
      */
     public abstract void truncate(Session session);
 
+    /**
+     * Count a changed row. If enough rows were changed since the table was
+     * analyzed, the table is marked to be analyzed after the transaction of
+     * the session is committed.
+     *
+     * @param session the session that changed the row
+     */
+    protected void analyzeIfRequired(Session session) {
+        if (changesUntilAnalyze != null) {
+            if (changesUntilAnalyze.decrementAndGet() == 0) {
+                // the larger the table, the more changes are needed to
+                // change the distribution of the values
+                long next = database.getSettings().analyzeAuto + getRowCountApproximation() / 10;
+                changesUntilAnalyze.set((int) Math.min(next, Integer.MAX_VALUE));
+                session.markTableForAnalyze(this);
+            }
+        }
+    }
+
+    /**
+     * Reset the number of row changes until the table is analyzed, for example
+     * after all rows were removed.
+     */
+    protected void resetChangesUntilAnalyze() {
+        if (changesUntilAnalyze != null) {
+            changesUntilAnalyze.set(database.getSettings().analyzeAuto);
+        }
+    }
+
+    /**
+     * Read a random sample of the rows of the table, if supported by the
+     * table.
+     *
+     * @param session the session
+     * @param count the number of rows
+     * @param random the random number generator
+     * @return the rows, or null if not supported or if the table does not
+     *         contain more than the specified number of rows
+     */
+    public ArrayList<Row> getSample(Session session, int count, Random random) {
+        return null;
+    }
+
     /**
      * Add a row to the table and all indexes.
      *
@@ -558,6 +683,53 @@ public CopyOnWriteArrayList<TableView> getDependentViews() {
         return dependentViews;
     }
 
+    /**
+     * Get the materialized views that depend on this table.
+     *
+     * @return the materialized views
+     */
+    public CopyOnWriteArrayList<MaterializedView> getMaterializedViews() {
+        return materializedViews;
+    }
+
+    /**
+     * Add a materialized view that depends on this table.
+     *
+     * @param view the materialized view
+     */
+    public void addMaterializedView(MaterializedView view) {
+        materializedViews.add(view);
+    }
+
+    /**
+     * Remove a materialized view that depends on this table.
+     *
+     * @param view the materialized view
+     */
+    public void removeMaterializedView(MaterializedView view) {
+        materializedViews.remove(view);
+    }
+
+    /**
+     * Set the definition of the materialized view whose rows this table
+     * contains.
+     *
+     * @param view the materialized view
+     */
+    public void setMaterializedView(MaterializedView view) {
+        materializedView = view;
+    }
+
+    /**
+     * Get the definition of the materialized view whose rows this table
+     * contains.
+     *
+     * @return the materialized view, or null for other tables
+     */
+    public MaterializedView getMaterializedView() {
+        return materializedView;
+    }
+
     @Override
     public void removeChildrenAndResources(Session session) {
         while (!dependentViews.isEmpty()) {
@@ -565,6 +737,13 @@ public void removeChildrenAndResources(Session session) {
             dependentViews.remove(0);
             database.removeSchemaObject(session, view);
         }
+        while (!materializedViews.isEmpty()) {
+            MaterializedView view = materializedViews.remove(0);
+            database.removeSchemaObject(session, view.getTable());
+        }
+        if (materializedView != null) {
+            materializedView.close();
+        }
         while (synonyms != null && !synonyms.isEmpty()) {
             TableSynonym synonym = synonyms.remove(0);
             database.removeSchemaObject(session, synonym);
@@ -633,6 +812,19 @@ public void dropMultipleColumnsConstraintsAndIndexes(Session session,
                         continue;
                     }
                     if (index.getColumnIndex(col) < 0) {
+                        Column[] included = index.getIncludedColumns();
+                        if (included != null && Arrays.asList(included).contains(col)
+                                || isReferenced(index.getCondition(), col)) {
+                            throw DbException.get(
+                                    ErrorCode.COLUMN_IS_REFERENCED_1, index.getSQL());
+                        }
+                        for (Column c : index.getColumns()) {
+                            if (c instanceof IndexExpressionColumn
+                                    && isReferenced(((IndexExpressionColumn) c).getExpression(), col)) {
+                                throw DbException.get(
+                                        ErrorCode.COLUMN_IS_REFERENCED_1, index.getSQL());
+                            }
+                        }
                         continue;
                     }
                     if (index.getColumns().length == 1) {
@@ -656,6 +848,127 @@ public void dropMultipleColumnsConstraintsAndIndexes(Session session,
         }
     }
 
+    private boolean isReferenced(Expression expression, Column column) {
+        if (expression == null) {
+            return false;
+        }
+        HashSet<Column> columns = new HashSet<>();
+        expression.isEverything(ExpressionVisitor.getColumnsVisitor(columns, this));
+        return columns.contains(column);
+    }
+
+    /**
+     * Map an expression of an index, such as the condition of a partial index,
+     * to the given filter of this table and optimize it. The expression must
+     * be deterministic and may only reference the columns of this table.
+     *
+     * @param filter the filter of this table
+     * @param expression the expression
+     * @param description the description of the expression, used in the
+     *            error messages
+     * @return the optimized expression
+     */
+    public Expression mapIndexExpression(TableFilter filter, Expression expression, String description) {
+        expression.mapColumns(filter, 0, Expression.MAP_INITIAL);
+        expression = expression.optimize(filter.getSession());
+        HashSet<DbObject> dependencies = new HashSet<>();
+        expression.isEverything(ExpressionVisitor.getDependenciesVisitor(dependencies));
+        for (DbObject obj : dependencies) {
+            if (obj instanceof Table && obj != this) {
+                throw DbException.getUnsupportedException(
+                        description + " with a query: " + expression.getSQL());
+            }
+        }
+        if (!expression.isEverything(ExpressionVisitor.DETERMINISTIC_VISITOR)) {
+            throw DbException.getUnsupportedException(
+                    description + " that is not deterministic: " + expression.getSQL());
+        }
+        return expression;
+    }
+
+    /**
+     * Get the column of an expression index for the given expression. The
+     * same column is returned for all indexes on the same expression. If the
+     * expression is a column of this table, this column is returned.
+     *
+     * @param expression the expression
+     * @return the column
+     */
+    public Column getIndexExpressionColumn(Expression expression) {
+        TableFilter filter = new TableFilter(database.getSystemSession(), this, null, true, null, 0, null);
+        expression = mapIndexExpression(filter, expression, "Index on expression");
+        if (expression instanceof ExpressionColumn) {
+            return ((ExpressionColumn) expression).getColumn();
+        }
+        String sql = expression.getSQL();
+        if (expressionColumns == null) {
+            expressionColumns = Utils.newSmallArrayList();
+        }
+        int free = -1;
+        for (int i = 0, size = expressionColumns.size(); i < size; i++) {
+            IndexExpressionColumn c = expressionColumns.get(i);
+            if (c == null) {
+                if (free < 0) {
+                    free = i;
+                }
+            } else if (c.getExpression().getSQL().equals(sql)) {
+                return c;
+            }
+        }
+        IndexExpressionColumn c = new IndexExpressionColumn(expression, filter);
+        if (free < 0) {
+            c.setTable(this, getColumnIdLimit());
+            expressionColumns.add(c);
+        } else {
+            // reuse the id of a removed column
+            c.setTable(this, columns.length + free);
+            expressionColumns.set(free, c);
+        }
+        return c;
+    }
+
+    /**
+     * Remove the columns of expression indexes that are no longer used by an
+     * index of this table. The ids of the other columns don't change, and the
+     * ids of the removed columns are reused for new columns.
+     */
+    protected void removeUnusedExpressionColumns() {
+        if (expressionColumns == null) {
+            return;
+        }
+        HashSet<Column> used = new HashSet<>();
+        ArrayList<Index> indexes = getIndexes();
+        if (indexes != null) {
+            for (Index index : indexes) {
+                for (Column c : index.getColumns()) {
+                    if (c instanceof IndexExpressionColumn) {
+                        used.add(c);
+                    }
+                }
+            }
+        }
+        int size = expressionColumns.size();
+        for (int i = 0; i < size; i++) {
+            IndexExpressionColumn c = expressionColumns.get(i);
+            if (c != null && !used.contains(c)) {
+                expressionColumns.set(i, null);
+            }
+        }
+        while (size > 0 && expressionColumns.get(size - 1) == null) {
+            expressionColumns.remove(--size);
+        }
+    }
+
+    /**
+     * Get the number of column ids, including the ids of the columns of the
+     * expression indexes of this table.
+     *
+     * @return the number of column ids
+     */
+    public int getColumnIdLimit() {
+        return expressionColumns == null ? columns.length : columns.length + expressionColumns.size();
+    }
+
     public Row createRow(Value[] data, int memory) {
         return database.createRow(data, memory);
     }
@@ -861,6 +1174,7 @@ public void removeIndex(Index index) {
                     col.setPrimaryKey(false);
                 }
             }
+            removeUnusedExpressionColumns();
         }
     }
 
@@ -1001,14 +1315,16 @@ public boolean hasSelectTrigger() {
     }
 
     /**
-     * Check if row based triggers or constraints are defined.
-     * In this case the fire after and before row methods need to be called.
+     * Check if row based triggers, constraints, or materialized views are
+     * defined. In this case the fire after and before row methods need to be
+     * called.
      *
      *  @return if there are any triggers or rows defined
      */
     public boolean fireRow() {
         return (constraints != null && !constraints.isEmpty()) ||
-                (triggers != null && !triggers.isEmpty());
+                (triggers != null && !triggers.isEmpty()) ||
+                !materializedViews.isEmpty();
     }
 
     /**
@@ -1049,6 +1365,10 @@ public void fireAfterRow(Session session, Row oldRow, Row newRow,
         fireRow(session, oldRow, newRow, false, rollback);
         if (!rollback) {
             fireConstraints(session, oldRow, newRow, false);
+            // the changes of the materialized views are rolled back as well
+            for (MaterializedView view : materializedViews) {
+                view.update(session, oldRow, newRow);
+            }
         }
     }
 
@@ -1105,6 +1425,24 @@ public boolean getCheckForeignKeyConstraints() {
         return checkForeignKeyConstraints;
     }
 
+    /**
+     * Enable or disable the result cache for this table. The results of
+     * queries are only shared between sessions if the result cache is enabled
+     * for all tables of the query.
+     *
+     * @param enabled true if the result cache should be enabled
+     */
+    public void setCacheResults(boolean enabled) {
+        cacheResults = enabled;
+    }
+
+    /**
+     * @return is the result cache enabled for this table.
+     */
+    public boolean getCacheResults() {
+        return cacheResults;
+    }
+
     /**
      * Get the index that has the given column as the first element.
      * This method returns null if no matching index is found.
@@ -1129,6 +1467,10 @@ public Index getIndexForColumn(Column column,
                 if (needFindNext && !index.canFindNext()) {
                     continue;
                 }
+                if (index.getCondition() != null) {
+                    // a partial index doesn't contain all rows
+                    continue;
+                }
                 // choose the minimal covering index with the needed first
                 // column to work consistently with execution plan from
                 // Optimizer
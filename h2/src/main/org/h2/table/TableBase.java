@@ -8,6 +8,7 @@
 import java.util.Collections;
 import java.util.List;
 import org.h2.command.ddl.CreateTableData;
+import org.h2.command.dml.MaterializedView;
 import org.h2.engine.Database;
 import org.h2.engine.DbSettings;
 import org.h2.index.IndexType;
@@ -89,6 +90,10 @@ public String getCreateSQL() {
             // closed
             return null;
         }
+        MaterializedView view = getMaterializedView();
+        if (view != null) {
+            return getCreateSQL(view);
+        }
         StatementBuilder buff = new StatementBuilder("CREATE ");
         if (isTemporary()) {
             if (isGlobalTemporary()) {
@@ -114,7 +119,7 @@ public String getCreateSQL() {
         buff.append("(\n    ");
         for (Column column : columns) {
             buff.appendExceptFirst(",\n    ");
-            buff.append(column.getCreateSQL());
+            buff.append(column.getCreateSQLWithStatistics());
         }
         buff.append("\n)");
         if (tableEngine != null) {
@@ -145,6 +150,22 @@ public String getCreateSQL() {
         return buff.toString();
     }
 
+    private String getCreateSQL(MaterializedView view) {
+        StatementBuilder buff = new StatementBuilder("CREATE MATERIALIZED VIEW ");
+        buff.append(getSQL());
+        if (comment != null) {
+            buff.append(" COMMENT ");
+            StringUtils.quoteStringSQL(buff.builder(), comment);
+        }
+        buff.append("(\n    ");
+        for (Column column : columns) {
+            buff.appendExceptFirst(",\n    ");
+            buff.append(column.getCreateSQLWithStatistics());
+        }
+        buff.append("\n)\nAS ").append(view.getQuerySQL());
+        return buff.toString();
+    }
+
     @Override
     public boolean isGlobalTemporary() {
         return globalTemporary;
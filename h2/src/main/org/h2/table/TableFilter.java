@@ -14,13 +14,23 @@
 import org.h2.command.dml.Select;
 import org.h2.engine.Right;
 import org.h2.engine.Session;
+import org.h2.expression.BinaryOperation;
 import org.h2.expression.Expression;
 import org.h2.expression.ExpressionColumn;
+import org.h2.expression.UnaryOperation;
+import org.h2.expression.ValueExpression;
 import org.h2.expression.condition.Comparison;
 import org.h2.expression.condition.ConditionAndOr;
+import org.h2.expression.condition.ConditionIn;
+import org.h2.expression.condition.ConditionInConstantSet;
+import org.h2.expression.condition.ConditionNot;
+import org.h2.expression.function.Function;
+import org.h2.index.BitmapCombinationIndex;
+import org.h2.index.HashJoinIndex;
 import org.h2.index.Index;
 import org.h2.index.IndexCondition;
 import org.h2.index.IndexCursor;
+import org.h2.index.JoinIndex;
 import org.h2.index.IndexLookupBatch;
 import org.h2.index.ViewIndex;
 import org.h2.message.DbException;
@@ -211,7 +221,7 @@ public PlanItem getBestPlanItem(Session s, TableFilter[] filters, int filter,
             item1.cost = item1.getIndex().getCost(s, null, filters, filter,
                     sortOrder, allColumnsSet);
         }
-        int len = table.getColumns().length;
+        int len = table.getColumnIdLimit();
         int[] masks = new int[len];
         for (IndexCondition condition : indexConditions) {
             if (condition.isEvaluatable()) {
@@ -226,6 +236,18 @@ public PlanItem getBestPlanItem(Session s, TableFilter[] filters, int filter,
             }
         }
         PlanItem item = table.getBestPlanItem(s, masks, filters, filter, sortOrder, allColumnsSet);
+        if (filter > 0 && masks != null && nestedJoin == null) {
+            PlanItem hashItem = getHashJoinPlanItem(s, masks, filters, filter, sortOrder, allColumnsSet, item.cost);
+            if (hashItem != null && hashItem.cost < item.cost) {
+                item = hashItem;
+            }
+        }
+        if (masks != null && nestedJoin == null) {
+            PlanItem bitmapItem = getBitmapPlanItem(s, masks, filters, filter, sortOrder, allColumnsSet);
+            if (bitmapItem != null && bitmapItem.cost < item.cost) {
+                item = bitmapItem;
+            }
+        }
         item.setMasks(masks);
         // The more index conditions, the earlier the table.
         // This is to ensure joins without indexes run quickly:
@@ -242,6 +264,7 @@ public PlanItem getBestPlanItem(Session s, TableFilter[] filters, int filter,
             // TODO optimizer: calculate cost of a join: should use separate
             // expected row number and lookup cost
             item.cost += item.cost * item.getNestedJoinPlan().cost;
+            item.buildCost += item.getNestedJoinPlan().buildCost;
         }
         if (join != null) {
             setEvaluatable(true);
@@ -252,7 +275,67 @@ public PlanItem getBestPlanItem(Session s, TableFilter[] filters, int filter,
             // TODO optimizer: calculate cost of a join: should use separate
             // expected row number and lookup cost
             item.cost += item.cost * item.getJoinPlan().cost;
+            item.buildCost += item.getJoinPlan().buildCost;
+        }
+        return item;
+    }
+
+    /**
+     * Get the plan item to join this table using a hash table. The hash table
+     * is built once per query, so it is only considered if the best other
+     * plan reads a large part of the table for each row of the outer tables.
+     *
+     * @param s the session
+     * @param masks the condition masks of the columns
+     * @param filters all joined table filters
+     * @param filter the index of this table filter
+     * @param sortOrder the sort order
+     * @param allColumnsSet the set of all columns
+     * @param cost the cost of the best other plan
+     * @return the plan item, or null if a hash join is not possible
+     */
+    private PlanItem getHashJoinPlanItem(Session s, int[] masks, TableFilter[] filters, int filter,
+            SortOrder sortOrder, AllColumnsForPlan allColumnsSet, double cost) {
+        if (!s.getDatabase().getSettings().optimizeHashJoin) {
+            return null;
+        }
+        HashJoinIndex hashIndex = HashJoinIndex.create(s, table, masks);
+        if (hashIndex == null) {
+            return null;
+        }
+        double buildCost = hashIndex.getBuildCost(s, filters, filter, allColumnsSet);
+        if (cost * 2 < buildCost) {
+            return null;
+        }
+        PlanItem item = new PlanItem();
+        item.setIndex(hashIndex);
+        item.cost = hashIndex.getCost(s, masks, filters, filter, sortOrder, allColumnsSet);
+        item.buildCost = buildCost;
+        return item;
+    }
+
+    /**
+     * Get the plan item to find the rows of this table by combining the
+     * bitmap indexes of multiple columns, if the condition of the query
+     * allows it.
+     *
+     * @param s the session
+     * @param masks the condition masks of the columns
+     * @param filters all joined table filters
+     * @param filter the index of this table filter
+     * @param sortOrder the sort order
+     * @param allColumnsSet the set of all columns
+     * @return the plan item, or null if bitmap indexes can't be combined
+     */
+    private PlanItem getBitmapPlanItem(Session s, int[] masks, TableFilter[] filters, int filter,
+            SortOrder sortOrder, AllColumnsForPlan allColumnsSet) {
+        BitmapCombinationIndex bitmapIndex = BitmapCombinationIndex.create(s, this);
+        if (bitmapIndex == null) {
+            return null;
         }
+        PlanItem item = new PlanItem();
+        item.setIndex(bitmapIndex);
+        item.cost = bitmapIndex.getCost(s, masks, filters, filter, sortOrder, allColumnsSet);
         return item;
     }
 
@@ -347,6 +430,9 @@ public void prepare() {
     public void startQuery(Session s) {
         this.session = s;
         scanCount = 0;
+        if (index instanceof JoinIndex) {
+            ((JoinIndex) index).reset();
+        }
         if (nestedJoin != null) {
             nestedJoin.startQuery(s);
         }
@@ -404,7 +490,7 @@ public JoinBatch prepareJoinBatch(JoinBatch jb, TableFilter[] filters, int filte
         assert filters[filter] == this;
         joinBatch = null;
         joinFilterId = -1;
-        if (getTable().isView()) {
+        if (index instanceof ViewIndex) {
             session.pushSubQueryInfo(masks, filters, filter, select.getSortOrder());
             try {
                 ((ViewIndex) index).getQuery().prepareJoinBatch();
@@ -943,6 +1029,15 @@ public void removeFilterCondition() {
         this.filterCondition = null;
     }
 
+    /**
+     * Get the condition of the whole query, if it was set.
+     *
+     * @return the condition, or null
+     */
+    public Expression getFullCondition() {
+        return fullCondition;
+    }
+
     public void setFullCondition(Expression condition) {
         this.fullCondition = condition;
         if (join != null) {
@@ -950,6 +1045,98 @@ public void setFullCondition(Expression condition) {
         }
     }
 
+    /**
+     * Check whether an expression of the query is the same as an expression
+     * of an index of the table of this filter, such as the condition of a
+     * partial index or an expression of an expression index. The columns of
+     * the query expression must be columns of this filter.
+     *
+     * @param queryExpr the expression of the query
+     * @param indexExpr the expression of the index
+     * @return true if both expressions are the same
+     */
+    public boolean isEquivalent(Expression queryExpr, Expression indexExpr) {
+        if (queryExpr == null || indexExpr == null) {
+            return queryExpr == indexExpr;
+        }
+        if (indexExpr instanceof ExpressionColumn) {
+            if (!(queryExpr instanceof ExpressionColumn)) {
+                return false;
+            }
+            ExpressionColumn q = (ExpressionColumn) queryExpr;
+            return q.getTableFilter() == this && q.getColumn() == ((ExpressionColumn) indexExpr).getColumn();
+        }
+        if (indexExpr instanceof ValueExpression) {
+            return queryExpr instanceof ValueExpression
+                    && queryExpr.getValue(null).equals(indexExpr.getValue(null));
+        }
+        if (queryExpr.getClass() != indexExpr.getClass()) {
+            return false;
+        }
+        if (indexExpr instanceof Comparison) {
+            if (((Comparison) queryExpr).getCompareType() != ((Comparison) indexExpr).getCompareType()) {
+                return false;
+            }
+        } else if (indexExpr instanceof ConditionAndOr) {
+            if (((ConditionAndOr) queryExpr).getAndOrType() != ((ConditionAndOr) indexExpr).getAndOrType()) {
+                return false;
+            }
+        } else if (indexExpr instanceof BinaryOperation) {
+            if (((BinaryOperation) queryExpr).getOperationType()
+                    != ((BinaryOperation) indexExpr).getOperationType()) {
+                return false;
+            }
+        } else if (indexExpr instanceof Function) {
+            Function q = (Function) queryExpr, i = (Function) indexExpr;
+            if (q.getFunctionType() != i.getFunctionType() || q.getType() != i.getType()
+                    || q.getPrecision() != i.getPrecision() || q.getScale() != i.getScale()) {
+                return false;
+            }
+        } else if (!(indexExpr instanceof ConditionNot) && !(indexExpr instanceof ConditionIn)
+                && !(indexExpr instanceof ConditionInConstantSet) && !(indexExpr instanceof UnaryOperation)) {
+            // other expressions are only compared by their SQL, this works
+            // if the query doesn't use a table alias for the columns
+            return queryExpr.getSQL().equals(indexExpr.getSQL());
+        }
+        int count = indexExpr.getSubexpressionCount();
+        if (count != queryExpr.getSubexpressionCount()) {
+            return false;
+        }
+        for (int i = 0; i < count; i++) {
+            if (!isEquivalent(queryExpr.getSubexpression(i), indexExpr.getSubexpression(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the column to use in an index condition for the given expression of
+     * the query. This is the expression itself if it is a column of this
+     * filter, or a column of an expression index on the same expression.
+     *
+     * @param expression the expression of the query
+     * @return the expression column, or null if no index can be used
+     */
+    public ExpressionColumn getIndexConditionColumn(Expression expression) {
+        if (expression instanceof ExpressionColumn) {
+            ExpressionColumn c = (ExpressionColumn) expression;
+            return c.getTableFilter() == this ? c : null;
+        }
+        if (table.getColumnIdLimit() == table.getColumns().length) {
+            return null;
+        }
+        for (Index index : table.getIndexes()) {
+            for (Column c : index.getColumns()) {
+                if (c instanceof IndexExpressionColumn
+                        && isEquivalent(expression, ((IndexExpressionColumn) c).getExpression())) {
+                    return new ExpressionColumn(session.getDatabase(), c);
+                }
+            }
+        }
+        return null;
+    }
+
     /**
      * Optimize the full condition. This will add the full condition to the
      * filter condition.
@@ -1176,6 +1363,38 @@ public void lockRows(Iterable<Row> forUpdateRows) {
         table.lockRows(session, forUpdateRows);
     }
 
+    /**
+     * Lock the given rows, fail immediately if some row is locked by another
+     * session.
+     *
+     * @param forUpdateRows the rows to lock
+     */
+    public void lockRowsNoWait(Iterable<Row> forUpdateRows) {
+        table.lockRowsNoWait(session, forUpdateRows);
+    }
+
+    /**
+     * Lock the current row, if there is a current row, without waiting for
+     * other sessions. The locked row replaces the current row, and the
+     * conditions of this table filter are checked again, because the row
+     * could have been changed by another session.
+     *
+     * @return false if the current row is locked by another session, does
+     *         not exist anymore, or doesn't match the conditions anymore,
+     *         true otherwise
+     */
+    public boolean lockRowSkipLocked() {
+        if (state != FOUND) {
+            return true;
+        }
+        Row row = table.lockRowSkipLocked(session, get());
+        if (row == null) {
+            return false;
+        }
+        set(row);
+        return isOk(filterCondition) && isOk(joinCondition);
+    }
+
     public TableFilter getNestedJoin() {
         return nestedJoin;
     }
@@ -628,6 +628,19 @@ public boolean isDeterministic() {
         return viewQuery.isEverything(ExpressionVisitor.DETERMINISTIC_VISITOR);
     }
 
+    /**
+     * Check whether the rows of this view don't depend on the current row of
+     * an outer query.
+     *
+     * @return true if they don't
+     */
+    public boolean isIndependent() {
+        if (allowRecursive || viewQuery == null) {
+            return false;
+        }
+        return viewQuery.isEverything(ExpressionVisitor.INDEPENDENT_VISITOR);
+    }
+
     public void setRecursiveResult(ResultInterface value) {
         if (recursiveResult != null) {
             recursiveResult.close();
@@ -0,0 +1,575 @@
+/*
+ * Copyright 2004-2018 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.util;
+
+import java.util.Arrays;
+
+/**
+ * A compressed set of long values, used for the row keys of bitmap indexes.
+ * <p>
+ * The values are split by their high bits into containers of 4096 values.
+ * Like in the Roaring bitmap format, a container with few values stores the
+ * low bits of the values in a sorted array, and a container with many values
+ * stores them in a bitmap. The containers are smaller than in the Roaring
+ * format, so that changing a single value of a stored container is cheap.
+ * <p>
+ * Containers are never modified once they are created, so that they can be
+ * shared between bitmaps.
+ */
+public final class RoaringBitmap {
+
+    /**
+     * The number of low bits of the values stored in a container.
+     */
+    public static final int CONTAINER_BITS = 12;
+
+    private static final int CONTAINER_SIZE = 1 << CONTAINER_BITS;
+
+    private static final int WORDS = CONTAINER_SIZE / 64;
+
+    /**
+     * The maximum size of an array container. A larger array would use more
+     * space than a bitmap.
+     */
+    private static final int MAX_ARRAY_SIZE = WORDS * 4 - 1;
+
+    private long[] keys;
+
+    /**
+     * The containers: char arrays for array containers, and long arrays for
+     * bitmap containers.
+     */
+    private Object[] containers;
+
+    private int size;
+
+    /**
+     * Create an empty bitmap.
+     */
+    public RoaringBitmap() {
+        keys = new long[4];
+        containers = new Object[4];
+    }
+
+    /**
+     * Get the key of the container of a value.
+     *
+     * @param value the value
+     * @return the container key
+     */
+    public static long getContainerKey(long value) {
+        return value >> CONTAINER_BITS;
+    }
+
+    /**
+     * Add a stored container to this bitmap. If the bitmap already has a
+     * container with this key, the values are combined.
+     *
+     * @param key the container key
+     * @param data the data of the container
+     */
+    public void addContainer(long key, byte[] data) {
+        Object c = read(data);
+        int index = find(key);
+        if (index >= 0) {
+            containers[index] = or(containers[index], c);
+        } else {
+            insert(-index - 1, key, c);
+        }
+    }
+
+    /**
+     * Get the number of containers.
+     *
+     * @return the number of containers
+     */
+    public int getContainerCount() {
+        return size;
+    }
+
+    /**
+     * Get the key of the container at the given position.
+     *
+     * @param index the position of the container
+     * @return the container key
+     */
+    public long getContainerKey(int index) {
+        return keys[index];
+    }
+
+    /**
+     * Get the data of the container at the given position.
+     *
+     * @param index the position of the container
+     * @return the data
+     */
+    public byte[] getContainerData(int index) {
+        Object c = containers[index];
+        if (c instanceof char[]) {
+            char[] array = (char[]) c;
+            byte[] data = new byte[array.length * 2];
+            for (int i = 0; i < array.length; i++) {
+                data[i * 2] = (byte) (array[i] >> 8);
+                data[i * 2 + 1] = (byte) array[i];
+            }
+            return data;
+        }
+        long[] words = (long[]) c;
+        byte[] data = new byte[WORDS * 8];
+        for (int i = 0; i < WORDS; i++) {
+            Bits.writeLong(data, i * 8, words[i]);
+        }
+        return data;
+    }
+
+    /**
+     * Add a value.
+     *
+     * @param value the value
+     * @return true if the value was added, false if it already was in the set
+     */
+    public boolean add(long value) {
+        long key = getContainerKey(value);
+        int low = (int) value & (CONTAINER_SIZE - 1);
+        int index = find(key);
+        if (index < 0) {
+            insert(-index - 1, key, new char[] { (char) low });
+            return true;
+        }
+        Object c = containers[index];
+        if (contains(c, low)) {
+            return false;
+        }
+        containers[index] = add(c, low);
+        return true;
+    }
+
+    /**
+     * Remove a value.
+     *
+     * @param value the value
+     * @return true if the value was removed, false if it was not in the set
+     */
+    public boolean remove(long value) {
+        int index = find(getContainerKey(value));
+        int low = (int) value & (CONTAINER_SIZE - 1);
+        if (index < 0 || !contains(containers[index], low)) {
+            return false;
+        }
+        Object c = remove(containers[index], low);
+        if (c == null) {
+            System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+            System.arraycopy(containers, index + 1, containers, index, size - index - 1);
+            containers[--size] = null;
+        } else {
+            containers[index] = c;
+        }
+        return true;
+    }
+
+    /**
+     * Check whether the set contains the given value.
+     *
+     * @param value the value
+     * @return true if yes
+     */
+    public boolean contains(long value) {
+        int index = find(getContainerKey(value));
+        return index >= 0 && contains(containers[index], (int) value & (CONTAINER_SIZE - 1));
+    }
+
+    /**
+     * Check whether the set is empty.
+     *
+     * @return true if yes
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Get the number of values.
+     *
+     * @return the number of values
+     */
+    public long getCardinality() {
+        long count = 0;
+        for (int i = 0; i < size; i++) {
+            count += cardinality(containers[i]);
+        }
+        return count;
+    }
+
+    /**
+     * Get the values that are in this set and in the other set.
+     *
+     * @param other the other set
+     * @return the new set
+     */
+    public RoaringBitmap and(RoaringBitmap other) {
+        RoaringBitmap result = new RoaringBitmap();
+        for (int i = 0, j = 0; i < size && j < other.size;) {
+            long a = keys[i], b = other.keys[j];
+            if (a < b) {
+                i++;
+            } else if (a > b) {
+                j++;
+            } else {
+                Object c = and(containers[i++], other.containers[j++]);
+                if (c != null) {
+                    result.append(a, c);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the values that are in this set or in the other set.
+     *
+     * @param other the other set
+     * @return the new set
+     */
+    public RoaringBitmap or(RoaringBitmap other) {
+        RoaringBitmap result = new RoaringBitmap();
+        int i = 0, j = 0;
+        while (i < size && j < other.size) {
+            long a = keys[i], b = other.keys[j];
+            if (a < b) {
+                result.append(a, containers[i++]);
+            } else if (a > b) {
+                result.append(b, other.containers[j++]);
+            } else {
+                result.append(a, or(containers[i++], other.containers[j++]));
+            }
+        }
+        for (; i < size; i++) {
+            result.append(keys[i], containers[i]);
+        }
+        for (; j < other.size; j++) {
+            result.append(other.keys[j], other.containers[j]);
+        }
+        return result;
+    }
+
+    /**
+     * Get the values that are in this set but not in the other set.
+     *
+     * @param other the other set
+     * @return the new set
+     */
+    public RoaringBitmap andNot(RoaringBitmap other) {
+        RoaringBitmap result = new RoaringBitmap();
+        for (int i = 0, j = 0; i < size; i++) {
+            long a = keys[i];
+            while (j < other.size && other.keys[j] < a) {
+                j++;
+            }
+            Object c = containers[i];
+            if (j < other.size && other.keys[j] == a) {
+                c = andNot(c, other.containers[j]);
+            }
+            if (c != null) {
+                result.append(a, c);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get an iterator over the values, in ascending order.
+     *
+     * @return the iterator
+     */
+    public LongIterator iterator() {
+        return new LongIterator();
+    }
+
+    private int find(long key) {
+        if (size == 0 || keys[size - 1] < key) {
+            // values are usually added in ascending order
+            return -size - 1;
+        }
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    private void insert(int index, long key, Object c) {
+        ensureCapacity();
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(containers, index, containers, index + 1, size - index);
+        keys[index] = key;
+        containers[index] = c;
+        size++;
+    }
+
+    private void append(long key, Object c) {
+        ensureCapacity();
+        keys[size] = key;
+        containers[size++] = c;
+    }
+
+    private void ensureCapacity() {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+    }
+
+    private static Object read(byte[] data) {
+        if (data.length == WORDS * 8) {
+            long[] words = new long[WORDS];
+            for (int i = 0; i < WORDS; i++) {
+                words[i] = Bits.readLong(data, i * 8);
+            }
+            return words;
+        }
+        char[] array = new char[data.length / 2];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = (char) (((data[i * 2] & 0xff) << 8) | (data[i * 2 + 1] & 0xff));
+        }
+        return array;
+    }
+
+    private static boolean contains(Object c, int low) {
+        if (c instanceof char[]) {
+            return Arrays.binarySearch((char[]) c, (char) low) >= 0;
+        }
+        return (((long[]) c)[low >>> 6] & (1L << low)) != 0;
+    }
+
+    private static int cardinality(Object c) {
+        if (c instanceof char[]) {
+            return ((char[]) c).length;
+        }
+        int count = 0;
+        for (long w : (long[]) c) {
+            count += Long.bitCount(w);
+        }
+        return count;
+    }
+
+    private static Object add(Object c, int low) {
+        if (c instanceof char[]) {
+            char[] array = (char[]) c;
+            if (array.length < MAX_ARRAY_SIZE) {
+                int pos = -Arrays.binarySearch(array, (char) low) - 1;
+                char[] result = new char[array.length + 1];
+                System.arraycopy(array, 0, result, 0, pos);
+                result[pos] = (char) low;
+                System.arraycopy(array, pos, result, pos + 1, array.length - pos);
+                return result;
+            }
+        }
+        long[] words = toWords(c);
+        words[low >>> 6] |= 1L << low;
+        return words;
+    }
+
+    private static Object remove(Object c, int low) {
+        if (c instanceof char[]) {
+            char[] array = (char[]) c;
+            if (array.length == 1) {
+                return null;
+            }
+            int pos = Arrays.binarySearch(array, (char) low);
+            char[] result = new char[array.length - 1];
+            System.arraycopy(array, 0, result, 0, pos);
+            System.arraycopy(array, pos + 1, result, pos, result.length - pos);
+            return result;
+        }
+        long[] words = toWords(c);
+        words[low >>> 6] &= ~(1L << low);
+        return normalize(words);
+    }
+
+    private static Object and(Object a, Object b) {
+        if (a instanceof char[] || b instanceof char[]) {
+            char[] array = (char[]) (a instanceof char[] ? a : b);
+            Object other = a instanceof char[] ? b : a;
+            char[] result = new char[array.length];
+            int n = 0;
+            for (char x : array) {
+                if (contains(other, x)) {
+                    result[n++] = x;
+                }
+            }
+            return n == 0 ? null : Arrays.copyOf(result, n);
+        }
+        long[] x = (long[]) a, y = (long[]) b;
+        long[] words = new long[WORDS];
+        for (int i = 0; i < WORDS; i++) {
+            words[i] = x[i] & y[i];
+        }
+        return normalize(words);
+    }
+
+    private static Object or(Object a, Object b) {
+        if (a instanceof char[] && b instanceof char[]) {
+            char[] x = (char[]) a, y = (char[]) b;
+            char[] result = new char[x.length + y.length];
+            int i = 0, j = 0, n = 0;
+            while (i < x.length && j < y.length) {
+                char cx = x[i], cy = y[j];
+                if (cx <= cy) {
+                    i++;
+                    if (cx == cy) {
+                        j++;
+                    }
+                    result[n++] = cx;
+                } else {
+                    j++;
+                    result[n++] = cy;
+                }
+            }
+            while (i < x.length) {
+                result[n++] = x[i++];
+            }
+            while (j < y.length) {
+                result[n++] = y[j++];
+            }
+            result = Arrays.copyOf(result, n);
+            return n <= MAX_ARRAY_SIZE ? result : toWords(result);
+        }
+        if (a instanceof char[]) {
+            Object t = a;
+            a = b;
+            b = t;
+        }
+        long[] words = toWords(a);
+        if (b instanceof char[]) {
+            for (char x : (char[]) b) {
+                words[x >>> 6] |= 1L << x;
+            }
+        } else {
+            long[] y = (long[]) b;
+            for (int i = 0; i < WORDS; i++) {
+                words[i] |= y[i];
+            }
+        }
+        return words;
+    }
+
+    private static Object andNot(Object a, Object b) {
+        if (a instanceof char[]) {
+            char[] array = (char[]) a;
+            char[] result = new char[array.length];
+            int n = 0;
+            for (char x : array) {
+                if (!contains(b, x)) {
+                    result[n++] = x;
+                }
+            }
+            return n == 0 ? null : Arrays.copyOf(result, n);
+        }
+        long[] words = toWords(a);
+        if (b instanceof char[]) {
+            for (char x : (char[]) b) {
+                words[x >>> 6] &= ~(1L << x);
+            }
+        } else {
+            long[] y = (long[]) b;
+            for (int i = 0; i < WORDS; i++) {
+                words[i] &= ~y[i];
+            }
+        }
+        return normalize(words);
+    }
+
+    /**
+     * Get a copy of the container as a bitmap.
+     */
+    private static long[] toWords(Object c) {
+        if (c instanceof long[]) {
+            return ((long[]) c).clone();
+        }
+        long[] words = new long[WORDS];
+        for (char x : (char[]) c) {
+            words[x >>> 6] |= 1L << x;
+        }
+        return words;
+    }
+
+    /**
+     * Convert a bitmap to an array container if it has few values.
+     *
+     * @return the container, or null if it is empty
+     */
+    private static Object normalize(long[] words) {
+        int count = cardinality(words);
+        if (count > MAX_ARRAY_SIZE) {
+            return words;
+        } else if (count == 0) {
+            return null;
+        }
+        char[] array = new char[count];
+        int n = 0;
+        for (int i = 0; i < WORDS; i++) {
+            for (long w = words[i]; w != 0; w &= w - 1) {
+                array[n++] = (char) (i * 64 + Long.numberOfTrailingZeros(w));
+            }
+        }
+        return array;
+    }
+
+    /**
+     * An iterator over the values of a bitmap.
+     */
+    public final class LongIterator {
+
+        private int index;
+
+        private int pos = -1;
+
+        private long current;
+
+        /**
+         * Move to the next value.
+         *
+         * @return true if there is a next value
+         */
+        public boolean next() {
+            while (index < size) {
+                Object c = containers[index];
+                int low = -1;
+                if (c instanceof char[]) {
+                    char[] array = (char[]) c;
+                    if (++pos < array.length) {
+                        low = array[pos];
+                    }
+                } else {
+                    long[] words = (long[]) c;
+                    for (int i = pos + 1; i < CONTAINER_SIZE;) {
+                        long w = words[i >>> 6] & (-1L << i);
+                        if (w != 0) {
+                            low = (i & ~63) + Long.numberOfTrailingZeros(w);
+                            break;
+                        }
+                        i = (i & ~63) + 64;
+                    }
+                    pos = low;
+                }
+                if (low >= 0) {
+                    current = (keys[index] << CONTAINER_BITS) | low;
+                    return true;
+                }
+                index++;
+                pos = -1;
+            }
+            return false;
+        }
+
+        /**
+         * Get the current value.
+         *
+         * @return the value
+         */
+        public long get() {
+            return current;
+        }
+
+    }
+
+}
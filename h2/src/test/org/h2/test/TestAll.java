@@ -216,6 +216,7 @@
 import org.h2.test.unit.TestReader;
 import org.h2.test.unit.TestRecovery;
 import org.h2.test.unit.TestReopen;
+import org.h2.test.unit.TestRoaringBitmap;
 import org.h2.test.unit.TestSampleApps;
 import org.h2.test.unit.TestScriptReader;
 import org.h2.test.unit.TestSecurity;
@@ -973,6 +974,7 @@ private void testUtils() {
         addTest(new TestInterval());
         addTest(new TestIntArray());
         addTest(new TestIntIntHashMap());
+        addTest(new TestRoaringBitmap());
         addTest(new TestIntPerfectHash());
         addTest(new TestKeywords());
         addTest(new TestMathUtils());
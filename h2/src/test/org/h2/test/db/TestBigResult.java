@@ -53,6 +53,7 @@ public void test() throws SQLException {
         testLargeUpdateDelete();
         testCloseConnectionDelete();
         testOrderGroup();
+        testLargeGroupBy();
         testLimitBufferedResult();
         deleteDb("bigResult");
     }
@@ -79,6 +80,50 @@ private void testLargeSubquery() throws SQLException {
         conn.close();
     }
 
+    private void testLargeGroupBy() throws SQLException {
+        deleteDb("bigResult");
+        Connection conn = getConnection("bigResult");
+        Statement stat = conn.createStatement();
+        int len = getSize(1000, 4000);
+        int groups = len / 4;
+        stat.execute("CREATE TABLE TEST(ID INT PRIMARY KEY, K INT, V INT)");
+        stat.execute("INSERT INTO TEST SELECT X, MOD(X, " + groups + "), X FROM SYSTEM_RANGE(1, " + len + ")");
+        // the groups that don't fit in memory are partitioned several times
+        stat.execute("SET MAX_MEMORY_ROWS 10");
+        ResultSet rs = stat.executeQuery("SELECT K, COUNT(*), SUM(V), MIN(_ROWID_), "
+                + "GROUP_CONCAT(V ORDER BY V SEPARATOR ',') FROM TEST GROUP BY K ORDER BY K");
+        for (int k = 0; k < groups; k++) {
+            assertTrue(rs.next());
+            assertEquals(k, rs.getInt(1));
+            assertEquals(4, rs.getInt(2));
+            int first = k == 0 ? groups : k;
+            assertEquals(4 * first + 6 * groups, rs.getInt(3));
+            assertEquals(first, rs.getInt(4));
+            assertEquals(first + "," + (first + groups) + "," + (first + 2 * groups) + ","
+                    + (first + 3 * groups), rs.getString(5));
+        }
+        assertFalse(rs.next());
+        rs = stat.executeQuery("SELECT COUNT(*), SUM(C) FROM (SELECT K, COUNT(*) C FROM TEST "
+                + "WHERE V > 10 GROUP BY K HAVING MOD(K, 2) = 0)");
+        rs.next();
+        int sum = 0;
+        for (int i = 11; i <= len; i++) {
+            if (i % groups % 2 == 0) {
+                sum++;
+            }
+        }
+        assertEquals(groups / 2, rs.getInt(1));
+        assertEquals(sum, rs.getInt(2));
+        rs = stat.executeQuery("SELECT K FROM TEST GROUP BY K LIMIT 5 OFFSET " + (groups - 3));
+        int count = 0;
+        while (rs.next()) {
+            count++;
+        }
+        assertEquals(3, count);
+        stat.execute("DROP TABLE TEST");
+        conn.close();
+    }
+
     private void testSortingAndDistinct() throws SQLException {
         deleteDb("bigResult");
         Connection conn = getConnection("bigResult");
@@ -18,7 +18,10 @@
 import java.util.concurrent.atomic.AtomicInteger;
 import org.h2.api.ErrorCode;
 import org.h2.command.dml.Select;
+import org.h2.engine.Session;
+import org.h2.jdbc.JdbcConnection;
 import org.h2.result.SortOrder;
+import org.h2.table.Table;
 import org.h2.test.TestBase;
 import org.h2.test.TestDb;
 import org.h2.tools.SimpleResultSet;
@@ -102,8 +105,11 @@ public void test() throws SQLException {
         testHashIndex(false, true);
 
         testMultiColumnHashIndex();
+        testPersistentHashIndex();
+        testBitmapIndex();
 
         testFunctionIndex();
+        testExpressionIndexColumns();
 
         conn.close();
         deleteDb("index");
@@ -683,6 +689,119 @@ private void testMultiColumnHashIndex() throws SQLException {
         stat.execute("DROP TABLE TEST");
     }
 
+    private void testPersistentHashIndex() throws SQLException {
+        if (!config.mvStore) {
+            return;
+        }
+        stat.execute("DROP TABLE IF EXISTS TEST");
+        stat.execute("CREATE TABLE TEST(ID INT PRIMARY KEY, NAME VARCHAR, "
+                + "CODE VARCHAR_IGNORECASE, PRICE DECIMAL(10, 2))");
+        stat.execute("INSERT INTO TEST SELECT X, 'N' || MOD(X, 10), 'C' || X, X / 2.0 "
+                + "FROM SYSTEM_RANGE(1, 100)");
+        stat.execute("CREATE HASH INDEX IDX_NAME ON TEST(NAME)");
+        stat.execute("CREATE UNIQUE HASH INDEX IDX_CODE ON TEST(CODE)");
+        stat.execute("CREATE INDEX IDX_PRICE ON TEST(PRICE) USING HASH");
+
+        reconnect();
+
+        ResultSet rs = stat.executeQuery("EXPLAIN SELECT ID FROM TEST WHERE NAME = 'N3'");
+        rs.next();
+        assertContains(rs.getString(1), "/* PUBLIC.IDX_NAME: NAME = 'N3' */");
+        rs = stat.executeQuery("EXPLAIN SELECT ID FROM TEST WHERE NAME > 'N3'");
+        rs.next();
+        assertContains(rs.getString(1), "tableScan");
+        assertEquals(10, getValue("SELECT COUNT(*) FROM TEST WHERE NAME = 'N3'"));
+        assertEquals(60, getValue("SELECT COUNT(*) FROM TEST WHERE NAME > 'N3'"));
+        assertEquals(17, getValue("SELECT ID FROM TEST WHERE CODE = 'c17'"));
+        assertEquals(3, getValue("SELECT ID FROM TEST WHERE PRICE = 1.5"));
+        assertEquals(3, getValue("SELECT ID FROM TEST WHERE PRICE = 1.500"));
+        try {
+            stat.execute("INSERT INTO TEST VALUES(101, 'N1', 'c1', 0)");
+            fail();
+        } catch (SQLException ex) {
+            assertEquals(ErrorCode.DUPLICATE_KEY_1, ex.getErrorCode());
+        }
+        stat.execute("UPDATE TEST SET NAME = 'X' WHERE ID = 3");
+        stat.execute("DELETE FROM TEST WHERE ID = 13");
+        assertEquals(8, getValue("SELECT COUNT(*) FROM TEST WHERE NAME = 'N3'"));
+        assertEquals(1, getValue("SELECT COUNT(*) FROM TEST WHERE NAME = 'X'"));
+        stat.execute("DROP TABLE TEST");
+    }
+
+    private void testBitmapIndex() throws SQLException {
+        if (!config.mvStore) {
+            return;
+        }
+        stat.execute("DROP TABLE IF EXISTS TEST");
+        stat.execute("CREATE TABLE TEST(ID INT PRIMARY KEY, REGION VARCHAR, "
+                + "STATUS INT, TYPE INT, NAME VARCHAR)");
+        stat.execute("INSERT INTO TEST SELECT X, 'R' || MOD(X, 5), MOD(X, 7), "
+                + "CASEWHEN(MOD(X, 11) = 0, NULL, MOD(X, 3)), 'N' || X "
+                + "FROM SYSTEM_RANGE(1, 10000)");
+        stat.execute("CREATE BITMAP INDEX IDX_REGION ON TEST(REGION)");
+        stat.execute("CREATE BITMAP INDEX IDX_STATUS ON TEST(STATUS)");
+        stat.execute("CREATE INDEX IDX_TYPE ON TEST(TYPE) USING BITMAP");
+        stat.execute("ANALYZE");
+        try {
+            stat.execute("CREATE UNIQUE BITMAP INDEX IDX_ID ON TEST(ID)");
+            fail();
+        } catch (SQLException ex) {
+            assertEquals(ErrorCode.FEATURE_NOT_SUPPORTED_1, ex.getErrorCode());
+        }
+        try {
+            stat.execute("CREATE BITMAP INDEX IDX_TWO ON TEST(REGION, STATUS)");
+            fail();
+        } catch (SQLException ex) {
+            assertEquals(ErrorCode.FEATURE_NOT_SUPPORTED_1, ex.getErrorCode());
+        }
+
+        reconnect();
+
+        ResultSet rs = stat.executeQuery("EXPLAIN SELECT * FROM TEST WHERE REGION = 'R1' AND STATUS = 3");
+        rs.next();
+        assertContains(rs.getString(1), "/* bitmap ((REGION = 'R1') AND (STATUS = 3))");
+        rs = stat.executeQuery("EXPLAIN SELECT * FROM TEST WHERE REGION = 'R1' OR STATUS = 3");
+        rs.next();
+        assertContains(rs.getString(1), "/* bitmap ((REGION = 'R1') OR (STATUS = 3))");
+        rs = stat.executeQuery("EXPLAIN SELECT * FROM TEST WHERE REGION = 'R1' AND STATUS <> 3");
+        rs.next();
+        assertContains(rs.getString(1), "/* bitmap ((REGION = 'R1') AND (NOT (STATUS = 3)))");
+        rs = stat.executeQuery("EXPLAIN SELECT * FROM TEST WHERE STATUS = 3");
+        rs.next();
+        assertContains(rs.getString(1), "/* PUBLIC.IDX_STATUS: STATUS = 3 */");
+        String[] conditions = {
+                "REGION = 'R1' AND STATUS = 3",
+                "REGION = 'R1' OR STATUS = 3",
+                "REGION = 'R1' AND STATUS <> 3",
+                "REGION IN('R1', 'R2') AND (STATUS = 3 OR TYPE IS NULL)",
+                "REGION = 'R1' AND NOT (STATUS IN(1, 2)) AND NAME LIKE 'N1%'",
+                "STATUS = 3 AND TYPE IS NOT NULL",
+                "REGION = 'R1' AND STATUS = 3 AND TYPE = 1",
+                "REGION = 'X' OR STATUS = 10",
+                "REGION IS NULL AND (STATUS = 3 OR TYPE = 1)",
+        };
+        checkBitmapIndex(conditions);
+        stat.execute("UPDATE TEST SET STATUS = 3 WHERE ID < 100");
+        stat.execute("UPDATE TEST SET REGION = NULL WHERE MOD(ID, 13) = 0");
+        stat.execute("DELETE FROM TEST WHERE ID BETWEEN 100 AND 200");
+        checkBitmapIndex(conditions);
+
+        reconnect();
+
+        checkBitmapIndex(conditions);
+        stat.execute("DROP TABLE TEST");
+    }
+
+    private void checkBitmapIndex(String[] conditions) throws SQLException {
+        for (String condition : conditions) {
+            String expected = getValue("SELECT COUNT(*) FROM TEST USE INDEX () WHERE " + condition) + " "
+                    + getValue("SELECT SUM(ID) FROM TEST USE INDEX () WHERE " + condition);
+            String actual = getValue("SELECT COUNT(*) FROM TEST WHERE " + condition) + " "
+                    + getValue("SELECT SUM(ID) FROM TEST WHERE " + condition);
+            assertEquals(condition, expected, actual);
+        }
+    }
+
     private void testHashIndexOnMemoryTable() throws SQLException {
         reconnect();
         stat.execute("drop table if exists hash_index_test");
@@ -761,6 +880,38 @@ private void testFunctionIndex() throws SQLException {
         assertEquals(1, testFunctionIndexCounter);
     }
 
+    private void testExpressionIndexColumns() throws SQLException {
+        if (!config.mvStore || config.networked) {
+            return;
+        }
+        stat.execute("CREATE TABLE TEST(ID INT PRIMARY KEY, A INT)");
+        Session session = (Session) ((JdbcConnection) conn).getSession();
+        Table table = session.getDatabase().getSchema("PUBLIC").getTableOrView(session, "TEST");
+        for (int i = 0; i < 5; i++) {
+            stat.execute("CREATE INDEX IDX_1 ON TEST((A + " + i + "))");
+            stat.execute("CREATE INDEX IDX_2 ON TEST((A + " + i + "), (A * " + i + "))");
+            assertEquals(4, table.getColumnIdLimit());
+            stat.execute("DROP INDEX IDX_2");
+            // the first expression is still used by IDX_1
+            assertEquals(3, table.getColumnIdLimit());
+            stat.execute("DROP INDEX IDX_1");
+            assertEquals(2, table.getColumnIdLimit());
+        }
+        stat.execute("CREATE INDEX IDX_1 ON TEST((A + 1), (A + 2))");
+        stat.execute("CREATE INDEX IDX_2 ON TEST((A + 2))");
+        stat.execute("DROP INDEX IDX_1");
+        // the id of the removed column is reused
+        assertEquals(4, table.getColumnIdLimit());
+        stat.execute("CREATE INDEX IDX_1 ON TEST((A + 3))");
+        assertEquals(4, table.getColumnIdLimit());
+        stat.execute("INSERT INTO TEST VALUES (1, 10), (2, 20)");
+        ResultSet rs = stat.executeQuery("SELECT ID FROM TEST WHERE A + 3 = 23 AND A + 2 = 22");
+        assertTrue(rs.next());
+        assertEquals(2, rs.getInt(1));
+        assertFalse(rs.next());
+        stat.execute("DROP TABLE TEST");
+    }
+
     private void testEnumIndex() throws SQLException {
         if (config.memory || config.networked) {
             return;
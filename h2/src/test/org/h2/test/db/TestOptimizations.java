@@ -5,6 +5,7 @@
  */
 package org.h2.test.db;
 
+import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -12,6 +13,7 @@
 import java.sql.Statement;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Random;
 import java.util.TreeSet;
@@ -54,6 +56,7 @@ public void test() throws Exception {
         testRowId();
         testSortIndex();
         testAutoAnalyze();
+        testBackgroundAnalyze();
         testInAndBetween();
         testNestedIn();
         testConstantIn1();
@@ -82,12 +85,132 @@ public void test() throws Exception {
         testMinMaxCountOptimization(true);
         testMinMaxCountOptimization(false);
         testOrderedIndexes();
+        testOrderByLimit();
         testIndexUseDespiteNullsFirst();
         testConvertOrToIn();
         testConditionAndOrDistributiveLaw();
+        testCompiledExpressions();
+        testJoinOrder();
+        testPlanCache();
+        testResultCache();
         deleteDb("optimizations");
     }
 
+    private void testJoinOrder() throws SQLException {
+        deleteDb("optimizations");
+        Connection conn = getConnection("optimizations");
+        Statement stat = conn.createStatement();
+        int count = 12;
+        StringBuilder buff = new StringBuilder("explain select * from ");
+        for (int i = 0; i < count; i++) {
+            stat.execute("create table t" + i + "(id int primary key, p int) " +
+                    "as select x, x from system_range(1, 100)");
+            // list the tables in reverse order
+            buff.append(i == 0 ? "" : ", ").append('t').append(count - 1 - i);
+        }
+        buff.append(" where t0.id = 5");
+        for (int i = 1; i < count; i++) {
+            buff.append(" and t").append(i).append(".id = t").append(i - 1).append(".p");
+        }
+        ResultSet rs = stat.executeQuery(buff.toString());
+        rs.next();
+        String plan = rs.getString(1);
+        assertFalse(plan, plan.contains("tableScan"));
+        // the tables are joined along the chain of conditions
+        int pos = plan.indexOf("FROM PUBLIC.T0\n");
+        assertTrue(plan, pos > 0);
+        for (int i = 1; i < count; i++) {
+            int next = plan.indexOf("JOIN PUBLIC.T" + i + "\n", pos);
+            assertTrue(plan, next > pos);
+            pos = next;
+        }
+        for (int i = 0; i < count; i++) {
+            stat.execute("drop table t" + i);
+        }
+        conn.close();
+    }
+
+    private void testPlanCache() throws SQLException {
+        deleteDb("optimizations");
+        Connection conn = getConnection("optimizations");
+        Statement stat = conn.createStatement();
+        stat.execute("create table a(id int primary key, x int) as select x, x from system_range(1, 10)");
+        stat.execute("create table b(id int primary key, x int) as select x, x from system_range(1, 1000)");
+        String sql = "explain select * from b, a where b.x >= a.x + 0 and b.x <= a.x + 0";
+        assertPlanStartsWith(conn, sql, "PUBLIC.B");
+        // the join order cached by the first session is not used after an
+        // index was created
+        stat.execute("create index idx_b_x on b(x)");
+        Connection conn2 = getConnection("optimizations");
+        assertPlanStartsWith(conn2, sql, "PUBLIC.A");
+        conn2.close();
+        stat.execute("create index idx_a_x on a(x)");
+        sql = "explain select * from b, a where b.x = a.x";
+        assertPlanStartsWith(conn, sql, "PUBLIC.A");
+        // and not after the number of rows changed a lot
+        stat.execute("insert into a select x, x from system_range(11, 5000)");
+        conn2 = getConnection("optimizations");
+        assertPlanStartsWith(conn2, sql, "PUBLIC.B");
+        conn2.close();
+        stat.execute("drop table a, b");
+        conn.close();
+    }
+
+    private void testResultCache() throws SQLException {
+        deleteDb("optimizations");
+        Connection conn = getConnection("optimizations");
+        Statement stat = conn.createStatement();
+        stat.execute("create table test(id int primary key, name varchar)");
+        stat.execute("insert into test values(1, 'a'), (2, 'b')");
+        stat.execute("alter table test set result_cache true");
+        String sql = "select name from test where id = ?";
+        Connection conn2 = getConnection("optimizations");
+        assertQueryResult(conn2, sql, 1, "a");
+        assertQueryResult(conn, sql, 1, "a");
+        assertQueryResult(conn, sql, 2, "b");
+        if (config.mvStore) {
+            // uncommitted changes are not shared
+            conn.setAutoCommit(false);
+            stat.execute("update test set name = 'c' where id = 1");
+            assertQueryResult(conn, sql, 1, "c");
+            assertQueryResult(conn2, sql, 1, "a");
+            conn.commit();
+            conn.setAutoCommit(true);
+        } else {
+            stat.execute("update test set name = 'c' where id = 1");
+        }
+        assertQueryResult(conn2, sql, 1, "c");
+        assertQueryResult(conn, sql, 1, "c");
+        // a new table with the same name
+        stat.execute("drop table test");
+        stat.execute("create table test(id int primary key, name varchar) as select 1, 'd'");
+        stat.execute("alter table test set result_cache true");
+        assertQueryResult(conn2, sql, 1, "d");
+        stat.execute("alter table test set result_cache false");
+        stat.execute("update test set name = 'e'");
+        assertQueryResult(conn2, sql, 1, "e");
+        conn2.close();
+        stat.execute("drop table test");
+        conn.close();
+    }
+
+    private void assertQueryResult(Connection conn, String sql, int param, String expected) throws SQLException {
+        PreparedStatement prep = conn.prepareStatement(sql);
+        prep.setInt(1, param);
+        ResultSet rs = prep.executeQuery();
+        assertTrue(rs.next());
+        assertEquals(expected, rs.getString(1));
+        assertFalse(rs.next());
+        prep.close();
+    }
+
+    private void assertPlanStartsWith(Connection conn, String sql, String table) throws SQLException {
+        ResultSet rs = conn.createStatement().executeQuery(sql);
+        rs.next();
+        String plan = rs.getString(1);
+        assertTrue(plan, plan.contains("FROM " + table + "\n"));
+    }
+
     private void testIdentityIndexUsage() throws Exception {
         Connection conn = getConnection("optimizations");
         Statement stat = conn.createStatement();
@@ -379,6 +502,41 @@ private void testAutoAnalyze() throws SQLException {
         conn.close();
     }
 
+    private void testBackgroundAnalyze() throws Exception {
+        if (config.memory || !config.mvStore) {
+            return;
+        }
+        deleteDb("optimizations");
+        Connection conn = getConnection("optimizations;ANALYZE_AUTO=100;ANALYZE_SAMPLE=1000");
+        Statement stat = conn.createStatement();
+        stat.execute("create table test(id int primary key, v int)");
+        stat.execute("insert into test select x, case when x < 900 then 0 else x end " +
+                "from system_range(1, 1000)");
+        // the statistics are calculated in the background from 100 rows
+        // picked from the whole table
+        ResultSet rs = null;
+        for (int i = 0; i < 1000; i++) {
+            rs = stat.executeQuery("select sample_rows, most_common_values, most_common_frequencies " +
+                    "from information_schema.column_statistics where column_name = 'V'");
+            if (rs.next()) {
+                break;
+            }
+            rs = null;
+            Thread.sleep(10);
+        }
+        assertTrue(rs != null);
+        assertEquals(100, rs.getInt(1));
+        Object[] values = (Object[]) rs.getArray(2).getArray();
+        Object[] frequencies = (Object[]) rs.getArray(3).getArray();
+        assertEquals(0, ((Number) values[0]).intValue());
+        assertTrue(((Number) frequencies[0]).doubleValue() > 0.5);
+        rs = stat.executeQuery("select selectivity from information_schema.columns " +
+                "where table_name = 'TEST' and column_name = 'ID'");
+        rs.next();
+        assertEquals(100, rs.getInt(1));
+        conn.close();
+    }
+
     private void testInAndBetween() throws SQLException {
         deleteDb("optimizations");
         Connection conn = getConnection("optimizations");
@@ -1044,6 +1202,54 @@ private void testOrderedIndexes() throws SQLException {
         conn.close();
     }
 
+    private void testOrderByLimit() throws SQLException {
+        deleteDb("optimizations");
+        Connection conn = getConnection("optimizations");
+        Statement stat = conn.createStatement();
+        stat.execute("SET MAX_MEMORY_ROWS 100");
+        stat.execute("CREATE TABLE TEST(ID INT PRIMARY KEY, V INT)");
+        int len = 1000;
+        int[] values = new int[len];
+        Random random = new Random(1);
+        PreparedStatement prep = conn.prepareStatement("INSERT INTO TEST VALUES(?, ?)");
+        for (int i = 0; i < len; i++) {
+            values[i] = random.nextInt(len) * len + i;
+            prep.setInt(1, i);
+            prep.setInt(2, values[i]);
+            prep.execute();
+        }
+        Arrays.sort(values);
+        // offset plus limit below and above the maximum number of rows in memory
+        int[][] limits = { { 0, 1 }, { 0, 10 }, { 35, 20 }, { 990, 20 }, { 50, 60 }, { 0, 500 } };
+        for (int[] l : limits) {
+            int offset = l[0], limit = l[1];
+            ResultSet rs = stat.executeQuery("SELECT V FROM TEST ORDER BY V LIMIT " + limit + " OFFSET " + offset);
+            for (int i = offset; i < Math.min(offset + limit, len); i++) {
+                assertTrue(rs.next());
+                assertEquals(values[i], rs.getInt(1));
+            }
+            assertFalse(rs.next());
+            rs = stat.executeQuery("SELECT V FROM TEST ORDER BY V DESC LIMIT " + limit + " OFFSET " + offset);
+            for (int i = len - 1 - offset; i >= Math.max(len - offset - limit, 0); i--) {
+                assertTrue(rs.next());
+                assertEquals(values[i], rs.getInt(1));
+            }
+            assertFalse(rs.next());
+        }
+        ResultSet rs = stat.executeQuery("SELECT V / 1000, COUNT(*) FROM TEST GROUP BY V / 1000 "
+                + "ORDER BY COUNT(*) DESC, V / 1000 FETCH FIRST 3 ROWS WITH TIES");
+        int rows = 0;
+        int count = Integer.MAX_VALUE;
+        while (rs.next()) {
+            assertTrue(rs.getInt(2) <= count);
+            count = rs.getInt(2);
+            rows++;
+        }
+        assertTrue(rows >= 3);
+        stat.execute("DROP TABLE TEST");
+        conn.close();
+    }
+
     private void testIndexUseDespiteNullsFirst() throws SQLException {
         deleteDb("optimizations");
         Connection conn = getConnection("optimizations");
@@ -1171,7 +1377,7 @@ private void testUseCoveringIndex() throws SQLException {
                 "FROM table_b b JOIN table_a a ON b.table_a_id = a.id GROUP BY b.table_a_id " +
                 "HAVING A.ACTIVE = TRUE");
         rs.next();
-        assertContains(rs.getString(1), "/* PUBLIC.TABLE_B_IDX: TABLE_A_ID = A.ID */");
+        assertContains(rs.getString(1), "/* merge join PUBLIC.TABLE_B_IDX: TABLE_A_ID = A.ID */");
 
         rs = stat.executeQuery("EXPLAIN ANALYZE SELECT MAX(id) FROM table_b GROUP BY table_a_id");
         rs.next();
@@ -1204,4 +1410,62 @@ private void testConditionAndOrDistributiveLaw() throws SQLException {
         assertTrue("engineer".equals(rs.getString("occupation")));
         conn.close();
     }
+
+    private void testCompiledExpressions() throws SQLException {
+        deleteDb("optimizations");
+        Connection conn = getConnection("optimizations;COMPILE_EXPRESSIONS=2;OPTIMIZE_REUSE_RESULTS=FALSE");
+        Statement stat = conn.createStatement();
+        stat.execute("CREATE TABLE TEST(ID INT PRIMARY KEY, A INT, B BIGINT, C SMALLINT, S VARCHAR)");
+        stat.execute("INSERT INTO TEST SELECT X, CASEWHEN(MOD(X, 7) = 0, NULL, MOD(X, 10)), " +
+                "CASEWHEN(MOD(X, 11) = 0, NULL, X * 1000), MOD(X, 3), 'x' || MOD(X, 4) FROM SYSTEM_RANGE(1, 500)");
+        String[] queries = {
+                "SELECT ID, A + C * 2, B / (C + 1), A % 3, A > ?, A IS NULL FROM TEST ORDER BY ID",
+                "SELECT ID FROM TEST WHERE (A > ? AND B < 300000 OR C = 2) AND NOT (A IS NULL) ORDER BY ID",
+                "SELECT ID, B - ? FROM TEST WHERE S <> 'x1' AND (A = 3 OR B IS NULL) ORDER BY ID",
+                "SELECT ID FROM TEST WHERE A <= ? OR A = NULL OR C - 1 <> 0 ORDER BY ID",
+        };
+        for (String sql : queries) {
+            PreparedStatement prep = conn.prepareStatement(sql);
+            String expected = null;
+            for (int i = 0; i < 4; i++) {
+                // the query is compiled on the second execution
+                prep.setInt(1, 5);
+                String result = getResult(prep.executeQuery());
+                if (expected == null) {
+                    expected = result;
+                } else {
+                    assertEquals(sql, expected, result);
+                }
+            }
+        }
+        PreparedStatement prep = conn.prepareStatement("SELECT A * 2147483647 FROM TEST WHERE ID = 1 OR ID = 2");
+        for (int i = 0; i < 4; i++) {
+            assertThrows(ErrorCode.NUMERIC_VALUE_OUT_OF_RANGE_1, prep).executeQuery();
+        }
+        prep = conn.prepareStatement("SELECT ID FROM TEST WHERE A / (C - 2) > 1");
+        for (int i = 0; i < 4; i++) {
+            assertThrows(ErrorCode.DIVISION_BY_ZERO_1, prep).executeQuery();
+        }
+        // the data type of a parameter changes after compilation
+        prep = conn.prepareStatement("SELECT ID FROM TEST WHERE ID < 10 AND A > ? ORDER BY ID");
+        for (int i = 0; i < 3; i++) {
+            prep.setInt(1, 5);
+            assertEquals("6 \n8 \n9 \n", getResult(prep.executeQuery()));
+        }
+        prep.setBigDecimal(1, new BigDecimal("5.5"));
+        assertEquals("6 \n8 \n9 \n", getResult(prep.executeQuery()));
+        conn.close();
+    }
+
+    private static String getResult(ResultSet rs) throws SQLException {
+        StringBuilder buff = new StringBuilder();
+        int columnCount = rs.getMetaData().getColumnCount();
+        while (rs.next()) {
+            for (int i = 1; i <= columnCount; i++) {
+                buff.append(rs.getString(i)).append(' ');
+            }
+            buff.append('\n');
+        }
+        return buff.toString();
+    }
 }
@@ -11,6 +11,9 @@
 import java.sql.Statement;
 
 import org.h2.api.ErrorCode;
+import org.h2.command.Command;
+import org.h2.engine.Session;
+import org.h2.jdbc.JdbcConnection;
 import org.h2.test.TestBase;
 import org.h2.test.TestDb;
 
@@ -33,6 +36,7 @@ public void test() throws Exception {
         deleteDb("queryCache");
         test1();
         testClearingCacheWithTableStructureChanges();
+        testSessionSettings();
         deleteDb("queryCache");
     }
 
@@ -107,4 +111,24 @@ private void testClearingCacheWithTableStructureChanges() throws Exception {
                     prepareStatement("SELECT * FROM TEST");
         }
     }
+
+    private void testSessionSettings() throws Exception {
+        if (config.networked) {
+            return;
+        }
+        try (Connection conn = getConnection("queryCache;QUERY_CACHE_SIZE=10")) {
+            Statement stat = conn.createStatement();
+            Session session = (Session) ((JdbcConnection) conn).getSession();
+            String sql = "SELECT * FROM SYSTEM_RANGE(1, 10)";
+            Command command = session.prepareLocal(sql);
+            command.close();
+            // settings that are used when running a statement only
+            stat.execute("SET LOCK_TIMEOUT 1000");
+            stat.execute("SET QUERY_TIMEOUT 0");
+            assertTrue(command == session.prepareLocal(sql));
+            command.close();
+            stat.execute("SET MODE REGULAR");
+            assertFalse(command == session.prepareLocal(sql));
+        }
+    }
 }
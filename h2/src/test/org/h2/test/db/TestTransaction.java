@@ -25,6 +25,25 @@
  */
 public class TestTransaction extends TestDb {
 
+    private static Connection updateConnection;
+
+    /**
+     * This method is called via reflection from the database. It changes the
+     * row with the given id using another connection, while the row is read
+     * by a query.
+     *
+     * @param id the id of the current row
+     * @return true
+     */
+    public static boolean updateRow(int id) throws SQLException {
+        Connection conn = updateConnection;
+        if (id == 3 && conn != null) {
+            updateConnection = null;
+            conn.createStatement().execute("update test set name = 'X' where id = 3");
+        }
+        return true;
+    }
+
     /**
      * Run just this test.
      *
@@ -45,6 +64,8 @@ public void test() throws SQLException {
         testRollback();
         testRollback2();
         testForUpdate();
+        testForUpdateNoWaitAndSkipLocked();
+        testReadOnlyHint();
         testSetTransaction();
         testReferential();
         testSavepoint();
@@ -218,6 +239,111 @@ private void testForUpdate() throws SQLException {
         conn.close();
     }
 
+    private void testReadOnlyHint() throws SQLException {
+        deleteDb("transaction");
+        Connection conn = getConnection("transaction");
+        Connection conn2 = getConnection("transaction");
+        Statement stat = conn.createStatement();
+        Statement stat2 = conn2.createStatement();
+        stat.execute("create table test(id int primary key, name varchar)");
+        stat.execute("insert into test values(1, 'A')");
+        conn.setReadOnly(true);
+        conn.setAutoCommit(false);
+        ResultSet rs = stat.executeQuery("select name from test");
+        assertTrue(rs.next());
+        assertEquals("A", rs.getString(1));
+        // writes are still allowed, a regular transaction is used
+        stat.execute("insert into test values(2, 'B')");
+        rs = stat.executeQuery("select count(*) from test");
+        rs.next();
+        assertEquals(2, rs.getInt(1));
+        rs = stat2.executeQuery("select count(*) from test");
+        rs.next();
+        assertEquals(1, rs.getInt(1));
+        conn.rollback();
+        rs = stat.executeQuery("select count(*) from test");
+        rs.next();
+        assertEquals(1, rs.getInt(1));
+        stat.execute("update test set name = 'C'");
+        conn.commit();
+        rs = stat2.executeQuery("select name from test");
+        rs.next();
+        assertEquals("C", rs.getString(1));
+        conn.setReadOnly(false);
+        conn.setAutoCommit(true);
+        stat.execute("drop table test");
+        conn2.close();
+        conn.close();
+    }
+
+    private void testForUpdateNoWaitAndSkipLocked() throws SQLException {
+        if (!config.mvStore) {
+            return;
+        }
+        deleteDb("transaction");
+        Connection conn = getConnection("transaction");
+        conn.setAutoCommit(false);
+        Statement stat = conn.createStatement();
+        stat.execute("create table test(id int primary key, name varchar)");
+        stat.execute("insert into test values(1, 'A'), (2, 'B'), (3, 'C'), (4, 'D')");
+        conn.commit();
+        ResultSet rs = stat.executeQuery("select id from test order by id fetch first 2 rows only "
+                + "for update skip locked");
+        assertTrue(rs.next());
+        assertEquals(1, rs.getInt(1));
+        assertTrue(rs.next());
+        assertEquals(2, rs.getInt(1));
+        assertFalse(rs.next());
+
+        Connection conn2 = getConnection("transaction");
+        conn2.setAutoCommit(false);
+        Statement stat2 = conn2.createStatement();
+        stat2.execute("set lock_timeout 5000");
+        long start = System.nanoTime();
+        assertThrows(ErrorCode.LOCK_TIMEOUT_1, stat2).
+                execute("select * from test where id = 1 for update nowait");
+        assertTrue(System.nanoTime() - start < 4_000_000_000L);
+        rs = stat2.executeQuery("select id from test order by id fetch first 2 rows only "
+                + "for update skip locked");
+        assertTrue(rs.next());
+        assertEquals(3, rs.getInt(1));
+        assertTrue(rs.next());
+        assertEquals(4, rs.getInt(1));
+        assertFalse(rs.next());
+        rs = stat2.executeQuery("select id from test for update skip locked");
+        assertTrue(rs.next());
+        assertEquals(3, rs.getInt(1));
+        assertTrue(rs.next());
+        assertEquals(4, rs.getInt(1));
+        assertFalse(rs.next());
+        stat2.execute("update test set name = 'E' where id = 4");
+        assertThrows(ErrorCode.LOCK_TIMEOUT_1, stat).
+                execute("select * from test where id = 4 for update nowait");
+        conn2.commit();
+        rs = stat.executeQuery("select id from test for update skip locked");
+        assertResultRowCount(4, rs);
+        conn.commit();
+
+        // the row is changed by another session after it was read, and
+        // doesn't match the condition anymore when it is locked
+        stat.execute("create alias update_row for \"" + getClass().getName() + ".updateRow\"");
+        conn.commit();
+        updateConnection = conn2;
+        conn2.setAutoCommit(true);
+        rs = stat.executeQuery("select id from test where name <> 'X' and update_row(id) "
+                + "order by id for update skip locked");
+        assertTrue(rs.next());
+        assertEquals(1, rs.getInt(1));
+        assertTrue(rs.next());
+        assertEquals(2, rs.getInt(1));
+        assertTrue(rs.next());
+        assertEquals(4, rs.getInt(1));
+        assertFalse(rs.next());
+        conn.commit();
+        conn2.close();
+        conn.close();
+    }
+
     private void testRollback() throws SQLException {
         deleteDb("transaction");
         Connection conn = getConnection("transaction");
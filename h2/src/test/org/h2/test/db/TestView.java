@@ -15,6 +15,7 @@
 import org.h2.jdbc.JdbcConnection;
 import org.h2.test.TestBase;
 import org.h2.test.TestDb;
+import org.h2.util.Task;
 
 /**
  * Test for views.
@@ -33,7 +34,7 @@ public static void main(String... a) throws Exception {
     }
 
     @Override
-    public void test() throws SQLException {
+    public void test() throws Exception {
         deleteDb("view");
         testSubSubQuery();
         testSubQueryViewIndexCache();
@@ -51,6 +52,8 @@ public void test() throws SQLException {
         testReferenceView();
         testViewAlterAndCommandCache();
         testViewConstraintFromColumnExpression();
+        testMaterializedView();
+        testMaterializedViewConcurrent();
         deleteDb("view");
     }
 
@@ -391,4 +394,101 @@ private void testViewConstraintFromColumnExpression() throws SQLException {
         conn.close();
         deleteDb("view");
     }
+    private void testMaterializedView() throws SQLException {
+        deleteDb("view");
+        Connection conn = getConnection("view");
+        Statement stat = conn.createStatement();
+        stat.execute("create table test(id int primary key, g int, x int not null)");
+        stat.execute("insert into test select x, mod(x, 3), x from system_range(1, 10)");
+        stat.execute("create materialized view test_sum as " +
+                "select g, count(*) c, sum(x) s from test group by g");
+        assertResult("22", stat, "select s from test_sum where g = 1");
+        conn.setAutoCommit(false);
+        stat.execute("update test set x = x + 100 where id = 1");
+        stat.execute("delete from test where id = 4");
+        assertResult("118", stat, "select s from test_sum where g = 1");
+        if (config.mvStore) {
+            // the changes are not visible to other sessions before the commit
+            Connection conn2 = getConnection("view");
+            assertResult("22", conn2.createStatement(), "select s from test_sum where g = 1");
+            conn2.close();
+        }
+        conn.rollback();
+        conn.setAutoCommit(true);
+        assertResult("22", stat, "select s from test_sum where g = 1");
+        assertResult("4", stat, "select c from test_sum where g = 1");
+        if (!config.memory) {
+            conn.close();
+            conn = getConnection("view");
+            stat = conn.createStatement();
+            stat.execute("insert into test values(11, 2, 11)");
+            assertResult("26", stat, "select s from test_sum where g = 2");
+        }
+        stat.execute("drop table test cascade");
+        conn.close();
+        deleteDb("view");
+    }
+
+    private void testMaterializedViewConcurrent() throws Exception {
+        deleteDb("view");
+        Connection conn = getConnection("view");
+        Statement stat = conn.createStatement();
+        stat.execute("create table test(id int primary key, g int, x int not null)");
+        stat.execute("create materialized view test_sum as " +
+                "select g, count(*) c, sum(x) s from test group by g");
+        Connection conn1 = getConnection("view");
+        Connection conn2 = getConnection("view");
+        conn1.setAutoCommit(false);
+        conn2.setAutoCommit(false);
+        conn2.createStatement().execute("set lock_timeout 10000");
+        // the first rows of a new group
+        insertConcurrently(conn1, conn2, "(1, 7, 10)", "(2, 7, 20)");
+        assertResult("1", stat, "select count(*) from test_sum where g = 7");
+        assertResult("2", stat, "select c from test_sum where g = 7");
+        assertResult("30", stat, "select s from test_sum where g = 7");
+        // rows of an existing group
+        insertConcurrently(conn1, conn2, "(3, 7, 1)", "(4, 7, 100)");
+        assertResult("1", stat, "select count(*) from test_sum where g = 7");
+        assertResult("4", stat, "select c from test_sum where g = 7");
+        assertResult("131", stat, "select s from test_sum where g = 7");
+        // the unique index does not apply to NULL
+        insertConcurrently(conn1, conn2, "(5, null, 10)", "(6, null, 20)");
+        assertResult("1", stat, "select count(*) from test_sum where g is null");
+        assertResult("30", stat, "select s from test_sum where g is null");
+        // a group that is removed and added again
+        conn1.setAutoCommit(true);
+        Statement stat1 = conn1.createStatement();
+        stat1.execute("delete from test where g = 7");
+        stat1.execute("insert into test values(7, 7, 5)");
+        assertResult("5", stat, "select s from test_sum where g = 7");
+        conn1.setAutoCommit(false);
+        stat1.execute("delete from test where g = 7");
+        stat1.execute("insert into test values(8, 7, 6)");
+        conn1.commit();
+        assertResult("1", stat, "select c from test_sum where g = 7");
+        assertResult("6", stat, "select s from test_sum where g = 7");
+        conn1.close();
+        conn2.close();
+        stat.execute("drop table test cascade");
+        conn.close();
+        deleteDb("view");
+    }
+
+    private void insertConcurrently(Connection conn1, final Connection conn2,
+            String row1, final String row2) throws Exception {
+        conn1.createStatement().execute("insert into test values" + row1);
+        Task t = new Task() {
+            @Override
+            public void call() throws Exception {
+                conn2.createStatement().execute("insert into test values" + row2);
+                conn2.commit();
+            }
+        };
+        t.execute();
+        // let the other transaction update the view before the commit
+        Thread.sleep(100);
+        conn1.commit();
+        t.get();
+    }
+
 }
@@ -135,6 +135,8 @@ public void test() throws Exception {
         testScript("default-and-on_update.sql");
         testScript("query-optimisations.sql");
         testScript("window.sql");
+        testScript("parallel.sql");
+        testScript("vectorized.sql");
         String decimal2;
         if (SysProperties.BIG_DECIMAL_IS_DECIMAL) {
             decimal2 = "decimal_decimal";
@@ -149,9 +151,10 @@ public void test() throws Exception {
                 "uuid", "varchar", "varchar-ignorecase" }) {
             testScript("datatypes/" + s + ".sql");
         }
-        for (String s : new String[] { "alterTableAdd", "alterTableDropColumn", "alterTableRename",
-                "createAlias", "createSequence", "createSynonym", "createTable", "createTrigger", "createView",
-                "dropDomain", "dropIndex", "dropSchema", "truncateTable" }) {
+        for (String s : new String[] { "alterTableAdd", "alterTableDropColumn", "alterTableRename", "analyze",
+                "createAlias", "createIndex", "createMaterializedView", "createSequence", "createSynonym",
+                "createTable", "createTrigger", "createView", "dropDomain", "dropIndex", "dropSchema",
+                "truncateTable" }) {
             testScript("ddl/" + s + ".sql");
         }
         for (String s : new String[] { "delete", "error_reporting", "insertIgnore", "merge", "mergeUsing", "replace",
@@ -161,9 +164,9 @@ public void test() throws Exception {
         for (String s : new String[] { "help" }) {
             testScript("other/" + s + ".sql");
         }
-        for (String s : new String[] { "any", "array-agg", "avg", "bit-and", "bit-or", "count", "envelope",
-                "every", "group-concat", "histogram", "max", "median", "min", "mode", "selectivity", "stddev-pop",
-                "stddev-samp", "sum", "var-pop", "var-samp" }) {
+        for (String s : new String[] { "any", "approx-count-distinct", "approx-percentile", "array-agg", "avg",
+                "bit-and", "bit-or", "count", "envelope", "every", "group-concat", "histogram", "max", "median", "min",
+                "mode", "selectivity", "stddev-pop", "stddev-samp", "sum", "var-pop", "var-samp" }) {
             testScript("functions/aggregate/" + s + ".sql");
         }
         for (String s : new String[] { "abs", "acos", "asin", "atan", "atan2",
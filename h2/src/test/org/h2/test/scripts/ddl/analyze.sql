@@ -0,0 +1,79 @@
+-- Copyright 2004-2018 H2 Group. Multiple-Licensed under the MPL 2.0,
+-- and the EPL 1.0 (http://h2database.com/html/license.html).
+-- Initial Developer: H2 Group
+--
+
+CREATE TABLE TEST(ID INT PRIMARY KEY, STATUS VARCHAR, V INT);
+> ok
+
+INSERT INTO TEST SELECT X, CASEWHEN(MOD(X, 100) = 0, 'NEW', 'DONE'), CASEWHEN(MOD(X, 250) = 0, NULL, X)
+    FROM SYSTEM_RANGE(1, 1000);
+> update count: 1000
+
+CREATE INDEX TEST_STATUS ON TEST(STATUS);
+> ok
+
+CREATE INDEX TEST_V ON TEST(V);
+> ok
+
+EXPLAIN SELECT ID FROM TEST WHERE STATUS = 'DONE' AND V < 5;
+>> SELECT ID FROM PUBLIC.TEST /* PUBLIC.TEST_STATUS: STATUS = 'DONE' */ WHERE (STATUS = 'DONE') AND (V < 5)
+
+SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMN_STATISTICS;
+>> 0
+
+ANALYZE TABLE TEST;
+> ok
+
+SELECT COLUMN_NAME, SAMPLE_ROWS, NULL_FRACTION, DISTINCT_COUNT, MOST_COMMON_VALUES, MOST_COMMON_FREQUENCIES
+    FROM INFORMATION_SCHEMA.COLUMN_STATISTICS WHERE TABLE_NAME = 'TEST' ORDER BY COLUMN_NAME;
+> COLUMN_NAME SAMPLE_ROWS NULL_FRACTION DISTINCT_COUNT MOST_COMMON_VALUES MOST_COMMON_FREQUENCIES
+> ----------- ----------- ------------- -------------- ------------------ -----------------------
+> ID          1000        0.0           1000           []                 []
+> STATUS      1000        0.0           2              [DONE, NEW]        [0.99, 0.01]
+> V           1000        0.004         996            []                 []
+> rows (ordered): 3
+
+SELECT HISTOGRAM_BOUNDS FROM INFORMATION_SCHEMA.COLUMN_STATISTICS WHERE COLUMN_NAME = 'V';
+>> [1, 50, 100, 150, 200, 249, 300, 350, 400, 449, 499, 550, 600, 649, 699, 749, 800, 849, 899, 949, 999]
+
+-- the memory for the sample depends on the number of rows, not on the sample size
+ANALYZE TABLE TEST SAMPLE_SIZE 100000000;
+> ok
+
+SELECT SAMPLE_ROWS FROM INFORMATION_SCHEMA.COLUMN_STATISTICS WHERE COLUMN_NAME = 'ID';
+>> 1000
+
+-- most rows have STATUS = 'DONE'
+EXPLAIN SELECT ID FROM TEST WHERE STATUS = 'DONE' AND V < 5;
+>> SELECT ID FROM PUBLIC.TEST /* PUBLIC.TEST_V: V < 5 */ WHERE (STATUS = 'DONE') AND (V < 5)
+
+EXPLAIN SELECT ID FROM TEST WHERE STATUS = 'DONE' AND V > 990;
+>> SELECT ID FROM PUBLIC.TEST /* PUBLIC.TEST_V: V > 990 */ WHERE (STATUS = 'DONE') AND (V > 990)
+
+EXPLAIN SELECT ID FROM TEST WHERE STATUS = 'NEW' AND V < 500;
+>> SELECT ID FROM PUBLIC.TEST /* PUBLIC.TEST_STATUS: STATUS = 'NEW' */ WHERE (STATUS = 'NEW') AND (V < 500)
+
+CREATE MEMORY TABLE TEST2(A INT SELECTIVITY 10 STATISTICS ARRAY [10, 1, 3, ARRAY ['5'], ARRAY [6], ARRAY [1, 3]]);
+> ok
+
+SELECT COLUMN_NAME, SAMPLE_ROWS, NULL_FRACTION, DISTINCT_COUNT, MOST_COMMON_VALUES, MOST_COMMON_FREQUENCIES,
+    HISTOGRAM_BOUNDS FROM INFORMATION_SCHEMA.COLUMN_STATISTICS WHERE TABLE_NAME = 'TEST2';
+> COLUMN_NAME SAMPLE_ROWS NULL_FRACTION DISTINCT_COUNT MOST_COMMON_VALUES MOST_COMMON_FREQUENCIES HISTOGRAM_BOUNDS
+> ----------- ----------- ------------- -------------- ------------------ ----------------------- ----------------
+> A           10          0.1           3              [5]                [0.6]                   [1, 3]
+> rows: 1
+
+SCRIPT NODATA NOPASSWORDS NOSETTINGS TABLE TEST2;
+> SCRIPT
+> -------------------------------------------------------------------------------------------------------------------------
+> -- 0 +/- SELECT COUNT(*) FROM PUBLIC.TEST2;
+> CREATE MEMORY TABLE PUBLIC.TEST2( A INT SELECTIVITY 10 STATISTICS ARRAY [10, 1, 3, ARRAY [5], ARRAY [6], ARRAY [1, 3]] );
+> CREATE USER IF NOT EXISTS SA PASSWORD '' ADMIN;
+> rows: 3
+
+CREATE TABLE TEST3(A INT STATISTICS ARRAY [10, 1]);
+> exception INVALID_VALUE_2
+
+DROP TABLE TEST, TEST2;
+> ok
@@ -0,0 +1,282 @@
+-- Copyright 2004-2018 H2 Group. Multiple-Licensed under the MPL 2.0,
+-- and the EPL 1.0 (http://h2database.com/html/license.html).
+-- Initial Developer: H2 Group
+--
+
+CREATE TABLE TEST(ID INT PRIMARY KEY, A INT, B VARCHAR, C VARCHAR);
+> ok
+
+INSERT INTO TEST VALUES (1, 10, 'a', 'x'), (2, 20, 'b', 'y'), (3, 10, 'c', NULL), (4, 30, 'd', 'z');
+> update count: 4
+
+CREATE INDEX TEST_A_IDX ON TEST(A) INCLUDE(B);
+> ok
+
+SELECT SQL FROM INFORMATION_SCHEMA.INDEXES WHERE INDEX_NAME = 'TEST_A_IDX';
+>> CREATE INDEX PUBLIC.TEST_A_IDX ON PUBLIC.TEST(A) INCLUDE(B)
+
+SELECT B FROM TEST WHERE A = 10 ORDER BY B;
+> B
+> -
+> a
+> c
+> rows (ordered): 2
+
+SELECT B, C FROM TEST WHERE A = 10 ORDER BY B;
+> B C
+> - ----
+> a x
+> c null
+> rows (ordered): 2
+
+UPDATE TEST SET B = 'e' WHERE ID = 3;
+> update count: 1
+
+SELECT A, B FROM TEST WHERE A >= 10 ORDER BY A, B;
+> A  B
+> -- -
+> 10 a
+> 10 e
+> 20 b
+> 30 d
+> rows (ordered): 4
+
+DELETE FROM TEST WHERE ID = 1;
+> update count: 1
+
+SELECT B FROM TEST WHERE A = 10;
+>> e
+
+SELECT MIN(A), MAX(A) FROM TEST;
+> MIN(A) MAX(A)
+> ------ ------
+> 10     30
+> rows: 1
+
+CREATE INDEX TEST_C_IDX ON TEST(C) INCLUDE(A, A);
+> exception DUPLICATE_COLUMN_NAME_1
+
+CREATE INDEX TEST_C_IDX ON TEST(C) INCLUDE(X);
+> exception COLUMN_NOT_FOUND_1
+
+ALTER TABLE TEST DROP COLUMN B;
+> exception COLUMN_IS_REFERENCED_1
+
+ALTER TABLE TEST ALTER COLUMN B VARCHAR(10);
+> ok
+
+SELECT SQL FROM INFORMATION_SCHEMA.INDEXES WHERE INDEX_NAME = 'TEST_A_IDX';
+>> CREATE INDEX PUBLIC.TEST_A_IDX ON PUBLIC.TEST(A) INCLUDE(B)
+
+SELECT B FROM TEST WHERE A = 10;
+>> e
+
+DROP INDEX TEST_A_IDX;
+> ok
+
+ALTER TABLE TEST DROP COLUMN B;
+> ok
+
+DROP TABLE TEST;
+> ok
+
+CREATE TABLE TEST(A INT, B CLOB);
+> ok
+
+CREATE INDEX TEST_A_IDX ON TEST(A) INCLUDE(B);
+> exception FEATURE_NOT_SUPPORTED_1
+
+DROP TABLE TEST;
+> ok
+
+CREATE TABLE TEST(ID INT PRIMARY KEY, STATUS VARCHAR, V INT);
+> ok
+
+INSERT INTO TEST SELECT X, CASE WHEN MOD(X, 10) = 0 THEN 'PENDING' ELSE 'DONE' END, X FROM SYSTEM_RANGE(1, 100);
+> update count: 100
+
+CREATE INDEX TEST_PENDING_IDX ON TEST(V) WHERE STATUS = 'PENDING';
+> ok
+
+SELECT SQL FROM INFORMATION_SCHEMA.INDEXES WHERE INDEX_NAME = 'TEST_PENDING_IDX';
+>> CREATE INDEX PUBLIC.TEST_PENDING_IDX ON PUBLIC.TEST(V) WHERE STATUS = 'PENDING'
+
+EXPLAIN SELECT ID FROM TEST WHERE STATUS = 'PENDING' AND V > 50;
+>> SELECT ID FROM PUBLIC.TEST /* PUBLIC.TEST_PENDING_IDX: V > 50 */ WHERE (STATUS = 'PENDING') AND (V > 50)
+
+EXPLAIN SELECT ID FROM TEST T WHERE T.STATUS = 'PENDING' AND T.V > 50;
+>> SELECT ID FROM PUBLIC.TEST T /* PUBLIC.TEST_PENDING_IDX: V > 50 */ WHERE (T.STATUS = 'PENDING') AND (T.V > 50)
+
+EXPLAIN SELECT ID FROM TEST WHERE V > 50;
+>> SELECT ID FROM PUBLIC.TEST /* PUBLIC.TEST.tableScan */ WHERE V > 50
+
+EXPLAIN SELECT ID FROM TEST WHERE STATUS = 'DONE' AND V > 50;
+>> SELECT ID FROM PUBLIC.TEST /* PUBLIC.TEST.tableScan */ WHERE (STATUS = 'DONE') AND (V > 50)
+
+SELECT ID FROM TEST WHERE STATUS = 'PENDING' AND V > 50 ORDER BY ID;
+> ID
+> ---
+> 60
+> 70
+> 80
+> 90
+> 100
+> rows (ordered): 5
+
+SELECT MIN(V), MAX(V) FROM TEST;
+> MIN(V) MAX(V)
+> ------ ------
+> 1      100
+> rows: 1
+
+UPDATE TEST SET STATUS = 'PENDING' WHERE ID = 55;
+> update count: 1
+
+UPDATE TEST SET STATUS = 'DONE' WHERE ID = 60;
+> update count: 1
+
+UPDATE TEST SET V = 95 WHERE ID = 70;
+> update count: 1
+
+DELETE FROM TEST WHERE ID = 80;
+> update count: 1
+
+SELECT ID, V FROM TEST WHERE STATUS = 'PENDING' AND V > 50 ORDER BY ID;
+> ID  V
+> --- ---
+> 55  55
+> 70  95
+> 90  90
+> 100 100
+> rows (ordered): 4
+
+ALTER TABLE TEST DROP COLUMN STATUS;
+> exception COLUMN_IS_REFERENCED_1
+
+DROP INDEX TEST_PENDING_IDX;
+> ok
+
+CREATE INDEX TEST_V_IDX ON TEST(V) WHERE V IS NOT NULL AND V >= 10;
+> ok
+
+EXPLAIN SELECT ID FROM TEST WHERE V = 20;
+>> SELECT ID FROM PUBLIC.TEST /* PUBLIC.TEST_V_IDX: V = 20 */ WHERE V = 20
+
+EXPLAIN SELECT ID FROM TEST WHERE V > 9;
+>> SELECT ID FROM PUBLIC.TEST /* PUBLIC.TEST.tableScan */ WHERE V > 9
+
+SELECT COUNT(*) FROM TEST WHERE V BETWEEN 10 AND 20;
+>> 11
+
+CREATE UNIQUE INDEX TEST_U_IDX ON TEST(V) WHERE ID > 1000;
+> ok
+
+INSERT INTO TEST VALUES (1001, 'PENDING', 1), (1002, 'PENDING', 2);
+> update count: 2
+
+INSERT INTO TEST VALUES (1003, 'PENDING', 1);
+> exception DUPLICATE_KEY_1
+
+CREATE INDEX TEST_R_IDX ON TEST(V) WHERE RAND() > 0.5;
+> exception FEATURE_NOT_SUPPORTED_1
+
+CREATE INDEX TEST_R_IDX ON TEST(V) WHERE V IN (SELECT X FROM SYSTEM_RANGE(1, 2));
+> exception FEATURE_NOT_SUPPORTED_1
+
+DROP TABLE TEST;
+> ok
+
+CREATE TABLE TEST(ID INT PRIMARY KEY, EMAIL VARCHAR, TS TIMESTAMP);
+> ok
+
+INSERT INTO TEST SELECT X, 'User' || X || '@h2.org', TIMESTAMP '2018-01-01 10:00:00' + X * INTERVAL '1' HOUR
+    FROM SYSTEM_RANGE(1, 100);
+> update count: 100
+
+CREATE INDEX TEST_EMAIL_IDX ON TEST(UPPER(EMAIL));
+> ok
+
+CREATE INDEX TEST_DAY_IDX ON TEST(CAST(TS AS DATE) DESC, ID);
+> ok
+
+SELECT INDEX_NAME, COLUMN_NAME, SQL FROM INFORMATION_SCHEMA.INDEXES
+    WHERE TABLE_NAME = 'TEST' AND INDEX_TYPE_NAME = 'INDEX' ORDER BY INDEX_NAME, ORDINAL_POSITION;
+> INDEX_NAME     COLUMN_NAME      SQL
+> -------------- ---------------- --------------------------------------------------------------------------
+> TEST_DAY_IDX   CAST(TS AS DATE) CREATE INDEX PUBLIC.TEST_DAY_IDX ON PUBLIC.TEST(CAST(TS AS DATE) DESC, ID)
+> TEST_DAY_IDX   ID               CREATE INDEX PUBLIC.TEST_DAY_IDX ON PUBLIC.TEST(CAST(TS AS DATE) DESC, ID)
+> TEST_EMAIL_IDX UPPER(EMAIL)     CREATE INDEX PUBLIC.TEST_EMAIL_IDX ON PUBLIC.TEST(UPPER(EMAIL))
+> rows (ordered): 3
+
+EXPLAIN SELECT ID FROM TEST WHERE UPPER(EMAIL) = 'USER5@H2.ORG';
+>> SELECT ID FROM PUBLIC.TEST /* PUBLIC.TEST_EMAIL_IDX: UPPER(EMAIL) = 'USER5@H2.ORG' */ WHERE UPPER(EMAIL) = 'USER5@H2.ORG'
+
+EXPLAIN SELECT T.ID FROM TEST T WHERE UPPER(T.EMAIL) IN ('USER5@H2.ORG', 'USER7@H2.ORG');
+>> SELECT T.ID FROM PUBLIC.TEST T /* PUBLIC.TEST_EMAIL_IDX: UPPER(EMAIL) IN('USER5@H2.ORG', 'USER7@H2.ORG') */ WHERE UPPER(T.EMAIL) IN('USER5@H2.ORG', 'USER7@H2.ORG')
+
+EXPLAIN SELECT ID FROM TEST WHERE LOWER(EMAIL) = 'user5@h2.org';
+>> SELECT ID FROM PUBLIC.TEST /* PUBLIC.TEST.tableScan */ WHERE LOWER(EMAIL) = 'user5@h2.org'
+
+SELECT ID FROM TEST T WHERE UPPER(T.EMAIL) IN ('USER5@H2.ORG', 'USER7@H2.ORG');
+> ID
+> --
+> 5
+> 7
+> rows: 2
+
+EXPLAIN SELECT COUNT(*) FROM TEST WHERE CAST(TS AS DATE) = DATE '2018-01-02';
+>> SELECT COUNT(*) FROM PUBLIC.TEST /* PUBLIC.TEST_DAY_IDX: CAST(TS AS DATE) = DATE '2018-01-02' */ WHERE CAST(TS AS DATE) = DATE '2018-01-02'
+
+SELECT COUNT(*) FROM TEST WHERE CAST(TS AS DATE) = DATE '2018-01-02';
+>> 24
+
+SELECT COUNT(*) FROM TEST WHERE CAST(TS AS DATE) >= DATE '2018-01-02' AND CAST(TS AS DATE) < DATE '2018-01-04';
+>> 48
+
+UPDATE TEST SET EMAIL = 'New@h2.org' WHERE ID = 5;
+> update count: 1
+
+DELETE FROM TEST WHERE ID = 7;
+> update count: 1
+
+SELECT ID, EMAIL FROM TEST WHERE UPPER(EMAIL) IN ('USER5@H2.ORG', 'USER7@H2.ORG', 'NEW@H2.ORG');
+> ID EMAIL
+> -- ----------
+> 5  New@h2.org
+> rows: 1
+
+ALTER TABLE TEST ALTER COLUMN EMAIL RENAME TO MAIL;
+> ok
+
+SELECT SQL FROM INFORMATION_SCHEMA.INDEXES WHERE INDEX_NAME = 'TEST_EMAIL_IDX';
+>> CREATE INDEX PUBLIC.TEST_EMAIL_IDX ON PUBLIC.TEST(UPPER(MAIL))
+
+ALTER TABLE TEST ADD COLUMN V INT;
+> ok
+
+SELECT ID FROM TEST WHERE UPPER(MAIL) = 'USER9@H2.ORG';
+>> 9
+
+ALTER TABLE TEST DROP COLUMN MAIL;
+> exception COLUMN_IS_REFERENCED_1
+
+CREATE UNIQUE INDEX TEST_LOWER_IDX ON TEST(LOWER(MAIL));
+> ok
+
+INSERT INTO TEST VALUES (101, 'USER9@h2.org', NULL, NULL);
+> exception DUPLICATE_KEY_1
+
+CREATE INDEX TEST_R_IDX ON TEST(RAND());
+> exception FEATURE_NOT_SUPPORTED_1
+
+DROP TABLE TEST;
+> ok
+
+CREATE TABLE TEST(ID INT NOT NULL);
+> ok
+
+CREATE PRIMARY KEY ON TEST(ABS(ID));
+> exception FEATURE_NOT_SUPPORTED_1
+
+DROP TABLE TEST;
+> ok
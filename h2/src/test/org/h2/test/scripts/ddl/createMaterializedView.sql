@@ -0,0 +1,118 @@
+-- Copyright 2004-2018 H2 Group. Multiple-Licensed under the MPL 2.0,
+-- and the EPL 1.0 (http://h2database.com/html/license.html).
+-- Initial Developer: H2 Group
+--
+
+CREATE TABLE TEST(ID INT PRIMARY KEY, G VARCHAR, X INT, Y INT NOT NULL);
+> ok
+
+INSERT INTO TEST VALUES (1, 'a', 1, 10), (2, 'a', NULL, 20), (3, 'b', 3, 30), (4, NULL, 4, 40);
+> update count: 4
+
+CREATE MATERIALIZED VIEW TEST_F AS SELECT ID, X * 2 D FROM TEST WHERE Y > 15;
+> ok
+
+CREATE MATERIALIZED VIEW TEST_G(G, C, CX, SX, SY) AS SELECT G, COUNT(*), COUNT(X), SUM(X), SUM(Y) FROM TEST GROUP BY G;
+> ok
+
+CREATE MATERIALIZED VIEW TEST_M AS SELECT MAX(X) M FROM TEST;
+> ok
+
+INSERT INTO TEST VALUES (5, 'b', NULL, 50), (6, 'c', 6, 60);
+> update count: 2
+
+UPDATE TEST SET X = 100 WHERE ID = 2;
+> update count: 1
+
+UPDATE TEST SET G = 'c' WHERE ID = 3;
+> update count: 1
+
+DELETE FROM TEST WHERE ID = 1;
+> update count: 1
+
+SELECT * FROM TEST_F ORDER BY ID;
+> ID D
+> -- ----
+> 2  200
+> 3  6
+> 4  8
+> 5  null
+> 6  12
+> rows (ordered): 5
+
+SELECT * FROM TEST_G ORDER BY G;
+> G    C CX SX   SY
+> ---- - -- ---- --
+> null 1 1  4    40
+> a    1 1  100  20
+> b    1 0  null 50
+> c    2 2  9    90
+> rows (ordered): 4
+
+SELECT * FROM TEST_M;
+> M
+> -
+> 4
+> rows: 1
+
+REFRESH MATERIALIZED VIEW TEST_M;
+> ok
+
+SELECT * FROM TEST_M;
+> M
+> ---
+> 100
+> rows: 1
+
+INSERT INTO TEST_G VALUES ('d', 1, 1, 1, 1);
+> exception FEATURE_NOT_SUPPORTED_1
+
+DELETE FROM TEST_F;
+> exception FEATURE_NOT_SUPPORTED_1
+
+ALTER TABLE TEST_F ADD COLUMN Z INT;
+> exception FEATURE_NOT_SUPPORTED_1
+
+DROP TABLE TEST RESTRICT;
+> exception CANNOT_DROP_2
+
+REFRESH MATERIALIZED VIEW TEST;
+> exception VIEW_NOT_FOUND_1
+
+ALTER TABLE TEST DROP COLUMN Y;
+> exception COLUMN_IS_REFERENCED_1
+
+ALTER TABLE TEST ALTER COLUMN X BIGINT;
+> ok
+
+INSERT INTO TEST VALUES (7, 'a', 7, 70);
+> update count: 1
+
+SELECT * FROM TEST_G ORDER BY G;
+> G    C CX SX   SY
+> ---- - -- ---- --
+> null 1 1  4    40
+> a    2 2  107  90
+> b    1 0  null 50
+> c    2 2  9    90
+> rows (ordered): 4
+
+TRUNCATE TABLE TEST;
+> ok
+
+SELECT * FROM TEST_G;
+> G C CX SX SY
+> - - -- -- --
+> rows: 0
+
+DROP MATERIALIZED VIEW TEST_F;
+> ok
+
+DROP MATERIALIZED VIEW TEST;
+> exception VIEW_NOT_FOUND_1
+
+DROP TABLE TEST CASCADE;
+> ok
+
+SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_SCHEMA = 'PUBLIC';
+>> 0
@@ -437,6 +437,28 @@ SELECT ID FROM TEST GROUP BY VALUE FOR UPDATE;
 SELECT 1 FROM TEST HAVING TRUE FOR UPDATE;
 > exception FOR_UPDATE_IS_NOT_ALLOWED_IN_DISTINCT_OR_GROUPED_SELECT
 
+SELECT ID, VALUE FROM TEST WHERE ID > 1 FOR UPDATE SKIP LOCKED;
+> ID VALUE
+> -- -----
+> 2  1
+> 3  2
+> rows: 2
+
+SELECT ID FROM TEST WHERE ID = 1 FOR UPDATE NOWAIT;
+>> 1
+
+EXPLAIN SELECT ID FROM TEST FOR UPDATE NOWAIT;
+>> SELECT ID FROM PUBLIC.TEST /* PUBLIC.TEST.tableScan */ FOR UPDATE NOWAIT
+
+EXPLAIN SELECT ID FROM TEST FOR UPDATE SKIP LOCKED;
+>> SELECT ID FROM PUBLIC.TEST /* PUBLIC.TEST.tableScan */ FOR UPDATE SKIP LOCKED
+
+EXPLAIN SELECT ID FROM TEST UNION ALL SELECT ID FROM TEST FOR UPDATE SKIP LOCKED;
+>> (SELECT ID FROM PUBLIC.TEST /* PUBLIC.TEST.tableScan */ FOR UPDATE SKIP LOCKED) UNION ALL (SELECT ID FROM PUBLIC.TEST /* PUBLIC.TEST.tableScan */ FOR UPDATE SKIP LOCKED) FOR UPDATE SKIP LOCKED
+
+SELECT ID FROM TEST FOR UPDATE SKIP;
+> exception SYNTAX_ERROR_2
+
 DROP TABLE TEST;
 > ok
 
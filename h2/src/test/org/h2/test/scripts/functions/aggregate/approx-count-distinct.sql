@@ -0,0 +1,67 @@
+-- Copyright 2004-2018 H2 Group. Multiple-Licensed under the MPL 2.0,
+-- and the EPL 1.0 (http://h2database.com/html/license.html).
+-- Initial Developer: H2 Group
+--
+
+create table test(v int);
+> ok
+
+select approx_count_distinct(v) from test;
+>> 0
+
+insert into test values (1), (2), (2), (null), (3);
+> update count: 5
+
+select approx_count_distinct(v) from test;
+>> 3
+
+insert into test select mod(x, 100000) from system_range(1, 200000);
+> update count: 200000
+
+-- the error is less than 2%
+select abs(approx_count_distinct(v) - 100000) < 2000 from test;
+>> TRUE
+
+select v / 10000 g, abs(approx_count_distinct(v) - count(distinct v)) < 200 from test
+    where v is not null group by g order by g;
+> G ABS((APPROX_COUNT_DISTINCT(V) - COUNT(DISTINCT V))) < 200
+> - ---------------------------------------------------------
+> 0 TRUE
+> 1 TRUE
+> 2 TRUE
+> 3 TRUE
+> 4 TRUE
+> 5 TRUE
+> 6 TRUE
+> 7 TRUE
+> 8 TRUE
+> 9 TRUE
+> rows (ordered): 10
+
+select approx_count_distinct(v) filter (where v < 100) from test;
+>> 100
+
+select approx_count_distinct(v) over (order by v rows between 2 preceding and current row) c
+    from test where v < 3 order by v;
+> C
+> -
+> 1
+> 1
+> 2
+> 2
+> 1
+> 2
+> 2
+> 1
+> 1
+> rows (ordered): 9
+
+drop table test;
+> ok
+
+-- values with the same 32-bit hash code
+select approx_count_distinct(c1) from (values (cast(0 as bigint)), (cast(4294967297 as bigint)));
+>> 2
+
+select approx_count_distinct(c1) from (values ('Aa'), ('BB'));
+>> 2
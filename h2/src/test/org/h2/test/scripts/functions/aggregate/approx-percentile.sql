@@ -0,0 +1,69 @@
+-- Copyright 2004-2018 H2 Group. Multiple-Licensed under the MPL 2.0,
+-- and the EPL 1.0 (http://h2database.com/html/license.html).
+-- Initial Developer: H2 Group
+--
+
+create table test(v int);
+> ok
+
+select approx_percentile(v, 0.5), approx_median(v) from test;
+> APPROX_PERCENTILE(V, 0.5) APPROX_MEDIAN(V)
+> ------------------------- ----------------
+> null                      null
+> rows: 1
+
+insert into test values (20), (20), (10), (null);
+> update count: 4
+
+select approx_median(v), approx_percentile(v, 0), approx_percentile(v, 1) from test;
+> APPROX_MEDIAN(V) APPROX_PERCENTILE(V, 0) APPROX_PERCENTILE(V, 1)
+> ---------------- ----------------------- -----------------------
+> 20.0             10.0                    20.0
+> rows: 1
+
+insert into test values (10);
+> update count: 1
+
+select approx_median(v) from test;
+>> 15.0
+
+delete from test;
+> update count: 5
+
+insert into test select x from system_range(1, 100000);
+> update count: 100000
+
+-- the error of the rank is less than 1%
+select abs(approx_percentile(v, 0.5) - 50000) < 1000, abs(approx_percentile(v, 0.99) - 99000) < 100,
+    abs(approx_percentile(v, 0.001) - 100) < 10 from test;
+> ABS((APPROX_PERCENTILE(V, 0.5) - 50000)) < 1000 ABS((APPROX_PERCENTILE(V, 0.99) - 99000)) < 100 ABS((APPROX_PERCENTILE(V, 0.001) - 100)) < 10
+> ----------------------------------------------- ----------------------------------------------- ---------------------------------------------
+> TRUE                                            TRUE                                            TRUE
+> rows: 1
+
+select mod(v, 4) g, abs(approx_percentile(v, 0.9) - 90000) < 1000 from test group by g order by g;
+> G ABS((APPROX_PERCENTILE(V, 0.9) - 90000)) < 1000
+> - -----------------------------------------------
+> 0 TRUE
+> 1 TRUE
+> 2 TRUE
+> 3 TRUE
+> rows (ordered): 4
+
+select approx_percentile(v, 1.5) from test;
+> exception INVALID_VALUE_2
+
+select approx_percentile(v, v / 100000.0) from test;
+> exception INVALID_VALUE_2
+
+select approx_percentile(v, 1.0 / 2) from test where v = 1;
+> APPROX_PERCENTILE(V, 0.5)
+> -------------------------
+> 1.0
+> rows: 1
+
+select approx_percentile(cast(v as varchar), 0.5) from test;
+> exception SUM_OR_AVG_ON_WRONG_DATATYPE_1
+
+drop table test;
+> ok
@@ -335,8 +335,16 @@ EXPLAIN SELECT * FROM TEST WHERE A = 0;
 EXPLAIN SELECT * FROM TEST WHERE A = 0 AND B >= 0;
 >> SELECT TEST.A, TEST.B, TEST.C FROM PUBLIC.TEST /* PUBLIC.T_A_B: A = 0 AND B >= 0 */ WHERE (A = 0) AND (B >= 0)
 
+-- the table is also analyzed automatically, but in the background
+ANALYZE TABLE TEST;
+> ok
+
+-- almost all rows have A > 0
 EXPLAIN SELECT * FROM TEST WHERE A > 0 AND B >= 0;
->> SELECT TEST.A, TEST.B, TEST.C FROM PUBLIC.TEST /* PUBLIC.T_A_B: A > 0 AND B >= 0 */ WHERE (A > 0) AND (B >= 0)
+>> SELECT TEST.A, TEST.B, TEST.C FROM PUBLIC.TEST /* PUBLIC.TEST.tableScan */ WHERE (A > 0) AND (B >= 0)
+
+EXPLAIN SELECT * FROM TEST WHERE A > 25 AND B >= 0;
+>> SELECT TEST.A, TEST.B, TEST.C FROM PUBLIC.TEST /* PUBLIC.T_A_B: A > 25 AND B >= 0 */ WHERE (A > 25) AND (B >= 0)
 
 -- Test that creation order of indexes has no effect
 CREATE INDEX T_A2 ON TEST(A);
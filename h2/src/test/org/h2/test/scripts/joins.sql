@@ -40,10 +40,10 @@ create table test(a int, b int) as select x, x from system_range(1, 100);
 
 -- the table t1 should be processed first
 explain select * from test t2, test t1 where t1.a=1 and t1.b = t2.b;
->> SELECT T2.A, T2.B, T1.A, T1.B FROM PUBLIC.TEST T1 /* PUBLIC.TEST.tableScan */ /* WHERE T1.A = 1 */ INNER JOIN PUBLIC.TEST T2 /* PUBLIC.TEST.tableScan */ ON 1=1 WHERE (T1.A = 1) AND (T1.B = T2.B)
+>> SELECT T2.A, T2.B, T1.A, T1.B FROM PUBLIC.TEST T2 /* PUBLIC.TEST.tableScan */ INNER JOIN PUBLIC.TEST T1 /* hash join PUBLIC.TEST.tableScan: A = 1 AND B = T2.B */ ON 1=1 WHERE (T1.A = 1) AND (T1.B = T2.B)
 
 explain select * from test t1, test t2 where t1.a=1 and t1.b = t2.b;
->> SELECT T1.A, T1.B, T2.A, T2.B FROM PUBLIC.TEST T1 /* PUBLIC.TEST.tableScan */ /* WHERE T1.A = 1 */ INNER JOIN PUBLIC.TEST T2 /* PUBLIC.TEST.tableScan */ ON 1=1 WHERE (T1.A = 1) AND (T1.B = T2.B)
+>> SELECT T1.A, T1.B, T2.A, T2.B FROM PUBLIC.TEST T2 /* PUBLIC.TEST.tableScan */ INNER JOIN PUBLIC.TEST T1 /* hash join PUBLIC.TEST.tableScan: A = 1 AND B = T2.B */ ON 1=1 WHERE (T1.A = 1) AND (T1.B = T2.B)
 
 drop table test;
 > ok
@@ -254,7 +254,7 @@ explain select * from test1
 inner join test2 on test1.id=test2.id left
 outer join test3 on test2.id=test3.id
 where test3.id is null;
-#+mvStore#>> SELECT TEST1.ID, TEST2.ID, TEST3.ID FROM PUBLIC.TEST2 /* PUBLIC.TEST2.tableScan */ LEFT OUTER JOIN PUBLIC.TEST3 /* PUBLIC.PRIMARY_KEY_4C0: ID = TEST2.ID */ ON TEST2.ID = TEST3.ID INNER JOIN PUBLIC.TEST1 /* PUBLIC.PRIMARY_KEY_4: ID = TEST2.ID */ ON 1=1 WHERE (TEST3.ID IS NULL) AND (TEST1.ID = TEST2.ID)
+#+mvStore#>> SELECT TEST1.ID, TEST2.ID, TEST3.ID FROM PUBLIC.TEST2 /* PUBLIC.TEST2.tableScan */ LEFT OUTER JOIN PUBLIC.TEST3 /* PUBLIC.PRIMARY_KEY_4C0: ID = TEST2.ID */ ON TEST2.ID = TEST3.ID INNER JOIN PUBLIC.TEST1 /* merge join PUBLIC.PRIMARY_KEY_4: ID = TEST2.ID */ ON 1=1 WHERE (TEST3.ID IS NULL) AND (TEST1.ID = TEST2.ID)
 #-mvStore#>> SELECT TEST1.ID, TEST2.ID, TEST3.ID FROM PUBLIC.TEST1 /* PUBLIC.PRIMARY_KEY_4 */ INNER JOIN PUBLIC.TEST2 /* PUBLIC.PRIMARY_KEY_4C: ID = TEST1.ID AND ID = TEST1.ID */ ON 1=1 /* WHERE TEST1.ID = TEST2.ID */ LEFT OUTER JOIN PUBLIC.TEST3 /* PUBLIC.PRIMARY_KEY_4C0: ID = TEST2.ID */ ON TEST2.ID = TEST3.ID WHERE (TEST3.ID IS NULL) AND (TEST1.ID = TEST2.ID)
 
 insert into test1 select x from system_range(2, 1000);
@@ -272,7 +272,7 @@ explain select * from test1
 inner join test2 on test1.id=test2.id
 left outer join test3 on test2.id=test3.id
 where test3.id is null;
-#+mvStore#>> SELECT TEST1.ID, TEST2.ID, TEST3.ID FROM PUBLIC.TEST2 /* PUBLIC.TEST2.tableScan */ LEFT OUTER JOIN PUBLIC.TEST3 /* PUBLIC.PRIMARY_KEY_4C0: ID = TEST2.ID */ ON TEST2.ID = TEST3.ID INNER JOIN PUBLIC.TEST1 /* PUBLIC.PRIMARY_KEY_4: ID = TEST2.ID */ ON 1=1 WHERE (TEST3.ID IS NULL) AND (TEST1.ID = TEST2.ID)
+#+mvStore#>> SELECT TEST1.ID, TEST2.ID, TEST3.ID FROM PUBLIC.TEST2 /* PUBLIC.TEST2.tableScan */ LEFT OUTER JOIN PUBLIC.TEST3 /* PUBLIC.PRIMARY_KEY_4C0: ID = TEST2.ID */ ON TEST2.ID = TEST3.ID INNER JOIN PUBLIC.TEST1 /* merge join PUBLIC.PRIMARY_KEY_4: ID = TEST2.ID */ ON 1=1 WHERE (TEST3.ID IS NULL) AND (TEST1.ID = TEST2.ID)
 #-mvStore#>> SELECT TEST1.ID, TEST2.ID, TEST3.ID FROM PUBLIC.TEST2 /* PUBLIC.PRIMARY_KEY_4C */ LEFT OUTER JOIN PUBLIC.TEST3 /* PUBLIC.PRIMARY_KEY_4C0: ID = TEST2.ID */ ON TEST2.ID = TEST3.ID INNER JOIN PUBLIC.TEST1 /* PUBLIC.PRIMARY_KEY_4: ID = TEST2.ID */ ON 1=1 WHERE (TEST3.ID IS NULL) AND (TEST1.ID = TEST2.ID)
 
 SELECT TEST1.ID, TEST2.ID, TEST3.ID
@@ -570,7 +570,7 @@ select * from t1 natural join t2;
 > rows: 0
 
 explain select * from t1 natural join t2;
->> SELECT T1.ID, T1.NAME FROM PUBLIC.T2 /* PUBLIC.T2.tableScan */ INNER JOIN PUBLIC.T1 /* PUBLIC.T1.tableScan */ ON 1=1 WHERE (PUBLIC.T1.ID = PUBLIC.T2.ID) AND (PUBLIC.T1.NAME = PUBLIC.T2.NAME)
+>> SELECT T1.ID, T1.NAME FROM PUBLIC.T2 /* PUBLIC.T2.tableScan */ INNER JOIN PUBLIC.T1 /* hash join PUBLIC.T1.tableScan: ID = PUBLIC.T2.ID AND NAME = PUBLIC.T2.NAME */ ON 1=1 WHERE (PUBLIC.T1.ID = PUBLIC.T2.ID) AND (PUBLIC.T1.NAME = PUBLIC.T2.NAME)
 
 drop table t1;
 > ok
@@ -604,7 +604,7 @@ select c.*, i.*, l.* from customer c natural join invoice i natural join INVOICE
 > rows: 2
 
 explain select c.*, i.*, l.* from customer c natural join invoice i natural join INVOICE_LINE l;
->> SELECT C.CUSTOMERID, C.CUSTOMER_NAME, I.INVOICEID, I.INVOICE_TEXT, L.LINE_ID, L.LINE_TEXT FROM PUBLIC.INVOICE I /* PUBLIC.INVOICE.tableScan */ INNER JOIN PUBLIC.INVOICE_LINE L /* PUBLIC.INVOICE_LINE.tableScan */ ON 1=1 /* WHERE (PUBLIC.I.CUSTOMERID = PUBLIC.L.CUSTOMERID) AND (PUBLIC.I.INVOICEID = PUBLIC.L.INVOICEID) */ INNER JOIN PUBLIC.CUSTOMER C /* PUBLIC.CUSTOMER.tableScan */ ON 1=1 WHERE (PUBLIC.C.CUSTOMERID = PUBLIC.I.CUSTOMERID) AND ((PUBLIC.I.CUSTOMERID = PUBLIC.L.CUSTOMERID) AND (PUBLIC.I.INVOICEID = PUBLIC.L.INVOICEID))
+>> SELECT C.CUSTOMERID, C.CUSTOMER_NAME, I.INVOICEID, I.INVOICE_TEXT, L.LINE_ID, L.LINE_TEXT FROM PUBLIC.INVOICE I /* PUBLIC.INVOICE.tableScan */ INNER JOIN PUBLIC.INVOICE_LINE L /* hash join PUBLIC.INVOICE_LINE.tableScan: CUSTOMERID = PUBLIC.I.CUSTOMERID AND INVOICEID = PUBLIC.I.INVOICEID AND CUSTOMERID = PUBLIC.I.CUSTOMERID AND INVOICEID = PUBLIC.I.INVOICEID */ ON 1=1 /* WHERE (PUBLIC.I.CUSTOMERID = PUBLIC.L.CUSTOMERID) AND (PUBLIC.I.INVOICEID = PUBLIC.L.INVOICEID) */ INNER JOIN PUBLIC.CUSTOMER C /* hash join PUBLIC.CUSTOMER.tableScan: CUSTOMERID = PUBLIC.I.CUSTOMERID */ ON 1=1 WHERE (PUBLIC.C.CUSTOMERID = PUBLIC.I.CUSTOMERID) AND ((PUBLIC.I.CUSTOMERID = PUBLIC.L.CUSTOMERID) AND (PUBLIC.I.INVOICEID = PUBLIC.L.INVOICEID))
 
 drop table customer;
 > ok
@@ -785,3 +785,103 @@ SELECT T1.X1, T2.X2, T3.X3, T4.X4, T5.X5 FROM (
 > -- -- -- -- --
 > 1  1  1  1  1
 > rows: 1
+
+DROP TABLE T1, T2, T3, T4, T5;
+> ok
+
+CREATE TABLE PARENT(ID INT, NAME VARCHAR) AS SELECT X, 'P' || X FROM SYSTEM_RANGE(1, 1000);
+> ok
+
+CREATE TABLE CHILD(ID INT, PARENT_ID INT) AS SELECT X, MOD(X, 10) FROM SYSTEM_RANGE(1, 1000);
+> ok
+
+EXPLAIN SELECT P.NAME, COUNT(*) FROM CHILD C JOIN PARENT P ON P.ID = C.PARENT_ID GROUP BY P.NAME;
+>> SELECT P.NAME, COUNT(*) FROM PUBLIC.PARENT P /* PUBLIC.PARENT.tableScan */ INNER JOIN PUBLIC.CHILD C /* hash join PUBLIC.CHILD.tableScan: PARENT_ID = P.ID */ ON 1=1 WHERE P.ID = C.PARENT_ID GROUP BY P.NAME
+
+SELECT P.NAME, COUNT(*) FROM CHILD C JOIN PARENT P ON P.ID = C.PARENT_ID GROUP BY P.NAME ORDER BY P.NAME;
+> NAME COUNT(*)
+> ---- --------
+> P1   100
+> P2   100
+> P3   100
+> P4   100
+> P5   100
+> P6   100
+> P7   100
+> P8   100
+> P9   100
+> rows (ordered): 9
+
+SELECT COUNT(*) FROM CHILD C JOIN PARENT P ON P.ID = C.PARENT_ID AND P.NAME = 'P3';
+>> 100
+
+SELECT COUNT(*) FROM CHILD C LEFT JOIN PARENT P ON P.ID = C.PARENT_ID WHERE P.ID IS NULL;
+>> 100
+
+SELECT COUNT(*) FROM CHILD C JOIN (SELECT PARENT_ID, COUNT(*) CNT FROM CHILD GROUP BY PARENT_ID) G
+    ON G.PARENT_ID = C.ID;
+>> 9
+
+CREATE INDEX PARENT_ID_IDX ON PARENT(ID);
+> ok
+
+EXPLAIN SELECT P.NAME FROM CHILD C JOIN PARENT P ON P.ID = C.PARENT_ID;
+>> SELECT P.NAME FROM PUBLIC.CHILD C /* PUBLIC.CHILD.tableScan */ INNER JOIN PUBLIC.PARENT P /* PUBLIC.PARENT_ID_IDX: ID = C.PARENT_ID AND ID = C.PARENT_ID */ ON 1=1 WHERE P.ID = C.PARENT_ID
+
+DROP TABLE PARENT, CHILD;
+> ok
+
+CREATE TABLE A(ID INT PRIMARY KEY, V INT) AS SELECT X, X * 10 FROM SYSTEM_RANGE(1, 1000);
+> ok
+
+CREATE TABLE B(ID INT PRIMARY KEY, A_ID INT) AS SELECT X, CASEWHEN(MOD(X, 7) = 0, NULL, X / 3) FROM SYSTEM_RANGE(1, 5000);
+> ok
+
+CREATE INDEX B_A_ID ON B(A_ID);
+> ok
+
+EXPLAIN SELECT A.V, B.ID FROM A JOIN B ON B.A_ID = A.ID;
+>> SELECT A.V, B.ID FROM PUBLIC.A /* PUBLIC.A.tableScan */ INNER JOIN PUBLIC.B /* merge join PUBLIC.B_A_ID: A_ID = A.ID AND A_ID = A.ID */ ON 1=1 WHERE B.A_ID = A.ID
+
+SELECT COUNT(*), SUM(A.V), SUM(B.ID) FROM A JOIN B ON B.A_ID = A.ID;
+> COUNT(*) SUM(A.V) SUM(B.ID)
+> -------- -------- ---------
+> 2572     12874290 3864858
+> rows: 1
+
+SELECT COUNT(*), SUM(A_ID * 10), SUM(ID) FROM B WHERE A_ID BETWEEN 1 AND 1000;
+> COUNT(*) SUM(A_ID * 10) SUM(ID)
+> -------- -------------- -------
+> 2572     12874290       3864858
+> rows: 1
+
+SELECT A.ID, B.ID FROM A JOIN B ON B.A_ID = A.ID WHERE A.ID < 5 ORDER BY A.ID DESC, B.ID;
+> ID ID
+> -- --
+> 4  12
+> 4  13
+> 3  9
+> 3  10
+> 3  11
+> 2  6
+> 2  8
+> 1  3
+> 1  4
+> 1  5
+> rows (ordered): 10
+
+EXPLAIN SELECT COUNT(*) FROM A A1 JOIN A A2 ON A1.ID = A2.ID;
+>> SELECT COUNT(*) FROM PUBLIC.A A2 /* PUBLIC.A.tableScan */ INNER JOIN PUBLIC.A A1 /* merge join PUBLIC.PRIMARY_KEY_4: ID = A2.ID */ ON 1=1 WHERE A1.ID = A2.ID
+
+SELECT COUNT(*), SUM(A2.V) FROM A A1 JOIN A A2 ON A1.ID = A2.ID;
+> COUNT(*) SUM(A2.V)
+> -------- ---------
+> 1000     5005000
+> rows: 1
+
+-- the outer table is read in the opposite order
+SELECT COUNT(*) FROM (SELECT A.ID FROM A ORDER BY A.ID DESC) X JOIN B ON B.A_ID = X.ID;
+>> 2572
+
+DROP TABLE A, B;
+> ok
@@ -0,0 +1,95 @@
+-- Copyright 2004-2018 H2 Group. Multiple-Licensed under the MPL 2.0,
+-- and the EPL 1.0 (http://h2database.com/html/license.html).
+-- Initial Developer: H2 Group
+--
+
+CREATE TABLE TEST(ID BIGINT PRIMARY KEY, G INT, V INT, S VARCHAR);
+> ok
+
+INSERT INTO TEST SELECT X, MOD(X, 5), X, 'x' || MOD(X, 3) FROM SYSTEM_RANGE(1, 100000);
+> update count: 100000
+
+SET PARALLELISM 0;
+> exception INVALID_VALUE_2
+
+SET PARALLELISM 4;
+> ok
+
+SELECT G, COUNT(*) C, SUM(V) S, MIN(V) MI, MAX(V) MA, AVG(V) A FROM TEST GROUP BY G ORDER BY G;
+> G C     S          MI MA     A
+> - ----- ---------- -- ------ -----
+> 0 20000 1000050000 5  100000 50002
+> 1 20000 999970000  1  99996  49998
+> 2 20000 999990000  2  99997  49999
+> 3 20000 1000010000 3  99998  50000
+> 4 20000 1000030000 4  99999  50001
+> rows (ordered): 5
+
+SELECT COUNT(*) C, SUM(V) S, COUNT(DISTINCT S) D, COUNT(*) FILTER (WHERE G = 1) F FROM TEST WHERE S <> 'x0';
+> C     S          D F
+> ----- ---------- - -----
+> 66667 3333366667 2 13333
+> rows: 1
+
+SELECT S, SUM(V) S1 FROM TEST GROUP BY S HAVING SUM(V) > 1666700000 ORDER BY SUM(V) DESC;
+> S  S1
+> -- ----------
+> x1 1666716667
+> rows (ordered): 1
+
+SELECT G, ROUND(VAR_SAMP(V), 3) V, ROUND(STDDEV_POP(V), 3) S FROM TEST GROUP BY G ORDER BY G;
+> G V         S
+> - --------- ---------
+> 0 8.33375E8 28867.513
+> 1 8.33375E8 28867.513
+> 2 8.33375E8 28867.513
+> 3 8.33375E8 28867.513
+> 4 8.33375E8 28867.513
+> rows (ordered): 5
+
+SELECT ARRAY_AGG(V) A, GROUP_CONCAT(DISTINCT S ORDER BY S DESC) G FROM TEST WHERE MOD(V, 25000) = 0;
+> A                             G
+> ----------------------------- --------
+> [25000, 50000, 75000, 100000] x2,x1,x0
+> rows: 1
+
+SELECT MEDIAN(V) M, MODE(S) S FROM TEST;
+> M     S
+> ----- --
+> 50000 x1
+> rows: 1
+
+SELECT COUNT(*) C, SUM(V) S FROM TEST WHERE V < 0;
+> C S
+> - ----
+> 0 null
+> rows: 1
+
+SELECT G, V FROM TEST GROUP BY G;
+> exception MUST_GROUP_BY_COLUMN_1
+
+CREATE INDEX TEST_G_V ON TEST(G, V);
+> ok
+
+SELECT COUNT(*) FROM TEST WHERE G = 3 AND V > 99000;
+>> 200
+
+SELECT V FROM TEST WHERE G = 3 ORDER BY G, V LIMIT 3;
+> V
+> --
+> 3
+> 8
+> 13
+> rows (ordered): 3
+
+CREATE UNIQUE INDEX TEST_V ON TEST(V);
+> ok
+
+CREATE UNIQUE INDEX TEST_S ON TEST(S);
+> exception DUPLICATE_KEY_1
+
+SET PARALLELISM 1;
+> ok
+
+DROP TABLE TEST;
+> ok
@@ -0,0 +1,106 @@
+-- Copyright 2004-2018 H2 Group. Multiple-Licensed under the MPL 2.0,
+-- and the EPL 1.0 (http://h2database.com/html/license.html).
+-- Initial Developer: H2 Group
+--
+
+CREATE TABLE TEST(ID INT PRIMARY KEY, A INT, B BIGINT, C SMALLINT, S VARCHAR);
+> ok
+
+INSERT INTO TEST SELECT X, CASEWHEN(MOD(X, 7) = 0, NULL, MOD(X, 10)), CASEWHEN(MOD(X, 11) = 0, NULL, X * 1000),
+    MOD(X, 3), 'x' || MOD(X, 4) FROM SYSTEM_RANGE(1, 5000);
+> update count: 5000
+
+SELECT COUNT(*), COUNT(A), SUM(A), MIN(A), MAX(A), AVG(A) FROM TEST;
+> COUNT(*) COUNT(A) SUM(A) MIN(A) MAX(A) AVG(A)
+> -------- -------- ------ ------ ------ ------
+> 5000     4286     19285  0      9      4
+> rows: 1
+
+SELECT COUNT(*), COUNT(B), SUM(B), MIN(B), MAX(B), AVG(B) FROM TEST WHERE A > 5;
+> COUNT(*) COUNT(B) SUM(B)     MIN(B) MAX(B)  AVG(B)
+> -------- -------- ---------- ------ ------- -------
+> 1714     1560     3903900000 6000   4999000 2502500
+> rows: 1
+
+SELECT COUNT(*), SUM(A + C), SUM(B * 2), MIN(A - C) FROM TEST WHERE A IS NULL OR C = 2;
+> COUNT(*) SUM(A + C) SUM(B * 2) MIN(A - C)
+> -------- ---------- ---------- ----------
+> 2143     9280       9749744000 -2
+> rows: 1
+
+SELECT COUNT(*) FROM TEST WHERE A = 3 AND B IS NOT NULL;
+> COUNT(*)
+> --------
+> 389
+> rows: 1
+
+SELECT COUNT(*) FROM TEST WHERE NOT (A < 3) AND (B >= 2000000 OR C <> 1);
+> COUNT(*)
+> --------
+> 2545
+> rows: 1
+
+SELECT COUNT(*) FROM TEST WHERE A <= 2 OR A = NULL;
+> COUNT(*)
+> --------
+> 1286
+> rows: 1
+
+SELECT COUNT(*), SUM(A) FROM TEST WHERE A > 100;
+> COUNT(*) SUM(A)
+> -------- ------
+> 0        null
+> rows: 1
+
+SELECT C, COUNT(*), SUM(A), MAX(B) FROM TEST WHERE A >= 8 GROUP BY C ORDER BY C;
+> C COUNT(*) SUM(A) MAX(B)
+> - -------- ------ -------
+> 0 287      2440   4989000
+> 1 285      2423   4999000
+> 2 285      2422   4988000
+> rows (ordered): 3
+
+SELECT S, COUNT(*) FROM TEST WHERE B < 100000 AND A <> 0 GROUP BY S ORDER BY S;
+> S  COUNT(*)
+> -- --------
+> x0 15
+> x1 21
+> x2 15
+> x3 18
+> rows (ordered): 4
+
+SELECT COUNT(*), SUM(A) FROM TEST WHERE S = 'x1' AND A > 4;
+> COUNT(*) SUM(A)
+> -------- ------
+> 643      4499
+> rows: 1
+
+SELECT SUM(A) * 2, COUNT(*) FROM TEST WHERE C = 0;
+> SUM(A) * 2 COUNT(*)
+> ---------- --------
+> 12864      1666
+> rows: 1
+
+SELECT COUNT(*) FROM TEST WHERE B * 10000000000000 > 0;
+> exception NUMERIC_VALUE_OUT_OF_RANGE_1
+
+SELECT COUNT(*) FROM TEST WHERE A IS NULL OR B * 10000000000000 > 0;
+> exception NUMERIC_VALUE_OUT_OF_RANGE_1
+
+SELECT COUNT(*) FROM TEST WHERE C = 5 AND B * 10000000000000 > 0;
+> COUNT(*)
+> --------
+> 0
+> rows: 1
+
+SELECT SUM(C * 2147483647) FROM TEST;
+> exception NUMERIC_VALUE_OUT_OF_RANGE_1
+
+SELECT SUM(B * 1000000000), AVG(B * 1000000000) FROM TEST;
+> SUM(B * 1000000000)  AVG(B * 1000000000)
+> -------------------- -------------------
+> 11366365000000000000 2500300263968324
+> rows: 1
+
+DROP TABLE TEST;
+> ok
@@ -111,3 +111,53 @@ SELECT ROW_NUMBER() OVER (ORDER BY CATEGORY), SUM(ID) FROM TEST GROUP BY CATEGOR
 
 DROP TABLE TEST;
 > ok
+
+CREATE TABLE TEST(ID INT PRIMARY KEY, G INT, V INT, D DOUBLE) AS
+    SELECT X, MOD(X, 3), CASE WHEN MOD(X, 7) = 0 THEN NULL ELSE MOD(X * 17, 23) END, MOD(X, 5) / 4.0
+    FROM SYSTEM_RANGE(1, 200);
+> ok
+
+SELECT ID, SUM(V) OVER W S, COUNT(V) OVER W C, AVG(V) OVER W A, MIN(V) OVER W MI, MAX(V) OVER W MA
+    FROM TEST WHERE ID <= 8 WINDOW W AS (ORDER BY ID ROWS BETWEEN 2 PRECEDING AND CURRENT ROW);
+> ID S  C A  MI MA
+> -- -- - -- -- --
+> 1  17 1 17 17 17
+> 2  28 2 14 11 17
+> 3  33 3 11 5  17
+> 4  38 3 12 5  22
+> 5  43 3 14 5  22
+> 6  48 3 16 10 22
+> 7  26 2 13 10 16
+> 8  31 2 15 10 21
+> rows: 8
+
+-- frames aggregated incrementally are compared with the same frames aggregated one by one
+SELECT COUNT(*) FROM (SELECT
+    SUM(V) OVER (PARTITION BY G ORDER BY ID ROWS BETWEEN 5 PRECEDING AND 2 FOLLOWING) S1,
+    SUM(V) OVER (PARTITION BY G ORDER BY ID ROWS BETWEEN 5 PRECEDING AND 2 FOLLOWING EXCLUDE TIES) S2,
+    COUNT(*) OVER (ORDER BY ID ROWS BETWEEN 3 FOLLOWING AND 10 FOLLOWING) C1,
+    COUNT(*) OVER (ORDER BY ID ROWS BETWEEN 3 FOLLOWING AND 10 FOLLOWING EXCLUDE TIES) C2,
+    AVG(V) OVER (ORDER BY V, ID RANGE BETWEEN UNBOUNDED PRECEDING AND CURRENT ROW) A1,
+    AVG(V) OVER (ORDER BY V, ID RANGE BETWEEN UNBOUNDED PRECEDING AND CURRENT ROW EXCLUDE TIES) A2,
+    MIN(V) OVER (PARTITION BY G ORDER BY ID ROWS BETWEEN 10 PRECEDING AND 10 PRECEDING) MI1,
+    MIN(V) OVER (PARTITION BY G ORDER BY ID ROWS BETWEEN 10 PRECEDING AND 10 PRECEDING EXCLUDE TIES) MI2,
+    MAX(V) OVER (ORDER BY ID ROWS BETWEEN 3 PRECEDING AND 3 FOLLOWING) MA1,
+    MAX(V) OVER (ORDER BY ID ROWS BETWEEN 3 PRECEDING AND 3 FOLLOWING EXCLUDE TIES) MA2,
+    SUM(D) OVER (ORDER BY ID ROWS BETWEEN 4 PRECEDING AND 1 PRECEDING) D1,
+    SUM(D) OVER (ORDER BY ID ROWS BETWEEN 4 PRECEDING AND 1 PRECEDING EXCLUDE TIES) D2
+    FROM TEST) T
+    WHERE S1 IS DISTINCT FROM S2 OR C1 IS DISTINCT FROM C2 OR A1 IS DISTINCT FROM A2 OR MI1 IS DISTINCT FROM MI2
+    OR MA1 IS DISTINCT FROM MA2 OR D1 IS DISTINCT FROM D2;
+>> 0
+
+SELECT COUNT(*) FROM (SELECT
+    SUM(V) OVER (ORDER BY ID ROWS BETWEEN 5 PRECEDING AND 2 FOLLOWING) S1,
+    (SELECT SUM(V) FROM TEST T2 WHERE T2.ID BETWEEN T1.ID - 5 AND T1.ID + 2) S2,
+    COUNT(V) OVER (ORDER BY V RANGE BETWEEN 2 PRECEDING AND 2 FOLLOWING) C1,
+    (SELECT COUNT(V) FROM TEST T2 WHERE T2.V BETWEEN T1.V - 2 AND T1.V + 2) C2
+    FROM TEST T1) T
+    WHERE S1 IS DISTINCT FROM S2 OR C1 IS DISTINCT FROM C2;
+>> 0
+
+DROP TABLE TEST;
+> ok
@@ -70,6 +70,7 @@ public void test() throws Exception {
         testTemporaryTables();
         testUniqueIndex();
         testSecondaryIndex();
+        testParallelIndexBuildFailure();
         testGarbageCollectionForLOB();
         testSpatial();
         testCount();
@@ -443,6 +444,27 @@ private void testSecondaryIndex() throws SQLException {
         conn.close();
     }
 
+    private void testParallelIndexBuildFailure() throws SQLException {
+        if (config.memory) {
+            return;
+        }
+        deleteDb(getTestName());
+        Connection conn = getConnection(getTestName() + ";MV_STORE=TRUE");
+        Statement stat = conn.createStatement();
+        stat.execute("create table test(id int primary key, v int) " +
+                "as select x, x from system_range(1, 40000)");
+        stat.execute("set parallelism 4");
+        // only the thread that reads the last row fails
+        assertThrows(ErrorCode.DIVISION_BY_ZERO_1, stat).
+                execute("create index on test((1 / (v - 40000)))");
+        Database db = (Database) ((JdbcConnection) conn).getSession()
+                .getDataHandler();
+        for (String mapName : db.getStore().getMvStore().getMapNames()) {
+            assertFalse(mapName, mapName.startsWith("temp."));
+        }
+        conn.close();
+    }
+
     private void testGarbageCollectionForLOB() throws SQLException {
         if (config.memory) {
             return;
@@ -20,6 +20,7 @@
 import org.h2.mvstore.DataUtils;
 import org.h2.mvstore.MVMap;
 import org.h2.mvstore.MVStore;
+import org.h2.mvstore.db.ValueDataType;
 import org.h2.mvstore.tx.Transaction;
 import org.h2.mvstore.tx.TransactionMap;
 import org.h2.mvstore.tx.TransactionStore;
@@ -28,6 +29,9 @@
 import org.h2.store.fs.FileUtils;
 import org.h2.test.TestBase;
 import org.h2.util.Task;
+import org.h2.value.Value;
+import org.h2.value.ValueInt;
+import org.h2.value.ValueString;
 
 /**
  * Test concurrent transactions.
@@ -62,6 +66,158 @@ public void test() throws Exception {
         testSingleConnection();
         testCompareWithPostgreSQL();
         testStoreMultiThreadedReads();
+        testReadOnlyTransaction();
+        testCommittedValueWithoutWrapper();
+        testBufferedUndoLog();
+    }
+
+    private void testBufferedUndoLog() {
+        String fileName = getBaseDir() + "/testBufferedUndoLog.h3";
+        FileUtils.delete(fileName);
+        MVStore s = new MVStore.Builder().fileName(fileName).autoCommitDisabled().open();
+        TransactionStore ts = new TransactionStore(s);
+        ts.init();
+        Transaction tx = ts.begin();
+        TransactionMap<Integer, Integer> m = tx.openMap("test");
+        for (int i = 0; i < 10; i++) {
+            m.put(i, i);
+        }
+        // short transactions don't use the undo log map
+        assertFalse(s.hasData(TransactionStore.getUndoLogName(false, tx.getId())));
+        tx.commit();
+        s.commit();
+
+        // large transaction, with rollback to a savepoint
+        tx = ts.begin();
+        m = tx.openMap("test");
+        for (int i = 0; i < 3000; i++) {
+            m.put(i, -i);
+        }
+        long sp = tx.setSavepoint();
+        for (int i = 0; i < 3000; i++) {
+            m.put(i, i + 1);
+        }
+        assertEquals(3000, (int) m.get(2999));
+        tx.rollbackToSavepoint(sp);
+        assertEquals(-2999, (int) m.get(2999));
+        assertNull(m.get(3000));
+        tx.rollback();
+        m = ts.begin().openMap("test");
+        assertEquals(10, m.sizeAsLong());
+        assertEquals(9, (int) m.get(9));
+        m.getTransaction().commit();
+
+        // the undo log of open transactions is stored together with changes
+        tx = ts.begin();
+        m = tx.openMap("test");
+        for (int i = 0; i < 20; i++) {
+            m.put(i, -i);
+        }
+        s.commit();
+        assertTrue(s.hasData(TransactionStore.getUndoLogName(false, tx.getId())));
+        s.closeImmediately();
+
+        s = MVStore.open(fileName);
+        ts = new TransactionStore(s);
+        ts.init();
+        List<Transaction> list = ts.getOpenTransactions();
+        assertEquals(1, list.size());
+        list.get(0).rollback();
+        m = ts.begin().openMap("test");
+        assertEquals(10, m.sizeAsLong());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i, (int) m.get(i));
+        }
+        m.getTransaction().commit();
+        s.close();
+        FileUtils.delete(fileName);
+    }
+
+    private void testCommittedValueWithoutWrapper() {
+        String fileName = getBaseDir() + "/testCommittedValueWithoutWrapper.h3";
+        FileUtils.delete(fileName);
+        MVStore s = MVStore.open(fileName);
+        TransactionStore ts = new TransactionStore(s);
+        ts.init();
+        Transaction tx = ts.begin();
+        TransactionMap<Integer, Value> m = tx.openMap("test", null, new ValueDataType());
+        m.put(1, ValueString.get("Hello"));
+        m.put(2, ValueInt.get(2));
+        assertFalse(m.map.get(1) instanceof Value);
+        tx.commit();
+        // committed values are stored as is
+        assertTrue(m.map.get(1) instanceof ValueString);
+        assertTrue(m.map.get(2) instanceof ValueInt);
+        s.close();
+
+        s = MVStore.open(fileName);
+        ts = new TransactionStore(s);
+        ts.init();
+        tx = ts.begin();
+        m = tx.openMap("test", null, new ValueDataType());
+        assertTrue(m.map.get(1) instanceof ValueString);
+        assertEquals("Hello", m.get(1).getString());
+        assertEquals(2, m.get(2).getInt());
+        m.put(1, ValueString.get("World"));
+        assertEquals("World", m.get(1).getString());
+        tx.rollback();
+        tx = ts.begin();
+        m = tx.openMap("test", null, new ValueDataType());
+        assertTrue(m.map.get(1) instanceof ValueString);
+        assertEquals("Hello", m.get(1).getString());
+        tx.commit();
+
+        // the same for values of any other type
+        tx = ts.begin();
+        TransactionMap<Integer, String> m2 = tx.openMap("test2");
+        m2.put(1, "Hello");
+        assertFalse(m2.map.get(1) instanceof String);
+        tx.commit();
+        assertEquals("Hello", m2.map.get(1));
+        s.close();
+        FileUtils.delete(fileName);
+    }
+
+    private void testReadOnlyTransaction() {
+        MVStore s = MVStore.open(null);
+        TransactionStore ts = new TransactionStore(s);
+        ts.init();
+        Transaction tx = ts.begin();
+        TransactionMap<Integer, String> m = tx.openMap("test");
+        m.put(1, "Hello");
+        tx.commit();
+        tx = ts.begin();
+        m = tx.openMap("test");
+        m.put(1, "World");
+        m.put(2, "Hi");
+
+        Transaction ro = ts.beginReadOnly(0);
+        assertTrue(ro.isReadOnly());
+        assertFalse(tx.isReadOnly());
+        assertEquals(1, ts.getOpenTransactions().size());
+        TransactionMap<Integer, String> rm = ro.openMap("test");
+        assertEquals("Hello", rm.get(1));
+        assertNull(rm.get(2));
+        assertEquals(1, rm.sizeAsLong());
+        try {
+            rm.put(3, "x");
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals(DataUtils.ERROR_TRANSACTION_ILLEGAL_STATE,
+                    DataUtils.getErrorCode(e.getMessage()));
+        }
+        assertNull(rm.get(3));
+        ro.commit();
+        assertEquals(Transaction.STATUS_CLOSED, ro.getStatus());
+
+        tx.commit();
+        assertEquals(0, ts.getOpenTransactions().size());
+        ro = ts.beginReadOnly(0);
+        rm = ro.openMap("test");
+        assertEquals("World", rm.get(1));
+        assertEquals("Hi", rm.get(2));
+        ro.rollback();
+        s.close();
     }
 
     private void testHCLFKey() {
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2004-2018 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.test.unit;
+
+import java.util.Iterator;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.h2.test.TestBase;
+import org.h2.util.RoaringBitmap;
+
+/**
+ * Tests the RoaringBitmap class.
+ */
+public class TestRoaringBitmap extends TestBase {
+
+    /**
+     * Run just this test.
+     *
+     * @param a ignored
+     */
+    public static void main(String... a) throws Exception {
+        TestBase.createCaller().init().test();
+    }
+
+    @Override
+    public void test() {
+        testSimple();
+        testContainers();
+        Random r = new Random(1);
+        for (int i = 0; i < 20; i++) {
+            // small ranges create bitmap containers, large ranges array
+            // containers
+            testRandom(r, 100 << i);
+        }
+    }
+
+    private void testSimple() {
+        RoaringBitmap b = new RoaringBitmap();
+        assertTrue(b.isEmpty());
+        assertTrue(b.add(10));
+        assertFalse(b.add(10));
+        assertTrue(b.add(1L << 40));
+        assertTrue(b.contains(10));
+        assertTrue(b.contains(1L << 40));
+        assertFalse(b.contains(11));
+        assertEquals(2, b.getCardinality());
+        assertFalse(b.remove(11));
+        assertTrue(b.remove(10));
+        assertFalse(b.contains(10));
+        assertTrue(b.remove(1L << 40));
+        assertTrue(b.isEmpty());
+        assertEquals(0, b.getContainerCount());
+        assertFalse(b.iterator().next());
+    }
+
+    private void testContainers() {
+        RoaringBitmap b = new RoaringBitmap();
+        for (int i = 0; i < 1000; i++) {
+            b.add(i * 3);
+        }
+        b.add(100000);
+        RoaringBitmap copy = new RoaringBitmap();
+        for (int i = b.getContainerCount() - 1; i >= 0; i--) {
+            long key = b.getContainerKey(i);
+            assertEquals(key, RoaringBitmap.getContainerKey(key << RoaringBitmap.CONTAINER_BITS));
+            copy.addContainer(key, b.getContainerData(i));
+        }
+        assertEquals(b, copy);
+        // merging a container with an existing one
+        RoaringBitmap other = new RoaringBitmap();
+        other.add(1);
+        other.add(100001);
+        for (int i = 0; i < other.getContainerCount(); i++) {
+            copy.addContainer(other.getContainerKey(i), other.getContainerData(i));
+        }
+        assertEquals(b.or(other), copy);
+        assertEquals(1003, copy.getCardinality());
+    }
+
+    private void testRandom(Random r, int range) {
+        TreeSet<Long> setA = new TreeSet<>();
+        TreeSet<Long> setB = new TreeSet<>();
+        RoaringBitmap a = new RoaringBitmap();
+        RoaringBitmap b = new RoaringBitmap();
+        for (int i = 0; i < 20000; i++) {
+            long x = r.nextInt(range);
+            boolean first = r.nextBoolean();
+            TreeSet<Long> set = first ? setA : setB;
+            RoaringBitmap bitmap = first ? a : b;
+            if (r.nextInt(4) == 0) {
+                assertEquals(set.remove(x), bitmap.remove(x));
+            } else {
+                assertEquals(set.add(x), bitmap.add(x));
+            }
+            assertEquals(set.contains(x + 1), bitmap.contains(x + 1));
+        }
+        assertEquals(setA, a);
+        assertEquals(setB, b);
+        TreeSet<Long> and = new TreeSet<>(setA);
+        and.retainAll(setB);
+        assertEquals(and, a.and(b));
+        TreeSet<Long> or = new TreeSet<>(setA);
+        or.addAll(setB);
+        assertEquals(or, a.or(b));
+        TreeSet<Long> andNot = new TreeSet<>(setA);
+        andNot.removeAll(setB);
+        assertEquals(andNot, a.andNot(b));
+        // the operations don't change the operands
+        assertEquals(setA, a);
+        assertEquals(setB, b);
+    }
+
+    private void assertEquals(RoaringBitmap expected, RoaringBitmap actual) {
+        RoaringBitmap.LongIterator it = actual.iterator();
+        RoaringBitmap.LongIterator it2 = expected.iterator();
+        while (it2.next()) {
+            assertTrue(it.next());
+            assertEquals(it2.get(), it.get());
+        }
+        assertFalse(it.next());
+        assertEquals(expected.getCardinality(), actual.getCardinality());
+    }
+
+    private void assertEquals(TreeSet<Long> expected, RoaringBitmap actual) {
+        assertEquals(expected.size(), actual.getCardinality());
+        assertEquals(expected.isEmpty(), actual.isEmpty());
+        RoaringBitmap.LongIterator it = actual.iterator();
+        for (Iterator<Long> it2 = expected.iterator(); it2.hasNext();) {
+            assertTrue(it.next());
+            assertEquals(it2.next().longValue(), it.get());
+        }
+        assertFalse(it.next());
+    }
+
+}